@@ -0,0 +1,292 @@
+package havis.device.rf.common.load;
+
+import havis.device.rf.RFConsumer;
+import havis.device.rf.common.CommunicationHandler;
+import havis.device.rf.common.Connector;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.configuration.Configuration;
+import havis.device.rf.configuration.ConfigurationType;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.util.monitor.Broker;
+import havis.util.monitor.Event;
+import havis.util.monitor.Source;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Drives {@link CommunicationHandler#execute(List, List, List)} with
+ * concurrent clients. Each client repeatedly opens a session (connect,
+ * configure, a number of execute rounds, close). As the device accepts a
+ * single connection, the clients wait for each other to close the connection,
+ * which is part of the measured connect latency. The hardware is the
+ * {@link LoadTestHardwareManager} configured in the
+ * <code>havis.device.rf.properties</code> of the load test classpath.
+ * <p>
+ * The latency distributions are written as HdrHistogram log, the summary with
+ * percentiles, tags per second and allocated bytes per round as JSON.
+ * Configured by the system properties:
+ * <ul>
+ * <li><code>loadtest.clients</code>: the number of concurrent clients, default
+ * 4</li>
+ * <li><code>loadtest.sessions</code>: the number of measured sessions per
+ * client, default 10</li>
+ * <li><code>loadtest.warmupSessions</code>: the number of sessions per client
+ * before measuring, default 2</li>
+ * <li><code>loadtest.rounds</code>: the number of execute calls per session,
+ * default 100</li>
+ * <li><code>loadtest.operations</code>: the operations of each execute call,
+ * <code>inventory</code> (default), <code>read</code> or <code>write</code></li>
+ * <li><code>loadtest.output</code>: the base name of the result files, default
+ * <code>loadtest</code></li>
+ * </ul>
+ * </p>
+ */
+public class LoadTest {
+
+	private static final int CONNECT_TIMEOUT = 60000;
+
+	private final int clients = Integer.getInteger("loadtest.clients", 4).intValue();
+	private final int sessions = Integer.getInteger("loadtest.sessions", 10).intValue();
+	private final int warmupSessions = Integer.getInteger("loadtest.warmupSessions", 2).intValue();
+	private final int rounds = Integer.getInteger("loadtest.rounds", 100).intValue();
+	private final String operations = System.getProperty("loadtest.operations", "inventory");
+	private final String output = System.getProperty("loadtest.output", "loadtest");
+
+	/**
+	 * The measurements of a client, latencies in microseconds
+	 */
+	static class ClientResult {
+		final Histogram connect = new Histogram(3);
+		final Histogram configure = new Histogram(3);
+		final Histogram execute = new Histogram(3);
+		long tags;
+		long allocatedBytes;
+		long executions;
+
+		void add(ClientResult other) {
+			connect.add(other.connect);
+			configure.add(other.configure);
+			execute.add(other.execute);
+			tags += other.tags;
+			allocatedBytes += other.allocatedBytes;
+			executions += other.executions;
+		}
+	}
+
+	/**
+	 * A client running sessions on its own connection
+	 */
+	class Client implements Callable<ClientResult> {
+
+		private final CommunicationHandler handler = new CommunicationHandler();
+		private final RFConsumer consumer = new RFConsumer() {
+			@Override
+			public void keepAlive() {
+			}
+
+			@Override
+			public void connectionAttempted() {
+				// keep the connection until the session has been completed
+			}
+
+			@Override
+			public List<TagOperation> getOperations(TagData tag) {
+				return Collections.emptyList();
+			}
+		};
+
+		@Override
+		public ClientResult call() throws Exception {
+			List<Short> antennas = Arrays.asList(Short.valueOf((short) 1));
+			List<Filter> filters = new ArrayList<>();
+			List<TagOperation> operations = createOperations();
+			for (int session = 0; session < warmupSessions; session++)
+				session(antennas, filters, operations, new ClientResult());
+			ClientResult result = new ClientResult();
+			for (int session = 0; session < sessions; session++)
+				session(antennas, filters, operations, result);
+			return result;
+		}
+
+		private void session(List<Short> antennas, List<Filter> filters, List<TagOperation> operations, ClientResult result) throws Exception {
+			long start = System.nanoTime();
+			handler.openConnection(consumer, CONNECT_TIMEOUT);
+			try {
+				result.connect.recordValue(micros(start));
+
+				start = System.nanoTime();
+				List<Configuration> configuration = handler.getConfiguration(ConfigurationType.INVENTORY_SETTINGS, (short) 0, (short) 0, (short) 0);
+				handler.setConfiguration(configuration);
+				result.configure.recordValue(micros(start));
+
+				for (int round = 0; round < rounds; round++) {
+					long allocated = getAllocatedBytes();
+					start = System.nanoTime();
+					List<TagData> tags = handler.execute(antennas, filters, operations);
+					result.execute.recordValue(micros(start));
+					result.allocatedBytes += getAllocatedBytes() - allocated;
+					result.tags += tags.size();
+					result.executions++;
+				}
+			} finally {
+				handler.closeConnection();
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		// tag events are discarded
+		Connector.createFactory(new Connector() {
+			private final Broker broker = new Broker() {
+				@Override
+				public void notify(Source source, Event event) {
+				}
+			};
+
+			@Override
+			public Broker getBroker() {
+				return broker;
+			}
+		});
+		try {
+			new LoadTest().run();
+		} finally {
+			CommunicationHandler.dispose();
+			Connector.clearFactory();
+		}
+	}
+
+	void run() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(clients);
+		ClientResult total = new ClientResult();
+		long startTime = System.currentTimeMillis();
+		long start = System.nanoTime();
+		try {
+			List<Future<ClientResult>> futures = new ArrayList<>();
+			for (int i = 0; i < clients; i++)
+				futures.add(executor.submit(new Client()));
+			for (Future<ClientResult> future : futures)
+				total.add(future.get());
+		} finally {
+			executor.shutdown();
+		}
+		long duration = System.nanoTime() - start;
+
+		writeHistogramLog(total, startTime);
+		writeSummary(total, duration);
+	}
+
+	private List<TagOperation> createOperations() {
+		List<TagOperation> list = new ArrayList<>();
+		switch (operations) {
+		case "inventory":
+			break;
+		case "read":
+			list.add(RFUtils.newReadOperation("tid", RFUtils.BANK_TID, 0, 6, null));
+			list.add(RFUtils.newReadOperation("user", RFUtils.BANK_USR, 0, 4, null));
+			break;
+		case "write":
+			list.add(RFUtils.newWriteOperation("user", RFUtils.BANK_USR, 0, new byte[] { 0x12, 0x34, 0x56, 0x78 }, null));
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown operations '" + operations + "'");
+		}
+		return list;
+	}
+
+	private void writeHistogramLog(ClientResult total, long startTime) throws FileNotFoundException {
+		HistogramLogWriter writer = new HistogramLogWriter(new File(output + ".hlog"));
+		try {
+			writer.outputComment("Latencies in microseconds, tagged by connect, configure and execute");
+			writer.outputLogFormatVersion();
+			writer.outputStartTime(startTime);
+			writer.outputLegend();
+			total.connect.setTag("connect");
+			total.configure.setTag("configure");
+			total.execute.setTag("execute");
+			writer.outputIntervalHistogram(total.connect);
+			writer.outputIntervalHistogram(total.configure);
+			writer.outputIntervalHistogram(total.execute);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private void writeSummary(ClientResult total, long duration) throws IOException {
+		Map<String, Object> settings = new LinkedHashMap<>();
+		settings.put("clients", clients);
+		settings.put("sessions", sessions);
+		settings.put("warmupSessions", warmupSessions);
+		settings.put("rounds", rounds);
+		settings.put("operations", operations);
+		settings.put("tags", Integer.getInteger("loadtest.tags", 100));
+		settings.put("roundMicros", Long.getLong("loadtest.roundMicros", 0));
+		settings.put("tagMicros", Long.getLong("loadtest.tagMicros", 0));
+
+		Map<String, Object> latencies = new LinkedHashMap<>();
+		latencies.put("connect", summarize(total.connect));
+		latencies.put("configure", summarize(total.configure));
+		latencies.put("execute", summarize(total.execute));
+
+		double seconds = duration / 1e9;
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("settings", settings);
+		summary.put("durationSeconds", seconds);
+		summary.put("executions", total.executions);
+		summary.put("executionsPerSecond", total.executions / seconds);
+		summary.put("tagsPerSecond", total.tags / seconds);
+		summary.put("allocatedBytesPerRound", total.executions == 0 ? 0 : total.allocatedBytes / total.executions);
+		summary.put("latencyMicros", latencies);
+
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.enable(SerializationFeature.INDENT_OUTPUT);
+		mapper.writeValue(new File(output + ".json"), summary);
+	}
+
+	private static Map<String, Object> summarize(Histogram histogram) {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("count", histogram.getTotalCount());
+		result.put("mean", histogram.getMean());
+		for (double percentile : new double[] { 50, 90, 99, 99.9, 99.99 })
+			result.put("p" + (percentile == (long) percentile ? String.valueOf((long) percentile) : String.valueOf(percentile)),
+					histogram.getValueAtPercentile(percentile));
+		result.put("max", histogram.getMaxValue());
+		return result;
+	}
+
+	private static long micros(long start) {
+		return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread or 0 if not supported
+	 */
+	private static long getAllocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return 0;
+	}
+}
@@ -0,0 +1,198 @@
+package havis.device.rf.common.load;
+
+import havis.device.rf.RFConsumer;
+import havis.device.rf.capabilities.RegulatoryCapabilities;
+import havis.device.rf.common.BatchHardwareManager;
+import havis.device.rf.configuration.AntennaConfiguration;
+import havis.device.rf.configuration.AntennaConfigurationList;
+import havis.device.rf.configuration.AntennaPropertyList;
+import havis.device.rf.configuration.ConnectType;
+import havis.device.rf.configuration.RFRegion;
+import havis.device.rf.configuration.RssiFilter;
+import havis.device.rf.configuration.SingulationControl;
+import havis.device.rf.exception.ConnectionException;
+import havis.device.rf.exception.ImplementationException;
+import havis.device.rf.exception.ParameterException;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.TagDataList;
+import havis.device.rf.tag.operation.KillOperation;
+import havis.device.rf.tag.operation.LockOperation;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.operation.WriteOperation;
+import havis.device.rf.tag.result.KillResult;
+import havis.device.rf.tag.result.LockResult;
+import havis.device.rf.tag.result.OperationResult;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An in-process hardware manager for load tests. Every execution returns the
+ * same population of tags with successful results for all operations after a
+ * simulated air time. Filters are ignored. Configured by the system
+ * properties:
+ * <ul>
+ * <li><code>loadtest.tags</code>: the number of tags, default 100</li>
+ * <li><code>loadtest.roundMicros</code>: the air time of an inventory round in
+ * microseconds, default 0</li>
+ * <li><code>loadtest.tagMicros</code>: the additional air time per tag and
+ * operation in microseconds, default 0</li>
+ * </ul>
+ */
+public class LoadTestHardwareManager implements BatchHardwareManager {
+
+	private static final int TAGS = Integer.getInteger("loadtest.tags", 100).intValue();
+	private static final long ROUND_MICROS = Long.getLong("loadtest.roundMicros", 0).longValue();
+	private static final long TAG_MICROS = Long.getLong("loadtest.tagMicros", 0).longValue();
+
+	/**
+	 * The number of words returned by a read of a complete bank
+	 */
+	private static final int BANK_WORDS = 8;
+
+	private final List<byte[]> epcs = new ArrayList<>();
+	private String region;
+	private RssiFilter rssiFilter;
+	private SingulationControl singulationControl;
+
+	public LoadTestHardwareManager() {
+		Random random = new Random(TAGS);
+		for (int i = 0; i < TAGS; i++) {
+			byte[] epc = new byte[12];
+			random.nextBytes(epc);
+			epcs.add(epc);
+		}
+	}
+
+	@Override
+	public void openConnection() throws ConnectionException, ImplementationException {
+	}
+
+	@Override
+	public void closeConnection() throws ConnectionException {
+	}
+
+	@Override
+	public TagDataList execute(List<Short> antennas, List<Filter> filter, List<TagOperation> operations, RFConsumer consumer)
+			throws ImplementationException, ParameterException {
+		int operationCount = operations == null ? 0 : operations.size();
+		long airTime = ROUND_MICROS + TAG_MICROS * epcs.size() * Math.max(1, operationCount);
+		if (airTime > 0)
+			LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(airTime));
+
+		TagDataList tdl = new TagDataList();
+		short antenna = antennas == null || antennas.isEmpty() ? 1 : antennas.get(0).shortValue();
+		for (byte[] epc : epcs) {
+			TagData tag = new TagData();
+			tag.setEpc(epc);
+			tag.setPc((short) 0x3000);
+			tag.setAntennaID(antenna);
+			tag.setRssi(-50);
+			if (operations != null)
+				for (TagOperation operation : operations)
+					tag.getResultList().add(execute(operation));
+			tdl.getEntryList().add(tag);
+		}
+		return tdl;
+	}
+
+	private static OperationResult execute(TagOperation operation) {
+		if (operation instanceof ReadOperation) {
+			ReadResult result = new ReadResult();
+			result.setResult(ReadResult.Result.SUCCESS);
+			int length = ((ReadOperation) operation).getLength() & 0xFFFF;
+			result.setReadData(new byte[(length == 0 ? BANK_WORDS : length) * 2]);
+			result.setOperationId(operation.getOperationId());
+			return result;
+		}
+		if (operation instanceof WriteOperation) {
+			WriteResult result = new WriteResult();
+			result.setResult(WriteResult.Result.SUCCESS);
+			byte[] data = ((WriteOperation) operation).getData();
+			result.setWordsWritten((short) (data == null ? 0 : data.length / 2));
+			result.setOperationId(operation.getOperationId());
+			return result;
+		}
+		if (operation instanceof LockOperation) {
+			LockResult result = new LockResult();
+			result.setResult(LockResult.Result.SUCCESS);
+			result.setOperationId(operation.getOperationId());
+			return result;
+		}
+		if (operation instanceof KillOperation) {
+			KillResult result = new KillResult();
+			result.setResult(KillResult.Result.SUCCESS);
+			result.setOperationId(operation.getOperationId());
+			return result;
+		}
+		throw new IllegalArgumentException("Unsupported operation " + operation.getClass().getName());
+	}
+
+	@Override
+	public String getRegion() {
+		return region;
+	}
+
+	@Override
+	public void setRegion(RFRegion rfcRegion, AntennaConfigurationList antennaConfigurationList) throws ParameterException,
+			ImplementationException {
+		region = rfcRegion == null ? null : rfcRegion.getId();
+	}
+
+	@Override
+	public void setAntennaConfiguration(AntennaConfiguration antennaConfiguration, RegulatoryCapabilities regulatoryCapabilities, boolean forceTune)
+			throws ParameterException, ImplementationException {
+	}
+
+	@Override
+	public void setAntennaConfigurations(List<AntennaConfiguration> antennaConfigurations, RegulatoryCapabilities regulatoryCapabilities,
+			boolean forceTune) throws ParameterException, ImplementationException {
+	}
+
+	@Override
+	public AntennaPropertyList getAntennaProperties(Map<Short, ConnectType> connectTypeMap) throws ImplementationException {
+		return null;
+	}
+
+	@Override
+	public String getFirmwareVersion() throws ImplementationException {
+		return "loadtest";
+	}
+
+	@Override
+	public void installFirmware() throws ImplementationException {
+	}
+
+	@Override
+	public RssiFilter getRssiFilter() {
+		return rssiFilter;
+	}
+
+	@Override
+	public void setRssiFilter(RssiFilter rssiFilter) throws ImplementationException {
+		this.rssiFilter = rssiFilter;
+	}
+
+	@Override
+	public SingulationControl getSingulationControl() {
+		return singulationControl;
+	}
+
+	@Override
+	public void setSingulationControl(SingulationControl singulationControl) throws ImplementationException {
+		this.singulationControl = singulationControl;
+	}
+
+	@Override
+	public int getMaxAntennas() throws ImplementationException {
+		return 4;
+	}
+}
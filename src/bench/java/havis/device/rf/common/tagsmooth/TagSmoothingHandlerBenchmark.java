@@ -0,0 +1,87 @@
+package havis.device.rf.common.tagsmooth;
+
+import havis.device.rf.configuration.TagSmoothingSettings;
+import havis.device.rf.exception.ParameterException;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.TagDataList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link TagSmoothingHandler#process(TagDataList)} for an inventory
+ * round of a tag population. Each round reports a random subset of the
+ * population, so tags move between the glimpsed and observed state.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TagSmoothingHandlerBenchmark {
+
+	/**
+	 * The number of tags in the field
+	 */
+	@Param({ "50", "500", "5000" })
+	int population;
+
+	/**
+	 * The number of prepared rounds, processed in turn
+	 */
+	private static final int ROUNDS = 16;
+
+	private TagSmoothingHandler handler;
+	private final List<TagDataList> rounds = new ArrayList<>();
+	private int round;
+
+	@Setup
+	public void setup() throws ParameterException {
+		TagSmoothingSettings settings = new TagSmoothingSettings(Integer.valueOf(500), Integer.valueOf(3), null, Integer.valueOf(1000));
+		settings.setEnabled(true);
+		handler = new TagSmoothingHandler(settings);
+
+		Random random = new Random(42);
+		List<byte[]> epcs = new ArrayList<>();
+		for (int i = 0; i < population; i++) {
+			byte[] epc = new byte[12];
+			random.nextBytes(epc);
+			epcs.add(epc);
+		}
+		for (int r = 0; r < ROUNDS; r++) {
+			TagDataList tdl = new TagDataList();
+			for (byte[] epc : epcs) {
+				// a tag is seen in 80 percent of the rounds
+				if (random.nextInt(5) == 0)
+					continue;
+				TagData tag = new TagData();
+				tag.setEpc(epc);
+				tag.setAntennaID((short) 1);
+				tag.setRssi(-40 - random.nextInt(30));
+				tdl.getEntryList().add(tag);
+			}
+			rounds.add(tdl);
+		}
+	}
+
+	@Benchmark
+	public List<TagData> process() {
+		handler.process(rounds.get(round++ % ROUNDS));
+		return handler.getResultList();
+	}
+}
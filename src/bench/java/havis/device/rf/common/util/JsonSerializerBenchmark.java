@@ -0,0 +1,70 @@
+package havis.device.rf.common.util;
+
+import havis.device.rf.configuration.RFConfiguration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the (de)serialization of the default {@link RFConfiguration} by
+ * {@link JsonSerializer}, as done when loading and storing the configuration.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonSerializerBenchmark {
+
+	private static final String CONFIG_RESOURCE = "havis/device/rf/config/default.json";
+
+	private JsonSerializer serializer;
+	private RFConfiguration config;
+	private String json;
+
+	@Setup
+	public void setup() throws IOException {
+		try (InputStream stream = Thread.currentThread().getContextClassLoader().getResourceAsStream(CONFIG_RESOURCE)) {
+			if (stream == null)
+				throw new IOException("Missing resource " + CONFIG_RESOURCE);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			for (int n; (n = stream.read(buffer)) != -1;)
+				bytes.write(buffer, 0, n);
+			serializer = new JsonSerializer(RFConfiguration.class);
+			config = serializer.deserialize(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+		}
+		json = serializer.serialize(config);
+	}
+
+	@Benchmark
+	public String serialize() throws IOException {
+		return serializer.serialize(config);
+	}
+
+	@Benchmark
+	public RFConfiguration deserialize() throws IOException {
+		return serializer.deserialize(json);
+	}
+
+	@Benchmark
+	public RFConfiguration deserializeNewSerializer() throws IOException {
+		// the mapper is created per load of the configuration by FileUtils
+		return new JsonSerializer(RFConfiguration.class).deserialize(json);
+	}
+}
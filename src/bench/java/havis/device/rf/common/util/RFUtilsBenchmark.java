@@ -0,0 +1,117 @@
+package havis.device.rf.common.util;
+
+import havis.device.rf.tag.Filter;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the bit and byte array operations of {@link RFUtils} used for
+ * filters and EPC handling, with EPC sized and user memory sized arrays.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RFUtilsBenchmark {
+
+	/**
+	 * The number of bytes, 12 for an EPC-96 and 64 for a user memory block
+	 */
+	@Param({ "12", "64" })
+	int size;
+
+	byte[] data;
+	byte[] other;
+	byte[] mask;
+	byte[] buffer;
+	String hex;
+	Filter filter;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		data = new byte[size];
+		random.nextBytes(data);
+		other = data.clone();
+		// differ in the last bit only, so the whole range is compared
+		other[size - 1] ^= 1;
+		mask = new byte[size];
+		for (int i = 0; i < size; i++)
+			// alternating set and clear ranges
+			mask[i] = (byte) (i % 4 < 2 ? 0xFF : 0x0F);
+		buffer = new byte[size + 1];
+		hex = RFUtils.bytesToHex(data);
+		filter = RFUtils.newFilter(RFUtils.BANK_EPC, 0x20, data, mask, size * 8, true);
+	}
+
+	@Benchmark
+	public byte[] applyMaskBytes() {
+		return RFUtils.applyMask(data, mask);
+	}
+
+	@Benchmark
+	public List<Filter> applyMaskFilter() {
+		return RFUtils.applyMask(filter);
+	}
+
+	@Benchmark
+	public int compare() {
+		return RFUtils.compare(data, other, size * 8, 0);
+	}
+
+	@Benchmark
+	public int compareUnaligned() {
+		return RFUtils.compare(data, other, size * 8, 3);
+	}
+
+	@Benchmark
+	public boolean equal() {
+		return RFUtils.equal(data, other, size * 8 - 1);
+	}
+
+	@Benchmark
+	public byte[] shift() {
+		return RFUtils.shift(data, 5);
+	}
+
+	@Benchmark
+	public int shiftIntoBuffer() {
+		return RFUtils.shift(data, size * 8, 5, buffer, 0);
+	}
+
+	@Benchmark
+	public byte[] strip() {
+		return RFUtils.strip(data, 3, size * 8 - 8);
+	}
+
+	@Benchmark
+	public int stripIntoBuffer() {
+		return RFUtils.strip(data, 3, size * 8 - 8, buffer, 0);
+	}
+
+	@Benchmark
+	public String bytesToHex() {
+		return RFUtils.bytesToHex(data);
+	}
+
+	@Benchmark
+	public byte[] hexToBytes() {
+		return RFUtils.hexToBytes(hex);
+	}
+}
@@ -0,0 +1,35 @@
+package havis.device.rf.common;
+
+import havis.device.rf.capabilities.RegulatoryCapabilities;
+import havis.device.rf.configuration.AntennaConfiguration;
+import havis.device.rf.exception.ImplementationException;
+import havis.device.rf.exception.ParameterException;
+
+import java.util.List;
+
+/**
+ * Optional extension of a hardware manager which applies the configurations
+ * of several antennas at once. Hardware managers without it get one
+ * {@link HardwareManager#setAntennaConfiguration} call per antenna.
+ */
+public interface BatchHardwareManager extends HardwareManager {
+
+	/**
+	 * Applies the configurations of several antennas in one transaction, i.e.
+	 * the module is tuned at most once. If a configuration cannot be applied,
+	 * the previous configurations of all antennas are restored before the
+	 * exception is thrown.
+	 * 
+	 * @param antennaConfigurations
+	 *            the configurations, at most one per antenna
+	 * @param regulatoryCapabilities
+	 *            the regulatory capabilities of the region
+	 * @param forceTune
+	 *            whether to tune the module even if no antenna requires it
+	 * @throws ParameterException
+	 * @throws ImplementationException
+	 */
+	void setAntennaConfigurations(List<AntennaConfiguration> antennaConfigurations,
+			RegulatoryCapabilities regulatoryCapabilities, boolean forceTune)
+			throws ParameterException, ImplementationException;
+}
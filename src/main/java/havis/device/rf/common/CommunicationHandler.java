@@ -4,6 +4,10 @@ import havis.device.rf.RFConsumer;
 import havis.device.rf.RFDevice;
 import havis.device.rf.capabilities.Capabilities;
 import havis.device.rf.capabilities.CapabilityType;
+import havis.device.rf.common.commission.Assignment;
+import havis.device.rf.common.commission.CommissioningListener;
+import havis.device.rf.common.commission.CommissioningOptions;
+import havis.device.rf.common.stats.OperationStatistics;
 import havis.device.rf.common.util.RFUtils;
 import havis.device.rf.configuration.Configuration;
 import havis.device.rf.configuration.ConfigurationType;
@@ -20,6 +24,7 @@ import havis.util.monitor.TagEvent;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -171,16 +176,111 @@ public class CommunicationHandler implements RFDevice {
 		if (this.mainController == null)
 			throw new ConnectionException(ERR_MSG_NO_CONN);
 
-		List<TagData> result = this.mainController.execute(antennas, filters, operations);
+		return notifyTags(this.mainController.execute(antennas, filters, operations));
+	}
+
+	/**
+	 * Executes operations like {@link #execute(List, List, List)}, optionally
+	 * bypassing the memory bank caches.
+	 * 
+	 * @param antennas
+	 *            the antennas
+	 * @param filters
+	 *            the filters
+	 * @param operations
+	 *            the operations
+	 * @param forceLiveRead
+	 *            whether read operations are executed on the tags even if the
+	 *            read words are cached
+	 * @return the tags
+	 * @throws ConnectionException
+	 *             if no connection has been opened
+	 * @throws ParameterException
+	 *             if a parameter is invalid
+	 * @throws ImplementationException
+	 *             if the execution fails
+	 */
+	public List<TagData> execute(List<Short> antennas, List<Filter> filters,
+			List<TagOperation> operations, boolean forceLiveRead) throws ConnectionException,
+			ParameterException, ImplementationException {
+
+		if (log.isLoggable(Level.FINER))
+			log.entering(
+					this.getClass().getName(),
+					"execute",
+					new Object[] { RFUtils.serializeList(antennas, Short.class),
+							RFUtils.serializeList(filters, Filter.class),
+							RFUtils.serializeList(operations, TagOperation.class), forceLiveRead });
+
+		if (this.mainController == null)
+			throw new ConnectionException(ERR_MSG_NO_CONN);
+
+		return notifyTags(this.mainController.execute(antennas, filters, operations, forceLiveRead));
+	}
+
+	/**
+	 * Writes assignments to tags in continuous inventory rounds until all
+	 * assignments have been written, no new tags have been found for the
+	 * maximum number of idle rounds of the options or the listener cancels
+	 * the commissioning. Progress and failures are reported to the listener
+	 * for each tag, a tag event with the new EPC is published for each
+	 * commissioned tag.
+	 * 
+	 * @param antennas
+	 *            the antennas
+	 * @param options
+	 *            the commissioning options
+	 * @param assignments
+	 *            the assignments, taken one by one as tags are found
+	 * @param listener
+	 *            the listener receiving the progress
+	 * @return the number of commissioned tags
+	 * @throws ConnectionException
+	 *             if no connection has been opened
+	 * @throws ParameterException
+	 *             if a parameter is invalid
+	 * @throws ImplementationException
+	 *             if an execution fails
+	 */
+	public int commission(List<Short> antennas, CommissioningOptions options,
+			Iterator<Assignment> assignments, CommissioningListener listener)
+			throws ConnectionException, ParameterException, ImplementationException {
+		log.entering(this.getClass().getName(), "commission");
+
+		if (this.mainController == null)
+			throw new ConnectionException(ERR_MSG_NO_CONN);
 
+		final CommissioningListener delegate = listener;
+		int result = this.mainController.commission(antennas, options, assignments, new CommissioningListener() {
+			@Override
+			public void commissioned(Assignment assignment, TagData tag) {
+				delegate.commissioned(assignment, tag);
+				notifyTag(new Date(), assignment.getEpc(), tag);
+			}
+
+			@Override
+			public void failed(Assignment assignment, TagData tag, String reason) {
+				delegate.failed(assignment, tag, reason);
+			}
+
+			@Override
+			public void roundCompleted(int round, int tags, int newTags) {
+				delegate.roundCompleted(round, tags, newTags);
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return delegate.isCancelled();
+			}
+		});
+		log.exiting(this.getClass().getName(), "commission", result);
+		return result;
+	}
+
+	private List<TagData> notifyTags(List<TagData> result) {
 		Date currentTime = new Date();
 		for (TagData tag : result)
-			Connector
-					.getFactory()
-					.getBroker()
-					.notify(this.readerSource,
-							new TagEvent(currentTime, tag.getEpc(), tag.getAntennaID(), tag
-									.getRssi()));
+			notifyTag(currentTime, tag.getEpc(), tag);
 
 		if (log.isLoggable(Level.FINER))
 			log.exiting(this.getClass().getName(), "execute",
@@ -189,6 +289,15 @@ public class CommunicationHandler implements RFDevice {
 		return result;
 	}
 
+	private void notifyTag(Date time, byte[] epc, TagData tag) {
+		Connector
+				.getFactory()
+				.getBroker()
+				.notify(this.readerSource,
+						new TagEvent(time, epc, tag.getAntennaID(), tag
+								.getRssi()));
+	}
+
 	@Override
 	public List<String> getSupportedRegions() throws ConnectionException {
 		log.entering(this.getClass().getName(), "getSupportedRegions");
@@ -243,6 +352,44 @@ public class CommunicationHandler implements RFDevice {
 
 	}
 
+	/**
+	 * Returns the latency and result code statistics of the tag operations
+	 * executed so far.
+	 * 
+	 * @return the operation statistics
+	 * @throws ConnectionException
+	 *             if no connection has been opened
+	 */
+	public OperationStatistics getOperationStatistics() throws ConnectionException {
+		log.entering(this.getClass().getName(), "getOperationStatistics");
+
+		if (this.mainController == null)
+			throw new ConnectionException(ERR_MSG_NO_CONN);
+
+		OperationStatistics result = this.mainController.getOperationStatistics();
+		log.exiting(this.getClass().getName(), "getOperationStatistics");
+		return result;
+	}
+
+	/**
+	 * Returns the number of write operations which have been skipped as the
+	 * tags already held the data to write.
+	 * 
+	 * @return the number of skipped writes, counted per tag
+	 * @throws ConnectionException
+	 *             if no connection has been opened
+	 */
+	public long getElidedWriteCount() throws ConnectionException {
+		log.entering(this.getClass().getName(), "getElidedWriteCount");
+
+		if (this.mainController == null)
+			throw new ConnectionException(ERR_MSG_NO_CONN);
+
+		long result = this.mainController.getElidedWriteCount();
+		log.exiting(this.getClass().getName(), "getElidedWriteCount", result);
+		return result;
+	}
+
 	public static void dispose() {
 		MainController.dispose();
 	}
@@ -0,0 +1,452 @@
+package havis.device.rf.common;
+
+import havis.device.rf.common.util.JsonSerializer;
+import havis.device.rf.configuration.AntennaConfiguration;
+import havis.device.rf.configuration.InventorySettings;
+import havis.device.rf.configuration.KeepAliveConfiguration;
+import havis.device.rf.exception.ImplementationException;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of configuration changes on top of the configuration
+ * file, the snapshot. Each entry holds the complete new value of a changed
+ * part of the configuration, so replaying an entry which is already contained
+ * in the snapshot does not change the result.
+ * <p>
+ * An entry consists of the length and the CRC32 of its body, followed by the
+ * body with the type of the entry and the value as JSON. A torn or corrupt
+ * entry at the end of the journal, e.g. after a power loss, ends the journal
+ * and is removed before appending.
+ * </p>
+ * <p>
+ * Once the journal exceeds the compaction size, a snapshot is taken with the
+ * lock held, written without the lock and the entries contained in the
+ * snapshot are removed from the journal. A crash at any point leaves either
+ * the old or the new snapshot with a journal covering all later changes.
+ * </p>
+ */
+class ConfigurationJournal {
+
+	private static final Logger log = Logger.getLogger(ConfigurationJournal.class.getName());
+
+	/**
+	 * The type of an entry
+	 */
+	enum Type {
+		ANTENNA_CONFIGURATION(AntennaConfiguration.class), INVENTORY_SETTINGS(InventorySettings.class), KEEP_ALIVE_CONFIGURATION(
+				KeepAliveConfiguration.class), REGION(String.class);
+
+		private final Class<?> valueClass;
+
+		private Type(Class<?> valueClass) {
+			this.valueClass = valueClass;
+		}
+	}
+
+	/**
+	 * When appended entries are forced to the storage
+	 */
+	enum FsyncPolicy {
+		/**
+		 * After each save
+		 */
+		ALWAYS,
+		/**
+		 * On the first save after the fsync interval has elapsed
+		 */
+		INTERVAL,
+		/**
+		 * Left to the operating system
+		 */
+		NEVER
+	}
+
+	/**
+	 * An entry of the journal
+	 */
+	static class Entry {
+		private final Type type;
+		private final Object value;
+
+		Entry(Type type, Object value) {
+			this.type = type;
+			this.value = value;
+		}
+
+		Type getType() {
+			return type;
+		}
+
+		@SuppressWarnings("unchecked")
+		<T> T getValue() {
+			return (T) value;
+		}
+	}
+
+	private static final int HEADER_LENGTH = 8;
+	private static final int MAX_ENTRY_LENGTH = 16 * 1024 * 1024;
+
+	private final File file;
+	private final Lock lock;
+	private final ConfigurationPersister.Target snapshotTarget;
+	private final FsyncPolicy fsyncPolicy;
+	private final long fsyncInterval;
+	private final long compactSize;
+	private final Map<Type, JsonSerializer> serializers = new EnumMap<>(Type.class);
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "ConfigurationJournal");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	// guarded by lock
+	private FileChannel channel;
+	private boolean unsynced;
+	private long lastSync;
+	private boolean compacting;
+
+	// guarded by snapshots, incremented with the lock held
+	private final Object snapshots = new Object();
+	private volatile long generation;
+
+	private final Runnable compaction = new Runnable() {
+		@Override
+		public void run() {
+			try {
+				compact();
+			} catch (IOException | ImplementationException | RuntimeException e) {
+				log.log(Level.WARNING, "Failed to compact configuration journal", e);
+			} finally {
+				lock.lock();
+				try {
+					compacting = false;
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+	};
+
+	/**
+	 * Creates a journal.
+	 *
+	 * @param file
+	 *            the journal file
+	 * @param lock
+	 *            the lock guarding the configuration
+	 * @param snapshotTarget
+	 *            takes and writes snapshots of the configuration
+	 * @param fsyncPolicy
+	 *            when appended entries are forced to the storage
+	 * @param fsyncInterval
+	 *            the minimum time in milliseconds between two forces for the
+	 *            {@link FsyncPolicy#INTERVAL} policy
+	 * @param compactSize
+	 *            the size of the journal in bytes which triggers a compaction
+	 */
+	ConfigurationJournal(File file, Lock lock, ConfigurationPersister.Target snapshotTarget, FsyncPolicy fsyncPolicy, long fsyncInterval,
+			long compactSize) {
+		this.file = file;
+		this.lock = lock;
+		this.snapshotTarget = snapshotTarget;
+		this.fsyncPolicy = fsyncPolicy;
+		this.fsyncInterval = fsyncInterval;
+		this.compactSize = compactSize;
+	}
+
+	/**
+	 * Reads the valid entries of a journal.
+	 *
+	 * @param file
+	 *            the journal file
+	 * @return the entries, empty if the file does not exist
+	 * @throws IOException
+	 *             if the journal cannot be read
+	 */
+	static List<Entry> read(File file) throws IOException {
+		List<Entry> entries = new ArrayList<>();
+		if (!file.exists())
+			return entries;
+		Map<Type, JsonSerializer> serializers = new EnumMap<>(Type.class);
+		try (InputStream stream = new FileInputStream(file)) {
+			byte[] body;
+			while ((body = next(new DataInputStream(stream))) != null) {
+				Type type = Type.values()[body[0] - 1];
+				entries.add(new Entry(type, serializer(serializers, type).deserialize(new String(body, 1, body.length - 1, StandardCharsets.UTF_8))));
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Returns the length of the valid entries at the beginning of a journal.
+	 */
+	private static long validLength(File file) throws IOException {
+		long length = 0;
+		try (InputStream stream = new FileInputStream(file)) {
+			byte[] body;
+			while ((body = next(new DataInputStream(stream))) != null)
+				length += HEADER_LENGTH + body.length;
+		}
+		return length;
+	}
+
+	/**
+	 * Reads the body of the next entry.
+	 *
+	 * @return the body or null at the end of the journal or at a torn or
+	 *         corrupt entry
+	 */
+	private static byte[] next(DataInputStream in) throws IOException {
+		try {
+			int length = in.readInt();
+			int crc = in.readInt();
+			if (length < 2 || length > MAX_ENTRY_LENGTH)
+				return null;
+			byte[] body = new byte[length];
+			in.readFully(body);
+			if (crc(body) != crc || body[0] < 1 || body[0] > Type.values().length)
+				return null;
+			return body;
+		} catch (EOFException e) {
+			return null;
+		}
+	}
+
+	private static int crc(byte[] body) {
+		CRC32 crc = new CRC32();
+		crc.update(body);
+		return (int) crc.getValue();
+	}
+
+	private static JsonSerializer serializer(Map<Type, JsonSerializer> serializers, Type type) {
+		JsonSerializer serializer = serializers.get(type);
+		if (serializer == null) {
+			serializer = new JsonSerializer(type.valueClass);
+			serializers.put(type, serializer);
+		}
+		return serializer;
+	}
+
+	/**
+	 * Appends entries to the journal, called with the lock held. The entries
+	 * are forced to the storage according to the fsync policy.
+	 *
+	 * @param entries
+	 *            the entries
+	 * @throws ImplementationException
+	 *             if the entries cannot be written
+	 */
+	void append(List<Entry> entries) throws ImplementationException {
+		if (entries.isEmpty())
+			return;
+		try {
+			ByteBuffer[] buffers = new ByteBuffer[entries.size()];
+			for (int i = 0; i < buffers.length; i++) {
+				Entry entry = entries.get(i);
+				byte[] json = serializer(serializers, entry.type).serialize(entry.value).getBytes(StandardCharsets.UTF_8);
+				byte[] body = new byte[json.length + 1];
+				body[0] = (byte) (entry.type.ordinal() + 1);
+				System.arraycopy(json, 0, body, 1, json.length);
+				ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + body.length);
+				buffer.putInt(body.length).putInt(crc(body)).put(body).flip();
+				buffers[i] = buffer;
+			}
+			FileChannel channel = open();
+			long size = channel.size();
+			try {
+				while (buffers[buffers.length - 1].hasRemaining())
+					channel.write(buffers);
+			} catch (IOException e) {
+				// a partial entry would hide later entries
+				channel.truncate(size);
+				throw e;
+			}
+			unsynced = true;
+			long now = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+			if (fsyncPolicy == FsyncPolicy.ALWAYS || fsyncPolicy == FsyncPolicy.INTERVAL && now - lastSync >= fsyncInterval) {
+				channel.force(false);
+				unsynced = false;
+				lastSync = now;
+			}
+			if (channel.size() >= compactSize && !compacting) {
+				compacting = true;
+				executor.execute(compaction);
+			}
+		} catch (IOException e) {
+			throw new ImplementationException(e.toString());
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the configuration and clears the journal, called
+	 * with the lock held.
+	 *
+	 * @throws ImplementationException
+	 *             if the snapshot cannot be written or the journal cannot be
+	 *             cleared
+	 */
+	void checkpoint() throws ImplementationException {
+		synchronized (snapshots) {
+			generation++;
+			snapshotTarget.write(snapshotTarget.snapshot());
+			try {
+				open().truncate(0);
+			} catch (IOException e) {
+				throw new ImplementationException(e.toString());
+			}
+		}
+	}
+
+	/**
+	 * Closes and deletes the journal, called with the lock held. A running
+	 * compaction is awaited and discarded.
+	 */
+	void delete() {
+		synchronized (snapshots) {
+			generation++;
+			closeChannel();
+			file.delete();
+		}
+	}
+
+	/**
+	 * Forces unsynced entries to the storage and closes the journal.
+	 */
+	void close() {
+		lock.lock();
+		try {
+			synchronized (snapshots) {
+				generation++;
+				closeChannel();
+			}
+		} finally {
+			lock.unlock();
+		}
+		executor.shutdown();
+	}
+
+	/**
+	 * @return the size of the journal in bytes
+	 */
+	long size() throws IOException {
+		lock.lock();
+		try {
+			return open().size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Opens the journal if not open yet, removing a torn or corrupt entry at
+	 * its end.
+	 */
+	private FileChannel open() throws IOException {
+		if (channel == null) {
+			if (file.exists()) {
+				long length = validLength(file);
+				if (length < file.length()) {
+					log.log(Level.WARNING, "Removing {0} bytes of corrupt entries from configuration journal {1}",
+							new Object[] { file.length() - length, file });
+					try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+						raf.setLength(length);
+					}
+				}
+			}
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			lastSync = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+		}
+		return channel;
+	}
+
+	private void closeChannel() {
+		if (channel != null) {
+			try {
+				if (unsynced)
+					channel.force(false);
+				channel.close();
+			} catch (IOException e) {
+				log.log(Level.WARNING, "Failed to close configuration journal", e);
+			}
+			channel = null;
+			unsynced = false;
+		}
+	}
+
+	/**
+	 * Writes a snapshot and removes the entries contained in it from the
+	 * journal.
+	 */
+	private void compact() throws IOException, ImplementationException {
+		String snapshot;
+		long offset;
+		long current;
+		lock.lock();
+		try {
+			snapshot = snapshotTarget.snapshot();
+			offset = open().size();
+			current = generation;
+		} finally {
+			lock.unlock();
+		}
+
+		synchronized (snapshots) {
+			// a checkpoint or deletion has superseded the snapshot
+			if (current != generation)
+				return;
+			snapshotTarget.write(snapshot);
+		}
+
+		lock.lock();
+		try {
+			synchronized (snapshots) {
+				if (current != generation)
+					return;
+				File tmpFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+				// the journal is opened for appending, which excludes reading
+				try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+						FileChannel tmp = FileChannel.open(tmpFile.toPath(), StandardOpenOption.WRITE)) {
+					long position = offset;
+					long size = in.size();
+					while (position < size)
+						position += in.transferTo(position, size - position, tmp);
+					tmp.force(false);
+				}
+				closeChannel();
+				Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+				log.log(Level.FINE, "Compacted configuration journal {0} by {1} bytes", new Object[] { file, offset });
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -3,11 +3,15 @@ package havis.device.rf.common;
 import havis.device.rf.capabilities.Capabilities;
 import havis.device.rf.capabilities.CapabilityType;
 import havis.device.rf.capabilities.DeviceCapabilities;
+import havis.device.rf.capabilities.RegulatoryCapabilities;
 import havis.device.rf.common.util.FileUtils;
+import havis.device.rf.common.util.JsonSerializer;
 import havis.device.rf.common.util.PropertyException;
 import havis.device.rf.common.util.PropertyUtil;
 import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.common.util.SnapshotSerializer;
 import havis.device.rf.configuration.AntennaConfiguration;
+import havis.device.rf.configuration.AntennaConfigurationList;
 import havis.device.rf.configuration.AntennaProperties;
 import havis.device.rf.configuration.AntennaPropertyList;
 import havis.device.rf.configuration.Configuration;
@@ -23,18 +27,24 @@ import havis.device.rf.exception.ConnectionException;
 import havis.device.rf.exception.ImplementationException;
 import havis.device.rf.exception.ParameterException;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.FileAttribute;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
@@ -51,11 +61,51 @@ class ConfigurationManager {
 
 	private static final Logger log = Logger.getLogger(ConfigurationManager.class.getName());
 
+	/**
+	 * The read-only views of the antenna properties cached by the hardware
+	 * info cache
+	 */
+	private static class AntennaPropertyViews {
+		final AntennaPropertyList source;
+		final AntennaPropertyList views;
+
+		AntennaPropertyViews(AntennaPropertyList source) {
+			this.source = source;
+			this.views = ReadOnlyConfigurations.antennaPropertyList(source);
+		}
+	}
+
 	private Map<String, RFRegion> supportedRegions;
 	private final String customConfigFile;
 	private RFConfiguration config;
+	private volatile ConfigurationSnapshot snapshot;
+	private volatile AntennaPropertyViews antennaPropertyViews;
+	private long version;
 	private boolean unsavedChanges;
 	private MainController mainController;
+	private ConfigurationPersister persister;
+	private ConfigurationJournal journal;
+	private final HardwareInfoCache hardwareInfo;
+	private volatile long writtenChecksum;
+	private final Set<ConfigurationJournal.Type> changes = EnumSet.noneOf(ConfigurationJournal.Type.class);
+	private final Set<Short> changedAntennas = new TreeSet<>();
+	private final ConfigurationPersister.Target snapshotTarget = new ConfigurationPersister.Target() {
+		@Override
+		public String snapshot() throws ImplementationException {
+			JsonSerializer serializer = new JsonSerializer(config.getClass());
+			serializer.setPrettyPrint(Environment.SERIALIZER_PRETTY_PRINT);
+			try {
+				return serializer.serialize(config);
+			} catch (IOException e) {
+				throw new ImplementationException(e.toString());
+			}
+		}
+
+		@Override
+		public void write(String snapshot) throws ImplementationException {
+			writeConfig(snapshot);
+		}
+	};
 
 	/**
 	 * Creates a new instance.
@@ -72,6 +122,8 @@ class ConfigurationManager {
 		this.customConfigFile = Environment.CUSTOM_CONFIG_FILE;
 		this.mainController = mainController;
 		this.supportedRegions = Environment.SUPPORTED_REGIONS;
+		this.hardwareInfo = new HardwareInfoCache(mainController, Environment.HARDWARE_INFO_ANTENNA_PROPERTIES_TTL,
+				Environment.HARDWARE_INFO_FIRMWARE_VERSION_TTL, Environment.HARDWARE_INFO_REFRESH_RATIO);
 
 		log.finer("Configuration manager initialized.");
 	}
@@ -104,16 +156,31 @@ class ConfigurationManager {
 		if (customConfigFile.exists()) {
 			log.finer("Loading custom configuration.");
 
+			List<ConfigurationJournal.Entry> entries;
 			try (InputStream cfgStream = new FileInputStream(customConfigFile)) {
-				config = FileUtils.deserialize(cfgStream, RFConfiguration.class);
+				config = SnapshotSerializer.deserialize(cfgStream, RFConfiguration.class, SnapshotSerializer.getSnapshotFile(Environment.SNAPSHOT_PATH, customConfigFile.getName()));
+				entries = ConfigurationJournal.read(getJournalFile());
 			} catch (IOException ex) {
 				resetConfig();
 				throw new ImplementationException("Failed to load custom configuration.", ex);
 			}
-		} else
+			this.config = config;
+			if (!entries.isEmpty()) {
+				log.log(Level.FINER, "Replaying {0} configuration journal entries.", entries.size());
+				replayJournal(this.config, entries);
+				if (!Environment.CONFIG_JOURNAL) {
+					writeConfig(null);
+					getJournalFile().delete();
+				}
+			}
+		} else {
 			config = Environment.DEFAULT_CONFIG.clone();
+			getJournalFile().delete();
+		}
 
 		this.config = config;
+		this.changes.clear();
+		this.changedAntennas.clear();
 		if (Environment.isNurHardware() && Environment.hasRpcTool())
 			this.config.setRegion(getRegionFromStore());
 
@@ -192,6 +259,7 @@ class ConfigurationManager {
 		if (config.getInventorySettings().getTagSmoothing() == null)
 			config.getInventorySettings().setTagSmoothing(new TagSmoothingSettings());
 
+		publish();
 		log.exiting(getClass().getName(), "loadConfiguration");
 	}
 
@@ -202,6 +270,12 @@ class ConfigurationManager {
 	 */
 	void resetConfig() throws ImplementationException, ParameterException {
 		log.entering(getClass().getName(), "resetConfig");
+		// pending writes must not recreate the file after deleting it
+		flushConfig();
+		if (this.journal != null)
+			this.journal.delete();
+		else
+			getJournalFile().delete();
 		new File(this.customConfigFile).delete();
 		if (Environment.isNurHardware() && Environment.hasRpcTool()) {
 			try {
@@ -262,7 +336,11 @@ class ConfigurationManager {
 		}
 		this.config.setRegulatoryCapabilities(newRegion.getRegulatoryCapabilities());
 		this.config.setRegion(newRegion.getId());
+		this.changes.add(ConfigurationJournal.Type.REGION);
+		for (AntennaConfiguration aCfg : this.config.getAntennaConfigurationList().getEntryList())
+			this.changedAntennas.add(Short.valueOf(aCfg.getId()));
 		this.mainController.getHardwareManager().setRegion(newRegion, this.config.getAntennaConfigurationList());
+		publish();
 		this.saveConfig();
 
 		if (Environment.isNurHardware() && Environment.hasRpcTool()) {
@@ -278,12 +356,137 @@ class ConfigurationManager {
 
 	/**
 	 * Persists the current configuration object. If no current configuration
-	 * file exists, a new one will be created.
+	 * file exists, a new one will be created. If the journal is enabled, only
+	 * the changed parts of the configuration are appended to the journal. If a
+	 * write delay is configured, the configuration is written asynchronously
+	 * once no further changes have been saved for the delay.
 	 * 
 	 * @throws ImplementationException
 	 */
 	void saveConfig() throws ImplementationException {
 		log.entering(getClass().getName(), "saveConfig");
+		if (Environment.CONFIG_JOURNAL) {
+			journalConfig();
+			this.unsavedChanges = false;
+		} else if (Environment.CONFIG_WRITE_DELAY > 0) {
+			if (this.persister == null)
+				this.persister = new ConfigurationPersister(this.mainController.getLock(), this.snapshotTarget, Environment.CONFIG_WRITE_DELAY,
+						Environment.CONFIG_WRITE_MAX_DELAY);
+			this.persister.changed();
+			this.unsavedChanges = false;
+		} else {
+			writeConfig(null);
+			this.unsavedChanges = false;
+		}
+		this.changes.clear();
+		this.changedAntennas.clear();
+		log.exiting(getClass().getName(), "saveConfig");
+	}
+
+	/**
+	 * Appends the changed parts of the configuration to the journal. If no
+	 * configuration file exists yet, the complete configuration is written
+	 * instead.
+	 * 
+	 * @throws ImplementationException
+	 */
+	private void journalConfig() throws ImplementationException {
+		if (this.journal == null)
+			this.journal = new ConfigurationJournal(getJournalFile(), this.mainController.getLock(), this.snapshotTarget,
+					ConfigurationJournal.FsyncPolicy.valueOf(Environment.CONFIG_JOURNAL_FSYNC), Environment.CONFIG_JOURNAL_FSYNC_INTERVAL,
+					Environment.CONFIG_JOURNAL_COMPACT_SIZE);
+		if (!new File(this.customConfigFile).exists()) {
+			this.journal.checkpoint();
+			return;
+		}
+		List<ConfigurationJournal.Entry> entries = new ArrayList<>();
+		if (this.changes.contains(ConfigurationJournal.Type.REGION))
+			entries.add(new ConfigurationJournal.Entry(ConfigurationJournal.Type.REGION, this.config.getRegion()));
+		for (AntennaConfiguration aCfg : this.config.getAntennaConfigurationList().getEntryList())
+			if (this.changedAntennas.contains(Short.valueOf(aCfg.getId())))
+				entries.add(new ConfigurationJournal.Entry(ConfigurationJournal.Type.ANTENNA_CONFIGURATION, aCfg));
+		if (this.changes.contains(ConfigurationJournal.Type.INVENTORY_SETTINGS))
+			entries.add(new ConfigurationJournal.Entry(ConfigurationJournal.Type.INVENTORY_SETTINGS, this.config.getInventorySettings()));
+		if (this.changes.contains(ConfigurationJournal.Type.KEEP_ALIVE_CONFIGURATION))
+			entries.add(new ConfigurationJournal.Entry(ConfigurationJournal.Type.KEEP_ALIVE_CONFIGURATION, this.config.getKeepAliveConfiguration()));
+		this.journal.append(entries);
+	}
+
+	/**
+	 * Applies the entries of the journal to the configuration.
+	 * 
+	 * @param entries
+	 *            the journal entries
+	 */
+	private void replayJournal(RFConfiguration config, List<ConfigurationJournal.Entry> entries) {
+		for (ConfigurationJournal.Entry entry : entries) {
+			switch (entry.getType()) {
+			case ANTENNA_CONFIGURATION:
+				AntennaConfiguration aCnf = entry.getValue();
+				List<AntennaConfiguration> aCnfList = config.getAntennaConfigurationList().getEntryList();
+				for (int i = 0; i < aCnfList.size(); i++)
+					if (aCnfList.get(i).getId() == aCnf.getId())
+						aCnfList.set(i, aCnf);
+				break;
+			case INVENTORY_SETTINGS:
+				config.setInventorySettings(entry.<InventorySettings> getValue());
+				break;
+			case KEEP_ALIVE_CONFIGURATION:
+				config.setKeepAliveConfiguration(entry.<KeepAliveConfiguration> getValue());
+				break;
+			case REGION:
+				RFRegion region = regionForId(entry.<String> getValue());
+				if (region != null) {
+					config.setRegion(region.getId());
+					config.setRegulatoryCapabilities(region.getRegulatoryCapabilities());
+				}
+				break;
+			}
+		}
+	}
+
+	private File getJournalFile() {
+		return new File(this.customConfigFile + ".journal");
+	}
+
+	/**
+	 * Writes pending changes of the configuration immediately.
+	 * 
+	 * @throws ImplementationException
+	 */
+	void flushConfig() throws ImplementationException {
+		if (this.persister != null)
+			this.persister.flush();
+	}
+
+	/**
+	 * Writes pending changes of the configuration and stops writing
+	 * asynchronously.
+	 * 
+	 * @throws ImplementationException
+	 */
+	void close() throws ImplementationException {
+		this.hardwareInfo.close();
+		if (this.journal != null) {
+			this.journal.close();
+			this.journal = null;
+		}
+		if (this.persister != null) {
+			this.persister.close();
+			this.persister = null;
+		}
+	}
+
+	/**
+	 * Writes the configuration or a serialized snapshot of it to a temporary
+	 * file, which atomically replaces the configuration file.
+	 * 
+	 * @param snapshot
+	 *            the serialized configuration or null to serialize the current
+	 *            configuration
+	 * @throws ImplementationException
+	 */
+	private void writeConfig(String snapshot) throws ImplementationException {
 		try {
 			File file = new File(this.customConfigFile);
 			if (file.exists()) {
@@ -294,14 +497,16 @@ class ConfigurationManager {
 			}
 
 			File tmpFile = File.createTempFile(this.customConfigFile, ".tmp", file.getParentFile());
-			FileUtils.serialize(tmpFile, this.config);
+			if (snapshot == null)
+				FileUtils.serialize(tmpFile, this.config);
+			else
+				FileUtils.writeTextFile(tmpFile, snapshot);
+			// the watcher must not reload the file written here
+			this.writtenChecksum = SnapshotSerializer.checksum(Files.readAllBytes(tmpFile.toPath()));
 			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
-
-			this.unsavedChanges = false;
 		} catch (IOException e) {
 			throw new ImplementationException(e.toString());
 		}
-		log.exiting(getClass().getName(), "saveConfig");
 	}
 
 	/**
@@ -326,94 +531,187 @@ class ConfigurationManager {
 	 *            an object of class or sub class of Configuration
 	 */
 	void setConfiguration(Configuration config) throws ImplementationException, ParameterException {
-		log.entering(getClass().getName(), "setConfigObject", config);
-		if (config instanceof AntennaConfiguration) {
-			AntennaConfiguration newCnf = (AntennaConfiguration) config;
-			List<AntennaConfiguration> aCnfList = this.config.getAntennaConfigurationList().getEntryList();
+		setConfigurations(Collections.singletonList(config));
+	}
 
+	/**
+	 * Sets a list of configurations in the given order. Consecutive antenna
+	 * configurations and antenna properties are applied to the hardware in one
+	 * batch, either all of them are applied or none. Configurations of the
+	 * list applied before a failure remain applied.
+	 * 
+	 * @param configs
+	 *            the configurations
+	 * @throws ImplementationException
+	 * @throws ParameterException
+	 */
+	void setConfigurations(List<Configuration> configs) throws ImplementationException, ParameterException {
+		try {
+			List<Configuration> antennaChanges = new ArrayList<>();
+			for (Configuration config : configs) {
+				if (config instanceof AntennaConfiguration || config instanceof AntennaProperties) {
+					antennaChanges.add(config);
+					continue;
+				}
+				if (!antennaChanges.isEmpty()) {
+					applyAntennaConfigurations(antennaChanges);
+					antennaChanges.clear();
+				}
+				applyConfiguration(config);
+			}
+			if (!antennaChanges.isEmpty())
+				applyAntennaConfigurations(antennaChanges);
+		} finally {
+			// changes applied before a failure are published as well
+			publish();
+		}
+	}
+
+	/**
+	 * Applies antenna configurations and antenna properties in one batch. The
+	 * changes are merged into copies of the affected antenna configurations,
+	 * which replace the originals once the hardware has accepted all of them.
+	 * 
+	 * @param antennaChanges
+	 *            the antenna configurations and antenna properties
+	 * @throws ImplementationException
+	 * @throws ParameterException
+	 */
+	private void applyAntennaConfigurations(List<Configuration> antennaChanges) throws ImplementationException, ParameterException {
+		log.entering(getClass().getName(), "applyAntennaConfigurations", antennaChanges);
+		List<AntennaConfiguration> aCnfList = this.config.getAntennaConfigurationList().getEntryList();
+
+		/* copies of the changed antenna configurations by index */
+		Map<Integer, AntennaConfiguration> copies = new TreeMap<>();
+		for (Configuration config : antennaChanges) {
+			short antennaId = config instanceof AntennaConfiguration ? ((AntennaConfiguration) config).getId() : ((AntennaProperties) config).getId();
 			boolean antennaFound = false;
 			for (int i = 0; i < aCnfList.size(); i++) {
-				if (aCnfList.get(i).getId() == newCnf.getId() || newCnf.getId() == 0) {
-
-					/* create a copy of the antenna configuration */
-					AntennaConfiguration aCnf = aCnfList.get(i).clone();
+				if (aCnfList.get(i).getId() == antennaId || antennaId == 0) {
+					AntennaConfiguration aCnf = copies.get(Integer.valueOf(i));
+					if (aCnf == null) {
+						aCnf = aCnfList.get(i).clone();
+						copies.put(Integer.valueOf(i), aCnf);
+					}
 
 					/*
 					 * change the properties of the copy depending on which
 					 * properties are set in the new config
 					 */
-					if (newCnf.getChannelIndex() != null)
-						aCnf.setChannelIndex(newCnf.getChannelIndex());
-					if (newCnf.getConnect() != null)
-						aCnf.setConnect(newCnf.getConnect());
-					if (newCnf.getHopTableID() != null)
-						aCnf.setHopTableID(newCnf.getHopTableID());
-					if (newCnf.getReceiveSensitivity() != null)
-						aCnf.setReceiveSensitivity(newCnf.getReceiveSensitivity());
-					if (newCnf.getTransmitPower() != null)
-						aCnf.setTransmitPower(newCnf.getTransmitPower());
-
-					/* set the antenna found flag */
-					antennaFound = true;
+					if (config instanceof AntennaConfiguration) {
+						AntennaConfiguration newCnf = (AntennaConfiguration) config;
+						if (newCnf.getChannelIndex() != null)
+							aCnf.setChannelIndex(newCnf.getChannelIndex());
+						if (newCnf.getConnect() != null)
+							aCnf.setConnect(newCnf.getConnect());
+						if (newCnf.getHopTableID() != null)
+							aCnf.setHopTableID(newCnf.getHopTableID());
+						if (newCnf.getReceiveSensitivity() != null)
+							aCnf.setReceiveSensitivity(newCnf.getReceiveSensitivity());
+						if (newCnf.getTransmitPower() != null)
+							aCnf.setTransmitPower(newCnf.getTransmitPower());
+					} else if (((AntennaProperties) config).isConnected())
+						aCnf.setConnect(ConnectType.TRUE);
+					else
+						aCnf.setConnect(ConnectType.FALSE);
 
-					/*
-					 * try to apply the config change to the hardware and
-					 * replace the original antenna config object with the
-					 * modified copy on success or throw an exception on failure
-					 * leaving the original config object unchanged
-					 */
-					try {
-						this.mainController.getHardwareManager().setAntennaConfiguration(aCnf, this.config.getRegulatoryCapabilities(), false);
-						aCnfList.set(i, aCnf);
-						if (log.isLoggable(Level.FINER))
-							log.log(Level.FINER, "Antenna configuration applied: {0}", RFUtils.serialize(aCnf));
-
-					} catch (Exception ex) {
-						if (log.isLoggable(Level.WARNING)) {
-							LogRecord logRec = new LogRecord(Level.WARNING, "Failed to apply antenna configuration: {0}");
-							logRec.setThrown(ex);
-							logRec.setParameters(new Object[] { RFUtils.serialize(aCnf) });
-							logRec.setLoggerName(log.getName());
-							log.log(logRec);
-						}
-						throw new ParameterException("Failed to apply configuration for antenna: " + aCnf.getId());
-					}
+					antennaFound = true;
 				}
 			}
 
 			if (!antennaFound)
-				throw new ParameterException("No antenna with ID " + newCnf.getId() + " exists.");
-
-			unsavedChanges = true;
+				throw new ParameterException("No antenna with ID " + antennaId + " exists.");
 		}
 
-		else if (config instanceof AntennaProperties) {
-			AntennaProperties aProps = (AntennaProperties) config;
-
-			List<AntennaConfiguration> aCnfList = this.config.getAntennaConfigurationList().getEntryList();
-			boolean antennaFound = false;
-			for (int i = 0; i < aCnfList.size(); i++) {
-				if (aCnfList.get(i).getId() == aProps.getId() || aProps.getId() == 0) {
-					if (aProps.isConnected())
-						aCnfList.get(i).setConnect(ConnectType.TRUE);
-					else
-						aCnfList.get(i).setConnect(ConnectType.FALSE);
-					antennaFound = true;
-					this.mainController.getHardwareManager().setAntennaConfiguration(aCnfList.get(i), this.config.getRegulatoryCapabilities(), false);
-					if (log.isLoggable(Level.FINER))
-						log.log(Level.FINER, "Applied connect type {0} of antenna {1}", new Object[] { aCnfList.get(i).getConnect(), aCnfList.get(i).getId() });
-				}
+		/*
+		 * try to apply the changes to the hardware and replace the original
+		 * antenna config objects with the modified copies on success or throw
+		 * an exception on failure leaving the original config objects
+		 * unchanged
+		 */
+		List<AntennaConfiguration> batch = new ArrayList<>(copies.values());
+		List<AntennaConfiguration> previous = new ArrayList<>();
+		for (Integer index : copies.keySet())
+			previous.add(aCnfList.get(index.intValue()));
+		HardwareManager hwManager = this.mainController.getHardwareManager();
+		try {
+			if (hwManager instanceof BatchHardwareManager)
+				((BatchHardwareManager) hwManager).setAntennaConfigurations(batch, this.config.getRegulatoryCapabilities(), false);
+			else
+				applyAntennaConfigurations(hwManager, batch, previous);
+		} catch (Exception ex) {
+			if (log.isLoggable(Level.WARNING)) {
+				LogRecord logRec = new LogRecord(Level.WARNING, "Failed to apply antenna configurations: {0}");
+				logRec.setThrown(ex);
+				logRec.setParameters(new Object[] { RFUtils.serializeList(batch, AntennaConfiguration.class) });
+				logRec.setLoggerName(log.getName());
+				log.log(logRec);
 			}
+			if (ex instanceof ImplementationException)
+				throw (ImplementationException) ex;
+			List<Short> antennaIds = new ArrayList<>();
+			for (AntennaConfiguration aCnf : batch)
+				antennaIds.add(Short.valueOf(aCnf.getId()));
+			throw new ParameterException("Failed to apply configuration for antennas: " + antennaIds);
+		}
 
-			if (!antennaFound)
-				throw new ParameterException("No antenna with ID " + aProps.getId() + " exists.");
+		for (Map.Entry<Integer, AntennaConfiguration> entry : copies.entrySet()) {
+			aCnfList.set(entry.getKey().intValue(), entry.getValue());
+			this.changedAntennas.add(Short.valueOf(entry.getValue().getId()));
+		}
+		unsavedChanges = true;
 
-			unsavedChanges = true;
+		if (log.isLoggable(Level.FINER))
+			log.log(Level.FINER, "Antenna configurations applied: {0}", RFUtils.serializeList(batch, AntennaConfiguration.class));
+		log.exiting(getClass().getName(), "applyAntennaConfigurations");
+	}
 
+	/**
+	 * Applies antenna configurations one by one to a hardware manager which
+	 * does not support batches. If a configuration cannot be applied, the
+	 * previous configurations of the antennas applied so far are restored
+	 * before the exception is thrown.
+	 * 
+	 * @param hwManager
+	 *            the hardware manager
+	 * @param batch
+	 *            the antenna configurations to apply
+	 * @param previous
+	 *            the current antenna configurations in the order of the batch
+	 * @throws ImplementationException
+	 * @throws ParameterException
+	 */
+	private void applyAntennaConfigurations(HardwareManager hwManager, List<AntennaConfiguration> batch, List<AntennaConfiguration> previous)
+			throws ImplementationException, ParameterException {
+		RegulatoryCapabilities regCaps = this.config.getRegulatoryCapabilities();
+		for (int i = 0; i < batch.size(); i++) {
+			try {
+				hwManager.setAntennaConfiguration(batch.get(i), regCaps, false);
+			} catch (ImplementationException | ParameterException | RuntimeException ex) {
+				/* the failed antenna may have been changed partly */
+				for (int j = i; j >= 0; j--) {
+					try {
+						hwManager.setAntennaConfiguration(previous.get(j), regCaps, false);
+					} catch (Exception restoreEx) {
+						if (log.isLoggable(Level.SEVERE)) {
+							LogRecord logRec = new LogRecord(Level.SEVERE, "Failed to restore antenna configuration: {0}");
+							logRec.setThrown(restoreEx);
+							logRec.setParameters(new Object[] { RFUtils.serialize(previous.get(j)) });
+							logRec.setLoggerName(log.getName());
+							log.log(logRec);
+						}
+					}
+				}
+				throw ex;
+			}
 		}
+	}
 
-		else if (config instanceof InventorySettings) {
+	private void applyConfiguration(Configuration config) throws ImplementationException, ParameterException {
+		log.entering(getClass().getName(), "setConfigObject", config);
+		if (config instanceof InventorySettings) {
 			InventorySettings newConf = ((InventorySettings) config).clone();
+			this.changes.add(ConfigurationJournal.Type.INVENTORY_SETTINGS);
 
 			if (newConf.getRssiFilter() != null) {
 				try {
@@ -498,6 +796,7 @@ class ConfigurationManager {
 				throw new ParameterException("Keep-alive interval must be greater than zero.");
 
 			this.config.setKeepAliveConfiguration(kaConfig.clone());
+			this.changes.add(ConfigurationJournal.Type.KEEP_ALIVE_CONFIGURATION);
 			unsavedChanges = true;
 
 			this.mainController.restartKeepAliveThread((KeepAliveConfiguration) config);
@@ -524,7 +823,10 @@ class ConfigurationManager {
 	 * configuration type. If this type is ANTENNA_CONFIGURATION or
 	 * ANTENNA_PROPERTIES only the antenna data is returned for the antenna with
 	 * the given antennaID. If antennaID is 0, then the data for all antennas is
-	 * returned.
+	 * returned. The configurations are the read-only views of the last
+	 * published snapshot, antenna properties are read from the hardware unless
+	 * they are cached. Modifiable copies are returned by the clone methods of
+	 * the views.
 	 * 
 	 * @param type
 	 *            a value of the ConfigurationType enumeration
@@ -537,40 +839,47 @@ class ConfigurationManager {
 	List<Configuration> getConfiguration(ConfigurationType type, short antennaId) throws ImplementationException {
 		log.entering(getClass().getName(), "getConfigrationsByTypeAndId", new Object[] { type, antennaId });
 		List<Configuration> result = new ArrayList<>();
+		ConfigurationSnapshot snapshot = getSnapshot();
 
 		switch (type) {
 
 		case ALL:
 		case ANTENNA_CONFIGURATION:
-			for (AntennaConfiguration aCfg : this.config.getAntennaConfigurationList().getEntryList())
-				if (antennaId == 0 || antennaId == aCfg.getId())
-					result.add(aCfg.clone());
+			if (antennaId == 0) {
+				result.addAll(snapshot.getAntennaConfigurations());
+			} else {
+				AntennaConfiguration aCfg = snapshot.getAntennaConfiguration(antennaId);
+				if (aCfg != null)
+					result.add(aCfg);
+			}
 
 			if (type != ConfigurationType.ALL)
 				break;
 
 		case ANTENNA_PROPERTIES:
 			Map<Short, ConnectType> connectTypeMap = new HashMap<>();
-			for (AntennaConfiguration aCfg : this.config.getAntennaConfigurationList().getEntryList())
+			for (AntennaConfiguration aCfg : snapshot.getAntennaConfigurations())
 				connectTypeMap.put(aCfg.getId(), aCfg.getConnect());
 
-			AntennaPropertyList apl = this.mainController.getHardwareManager().getAntennaProperties(connectTypeMap);
-			apl.setEntryList(apl.getEntryList());
+			AntennaPropertyList apl = this.hardwareInfo.getAntennaProperties(connectTypeMap);
+			AntennaPropertyViews views = this.antennaPropertyViews;
+			if (views == null || views.source != apl)
+				this.antennaPropertyViews = views = new AntennaPropertyViews(apl);
 
-			for (AntennaProperties aProps : apl.getEntryList())
+			for (AntennaProperties aProps : views.views.getEntryList())
 				if (antennaId == 0 || antennaId == aProps.getId())
-					result.add(aProps.clone());
+					result.add(aProps);
 
 			if (type != ConfigurationType.ALL)
 				break;
 
 		case KEEP_ALIVE_CONFIGURATION:
-			result.add(this.config.getKeepAliveConfiguration().clone());
+			result.add(snapshot.getKeepAliveConfiguration());
 			break;
 
 		case INVENTORY_SETTINGS:
-			if (config.getInventorySettings() != null)
-				result.add(this.config.getInventorySettings().clone());
+			if (snapshot.getInventorySettings() != null)
+				result.add(snapshot.getInventorySettings());
 		}
 
 		if (log.isLoggable(Level.FINER))
@@ -597,9 +906,11 @@ class ConfigurationManager {
 		switch (type) {
 		case ALL:
 		case DEVICE_CAPABILITIES:
-			DeviceCapabilities devCaps = this.config.getDeviceCapabilities();
-			devCaps.setFirmware(this.mainController.getHardwareManager().getFirmwareVersion());
-			result.add(devCaps.clone());
+			// the firmware version is set on the copy, the shared capabilities
+			// are not modified by readers
+			DeviceCapabilities devCaps = this.config.getDeviceCapabilities().clone();
+			devCaps.setFirmware(this.hardwareInfo.getFirmwareVersion());
+			result.add(devCaps);
 			if (type != CapabilityType.ALL)
 				break;
 
@@ -626,6 +937,249 @@ class ConfigurationManager {
 	}
 
 	List<SelectionMask> getDefaultFilters() {
-		return this.config.getInventorySettings().getSelectionMasks();
+		return getSnapshot().getSelectionMasks();
+	}
+
+	/**
+	 * Publishes a snapshot of the current configuration, called with the lock
+	 * held after each change.
+	 */
+	private void publish() {
+		if (this.config != null)
+			this.snapshot = new ConfigurationSnapshot(this.config, ++this.version);
+		this.hardwareInfo.invalidateAntennaProperties();
+	}
+
+	/**
+	 * Reads the custom configuration file after it has been changed.
+	 * 
+	 * @return the configuration or null if the file does not exist or has
+	 *         been written by the configuration manager itself
+	 * @throws ImplementationException
+	 *             if the file cannot be read
+	 */
+	RFConfiguration readCustomConfig() throws ImplementationException {
+		File customConfigFile = new File(this.customConfigFile);
+		try {
+			byte[] data;
+			try {
+				data = Files.readAllBytes(customConfigFile.toPath());
+			} catch (NoSuchFileException e) {
+				return null;
+			}
+			if (SnapshotSerializer.checksum(data) == this.writtenChecksum)
+				return null;
+			return SnapshotSerializer.deserialize(new ByteArrayInputStream(data), RFConfiguration.class,
+					SnapshotSerializer.getSnapshotFile(Environment.SNAPSHOT_PATH, customConfigFile.getName()));
+		} catch (IOException e) {
+			throw new ImplementationException("Failed to read custom configuration.", e);
+		}
+	}
+
+	/**
+	 * Applies a configuration read from the changed custom configuration file,
+	 * called with the lock held. The changed file replaces the configuration
+	 * including the changes in the journal, the journal is therefore deleted
+	 * instead of being replayed onto the file. The configuration is compared
+	 * with the active one and only the differences are applied, i.e. the
+	 * region, single antennas, the parts of the inventory settings and the
+	 * keep-alive configuration. The file is not written again.
+	 * 
+	 * @param newConfig
+	 *            the configuration read from the file
+	 * @throws ImplementationException
+	 * @throws ParameterException
+	 */
+	void reloadConfiguration(RFConfiguration newConfig) throws ImplementationException, ParameterException {
+		log.entering(getClass().getName(), "reloadConfiguration");
+		try {
+			/* older changes must not override the edited file on loading */
+			if (this.journal != null)
+				this.journal.delete();
+			else
+				getJournalFile().delete();
+
+			if (newConfig.getRegion() != null && !newConfig.getRegion().equals(this.config.getRegion()))
+				reloadRegion(newConfig);
+			else if (newConfig.getAntennaConfigurationList() != null) {
+				List<Configuration> antennaChanges = new ArrayList<>();
+				for (AntennaConfiguration aCnf : newConfig.getAntennaConfigurationList().getEntryList()) {
+					AntennaConfiguration active = getAntennaConfiguration(aCnf.getId());
+					if (active == null)
+						log.log(Level.WARNING, "Ignoring configuration of unknown antenna {0}", aCnf.getId());
+					else if (!isEqual(aCnf, active))
+						antennaChanges.add(aCnf);
+				}
+				if (!antennaChanges.isEmpty())
+					applyAntennaConfigurations(antennaChanges);
+			}
+
+			InventorySettings newSettings = newConfig.getInventorySettings();
+			InventorySettings settings = this.config.getInventorySettings();
+			if (newSettings != null) {
+				/* only the changed settings are applied to the hardware */
+				InventorySettings changed = new InventorySettings();
+				boolean inventoryChanged = false;
+				if (newSettings.getRssiFilter() != null && !isEqual(newSettings.getRssiFilter(), settings.getRssiFilter())) {
+					changed.setRssiFilter(newSettings.getRssiFilter());
+					inventoryChanged = true;
+				}
+				if (newSettings.getSingulationControl() != null && !isEqual(newSettings.getSingulationControl(), settings.getSingulationControl())) {
+					changed.setSingulationControl(newSettings.getSingulationControl());
+					inventoryChanged = true;
+				}
+				if (newSettings.getTagSmoothing() != null && !isEqual(newSettings.getTagSmoothing(), settings.getTagSmoothing())) {
+					changed.setTagSmoothing(newSettings.getTagSmoothing());
+					inventoryChanged = true;
+				}
+				List<SelectionMask> selectionMasks = newSettings.getSelectionMasks() != null ? newSettings.getSelectionMasks() : settings
+						.getSelectionMasks();
+				if (!isEqual(selectionMasks, settings.getSelectionMasks()))
+					inventoryChanged = true;
+				if (inventoryChanged) {
+					if (changed.getSelectionMasks() != null)
+						changed.getSelectionMasks().addAll(selectionMasks);
+					applyConfiguration(changed);
+				}
+			}
+
+			if (newConfig.getKeepAliveConfiguration() != null && !isEqual(newConfig.getKeepAliveConfiguration(), this.config.getKeepAliveConfiguration()))
+				applyConfiguration(newConfig.getKeepAliveConfiguration());
+		} finally {
+			/* the file already contains the configuration */
+			this.unsavedChanges = false;
+			this.changes.clear();
+			this.changedAntennas.clear();
+			publish();
+		}
+		log.exiting(getClass().getName(), "reloadConfiguration");
+	}
+
+	/**
+	 * Applies the region and the antenna configurations of a reloaded
+	 * configuration.
+	 */
+	private void reloadRegion(RFConfiguration newConfig) throws ImplementationException, ParameterException {
+		String current = getRegion();
+		if (Environment.isNurHardware() && Environment.hasRpcTool() && !current.equals(Environment.UNSPECIFIED_REGION_ID))
+			throw new ParameterException("Region already set to '" + current + "'. Changing is not permitted.");
+
+		RFRegion region = this.supportedRegions.get(newConfig.getRegion());
+		if (region == null)
+			throw new ParameterException("Unsupported region '" + newConfig.getRegion() + "'");
+
+		/* the region applies the antenna configurations as well */
+		AntennaConfigurationList aCnfList = new AntennaConfigurationList();
+		for (AntennaConfiguration active : this.config.getAntennaConfigurationList().getEntryList()) {
+			AntennaConfiguration aCnf = active;
+			if (newConfig.getAntennaConfigurationList() != null)
+				for (AntennaConfiguration newCnf : newConfig.getAntennaConfigurationList().getEntryList())
+					if (newCnf.getId() == active.getId())
+						aCnf = newCnf;
+			aCnfList.getEntryList().add(aCnf);
+		}
+		this.mainController.getHardwareManager().setRegion(region, aCnfList);
+		this.config.setAntennaConfigurationList(aCnfList);
+		this.config.setRegulatoryCapabilities(region.getRegulatoryCapabilities());
+		this.config.setRegion(region.getId());
+		if (Environment.isNurHardware() && Environment.hasRpcTool()) {
+			try {
+				log.info("Saving region to persistent key storage");
+				PropertyUtil.setProperty(REGION_UUID, region.getId());
+			} catch (PropertyException e) {
+				throw new ImplementationException(e);
+			}
+		}
+		log.log(Level.FINER, "Region {0} reloaded", region.getId());
+	}
+
+	/**
+	 * Applies a region file after it has been changed, called with the lock
+	 * held. If the region is the active one, its regulatory capabilities are
+	 * applied to the configuration and the hardware.
+	 * 
+	 * @param id
+	 *            the region ID
+	 * @throws ImplementationException
+	 * @throws ParameterException
+	 */
+	void regionFileChanged(String id) throws ImplementationException, ParameterException {
+		if (this.supportedRegions instanceof RegionCatalog)
+			((RegionCatalog) this.supportedRegions).invalidate(id);
+		if (!id.equals(getRegion()))
+			return;
+
+		RFRegion region = regionForId(id);
+		if (region == null)
+			throw new ImplementationException("Failed to reload region '" + id + "'");
+		this.mainController.getHardwareManager().setRegion(region, this.config.getAntennaConfigurationList());
+		this.config.setRegulatoryCapabilities(region.getRegulatoryCapabilities());
+		this.changes.add(ConfigurationJournal.Type.REGION);
+		this.unsavedChanges = true;
+		publish();
+		log.log(Level.FINER, "Region {0} reloaded", id);
+	}
+
+	/**
+	 * @return the directory of the region files or null if the region files
+	 *         are not located in a directory
+	 */
+	File getRegionDirectory() {
+		if (this.supportedRegions instanceof RegionCatalog)
+			return ((RegionCatalog) this.supportedRegions).getDirectory();
+		return null;
+	}
+
+	private AntennaConfiguration getAntennaConfiguration(short antennaId) {
+		for (AntennaConfiguration aCnf : this.config.getAntennaConfigurationList().getEntryList())
+			if (aCnf.getId() == antennaId)
+				return aCnf;
+		return null;
+	}
+
+	/**
+	 * Compares two configuration objects by their serialized form, as the
+	 * configuration classes do not implement equals.
+	 */
+	private static boolean isEqual(Object o1, Object o2) {
+		if (o1 == null || o2 == null)
+			return o1 == o2;
+		if (o1 instanceof List && o2 instanceof List) {
+			List<?> l1 = (List<?>) o1;
+			List<?> l2 = (List<?>) o2;
+			if (l1.size() != l2.size())
+				return false;
+			for (int i = 0; i < l1.size(); i++)
+				if (!isEqual(l1.get(i), l2.get(i)))
+					return false;
+			return true;
+		}
+		try {
+			return new JsonSerializer(o1.getClass()).serialize(o1).equals(new JsonSerializer(o2.getClass()).serialize(o2));
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Invalidates the cached values read from the hardware, e.g. after a
+	 * firmware update.
+	 */
+	void invalidateHardwareInfo() {
+		this.hardwareInfo.invalidate();
+	}
+
+	/**
+	 * Returns the last published snapshot of the configuration. The snapshot
+	 * is shared and must not be modified.
+	 * 
+	 * @return the snapshot
+	 */
+	ConfigurationSnapshot getSnapshot() {
+		ConfigurationSnapshot snapshot = this.snapshot;
+		if (snapshot == null)
+			// not published yet
+			return new ConfigurationSnapshot(this.config, this.version);
+		return snapshot;
 	}
 }
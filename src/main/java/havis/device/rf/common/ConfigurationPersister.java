@@ -0,0 +1,260 @@
+package havis.device.rf.common;
+
+import havis.device.rf.exception.ImplementationException;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persists the configuration asynchronously. Changes are coalesced: the
+ * configuration is written once no change has been reported for the delay, but
+ * not later than the maximum delay after the first unsaved change.
+ * <p>
+ * The snapshot of the configuration is taken with the lock guarding the
+ * configuration held, the file is written without the lock. Snapshots are
+ * numbered in the order they are taken, so an older snapshot never replaces a
+ * newer one.
+ * </p>
+ */
+class ConfigurationPersister {
+
+	private static final Logger log = Logger.getLogger(ConfigurationPersister.class.getName());
+
+	/**
+	 * The configuration to persist
+	 */
+	interface Target {
+		/**
+		 * Takes a snapshot of the configuration, called with the lock held.
+		 *
+		 * @return the snapshot
+		 * @throws ImplementationException
+		 *             if the configuration cannot be serialized
+		 */
+		String snapshot() throws ImplementationException;
+
+		/**
+		 * Writes a snapshot, called without the lock held.
+		 *
+		 * @param snapshot
+		 *            the snapshot
+		 * @throws ImplementationException
+		 *             if the snapshot cannot be written
+		 */
+		void write(String snapshot) throws ImplementationException;
+	}
+
+	private final Lock lock;
+	private final Target target;
+	private final long delay;
+	private final long maxDelay;
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "ConfigurationPersister");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	// guarded by lock
+	private boolean dirty;
+	private long firstChange;
+	private long lastChange;
+	private long sequence;
+	private ScheduledFuture<?> future;
+
+	// guarded by writing
+	private final Object writing = new Object();
+	private long written;
+	private int pending;
+
+	private final Runnable check = new Runnable() {
+		@Override
+		public void run() {
+			long number;
+			String snapshot;
+			lock.lock();
+			try {
+				future = null;
+				if (!dirty)
+					return;
+				long remaining = Math.min(lastChange + delay, firstChange + maxDelay) - now();
+				if (remaining > 0) {
+					future = executor.schedule(this, remaining, TimeUnit.MILLISECONDS);
+					return;
+				}
+				snapshot = target.snapshot();
+				number = take();
+			} catch (ImplementationException e) {
+				log.log(Level.WARNING, "Failed to take snapshot of configuration, retrying", e);
+				retry();
+				return;
+			} finally {
+				lock.unlock();
+			}
+			try {
+				write(number, snapshot);
+			} catch (ImplementationException e) {
+				log.log(Level.WARNING, "Failed to persist configuration, retrying", e);
+				changed();
+			}
+		}
+	};
+
+	/**
+	 * Creates a persister.
+	 *
+	 * @param lock
+	 *            the lock guarding the configuration
+	 * @param target
+	 *            the configuration to persist
+	 * @param delay
+	 *            the time in milliseconds without changes before the
+	 *            configuration is written
+	 * @param maxDelay
+	 *            the maximum time in milliseconds between the first unsaved
+	 *            change and the write
+	 */
+	ConfigurationPersister(Lock lock, Target target, long delay, long maxDelay) {
+		this.lock = lock;
+		this.target = target;
+		this.delay = delay;
+		this.maxDelay = Math.max(delay, maxDelay);
+	}
+
+	/**
+	 * Reports a change of the configuration, which is written after the delay.
+	 */
+	void changed() {
+		lock.lock();
+		try {
+			long now = now();
+			if (!dirty)
+				firstChange = now;
+			lastChange = now;
+			dirty = true;
+			if (future == null && !executor.isShutdown())
+				future = executor.schedule(check, delay, TimeUnit.MILLISECONDS);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes unsaved changes immediately and waits for writes in progress.
+	 *
+	 * @throws ImplementationException
+	 *             if the configuration cannot be written
+	 */
+	void flush() throws ImplementationException {
+		long number = 0;
+		String snapshot = null;
+		lock.lock();
+		try {
+			if (future != null) {
+				future.cancel(false);
+				future = null;
+			}
+			if (dirty) {
+				try {
+					snapshot = target.snapshot();
+				} catch (ImplementationException e) {
+					retry();
+					throw e;
+				}
+				number = take();
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (snapshot != null) {
+			try {
+				write(number, snapshot);
+			} catch (ImplementationException e) {
+				changed();
+				throw e;
+			}
+		}
+		synchronized (writing) {
+			try {
+				while (pending > 0)
+					writing.wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Writes unsaved changes and stops the persister.
+	 *
+	 * @throws ImplementationException
+	 *             if the configuration cannot be written
+	 */
+	void close() throws ImplementationException {
+		try {
+			flush();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * @return whether changes have not been written yet
+	 */
+	boolean isDirty() {
+		lock.lock();
+		try {
+			return dirty;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Schedules another attempt to take the snapshot after the delay, called
+	 * with the lock held.
+	 */
+	private void retry() {
+		if (future == null && !executor.isShutdown())
+			future = executor.schedule(check, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Marks the changes as taken, called with the lock held.
+	 *
+	 * @return the number of the snapshot
+	 */
+	private long take() {
+		dirty = false;
+		synchronized (writing) {
+			pending++;
+		}
+		return ++sequence;
+	}
+
+	private void write(long number, String snapshot) throws ImplementationException {
+		synchronized (writing) {
+			try {
+				if (number > written) {
+					target.write(snapshot);
+					written = number;
+				}
+			} finally {
+				pending--;
+				writing.notifyAll();
+			}
+		}
+	}
+
+	private static long now() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+	}
+}
@@ -0,0 +1,100 @@
+package havis.device.rf.common;
+
+import havis.device.rf.configuration.AntennaConfiguration;
+import havis.device.rf.configuration.InventorySettings;
+import havis.device.rf.configuration.KeepAliveConfiguration;
+import havis.device.rf.configuration.RFConfiguration;
+import havis.device.rf.configuration.SelectionMask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, versioned copy of the configuration. The copy is taken when
+ * the configuration is published after a change, so the snapshot can be read
+ * without the lock and without copying. The objects of a snapshot are
+ * read-only views shared by all readers, see {@link ReadOnlyConfigurations}.
+ */
+class ConfigurationSnapshot {
+
+	private final long version;
+	private final String region;
+	private final List<AntennaConfiguration> antennaConfigurations;
+	private final Map<Short, AntennaConfiguration> antennaIndex;
+	private final InventorySettings inventorySettings;
+	private final KeepAliveConfiguration keepAliveConfiguration;
+	private final List<SelectionMask> selectionMasks;
+
+	/**
+	 * Creates a snapshot of a configuration, called with the lock held.
+	 *
+	 * @param config
+	 *            the configuration
+	 * @param version
+	 *            the version of the snapshot
+	 */
+	ConfigurationSnapshot(RFConfiguration config, long version) {
+		this.version = version;
+		this.region = config.getRegion();
+
+		List<AntennaConfiguration> antennaConfigurations = new ArrayList<>();
+		Map<Short, AntennaConfiguration> antennaIndex = new HashMap<>();
+		if (config.getAntennaConfigurationList() != null) {
+			for (AntennaConfiguration aCfg : config.getAntennaConfigurationList().getEntryList()) {
+				AntennaConfiguration copy = ReadOnlyConfigurations.antennaConfiguration(aCfg);
+				antennaConfigurations.add(copy);
+				antennaIndex.put(Short.valueOf(copy.getId()), copy);
+			}
+		}
+		this.antennaConfigurations = Collections.unmodifiableList(antennaConfigurations);
+		this.antennaIndex = antennaIndex;
+
+		this.inventorySettings = config.getInventorySettings() == null ? null : ReadOnlyConfigurations.inventorySettings(config
+				.getInventorySettings());
+		this.keepAliveConfiguration = config.getKeepAliveConfiguration() == null ? null : ReadOnlyConfigurations.keepAliveConfiguration(config
+				.getKeepAliveConfiguration());
+		this.selectionMasks = this.inventorySettings == null ? Collections.<SelectionMask> emptyList() : this.inventorySettings.getSelectionMasks();
+	}
+
+	/**
+	 * @return the version, incremented with each published change
+	 */
+	long getVersion() {
+		return version;
+	}
+
+	String getRegion() {
+		return region;
+	}
+
+	/**
+	 * @return the antenna configurations in the order of the configuration
+	 */
+	List<AntennaConfiguration> getAntennaConfigurations() {
+		return antennaConfigurations;
+	}
+
+	/**
+	 * @param antennaId
+	 *            the antenna ID
+	 * @return the antenna configuration or null if the antenna does not exist
+	 */
+	AntennaConfiguration getAntennaConfiguration(short antennaId) {
+		return antennaIndex.get(Short.valueOf(antennaId));
+	}
+
+	InventorySettings getInventorySettings() {
+		return inventorySettings;
+	}
+
+	KeepAliveConfiguration getKeepAliveConfiguration() {
+		return keepAliveConfiguration;
+	}
+
+	List<SelectionMask> getSelectionMasks() {
+		return selectionMasks;
+	}
+}
@@ -0,0 +1,202 @@
+package havis.device.rf.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileAttribute;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the custom configuration file and the directory of the region files
+ * for changes. As files are usually written in several steps, a change is
+ * reported once the file has not been changed again for the delay.
+ */
+class ConfigurationWatcher {
+
+	private static final Logger log = Logger.getLogger(ConfigurationWatcher.class.getName());
+
+	private static final String REGION_SUFFIX = ".json";
+
+	/**
+	 * Receives the changes, called on the thread of the watcher
+	 */
+	interface Listener {
+		/**
+		 * The custom configuration file has been created or changed.
+		 */
+		void configurationChanged();
+
+		/**
+		 * A region file has been created or changed.
+		 *
+		 * @param id
+		 *            the region ID
+		 */
+		void regionChanged(String id);
+	}
+
+	private final Path configDirectory;
+	private final Path configFile;
+	private final Path regionDirectory;
+	private final long delay;
+	private final Listener listener;
+	private final WatchService watchService;
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "ConfigurationWatcher");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	// guarded by pending
+	private final Map<String, ScheduledFuture<?>> pending = new HashMap<>();
+
+	/**
+	 * Creates a watcher and starts watching.
+	 *
+	 * @param configFile
+	 *            the custom configuration file, the parent directory is
+	 *            created if it does not exist
+	 * @param regionDirectory
+	 *            the directory of the region files or null
+	 * @param delay
+	 *            the time in milliseconds a file must remain unchanged before
+	 *            the change is reported
+	 * @param listener
+	 *            the listener
+	 * @throws IOException
+	 *             if the directories cannot be watched
+	 */
+	ConfigurationWatcher(File configFile, File regionDirectory, long delay, Listener listener) throws IOException {
+		this.configFile = configFile.getAbsoluteFile().toPath();
+		this.configDirectory = this.configFile.getParent();
+		this.regionDirectory = regionDirectory == null ? null : regionDirectory.getAbsoluteFile().toPath();
+		this.delay = delay;
+		this.listener = listener;
+
+		Files.createDirectories(this.configDirectory, new FileAttribute<?>[] {});
+		this.watchService = FileSystems.getDefault().newWatchService();
+		try {
+			this.configDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+			if (this.regionDirectory != null && !this.regionDirectory.equals(this.configDirectory))
+				this.regionDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (IOException e) {
+			watchService.close();
+			executor.shutdown();
+			throw e;
+		}
+
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		}, "ConfigurationWatcher");
+		thread.setDaemon(true);
+		thread.start();
+		log.log(Level.FINE, "Watching {0} and {1}", new Object[] { this.configFile, this.regionDirectory });
+	}
+
+	private void watch() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				Path directory = (Path) key.watchable();
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						// changes may have been lost
+						configurationChanged();
+						continue;
+					}
+					Path file = directory.resolve((Path) event.context());
+					if (file.equals(configFile))
+						configurationChanged();
+					else if (directory.equals(regionDirectory)) {
+						String name = file.getFileName().toString();
+						if (name.endsWith(REGION_SUFFIX))
+							regionChanged(name.substring(0, name.length() - REGION_SUFFIX.length()));
+					}
+				}
+				key.reset();
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// closed
+		}
+	}
+
+	private void configurationChanged() {
+		schedule(configFile.toString(), new Runnable() {
+			@Override
+			public void run() {
+				listener.configurationChanged();
+			}
+		});
+	}
+
+	private void regionChanged(final String id) {
+		schedule(regionDirectory.resolve(id + REGION_SUFFIX).toString(), new Runnable() {
+			@Override
+			public void run() {
+				listener.regionChanged(id);
+			}
+		});
+	}
+
+	/**
+	 * Reports a change of a file once it has not changed again for the delay.
+	 */
+	private void schedule(final String file, final Runnable report) {
+		synchronized (pending) {
+			ScheduledFuture<?> future = pending.remove(file);
+			if (future != null)
+				future.cancel(false);
+			if (executor.isShutdown())
+				return;
+			pending.put(file, executor.schedule(new Runnable() {
+				@Override
+				public void run() {
+					synchronized (pending) {
+						pending.remove(file);
+					}
+					try {
+						report.run();
+					} catch (RuntimeException e) {
+						log.log(Level.WARNING, "Failed to handle change of " + file, e);
+					}
+				}
+			}, delay, TimeUnit.MILLISECONDS));
+		}
+	}
+
+	/**
+	 * Stops watching, pending changes are not reported.
+	 */
+	void close() {
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			log.log(Level.FINE, "Failed to close watch service", e);
+		}
+		synchronized (pending) {
+			executor.shutdownNow();
+			pending.clear();
+		}
+	}
+}
@@ -1,6 +1,6 @@
 package havis.device.rf.common;
 
-import havis.device.rf.common.util.FileUtils;
+import havis.device.rf.common.util.SnapshotSerializer;
 import havis.device.rf.configuration.RFConfiguration;
 import havis.device.rf.configuration.RFRegion;
 
@@ -8,7 +8,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -20,9 +20,10 @@ public class Environment {
 	private static final Logger log = Logger.getLogger(Environment.class.getName());
 	private static final Properties properties = new Properties();	
 	private static final String FILE_NAME = "havis.device.rf.properties";
+	private static final String SNAPSHOT_PATH_PROPERTY = "havis.device.rf.common.snapshotPath";
 	
 	public static RFConfiguration DEFAULT_CONFIG;
-	public final static Map<String, RFRegion> SUPPORTED_REGIONS = new LinkedHashMap<>();
+	public final static Map<String, RFRegion> SUPPORTED_REGIONS;
 
 	static {
 		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
@@ -39,10 +40,10 @@ public class Environment {
 		
 		log.finer("Loading default configuration file.");
 		try {
+			String defaultConfigFile = properties.getProperty("havis.device.rf.common.defaultConfigFile", "havis/device/rf/config/default.json");
 			DEFAULT_CONFIG = 
-				FileUtils.deserialize(classLoader.getResourceAsStream(
-					properties.getProperty("havis.device.rf.common.defaultConfigFile", "havis/device/rf/config/default.json")), 
-					RFConfiguration.class);
+				SnapshotSerializer.deserialize(classLoader.getResourceAsStream(defaultConfigFile), 
+					RFConfiguration.class, SnapshotSerializer.getSnapshotFile(properties.getProperty(SNAPSHOT_PATH_PROPERTY, ""), defaultConfigFile));
 		} catch (IOException e) {
 			LogRecord logRec = new LogRecord(Level.SEVERE, "Failed to load default configuration file: {0}");
 			logRec.setThrown(e);
@@ -51,23 +52,10 @@ public class Environment {
 			log.log(logRec);
 		}
 		
-		log.finer("Loading supported regions.");
+		log.finer("Initializing supported regions.");
 		String regionIds = properties.getProperty("havis.device.rf.common.supportedRegions", "Unspecified,EU,FCC");
-		for (String regionId : regionIds.split("\\s*\\,\\s*")) {
-			try {
-				SUPPORTED_REGIONS.put(regionId,
-						FileUtils.deserialize(classLoader.getResourceAsStream(
-							properties.getProperty("havis.device.rf.common.regionPath", "havis/device/rf/region/") + regionId + ".json"), 
-							RFRegion.class));
-				log.log(Level.FINER, "Region {0} loaded", regionId);
-			} catch (IOException e) {
-				LogRecord logRec = new LogRecord(Level.SEVERE, "Failed to read region ''{0}'': {1}");
-				logRec.setThrown(e);
-				logRec.setParameters(new Object[] { regionId, e });
-				logRec.setLoggerName(log.getName());
-				log.log(logRec);
-			}
-		}
+		SUPPORTED_REGIONS = new RegionCatalog(properties.getProperty("havis.device.rf.common.regionPath", "havis/device/rf/region/"),
+				Arrays.asList(regionIds.split("\\s*\\,\\s*")), classLoader);
 	}
 	
 	private static List<Short> parseAntennasProperty(String propId) {
@@ -87,6 +75,7 @@ public class Environment {
 	public static final String UNSPECIFIED_REGION_ID = properties.getProperty("havis.device.rf.common.unspecifiedRegionId", "Unspecified");
 	public static final String DEFAULT_REGION_ID = properties.getProperty("havis.device.rf.common.defaultRegionId", "EU"); //TODO: not unspecified???
 	public static final String CUSTOM_CONFIG_FILE = properties.getProperty("havis.device.rf.common.currentConfigFile", "conf/havis/device/rf/config.json");
+	public static final String SNAPSHOT_PATH = properties.getProperty(SNAPSHOT_PATH_PROPERTY, "");
 	public static final String RESULT_FILE = properties.getProperty("havis.device.rf.common.resultFile", "conf/havis/device/rf/results.json");
 	public static final String NUR_HARDWARE_MANAGER_CLASS = "havis.device.rf.nur.NurHardwareManager";
 	public static final String HARDWARE_MANAGER_CLASS = properties.getProperty("havis.device.rf.common.hardwareManager.class", NUR_HARDWARE_MANAGER_CLASS);		
@@ -95,8 +84,46 @@ public class Environment {
 	public static final String FIRMWARE_UPDATE_SCRIPT = properties.getProperty("havis.device.rf.common.firmware.update.script", "install-firmware.sh");
 	public static final boolean PERSIST_RESULTS = Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.persistResults", "false"));
 	public static final boolean SERIALIZER_PRETTY_PRINT = Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.serializerPrettyPrint", "true"));
+	public static final long CONFIG_WRITE_DELAY = Long.parseLong(properties.getProperty("havis.device.rf.common.configWriteDelay", "0"));
+	public static final long CONFIG_WRITE_MAX_DELAY = Long.parseLong(properties.getProperty("havis.device.rf.common.configWriteMaxDelay", "5000"));
+	public static final boolean CONFIG_JOURNAL = Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.configJournal", "false"));
+	public static final String CONFIG_JOURNAL_FSYNC = properties.getProperty("havis.device.rf.common.configJournal.fsync", "ALWAYS");
+	public static final long CONFIG_JOURNAL_FSYNC_INTERVAL = Long.parseLong(properties.getProperty("havis.device.rf.common.configJournal.fsyncInterval", "1000"));
+	public static final long CONFIG_JOURNAL_COMPACT_SIZE = Long.parseLong(properties.getProperty("havis.device.rf.common.configJournal.compactSize", "65536"));
+	public static final boolean CONFIG_WATCH = Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.configWatch", "false"));
+	public static final long CONFIG_WATCH_DELAY = Long.parseLong(properties.getProperty("havis.device.rf.common.configWatch.delay", "500"));
 	public static final boolean OPTIMIZED_TID_BANK_READING = Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.optimizedTidBankReading", "true"));
 	public static final boolean HANDLE_TRANSPONDER_EPC_CHANGE = Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.handleTransponderEpcChange", "true"));
+	public static final boolean OPERATION_STATISTICS = Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.operationStatistics", "false"));
+	public static final boolean SOFTWARE_FILTERING = Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.softwareFiltering", "false"));
+	public static final boolean OPTIMIZE_READ_OPERATIONS = Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.optimizeReadOperations", "false"));
+	public static final Short MAX_BLOCK_WRITE_WORD_COUNT = Short.valueOf(properties.getProperty("havis.device.rf.common.maxBlockWriteWordCount", "0"));
+	public static final boolean WRITE_ELISION = Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.writeElision", "false"));
+	public static final int TID_CACHE_SIZE = Integer.parseInt(properties.getProperty("havis.device.rf.common.tidCache.size", "0"));
+	public static final long TID_CACHE_TTL = Long.parseLong(properties.getProperty("havis.device.rf.common.tidCache.ttl", "60000"));
+	public static final double TID_CACHE_MIN_HIT_RATIO = Double.parseDouble(properties.getProperty("havis.device.rf.common.tidCache.minHitRatio", "0.9"));
+	public static final int USER_BANK_CACHE_SIZE = Integer.parseInt(properties.getProperty("havis.device.rf.common.userBankCache.size", "0"));
+	public static final long USER_BANK_CACHE_TTL = Long.parseLong(properties.getProperty("havis.device.rf.common.userBankCache.ttl", "10000"));
+	public static final double USER_BANK_CACHE_MIN_HIT_RATIO = Double.parseDouble(properties.getProperty("havis.device.rf.common.userBankCache.minHitRatio", "0.9"));
+	public static final long HARDWARE_INFO_ANTENNA_PROPERTIES_TTL = Long.parseLong(properties.getProperty("havis.device.rf.common.hardwareInfo.antennaPropertiesTtl", "2000"));
+	public static final long HARDWARE_INFO_FIRMWARE_VERSION_TTL = Long.parseLong(properties.getProperty("havis.device.rf.common.hardwareInfo.firmwareVersionTtl", "-1"));
+	public static final double HARDWARE_INFO_REFRESH_RATIO = Double.parseDouble(properties.getProperty("havis.device.rf.common.hardwareInfo.refreshRatio", "0.5"));
+	public static final int SIMULATOR_TAG_COUNT = Integer.parseInt(properties.getProperty("havis.device.rf.common.simulator.tagCount", "50"));
+	public static final int SIMULATOR_USER_BANK_WORDS = Integer.parseInt(properties.getProperty("havis.device.rf.common.simulator.userBankWords", "32"));
+	public static final int SIMULATOR_ANTENNA_COUNT = Integer.parseInt(properties.getProperty("havis.device.rf.common.simulator.antennaCount", "4"));
+	public static final double SIMULATOR_VISIBILITY = Double.parseDouble(properties.getProperty("havis.device.rf.common.simulator.visibility", "0.5"));
+	public static final double SIMULATOR_RSSI_MEAN = Double.parseDouble(properties.getProperty("havis.device.rf.common.simulator.rssiMean", "-60"));
+	public static final double SIMULATOR_RSSI_DEVIATION = Double.parseDouble(properties.getProperty("havis.device.rf.common.simulator.rssiDeviation", "8"));
+	public static final long SIMULATOR_DWELL_TIME = Long.parseLong(properties.getProperty("havis.device.rf.common.simulator.dwellTime", "0"));
+	public static final int SIMULATOR_SLOT_MICROS = Integer.parseInt(properties.getProperty("havis.device.rf.common.simulator.slotMicros", "600"));
+	public static final int SIMULATOR_ACCESS_MICROS = Integer.parseInt(properties.getProperty("havis.device.rf.common.simulator.accessMicros", "3000"));
+	public static final int SIMULATOR_WORD_MICROS = Integer.parseInt(properties.getProperty("havis.device.rf.common.simulator.wordMicros", "200"));
+	public static final double SIMULATOR_TIME_SCALE = Double.parseDouble(properties.getProperty("havis.device.rf.common.simulator.timeScale", "1"));
+	public static final long SIMULATOR_SEED = Long.parseLong(properties.getProperty("havis.device.rf.common.simulator.seed", "1"));
+	public static final String TRACE_FILE = properties.getProperty("havis.device.rf.common.trace.file");
+	public static final String REPLAY_FILE = properties.getProperty("havis.device.rf.common.replay.file");
+	public static final boolean REPLAY_REALTIME = Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.replay.realtime", "true"));
+	public static final boolean REPLAY_LOOP = Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.replay.loop", "false"));
 	public static final Short COMPLETE_USERBANK_WORD_COUNT = Short.valueOf(properties.getProperty("havis.device.rf.common.completeUserBankWordCount", "32"));
 	public static final List<Short> HARDWARE_MANAGER_ANTENNAS = parseAntennasProperty("havis.device.rf.common.hardwareManager.antennas");
 	public static final Baudrate SERIAL_DEVICE_BAUDRATE = Baudrate.valueOf(properties.getProperty("havis.device.rf.common.serialDeviceBaudrate", "BAUDRATE_1000000"));
@@ -0,0 +1,257 @@
+package havis.device.rf.common;
+
+import havis.device.rf.configuration.AntennaPropertyList;
+import havis.device.rf.configuration.ConnectType;
+import havis.device.rf.exception.ImplementationException;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Caches values read from the hardware which rarely change, so polling them
+ * does not occupy the module. A value is read with the lock of the main
+ * controller held if it is not cached or has expired. Once a cached value is
+ * older than a ratio of its time to live, it is refreshed in the background if
+ * the lock is not held by another thread, i.e. no tags are being accessed.
+ * <p>
+ * A time to live of 0 disables the cache of a value, a negative time to live
+ * keeps the value until the cache is invalidated.
+ * </p>
+ */
+class HardwareInfoCache {
+
+	private static final Logger log = Logger.getLogger(HardwareInfoCache.class.getName());
+
+	/**
+	 * A value read from the hardware
+	 */
+	private static class Entry<V> {
+		final Object key;
+		final V value;
+		final long time;
+
+		Entry(Object key, V value, long time) {
+			this.key = key;
+			this.value = value;
+			this.time = time;
+		}
+	}
+
+	/**
+	 * A cached value depending on a key, i.e. the parameters it was read with
+	 */
+	private abstract class CachedValue<V> {
+		private final String name;
+		private final long timeToLive;
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		// guarded by this
+		private Entry<V> entry;
+		private long generation;
+
+		CachedValue(String name, long timeToLive) {
+			this.name = name;
+			this.timeToLive = timeToLive;
+		}
+
+		/**
+		 * Reads the value from the hardware, called with the lock held.
+		 */
+		abstract V read(Object key) throws ImplementationException;
+
+		V get(Object key) throws ImplementationException {
+			Entry<V> entry = getEntry(key);
+			if (entry != null) {
+				if (timeToLive > 0 && now() - entry.time >= timeToLive * refreshRatio)
+					refresh(key);
+				return entry.value;
+			}
+			Lock lock = mainController.getLock();
+			lock.lock();
+			try {
+				// the value may have been read while waiting for the lock
+				entry = getEntry(key);
+				if (entry != null)
+					return entry.value;
+				return load(key);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private synchronized Entry<V> getEntry(Object key) {
+			if (entry == null || !(key == null ? entry.key == null : key.equals(entry.key)))
+				return null;
+			if (timeToLive > 0 && now() - entry.time >= timeToLive) {
+				entry = null;
+				return null;
+			}
+			return entry;
+		}
+
+		/**
+		 * Reads and caches the value, called with the lock held.
+		 */
+		private V load(Object key) throws ImplementationException {
+			long generation;
+			synchronized (this) {
+				generation = this.generation;
+			}
+			long time = now();
+			V value = read(key);
+			synchronized (this) {
+				// values read before an invalidation are not cached
+				if (timeToLive != 0 && generation == this.generation)
+					entry = new Entry<>(key, value, time);
+			}
+			if (log.isLoggable(Level.FINER))
+				log.log(Level.FINER, "Read {0} from hardware", name);
+			return value;
+		}
+
+		private void refresh(final Object key) {
+			if (!refreshing.compareAndSet(false, true))
+				return;
+			try {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						Lock lock = mainController.getLock();
+						try {
+							// skip the refresh while the hardware is busy
+							if (lock.tryLock()) {
+								try {
+									load(key);
+								} finally {
+									lock.unlock();
+								}
+							}
+						} catch (ImplementationException e) {
+							log.log(Level.FINE, "Failed to refresh " + name, e);
+						} finally {
+							refreshing.set(false);
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// closed
+				refreshing.set(false);
+			}
+		}
+
+		synchronized void invalidate() {
+			entry = null;
+			generation++;
+		}
+	}
+
+	private final MainController mainController;
+	private final double refreshRatio;
+	private final ExecutorService executor;
+
+	private final CachedValue<AntennaPropertyList> antennaProperties;
+	private final CachedValue<String> firmwareVersion;
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param mainController
+	 *            the main controller providing the hardware manager and the
+	 *            lock
+	 * @param antennaPropertiesTtl
+	 *            the time to live of the antenna properties in milliseconds
+	 * @param firmwareVersionTtl
+	 *            the time to live of the firmware version in milliseconds
+	 * @param refreshRatio
+	 *            the ratio of the time to live after which a value is
+	 *            refreshed in the background
+	 */
+	HardwareInfoCache(MainController mainController, long antennaPropertiesTtl, long firmwareVersionTtl, double refreshRatio) {
+		this(mainController, antennaPropertiesTtl, firmwareVersionTtl, refreshRatio, Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "HardwareInfoCache");
+				thread.setDaemon(true);
+				return thread;
+			}
+		}));
+	}
+
+	HardwareInfoCache(final MainController mainController, long antennaPropertiesTtl, long firmwareVersionTtl, double refreshRatio, ExecutorService executor) {
+		this.mainController = mainController;
+		this.refreshRatio = refreshRatio;
+		this.executor = executor;
+		this.antennaProperties = new CachedValue<AntennaPropertyList>("antenna properties", antennaPropertiesTtl) {
+			@Override
+			@SuppressWarnings("unchecked")
+			AntennaPropertyList read(Object key) throws ImplementationException {
+				return mainController.getHardwareManager().getAntennaProperties((Map<Short, ConnectType>) key);
+			}
+		};
+		this.firmwareVersion = new CachedValue<String>("firmware version", firmwareVersionTtl) {
+			@Override
+			String read(Object key) throws ImplementationException {
+				return mainController.getHardwareManager().getFirmwareVersion();
+			}
+		};
+	}
+
+	/**
+	 * Returns the antenna properties. The properties are shared and must not be
+	 * modified.
+	 *
+	 * @param connectTypeMap
+	 *            the connect types of the antennas, which must not be modified
+	 *            afterwards
+	 * @return the antenna properties
+	 * @throws ImplementationException
+	 */
+	AntennaPropertyList getAntennaProperties(Map<Short, ConnectType> connectTypeMap) throws ImplementationException {
+		return antennaProperties.get(connectTypeMap);
+	}
+
+	/**
+	 * @return the firmware version
+	 * @throws ImplementationException
+	 */
+	String getFirmwareVersion() throws ImplementationException {
+		return firmwareVersion.get(null);
+	}
+
+	/**
+	 * Invalidates the antenna properties, e.g. after the antenna configuration
+	 * has been changed.
+	 */
+	void invalidateAntennaProperties() {
+		antennaProperties.invalidate();
+	}
+
+	/**
+	 * Invalidates all values, e.g. after a firmware update.
+	 */
+	void invalidate() {
+		antennaProperties.invalidate();
+		firmwareVersion.invalidate();
+	}
+
+	/**
+	 * Stops refreshing values in the background.
+	 */
+	void close() {
+		executor.shutdown();
+	}
+
+	/**
+	 * @return the current time in milliseconds
+	 */
+	long now() {
+		return System.currentTimeMillis();
+	}
+}
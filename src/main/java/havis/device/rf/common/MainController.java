@@ -3,11 +3,25 @@ package havis.device.rf.common;
 import havis.device.rf.RFConsumer;
 import havis.device.rf.capabilities.Capabilities;
 import havis.device.rf.capabilities.CapabilityType;
+import havis.device.rf.common.cache.MemoryBankCache;
+import havis.device.rf.common.commission.Assignment;
+import havis.device.rf.common.commission.Commissioner;
+import havis.device.rf.common.commission.CommissioningListener;
+import havis.device.rf.common.commission.CommissioningOptions;
+import havis.device.rf.common.filter.CompiledFilter;
+import havis.device.rf.common.filter.FilterCompiler;
+import havis.device.rf.common.optimizer.OperationListOptimizer;
+import havis.device.rf.common.optimizer.OptimizedOperationList;
+import havis.device.rf.common.optimizer.WriteElision;
+import havis.device.rf.common.stats.OperationStatistics;
 import havis.device.rf.common.tagsmooth.TagSmoothingHandler;
+import havis.device.rf.common.trace.RecordingHardwareManager;
+import havis.device.rf.common.trace.TraceWriter;
 import havis.device.rf.common.util.RFUtils;
 import havis.device.rf.configuration.Configuration;
 import havis.device.rf.configuration.ConfigurationType;
 import havis.device.rf.configuration.KeepAliveConfiguration;
+import havis.device.rf.configuration.RFConfiguration;
 import havis.device.rf.configuration.SelectionMask;
 import havis.device.rf.configuration.TagSmoothingSettings;
 import havis.device.rf.exception.ConnectionException;
@@ -17,10 +31,18 @@ import havis.device.rf.tag.Filter;
 import havis.device.rf.tag.TagData;
 import havis.device.rf.tag.TagDataList;
 import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.result.OperationResult;
+import havis.device.rf.tag.result.ReadResult;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -36,6 +58,7 @@ class MainController {
 
 	private static MainController instance;
 	private ConfigurationManager cfgManager;
+	private ConfigurationWatcher watcher;
 	private HardwareManager hwManager;
 	private RFConsumer consumer;
 	private KeepAliveThread keepAliveThread;
@@ -43,6 +66,17 @@ class MainController {
 	private Condition connectionClosed = lock.newCondition();
 	private boolean keepWaiting;
 	private TagSmoothingHandler tagSmoothingHandler;
+	private final OperationStatistics operationStatistics = new OperationStatistics();
+	private final List<MemoryBankCache> memoryBankCaches = new ArrayList<>();
+	private final WriteElision writeElision = Environment.WRITE_ELISION ? new WriteElision(memoryBankCaches) : null;
+
+	private static final int MAX_HARDWARE_FILTERS = 6;
+
+	/**
+	 * Maximum number of tags missing in a memory bank cache which are read one
+	 * by one after the inventory, instead of executing the reads on all tags
+	 */
+	private static final int MAX_UNCACHED_TAG_READS = 4;
 
 	private boolean logFilterCountWarning = true;
 
@@ -63,12 +97,23 @@ class MainController {
 	}
 
 	static void dispose() {
+		if (instance != null && instance.watcher != null)
+			instance.watcher.close();
+		if (instance != null && instance.cfgManager != null) {
+			try {
+				instance.cfgManager.close();
+			} catch (ImplementationException e) {
+				log.log(Level.WARNING, "Failed to persist configuration", e);
+			}
+		}
 		if (instance != null && instance.hwManager != null) {
 			try {
 				instance.hwManager.closeConnection();
 			} catch (ConnectionException e) {
 				// ignore
 			}
+			if (instance.hwManager instanceof RecordingHardwareManager)
+				((RecordingHardwareManager) instance.hwManager).close();
 		}
 		clazz = null;
 		instance = null;
@@ -84,10 +129,20 @@ class MainController {
 
 	private MainController() throws ImplementationException {
 		super();
+		if (Environment.TID_CACHE_SIZE > 0)
+			memoryBankCaches.add(new MemoryBankCache(RFUtils.BANK_TID, Environment.TID_CACHE_SIZE, Environment.TID_CACHE_TTL,
+					Environment.TID_CACHE_MIN_HIT_RATIO));
+		if (Environment.USER_BANK_CACHE_SIZE > 0)
+			memoryBankCaches.add(new MemoryBankCache(RFUtils.BANK_USR, Environment.USER_BANK_CACHE_SIZE, Environment.USER_BANK_CACHE_TTL,
+					Environment.USER_BANK_CACHE_MIN_HIT_RATIO));
 
 		try {
 			log.log(Level.FINER, "Creating new hardware manager instance of type {0}", clazz.getName());
 			this.hwManager = (HardwareManager) clazz.newInstance();
+			if (Environment.TRACE_FILE != null) {
+				log.log(Level.INFO, "Recording hardware manager calls to {0}", Environment.TRACE_FILE);
+				this.hwManager = RecordingHardwareManager.create(this.hwManager, new TraceWriter(new File(Environment.TRACE_FILE)));
+			}
 
 			this.hwManager.openConnection();
 
@@ -95,6 +150,9 @@ class MainController {
 			this.cfgManager = new ConfigurationManager(this);
 			this.cfgManager.loadConfiguration();
 
+			if (Environment.CONFIG_WATCH)
+				startWatcher();
+
 		} catch (Exception e) {
 			LogRecord logRec = new LogRecord(Level.SEVERE, "Failed to instantiate hardware manager: {0}");
 			logRec.setThrown(e);
@@ -159,22 +217,89 @@ class MainController {
 	}
 
 	List<Configuration> getConfiguration(ConfigurationType type, short antennaID, short gpiPort, short gpoPort) throws ImplementationException {
+		// configurations are read from the published snapshot, antenna
+		// properties are cached and only read with the lock held on a miss
+		return this.cfgManager.getConfiguration(type, antennaID);
+	}
+
+	void setConfiguration(List<Configuration> configurations) throws ImplementationException, ParameterException {
 		lock.lock();
 		try {
-			return this.cfgManager.getConfiguration(type, antennaID);
+			this.cfgManager.setConfigurations(configurations);
+
+			if (this.cfgManager.hasUnsavedChanges())
+				this.cfgManager.saveConfig();
 		} finally {
 			lock.unlock();
 		}
 	}
 
-	void setConfiguration(List<Configuration> configurations) throws ImplementationException, ParameterException {
-		lock.lock();
+	private void startWatcher() {
+		try {
+			this.watcher = new ConfigurationWatcher(new File(Environment.CUSTOM_CONFIG_FILE), this.cfgManager.getRegionDirectory(),
+					Environment.CONFIG_WATCH_DELAY, new ConfigurationWatcher.Listener() {
+						@Override
+						public void configurationChanged() {
+							reloadConfiguration();
+						}
+
+						@Override
+						public void regionChanged(String id) {
+							reloadRegion(id);
+						}
+					});
+		} catch (IOException e) {
+			LogRecord logRec = new LogRecord(Level.WARNING, "Failed to watch the configuration files, changes are not reloaded: {0}");
+			logRec.setThrown(e);
+			logRec.setParameters(new Object[] { e });
+			logRec.setLoggerName(log.getName());
+			log.log(logRec);
+		}
+	}
+
+	/**
+	 * Applies the changes of the custom configuration file, unless the file
+	 * has been written by the configuration manager itself.
+	 */
+	void reloadConfiguration() {
 		try {
-			for (Configuration cfg : configurations)
-				this.cfgManager.setConfiguration(cfg);
+			RFConfiguration config = this.cfgManager.readCustomConfig();
+			if (config == null)
+				return;
+			lock.lock();
+			try {
+				this.cfgManager.reloadConfiguration(config);
+			} finally {
+				lock.unlock();
+			}
+			log.info("Configuration reloaded");
+		} catch (ImplementationException | ParameterException e) {
+			LogRecord logRec = new LogRecord(Level.WARNING, "Failed to reload configuration: {0}");
+			logRec.setThrown(e);
+			logRec.setParameters(new Object[] { e });
+			logRec.setLoggerName(log.getName());
+			log.log(logRec);
+		}
+	}
 
+	/**
+	 * Applies the changes of a region file.
+	 * 
+	 * @param id
+	 *            the region ID
+	 */
+	void reloadRegion(String id) {
+		lock.lock();
+		try {
+			this.cfgManager.regionFileChanged(id);
 			if (this.cfgManager.hasUnsavedChanges())
 				this.cfgManager.saveConfig();
+		} catch (ImplementationException | ParameterException e) {
+			LogRecord logRec = new LogRecord(Level.WARNING, "Failed to reload region ''{0}'': {1}");
+			logRec.setThrown(e);
+			logRec.setParameters(new Object[] { id, e });
+			logRec.setLoggerName(log.getName());
+			log.log(logRec);
 		} finally {
 			lock.unlock();
 		}
@@ -191,6 +316,11 @@ class MainController {
 	}
 
 	List<TagData> execute(List<Short> antennas, List<Filter> filters, List<TagOperation> operations) throws ImplementationException, ParameterException {
+		return execute(antennas, filters, operations, false);
+	}
+
+	List<TagData> execute(List<Short> antennas, List<Filter> filters, List<TagOperation> operations, boolean forceLiveRead)
+			throws ImplementationException, ParameterException {
 		lock.lock();
 		try {
 			if ((filters == null || filters.isEmpty())) {
@@ -199,15 +329,44 @@ class MainController {
 					filters.add(RFUtils.createFilter(sMask));
 			}
 
-			if (filters.size() > 6) {
-				if (logFilterCountWarning) {
-					log.warning("Maximum number of filters is 6 but " + filters.size() + " filters have been specified. Aborting execution.");
-					logFilterCountWarning = false;
+			CompiledFilter softwareFilter = null;
+			if (filters.size() > MAX_HARDWARE_FILTERS) {
+				// the hardware may only be passed a subset of the filters if the
+				// additionally selected tags are not modified by the operations
+				List<Filter> hardwareFilters = null;
+				if (Environment.SOFTWARE_FILTERING && RFUtils.isReadOnly(operations))
+					hardwareFilters = FilterCompiler.selectHardwareFilters(filters, MAX_HARDWARE_FILTERS);
+
+				if (hardwareFilters == null) {
+					if (logFilterCountWarning) {
+						log.warning("Maximum number of filters is " + MAX_HARDWARE_FILTERS + " but " + filters.size()
+								+ " filters have been specified. Aborting execution.");
+						logFilterCountWarning = false;
+					}
+					return new ArrayList<>();
 				}
-				return new ArrayList<>();
+				log.log(Level.FINER, "Applying {0} of {1} filters in software", new Object[] { filters.size() - hardwareFilters.size(), filters.size() });
+				softwareFilter = FilterCompiler.compile(filters);
+				filters = hardwareFilters;
 			}
 
-			TagDataList tdl = this.hwManager.execute(antennas, filters, operations, consumer);
+			TagDataList tdl;
+			if (writeElision != null && WriteElision.containsWrite(operations)) {
+				final List<Short> hwAntennas = antennas;
+				final List<Filter> hwFilters = filters;
+				final boolean live = forceLiveRead;
+				tdl = writeElision.execute(new WriteElision.OperationExecutor() {
+					@Override
+					public TagDataList execute(List<TagOperation> operations) throws ImplementationException, ParameterException {
+						return executeOperations(hwAntennas, hwFilters, operations, live);
+					}
+				}, filters, operations);
+			} else
+				tdl = executeOperations(antennas, filters, operations, forceLiveRead);
+
+			if (softwareFilter != null && tdl != null)
+				softwareFilter.retain(tdl.getEntryList());
+
 			if (tagSmoothingHandler != null && tagSmoothingHandler.isEnabled()) {
 				tagSmoothingHandler.process(tdl);
 				return tagSmoothingHandler.getResultList();
@@ -219,6 +378,172 @@ class MainController {
 		}
 	}
 
+	/**
+	 * Writes assignments to tags in continuous inventory rounds. The lock is
+	 * held for each execution only, so other clients are served between the
+	 * executions of the commissioning.
+	 */
+	int commission(final List<Short> antennas, CommissioningOptions options, Iterator<Assignment> assignments, CommissioningListener listener)
+			throws ImplementationException, ParameterException {
+		if (options.getFilters().size() > MAX_HARDWARE_FILTERS)
+			throw new ParameterException("Maximum number of filters is " + MAX_HARDWARE_FILTERS + " but " + options.getFilters().size()
+					+ " filters have been specified");
+		return new Commissioner(new Commissioner.OperationExecutor() {
+			@Override
+			public TagDataList execute(List<Filter> filters, List<TagOperation> operations) throws ImplementationException, ParameterException {
+				lock.lock();
+				try {
+					return executeOperations(antennas, filters, operations, true);
+				} finally {
+					lock.unlock();
+				}
+			}
+		}, options).run(assignments, listener);
+	}
+
+	/**
+	 * Executes operations on the hardware, serving reads from the memory bank
+	 * caches and merging operations if enabled.
+	 */
+	private TagDataList executeOperations(List<Short> antennas, List<Filter> filters, List<TagOperation> operations, boolean forceLiveRead)
+			throws ImplementationException, ParameterException {
+		MemoryBankCache cache = forceLiveRead ? null : getEffectiveCache(operations);
+		if (cache != null) {
+			// an inventory is sufficient if the read words of all tags are
+			// cached, a few tags missing in the cache are selected by their PC
+			// and EPC and read separately
+			TagDataList tdl = executeHardware(antennas, filters, new ArrayList<TagOperation>(), null);
+			if (tdl != null) {
+				List<TagData> uncached = cache.servePartially(operations, tdl.getEntryList());
+				if (uncached.isEmpty())
+					return tdl;
+				if (uncached.size() <= MAX_UNCACHED_TAG_READS && filters.size() < MAX_HARDWARE_FILTERS) {
+					for (TagData tag : uncached)
+						readUncached(antennas, filters, operations, tag);
+					return tdl;
+				}
+			}
+		}
+		return executeLive(antennas, filters, operations);
+	}
+
+	/**
+	 * Reads a tag of an inventory which is missing in the cache, the results
+	 * are added to the tag.
+	 */
+	private void readUncached(List<Short> antennas, List<Filter> filters, List<TagOperation> operations, TagData tag) throws ImplementationException,
+			ParameterException {
+		TagDataList tdl = executeLive(antennas, selectTag(filters, tag), operations);
+		if (tdl != null)
+			for (TagData response : tdl.getEntryList())
+				if (Arrays.equals(tag.getEpc(), response.getEpc())) {
+					tag.getResultList().addAll(response.getResultList());
+					return;
+				}
+		// the tag did not respond again
+		for (TagOperation operation : operations) {
+			ReadResult result = new ReadResult();
+			result.setOperationId(operation.getOperationId());
+			result.setResult(ReadResult.Result.NO_RESPONSE_FROM_TAG);
+			result.setReadData(new byte[0]);
+			tag.getResultList().add(result);
+		}
+	}
+
+	/**
+	 * Creates the filters selecting a single tag of an inventory by its PC
+	 * and EPC in addition to the given filters.
+	 */
+	private List<Filter> selectTag(List<Filter> filters, TagData tag) {
+		byte[] pcAndEpc = new byte[tag.getEpc().length + 2];
+		pcAndEpc[0] = (byte) (tag.getPc() >> 8);
+		pcAndEpc[1] = (byte) tag.getPc();
+		System.arraycopy(tag.getEpc(), 0, pcAndEpc, 2, tag.getEpc().length);
+		List<Filter> tagFilters = new ArrayList<>(filters);
+		tagFilters.add(RFUtils.newFilter(RFUtils.BANK_EPC, 0x10, pcAndEpc, null, pcAndEpc.length * 8, true));
+		return tagFilters;
+	}
+
+	/**
+	 * Executes read operations of a tag individually which failed as part of
+	 * a merged read operation. The results replace the failed results of the
+	 * tag, failed results are kept if the tag does not respond again.
+	 */
+	private void retryFailedReads(List<Short> antennas, List<Filter> filters, List<TagOperation> reads, TagData tag)
+			throws ImplementationException, ParameterException {
+		TagDataList tdl = executeHardware(antennas, selectTag(filters, tag), reads, null);
+		if (tdl == null)
+			return;
+		for (TagData response : tdl.getEntryList())
+			if (Arrays.equals(tag.getEpc(), response.getEpc())) {
+				Map<String, OperationResult> results = new HashMap<>();
+				for (OperationResult result : response.getResultList())
+					results.put(result.getOperationId(), result);
+				List<OperationResult> resultList = tag.getResultList();
+				for (int i = 0; i < resultList.size(); i++) {
+					OperationResult result = results.get(resultList.get(i).getOperationId());
+					if (result != null)
+						resultList.set(i, result);
+				}
+				return;
+			}
+	}
+
+	/**
+	 * Executes operations on the hardware, merging operations if enabled, and
+	 * updates the memory bank caches with the results.
+	 */
+	private TagDataList executeLive(List<Short> antennas, List<Filter> filters, List<TagOperation> operations) throws ImplementationException,
+			ParameterException {
+		// merge read operations on the same bank and writes to consecutive
+		// words into a minimal number of air commands
+		OptimizedOperationList optimized = null;
+		int maxBlockWriteWords = Environment.MAX_BLOCK_WRITE_WORD_COUNT == null ? 0 : Environment.MAX_BLOCK_WRITE_WORD_COUNT.intValue();
+		if ((Environment.OPTIMIZE_READ_OPERATIONS || maxBlockWriteWords > 1) && operations != null) {
+			optimized = OperationListOptimizer.optimize(operations, Environment.OPTIMIZE_READ_OPERATIONS, maxBlockWriteWords);
+			if (!optimized.isOptimized())
+				optimized = null;
+		}
+
+		TagDataList tdl = executeHardware(antennas, filters, operations, optimized);
+		if (optimized != null && tdl != null && filters.size() < MAX_HARDWARE_FILTERS)
+			// a failed merged read fails all of its parts, e.g. if it covers
+			// locked words between them, so the parts are read individually
+			for (TagData tag : tdl.getEntryList()) {
+				List<TagOperation> failed = optimized.getFailedReads(tag);
+				if (!failed.isEmpty())
+					retryFailedReads(antennas, filters, failed, tag);
+			}
+		if (tdl != null)
+			for (MemoryBankCache memoryBankCache : memoryBankCaches)
+				memoryBankCache.update(operations, tdl.getEntryList());
+		return tdl;
+	}
+
+	/**
+	 * Executes operations on the hardware, merged to an optimized operation
+	 * list if given, and records the measured duration and the results in the
+	 * operation statistics.
+	 */
+	private TagDataList executeHardware(List<Short> antennas, List<Filter> filters, List<TagOperation> operations, OptimizedOperationList optimized)
+			throws ImplementationException, ParameterException {
+		long start = System.nanoTime();
+		TagDataList tdl = this.hwManager.execute(antennas, filters, optimized == null ? operations : optimized.getOperations(), consumer);
+		long duration = System.nanoTime() - start;
+		if (optimized != null && tdl != null)
+			optimized.restore(tdl.getEntryList());
+		if (Environment.OPERATION_STATISTICS)
+			operationStatistics.record(operations, tdl == null ? null : tdl.getEntryList(), duration);
+		return tdl;
+	}
+
+	private MemoryBankCache getEffectiveCache(List<TagOperation> operations) {
+		for (MemoryBankCache cache : memoryBankCaches)
+			if (cache.isEffective(operations))
+				return cache;
+		return null;
+	}
+
 	List<Capabilities> getCapabilities(CapabilityType type) throws ConnectionException, ImplementationException {
 		lock.lock();
 		try {
@@ -251,12 +576,28 @@ class MainController {
 		}
 	}
 
+	OperationStatistics getOperationStatistics() {
+		return this.operationStatistics;
+	}
+
+	long getElidedWriteCount() {
+		return writeElision == null ? 0 : writeElision.getElidedWriteCount();
+	}
+
+	Lock getLock() {
+		return lock;
+	}
+
 	HardwareManager getHardwareManager() {
 		return this.hwManager;
 	}
 
 	void installFirmware() throws ImplementationException {
-		this.hwManager.installFirmware();
+		try {
+			this.hwManager.installFirmware();
+		} finally {
+			this.cfgManager.invalidateHardwareInfo();
+		}
 	}
 
 	void restartKeepAliveThread(KeepAliveConfiguration config) {
@@ -0,0 +1,424 @@
+package havis.device.rf.common;
+
+import havis.device.rf.configuration.AntennaConfiguration;
+import havis.device.rf.configuration.AntennaProperties;
+import havis.device.rf.configuration.AntennaPropertyList;
+import havis.device.rf.configuration.ConnectType;
+import havis.device.rf.configuration.InventorySettings;
+import havis.device.rf.configuration.KeepAliveConfiguration;
+import havis.device.rf.configuration.RssiFilter;
+import havis.device.rf.configuration.SelectionMask;
+import havis.device.rf.configuration.SingulationControl;
+import havis.device.rf.configuration.TagSmoothingSettings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Provides read-only views of configuration objects, which are shared by all
+ * readers of a configuration snapshot. The views are created once when a
+ * snapshot is published, so reading the configuration does not copy. The
+ * setters of a view throw an {@link UnsupportedOperationException}, the
+ * {@link Object#clone()} method of a view returns a modifiable copy.
+ */
+final class ReadOnlyConfigurations {
+
+	private static final String MSG_READ_ONLY = "Configuration is read-only, modify a copy instead";
+
+	private ReadOnlyConfigurations() {
+	}
+
+	/**
+	 * @param aCfg
+	 *            the antenna configuration
+	 * @return a read-only view of a copy of the antenna configuration
+	 */
+	static AntennaConfiguration antennaConfiguration(AntennaConfiguration aCfg) {
+		return aCfg instanceof ReadOnlyAntennaConfiguration ? aCfg : new ReadOnlyAntennaConfiguration(aCfg);
+	}
+
+	/**
+	 * @param aProps
+	 *            the antenna properties
+	 * @return a read-only view of a copy of the antenna properties
+	 */
+	static AntennaProperties antennaProperties(AntennaProperties aProps) {
+		return aProps instanceof ReadOnlyAntennaProperties ? aProps : new ReadOnlyAntennaProperties(aProps);
+	}
+
+	/**
+	 * @param apl
+	 *            the antenna property list
+	 * @return a new list with read-only views of the antenna properties
+	 */
+	static AntennaPropertyList antennaPropertyList(AntennaPropertyList apl) {
+		AntennaPropertyList result = new AntennaPropertyList();
+		List<AntennaProperties> entries = new ArrayList<>();
+		for (AntennaProperties aProps : apl.getEntryList())
+			entries.add(antennaProperties(aProps));
+		result.setEntryList(Collections.unmodifiableList(entries));
+		return result;
+	}
+
+	/**
+	 * @param kaConfig
+	 *            the keep-alive configuration
+	 * @return a read-only view of a copy of the keep-alive configuration
+	 */
+	static KeepAliveConfiguration keepAliveConfiguration(KeepAliveConfiguration kaConfig) {
+		return kaConfig instanceof ReadOnlyKeepAliveConfiguration ? kaConfig : new ReadOnlyKeepAliveConfiguration(kaConfig);
+	}
+
+	/**
+	 * @param settings
+	 *            the inventory settings
+	 * @return a read-only view of a copy of the inventory settings
+	 */
+	static InventorySettings inventorySettings(InventorySettings settings) {
+		return settings instanceof ReadOnlyInventorySettings ? settings : new ReadOnlyInventorySettings(settings);
+	}
+
+	/**
+	 * @param mask
+	 *            the selection mask
+	 * @return a read-only view of a copy of the selection mask
+	 */
+	static SelectionMask selectionMask(SelectionMask mask) {
+		return mask instanceof ReadOnlySelectionMask ? mask : new ReadOnlySelectionMask(mask);
+	}
+
+	private static AntennaConfiguration copy(AntennaConfiguration aCfg, AntennaConfiguration copy) {
+		copy.setId(aCfg.getId());
+		copy.setReceiveSensitivity(aCfg.getReceiveSensitivity());
+		copy.setTransmitPower(aCfg.getTransmitPower());
+		copy.setHopTableID(aCfg.getHopTableID());
+		copy.setChannelIndex(aCfg.getChannelIndex());
+		copy.setConnect(aCfg.getConnect());
+		return copy;
+	}
+
+	private static AntennaProperties copy(AntennaProperties aProps, AntennaProperties copy) {
+		copy.setId(aProps.getId());
+		copy.setConnected(aProps.isConnected());
+		copy.setGain(aProps.getGain());
+		return copy;
+	}
+
+	private static KeepAliveConfiguration copy(KeepAliveConfiguration kaConfig, KeepAliveConfiguration copy) {
+		copy.setEnable(kaConfig.isEnable());
+		copy.setInterval(kaConfig.getInterval());
+		return copy;
+	}
+
+	private static RssiFilter copy(RssiFilter filter, RssiFilter copy) {
+		if (filter == null)
+			return null;
+		copy.setMinRssi(filter.getMinRssi());
+		copy.setMaxRssi(filter.getMaxRssi());
+		return copy;
+	}
+
+	private static SingulationControl copy(SingulationControl control, SingulationControl copy) {
+		if (control == null)
+			return null;
+		copy.setSession(control.getSession());
+		copy.setQValue(control.getQValue());
+		copy.setRounds(control.getRounds());
+		copy.setTransitTime(control.getTransitTime());
+		return copy;
+	}
+
+	private static TagSmoothingSettings copy(TagSmoothingSettings smoothing, TagSmoothingSettings copy) {
+		if (smoothing == null)
+			return null;
+		copy.setEnabled(smoothing.isEnabled());
+		copy.setGlimpsedTimeout(smoothing.getGlimpsedTimeout());
+		copy.setObservedTimeThreshold(smoothing.getObservedTimeThreshold());
+		copy.setObservedCountThreshold(smoothing.getObservedCountThreshold());
+		copy.setLostTimeout(smoothing.getLostTimeout());
+		return copy;
+	}
+
+	private static SelectionMask copy(SelectionMask mask, SelectionMask copy) {
+		copy.setBank(mask.getBank());
+		copy.setBitOffset(mask.getBitOffset());
+		copy.setBitLength(mask.getBitLength());
+		copy.setMask(mask.getMask() == null ? null : mask.getMask().clone());
+		return copy;
+	}
+
+	private static InventorySettings copy(InventorySettings settings, InventorySettings copy) {
+		copy.setRssiFilter(copy(settings.getRssiFilter(), new RssiFilter()));
+		copy.setSingulationControl(copy(settings.getSingulationControl(), new SingulationControl()));
+		copy.setTagSmoothing(copy(settings.getTagSmoothing(), new TagSmoothingSettings()));
+		for (SelectionMask mask : settings.getSelectionMasks())
+			copy.getSelectionMasks().add(copy(mask, new SelectionMask()));
+		return copy;
+	}
+
+	private static class ReadOnlyAntennaConfiguration extends AntennaConfiguration {
+
+		ReadOnlyAntennaConfiguration(AntennaConfiguration aCfg) {
+			super.setId(aCfg.getId());
+			super.setReceiveSensitivity(aCfg.getReceiveSensitivity());
+			super.setTransmitPower(aCfg.getTransmitPower());
+			super.setHopTableID(aCfg.getHopTableID());
+			super.setChannelIndex(aCfg.getChannelIndex());
+			super.setConnect(aCfg.getConnect());
+		}
+
+		@Override
+		public void setId(short v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setReceiveSensitivity(Short v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setTransmitPower(Short v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setHopTableID(Short v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setChannelIndex(Short v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setConnect(ConnectType v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public AntennaConfiguration clone() {
+			return copy(this, new AntennaConfiguration());
+		}
+	}
+
+	private static class ReadOnlyAntennaProperties extends AntennaProperties {
+
+		ReadOnlyAntennaProperties(AntennaProperties aProps) {
+			super.setId(aProps.getId());
+			super.setConnected(aProps.isConnected());
+			super.setGain(aProps.getGain());
+		}
+
+		@Override
+		public void setId(short v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setConnected(boolean v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setGain(short v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public AntennaProperties clone() {
+			return copy(this, new AntennaProperties());
+		}
+	}
+
+	private static class ReadOnlyKeepAliveConfiguration extends KeepAliveConfiguration {
+
+		ReadOnlyKeepAliveConfiguration(KeepAliveConfiguration kaConfig) {
+			super.setEnable(kaConfig.isEnable());
+			super.setInterval(kaConfig.getInterval());
+		}
+
+		@Override
+		public void setEnable(boolean v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setInterval(int v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public KeepAliveConfiguration clone() {
+			return copy(this, new KeepAliveConfiguration());
+		}
+	}
+
+	private static class ReadOnlyInventorySettings extends InventorySettings {
+
+		private final List<SelectionMask> selectionMasks;
+
+		ReadOnlyInventorySettings(InventorySettings settings) {
+			if (settings.getRssiFilter() != null)
+				super.setRssiFilter(new ReadOnlyRssiFilter(settings.getRssiFilter()));
+			if (settings.getSingulationControl() != null)
+				super.setSingulationControl(new ReadOnlySingulationControl(settings.getSingulationControl()));
+			if (settings.getTagSmoothing() != null)
+				super.setTagSmoothing(new ReadOnlyTagSmoothingSettings(settings.getTagSmoothing()));
+			List<SelectionMask> selectionMasks = new ArrayList<>();
+			for (SelectionMask mask : settings.getSelectionMasks())
+				selectionMasks.add(selectionMask(mask));
+			this.selectionMasks = Collections.unmodifiableList(selectionMasks);
+		}
+
+		@Override
+		public void setRssiFilter(RssiFilter v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setSingulationControl(SingulationControl v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setTagSmoothing(TagSmoothingSettings v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public List<SelectionMask> getSelectionMasks() {
+			return selectionMasks;
+		}
+
+		@Override
+		public InventorySettings clone() {
+			return copy(this, new InventorySettings());
+		}
+	}
+
+	private static class ReadOnlyRssiFilter extends RssiFilter {
+
+		ReadOnlyRssiFilter(RssiFilter filter) {
+			super.setMinRssi(filter.getMinRssi());
+			super.setMaxRssi(filter.getMaxRssi());
+		}
+
+		@Override
+		public void setMinRssi(short v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setMaxRssi(short v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+	}
+
+	private static class ReadOnlySingulationControl extends SingulationControl {
+
+		ReadOnlySingulationControl(SingulationControl control) {
+			super.setSession(control.getSession());
+			super.setQValue(control.getQValue());
+			super.setRounds(control.getRounds());
+			super.setTransitTime(control.getTransitTime());
+		}
+
+		@Override
+		public void setSession(short v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setQValue(short v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setRounds(int v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setTransitTime(int v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+	}
+
+	private static class ReadOnlyTagSmoothingSettings extends TagSmoothingSettings {
+
+		ReadOnlyTagSmoothingSettings(TagSmoothingSettings smoothing) {
+			super.setEnabled(smoothing.isEnabled());
+			super.setGlimpsedTimeout(smoothing.getGlimpsedTimeout());
+			super.setObservedTimeThreshold(smoothing.getObservedTimeThreshold());
+			super.setObservedCountThreshold(smoothing.getObservedCountThreshold());
+			super.setLostTimeout(smoothing.getLostTimeout());
+		}
+
+		@Override
+		public void setEnabled(boolean v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setGlimpsedTimeout(Integer v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setObservedTimeThreshold(Integer v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setObservedCountThreshold(Integer v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setLostTimeout(Integer v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+	}
+
+	private static class ReadOnlySelectionMask extends SelectionMask {
+
+		ReadOnlySelectionMask(SelectionMask mask) {
+			super.setBank(mask.getBank());
+			super.setBitOffset(mask.getBitOffset());
+			super.setBitLength(mask.getBitLength());
+			super.setMask(mask.getMask() == null ? null : mask.getMask().clone());
+		}
+
+		@Override
+		public void setBank(short v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setBitOffset(short v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setBitLength(short v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		@Override
+		public void setMask(byte[] v) {
+			throw new UnsupportedOperationException(MSG_READ_ONLY);
+		}
+
+		/**
+		 * @return a copy of the mask
+		 */
+		@Override
+		public byte[] getMask() {
+			byte[] mask = super.getMask();
+			return mask == null ? null : mask.clone();
+		}
+	}
+}
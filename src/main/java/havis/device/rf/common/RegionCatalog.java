@@ -0,0 +1,246 @@
+package havis.device.rf.common;
+
+import havis.device.rf.common.util.SnapshotSerializer;
+import havis.device.rf.configuration.RFRegion;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * A read-only map of the supported regions by ID. Only the IDs are known on
+ * creation, a region is loaded from its resource when it is requested for the
+ * first time. Loaded regions are softly referenced, so regions which are not
+ * in use can be reclaimed and are loaded again on the next request. Regions
+ * which fail to load are logged once and are no longer contained in the map.
+ */
+class RegionCatalog extends AbstractMap<String, RFRegion> {
+
+	private static final Logger log = Logger.getLogger(RegionCatalog.class.getName());
+
+	private final String path;
+	private final ClassLoader classLoader;
+	private final Set<String> ids;
+	private final ConcurrentMap<String, SoftReference<RFRegion>> regions = new ConcurrentHashMap<>();
+	private final Set<String> failed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private final Set<String> keySet = new AbstractSet<String>() {
+		@Override
+		public Iterator<String> iterator() {
+			final Iterator<String> iterator = ids.iterator();
+			return new Iterator<String>() {
+				private String next = advance();
+
+				private String advance() {
+					while (iterator.hasNext()) {
+						String id = iterator.next();
+						if (!failed.contains(id))
+							return id;
+					}
+					return null;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return next != null;
+				}
+
+				@Override
+				public String next() {
+					if (next == null)
+						throw new NoSuchElementException();
+					String id = next;
+					next = advance();
+					return id;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return containsKey(o);
+		}
+
+		@Override
+		public int size() {
+			return ids.size() - failed.size();
+		}
+	};
+
+	private final Set<Map.Entry<String, RFRegion>> entrySet = new AbstractSet<Map.Entry<String, RFRegion>>() {
+		@Override
+		public Iterator<Map.Entry<String, RFRegion>> iterator() {
+			final Iterator<String> iterator = ids.iterator();
+			return new Iterator<Map.Entry<String, RFRegion>>() {
+				private Map.Entry<String, RFRegion> next = advance();
+
+				private Map.Entry<String, RFRegion> advance() {
+					while (iterator.hasNext()) {
+						String id = iterator.next();
+						RFRegion region = get(id);
+						if (region != null)
+							return new SimpleImmutableEntry<>(id, region);
+					}
+					return null;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return next != null;
+				}
+
+				@Override
+				public Map.Entry<String, RFRegion> next() {
+					if (next == null)
+						throw new NoSuchElementException();
+					Map.Entry<String, RFRegion> entry = next;
+					next = advance();
+					return entry;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return keySet.size();
+		}
+	};
+
+	/**
+	 * Creates a catalog.
+	 *
+	 * @param path
+	 *            the resource path of the region files
+	 * @param ids
+	 *            the IDs of the supported regions
+	 * @param classLoader
+	 *            the class loader of the region files
+	 */
+	RegionCatalog(String path, Collection<String> ids, ClassLoader classLoader) {
+		this.path = path;
+		this.ids = Collections.unmodifiableSet(new LinkedHashSet<>(ids));
+		this.classLoader = classLoader;
+	}
+
+	@Override
+	public RFRegion get(Object key) {
+		if (!containsKey(key))
+			return null;
+		String id = (String) key;
+		SoftReference<RFRegion> reference = regions.get(id);
+		RFRegion region = reference == null ? null : reference.get();
+		if (region == null) {
+			region = load(id);
+			if (region == null) {
+				failed.add(id);
+				return null;
+			}
+			regions.put(id, new SoftReference<>(region));
+		}
+		return region;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return ids.contains(key) && !failed.contains(key);
+	}
+
+	@Override
+	public Set<String> keySet() {
+		return keySet;
+	}
+
+	@Override
+	public Set<Map.Entry<String, RFRegion>> entrySet() {
+		return entrySet;
+	}
+
+	/**
+	 * Removes a loaded region, e.g. after its file has been changed. The
+	 * region is loaded again on the next request, even if it failed to load
+	 * before.
+	 *
+	 * @param id
+	 *            the region ID
+	 */
+	void invalidate(String id) {
+		regions.remove(id);
+		failed.remove(id);
+	}
+
+	/**
+	 * @return the directory of the region files or null if the region files
+	 *         are not located in a directory, e.g. in a JAR file
+	 */
+	File getDirectory() {
+		URL url = classLoader.getResource(path);
+		if (url == null || !"file".equals(url.getProtocol()))
+			return null;
+		try {
+			return new File(url.toURI());
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the number of regions currently loaded
+	 */
+	int getLoadedCount() {
+		int count = 0;
+		for (SoftReference<RFRegion> reference : regions.values())
+			if (reference.get() != null)
+				count++;
+		return count;
+	}
+
+	/**
+	 * Loads a region.
+	 *
+	 * @param id
+	 *            the region ID
+	 * @return the region or null if it cannot be loaded
+	 */
+	RFRegion load(String id) {
+		String regionFile = path + id + ".json";
+		try {
+			RFRegion region = SnapshotSerializer.deserialize(classLoader.getResourceAsStream(regionFile), RFRegion.class,
+					SnapshotSerializer.getSnapshotFile(Environment.SNAPSHOT_PATH, regionFile));
+			log.log(Level.FINER, "Region {0} loaded", id);
+			return region;
+		} catch (IOException e) {
+			LogRecord logRec = new LogRecord(Level.SEVERE, "Failed to read region ''{0}'': {1}");
+			logRec.setThrown(e);
+			logRec.setParameters(new Object[] { id, e });
+			logRec.setLoggerName(log.getName());
+			log.log(logRec);
+			return null;
+		}
+	}
+}
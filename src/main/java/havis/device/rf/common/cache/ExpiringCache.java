@@ -0,0 +1,159 @@
+package havis.device.rf.common.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A thread-safe map of a bounded number of entries which expire after a fixed
+ * time to live. If the cache is full, the least recently used entry is
+ * removed.
+ *
+ * @param <K>
+ *            the key type
+ * @param <V>
+ *            the value type
+ */
+public class ExpiringCache<K, V> {
+
+	private static class CacheEntry<V> {
+		final V value;
+		final long expires;
+
+		CacheEntry(V value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+
+	private final int capacity;
+	private final long timeToLive;
+	private final LinkedHashMap<K, CacheEntry<V>> entries;
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param capacity
+	 *            the maximum number of entries
+	 * @param timeToLive
+	 *            the time to live of an entry in milliseconds, entries never
+	 *            expire if less than 1
+	 */
+	public ExpiringCache(final int capacity, long timeToLive) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		this.capacity = capacity;
+		this.timeToLive = timeToLive;
+		this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * @return the maximum number of entries
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the time to live of an entry in milliseconds
+	 */
+	public long getTimeToLive() {
+		return timeToLive;
+	}
+
+	/**
+	 * Returns the value of a key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the value or null if the key is unknown or the entry has expired
+	 */
+	public synchronized V get(K key) {
+		CacheEntry<V> entry = entries.get(key);
+		if (entry == null)
+			return null;
+		if (isExpired(entry, now())) {
+			entries.remove(key);
+			return null;
+		}
+		return entry.value;
+	}
+
+	/**
+	 * Sets the value of a key. The time to live of the entry starts again.
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 */
+	public synchronized void put(K key, V value) {
+		entries.put(key, new CacheEntry<>(value, timeToLive > 0 ? now() + timeToLive : Long.MAX_VALUE));
+	}
+
+	/**
+	 * Removes the entry of a key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the removed value or null
+	 */
+	public synchronized V remove(K key) {
+		CacheEntry<V> entry = entries.remove(key);
+		return entry == null ? null : entry.value;
+	}
+
+	/**
+	 * Returns the values of all entries which have not expired.
+	 *
+	 * @return a copy of the values
+	 */
+	public synchronized List<V> values() {
+		long now = now();
+		List<V> values = new ArrayList<>(entries.size());
+		for (CacheEntry<V> entry : entries.values())
+			if (!isExpired(entry, now))
+				values.add(entry.value);
+		return values;
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Removes all expired entries and returns the number of remaining entries.
+	 *
+	 * @return the number of entries
+	 */
+	public synchronized int size() {
+		long now = now();
+		for (Iterator<CacheEntry<V>> it = entries.values().iterator(); it.hasNext();)
+			if (isExpired(it.next(), now))
+				it.remove();
+		return entries.size();
+	}
+
+	private static boolean isExpired(CacheEntry<?> entry, long now) {
+		return entry.expires <= now;
+	}
+
+	/**
+	 * @return the current time in milliseconds
+	 */
+	long now() {
+		return System.currentTimeMillis();
+	}
+}
@@ -0,0 +1,403 @@
+package havis.device.rf.common.cache;
+
+import havis.device.rf.common.util.Epc;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.operation.KillOperation;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.operation.WriteOperation;
+import havis.device.rf.tag.result.KillResult;
+import havis.device.rf.tag.result.OperationResult;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the words of a memory bank of tags by EPC, so an operation list
+ * consisting of reads of the bank can be answered by an inventory without
+ * accessing the tags.
+ * <p>
+ * The cache is updated with the data of successful reads and the words
+ * written by write operations (write-through). As a tag is identified by its
+ * EPC only, the cache must not be used for tag populations with duplicate
+ * EPCs. Entries of a tag are removed if its EPC is written or the tag is
+ * killed. Whether serving reads from the cache is worth an additional
+ * inventory is decided from the ratio of tags found in the cache during the
+ * recent executions.
+ * </p>
+ */
+public class MemoryBankCache {
+
+	/**
+	 * Weight of the last execution in the hit ratio
+	 */
+	private static final double HIT_RATIO_WEIGHT = 0.5;
+
+	/**
+	 * Consecutive words of a memory bank
+	 */
+	static class BankData {
+		final int offset;
+		final byte[] data;
+		final boolean complete;
+
+		/**
+		 * @param offset
+		 *            the first word
+		 * @param data
+		 *            the words
+		 * @param complete
+		 *            whether the data extends to the end of the bank
+		 */
+		BankData(int offset, byte[] data, boolean complete) {
+			this.offset = offset;
+			this.data = data;
+			this.complete = complete;
+		}
+
+		int end() {
+			return offset + data.length / 2;
+		}
+
+		boolean covers(ReadOperation operation) {
+			int offset = operation.getOffset() & 0xFFFF;
+			if (offset < this.offset)
+				return false;
+			if (operation.getLength() == 0)
+				return complete && offset <= end();
+			return offset + (operation.getLength() & 0xFFFF) <= end();
+		}
+
+		byte[] read(ReadOperation operation) {
+			int from = ((operation.getOffset() & 0xFFFF) - offset) * 2;
+			int to = operation.getLength() == 0 ? data.length : from + (operation.getLength() & 0xFFFF) * 2;
+			byte[] result = new byte[to - from];
+			System.arraycopy(data, from, result, 0, result.length);
+			return result;
+		}
+
+		/**
+		 * @return true if the data contains the words at the offset
+		 */
+		boolean holds(int offset, byte[] words) {
+			if (offset < this.offset || offset + words.length / 2 > end())
+				return false;
+			int from = (offset - this.offset) * 2;
+			for (int i = 0; i < words.length; i++)
+				if (data[from + i] != words[i])
+					return false;
+			return true;
+		}
+
+		/**
+		 * @return true if the words of both data overlap or are adjacent
+		 */
+		boolean touches(BankData other) {
+			return other.offset <= end() && offset <= other.end();
+		}
+
+		/**
+		 * Combines two adjacent or overlapping data, the words of the other
+		 * data replace the words of this data.
+		 */
+		BankData merge(BankData other) {
+			int start = Math.min(offset, other.offset);
+			int end = Math.max(end(), other.end());
+			byte[] merged = new byte[(end - start) * 2];
+			System.arraycopy(data, 0, merged, (offset - start) * 2, data.length);
+			System.arraycopy(other.data, 0, merged, (other.offset - start) * 2, other.data.length);
+			return new BankData(start, merged, other.end() == end && other.complete || end() == end && complete);
+		}
+	}
+
+	private final short bank;
+	private final ExpiringCache<Epc, BankData> cache;
+	private final double minHitRatio;
+	private double hitRatio;
+
+	/**
+	 * Creates a memory bank cache.
+	 *
+	 * @param bank
+	 *            the memory bank
+	 * @param capacity
+	 *            the maximum number of tags
+	 * @param timeToLive
+	 *            the time to live of an entry in milliseconds
+	 * @param minHitRatio
+	 *            the minimum ratio of cached tags of the recent executions to
+	 *            serve reads from the cache
+	 */
+	public MemoryBankCache(short bank, int capacity, long timeToLive, double minHitRatio) {
+		this(bank, new ExpiringCache<Epc, BankData>(capacity, timeToLive), minHitRatio);
+	}
+
+	MemoryBankCache(short bank, ExpiringCache<Epc, BankData> cache, double minHitRatio) {
+		this.bank = bank;
+		this.cache = cache;
+		this.minHitRatio = minHitRatio;
+	}
+
+	/**
+	 * @return the cached memory bank
+	 */
+	public short getBank() {
+		return bank;
+	}
+
+	/**
+	 * Returns whether an operation list consists of reads of the cached bank
+	 * only.
+	 *
+	 * @param operations
+	 *            the operations
+	 * @return true if the list is not empty and contains reads of the cached
+	 *         bank only
+	 */
+	public boolean isReadList(List<TagOperation> operations) {
+		if (operations == null || operations.isEmpty())
+			return false;
+		for (TagOperation operation : operations)
+			if (!(operation instanceof ReadOperation) || ((ReadOperation) operation).getBank() != bank)
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return the ratio of tags found in the cache during the recent
+	 *         executions
+	 */
+	public synchronized double getHitRatio() {
+		return hitRatio;
+	}
+
+	/**
+	 * Returns whether reads should be served from the cache, which is the case
+	 * if the operation list consists of reads of the cached bank only and
+	 * enough tags of the recent executions have been found in the cache.
+	 *
+	 * @param operations
+	 *            the operations
+	 * @return true if the operations should be served from the cache
+	 */
+	public synchronized boolean isEffective(List<TagOperation> operations) {
+		return isHitRatioReached() && isReadList(operations);
+	}
+
+	/**
+	 * @return true if enough tags of the recent executions have been found in
+	 *         the cache
+	 */
+	public synchronized boolean isHitRatioReached() {
+		return hitRatio >= minHitRatio;
+	}
+
+	/**
+	 * Returns whether any tag in the cache holds words, i.e. whether writing
+	 * the words may be redundant for a tag.
+	 *
+	 * @param offset
+	 *            the first word
+	 * @param data
+	 *            the words
+	 * @return true if the words are cached for at least one tag
+	 */
+	public synchronized boolean isHeldByAny(int offset, byte[] data) {
+		if (data.length < 2)
+			return false;
+		for (BankData cached : cache.values())
+			if (cached.holds(offset, data))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns cached words of a tag.
+	 *
+	 * @param epc
+	 *            the EPC of the tag
+	 * @param offset
+	 *            the first word
+	 * @param length
+	 *            the number of words
+	 * @return the words or null if not all words are cached
+	 */
+	public synchronized byte[] read(Epc epc, int offset, int length) {
+		BankData data = epc == null ? null : cache.get(epc);
+		if (data == null || length <= 0 || offset < data.offset || offset + length > data.end())
+			return null;
+		byte[] result = new byte[length * 2];
+		System.arraycopy(data.data, (offset - data.offset) * 2, result, 0, result.length);
+		return result;
+	}
+
+	/**
+	 * Adds the results of reads to the tags of an inventory if the data of
+	 * all tags is cached.
+	 *
+	 * @param operations
+	 *            the read operations
+	 * @param tags
+	 *            the tags of an inventory without operations
+	 * @return true if the results have been added, false if at least one tag
+	 *         is not cached and the tags have not been modified
+	 */
+	public synchronized boolean serve(List<TagOperation> operations, List<TagData> tags) {
+		Map<TagData, BankData> found = new IdentityHashMap<>();
+		for (TagData tag : tags) {
+			BankData data = lookup(tag);
+			if (data != null && covers(data, operations))
+				found.put(tag, data);
+		}
+		updateHitRatio(found.size(), tags.size());
+		if (found.size() < tags.size())
+			return false;
+
+		for (TagData tag : tags)
+			addResults(tag, found.get(tag), operations);
+		return true;
+	}
+
+	/**
+	 * Adds the results of reads to the tags of an inventory which are cached.
+	 *
+	 * @param operations
+	 *            the read operations
+	 * @param tags
+	 *            the tags of an inventory without operations
+	 * @return the tags which are not cached and have not been modified
+	 */
+	public synchronized List<TagData> servePartially(List<TagOperation> operations, List<TagData> tags) {
+		List<TagData> uncached = new ArrayList<>();
+		for (TagData tag : tags) {
+			BankData data = lookup(tag);
+			if (data != null && covers(data, operations))
+				addResults(tag, data, operations);
+			else
+				uncached.add(tag);
+		}
+		updateHitRatio(tags.size() - uncached.size(), tags.size());
+		return uncached;
+	}
+
+	private static void addResults(TagData tag, BankData data, List<TagOperation> operations) {
+		for (TagOperation operation : operations) {
+			ReadResult result = new ReadResult();
+			result.setOperationId(operation.getOperationId());
+			result.setResult(ReadResult.Result.SUCCESS);
+			result.setReadData(data.read((ReadOperation) operation));
+			tag.getResultList().add(result);
+		}
+	}
+
+	/**
+	 * Updates the cache with the results of an execution. The data of
+	 * successful reads and the written words of write operations are stored,
+	 * tags with a written EPC bank or killed tags are removed.
+	 *
+	 * @param operations
+	 *            the executed operations
+	 * @param tags
+	 *            the tags with the results of the operations
+	 */
+	public synchronized void update(List<TagOperation> operations, List<TagData> tags) {
+		if (operations == null || operations.isEmpty() || tags == null)
+			return;
+		Map<String, TagOperation> operationsById = new HashMap<>();
+		for (TagOperation operation : operations)
+			operationsById.put(operation.getOperationId(), operation);
+
+		boolean readList = isReadList(operations);
+		int hits = 0;
+		for (TagData tag : tags) {
+			if (tag.getEpc() == null)
+				continue;
+			Epc epc = Epc.valueOf(tag.getEpc());
+			BankData cached = cache.get(epc);
+			if (readList && cached != null && covers(cached, operations))
+				hits++;
+
+			for (OperationResult result : tag.getResultList()) {
+				TagOperation operation = operationsById.get(result.getOperationId());
+				if (isEpcChanged(operation, result)) {
+					// the EPC no longer identifies this tag
+					cache.remove(epc);
+					break;
+				}
+				BankData data = getData(operation, result);
+				if (data == null)
+					continue;
+				if (cached == null || cached.touches(data))
+					cached = cached == null ? data : cached.merge(data);
+				else if (operation instanceof ReadOperation)
+					// the most recently read words replace words not adjacent
+					cached = data;
+				else
+					continue;
+				cache.put(epc, cached);
+			}
+		}
+		if (readList)
+			updateHitRatio(hits, tags.size());
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public synchronized void clear() {
+		cache.clear();
+		hitRatio = 0;
+	}
+
+	/**
+	 * Returns the words of the cached bank known from the result of an
+	 * operation.
+	 */
+	private BankData getData(TagOperation operation, OperationResult result) {
+		if (operation instanceof ReadOperation && result instanceof ReadResult) {
+			ReadOperation read = (ReadOperation) operation;
+			ReadResult readResult = (ReadResult) result;
+			if (read.getBank() == bank && readResult.getResult() == ReadResult.Result.SUCCESS && readResult.getReadData() != null)
+				return new BankData(read.getOffset() & 0xFFFF, readResult.getReadData().clone(), read.getLength() == 0);
+		} else if (operation instanceof WriteOperation && result instanceof WriteResult) {
+			WriteOperation write = (WriteOperation) operation;
+			int written = Math.min(((WriteResult) result).getWordsWritten() & 0xFFFF, write.getData() == null ? 0 : write.getData().length / 2);
+			if (write.getBank() == bank && written > 0) {
+				byte[] data = new byte[written * 2];
+				System.arraycopy(write.getData(), 0, data, 0, data.length);
+				return new BankData(write.getOffset() & 0xFFFF, data, false);
+			}
+		}
+		return null;
+	}
+
+	private BankData lookup(TagData tag) {
+		return tag.getEpc() == null ? null : cache.get(Epc.valueOf(tag.getEpc()));
+	}
+
+	private static boolean covers(BankData data, List<TagOperation> operations) {
+		for (TagOperation operation : operations)
+			if (!data.covers((ReadOperation) operation))
+				return false;
+		return true;
+	}
+
+	private static boolean isEpcChanged(TagOperation operation, OperationResult result) {
+		if (operation instanceof WriteOperation && result instanceof WriteResult)
+			return ((WriteOperation) operation).getBank() == RFUtils.BANK_EPC && ((WriteResult) result).getWordsWritten() > 0;
+		if (operation instanceof KillOperation && result instanceof KillResult)
+			return ((KillResult) result).getResult() == KillResult.Result.SUCCESS;
+		return false;
+	}
+
+	private void updateHitRatio(int hits, int tags) {
+		if (tags > 0)
+			hitRatio = hitRatio * (1 - HIT_RATIO_WEIGHT) + (double) hits / tags * HIT_RATIO_WEIGHT;
+	}
+}
@@ -0,0 +1,65 @@
+package havis.device.rf.common.commission;
+
+import havis.device.rf.common.util.RFUtils;
+
+/**
+ * The data to write to a single tag during commissioning.
+ */
+public class Assignment {
+
+	/**
+	 * Maximum number of EPC words which can be specified by the length bits
+	 * of the PC
+	 */
+	public static final int MAX_EPC_WORDS = 31;
+
+	private final byte[] epc;
+	private final byte[] userData;
+
+	/**
+	 * Creates an assignment of an EPC.
+	 *
+	 * @param epc
+	 *            the EPC
+	 */
+	public Assignment(byte[] epc) {
+		this(epc, null);
+	}
+
+	/**
+	 * Creates an assignment of an EPC and the content of the user memory.
+	 *
+	 * @param epc
+	 *            the EPC of complete words
+	 * @param userData
+	 *            the data of complete words to write to the user memory
+	 *            starting with the first word, may be null
+	 */
+	public Assignment(byte[] epc, byte[] userData) {
+		if (epc == null || epc.length == 0 || epc.length % 2 != 0 || epc.length / 2 > MAX_EPC_WORDS)
+			throw new IllegalArgumentException("EPC must consist of 1 to " + MAX_EPC_WORDS + " words");
+		if (userData != null && (userData.length == 0 || userData.length % 2 != 0))
+			throw new IllegalArgumentException("User data must consist of complete words");
+		this.epc = epc;
+		this.userData = userData;
+	}
+
+	/**
+	 * @return the EPC
+	 */
+	public byte[] getEpc() {
+		return epc;
+	}
+
+	/**
+	 * @return the data of the user memory or null
+	 */
+	public byte[] getUserData() {
+		return userData;
+	}
+
+	@Override
+	public String toString() {
+		return "Assignment [epc=" + RFUtils.bytesToHex(epc) + (userData == null ? "" : ", userData=" + RFUtils.bytesToHex(userData)) + "]";
+	}
+}
@@ -0,0 +1,313 @@
+package havis.device.rf.common.commission;
+
+import havis.device.rf.common.util.Epc;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.exception.ImplementationException;
+import havis.device.rf.exception.ParameterException;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.TagDataList;
+import havis.device.rf.tag.operation.LockOperation.Field;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.result.LockResult;
+import havis.device.rf.tag.result.OperationResult;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes a sequence of assignments to tags in continuous inventory rounds.
+ * <p>
+ * Each round consists of an inventory with the filters of the options which
+ * reads the TID of the tags. Every tag found for the first time takes the next
+ * assignment: the PC with the length of the new EPC, the EPC and the user data
+ * are written to the tag selected by its TID and its current PC and EPC, read
+ * back and the banks are locked in a single execution. Tags are not visited
+ * again, tags which get the EPC of an assignment are therefore not
+ * commissioned twice. If the tag cannot be told apart from others, i.e.
+ * several tags respond to the execution, the assignment is written to the
+ * next tag. The commissioning ends if all assignments have been written, no
+ * new tags have been found for a number of rounds or the listener cancels it.
+ * </p>
+ */
+public class Commissioner {
+
+	private static final Logger log = Logger.getLogger(Commissioner.class.getName());
+
+	static final String READ_TID_ID = "readTid";
+	static final String WRITE_EPC_ID = "commissionEpc";
+	static final String WRITE_USER_ID = "commissionUser";
+	static final String VERIFY_EPC_ID = "verifyEpc";
+	static final String VERIFY_USER_ID = "verifyUser";
+	static final String LOCK_EPC_ID = "lockEpc";
+	static final String LOCK_USER_ID = "lockUser";
+
+	/**
+	 * The UMI bit of the PC, indicating whether the user memory is used
+	 */
+	static final int PC_UMI = 0x0400;
+
+	/**
+	 * Executes operations on the hardware
+	 */
+	public interface OperationExecutor {
+		/**
+		 * Executes operations.
+		 *
+		 * @param filters
+		 *            the filters selecting the tags
+		 * @param operations
+		 *            the operations
+		 * @return the tags, may be null
+		 * @throws ImplementationException
+		 *             if the execution fails
+		 * @throws ParameterException
+		 *             if a parameter is invalid
+		 */
+		TagDataList execute(List<Filter> filters, List<TagOperation> operations) throws ImplementationException, ParameterException;
+	}
+
+	/**
+	 * Minimum length of a TID to identify a tag, shorter TIDs only contain the
+	 * class identifier and the model
+	 */
+	private static final int MIN_TID_LENGTH = 6;
+
+	/**
+	 * The outcome of writing an assignment to a tag
+	 */
+	private static class Attempt {
+		TagData tag;
+		String error;
+		boolean written;
+		boolean ambiguous;
+	}
+
+	private final OperationExecutor executor;
+	private final CommissioningOptions options;
+
+	/**
+	 * Creates a commissioner.
+	 *
+	 * @param executor
+	 *            the executor of the operations
+	 * @param options
+	 *            the options
+	 */
+	public Commissioner(OperationExecutor executor, CommissioningOptions options) {
+		this.executor = executor;
+		this.options = options;
+	}
+
+	/**
+	 * Writes assignments to tags until all assignments have been written, no
+	 * new tags have been found for the maximum number of idle rounds or the
+	 * listener cancels the commissioning. Assignments are taken from the
+	 * iterator as new tags are found, so the remaining assignments can be
+	 * written by another run.
+	 *
+	 * @param assignments
+	 *            the assignments, taken one by one as tags are found
+	 * @param listener
+	 *            the listener receiving the progress
+	 * @return the number of commissioned tags
+	 * @throws ImplementationException
+	 *             if an execution fails
+	 * @throws ParameterException
+	 *             if a parameter is invalid
+	 */
+	public int run(Iterator<Assignment> assignments, CommissioningListener listener) throws ImplementationException, ParameterException {
+		// EPCs of tags without TID and of assignments
+		Set<Epc> visited = new HashSet<>();
+		Set<Epc> visitedTids = new HashSet<>();
+		List<TagOperation> readTid = Arrays.<TagOperation> asList(RFUtils.newReadOperation(READ_TID_ID, RFUtils.BANK_TID, 0, 0, null));
+		Assignment pending = null;
+		int round = 0;
+		int idleRounds = 0;
+		int commissioned = 0;
+		while (!listener.isCancelled() && (pending != null || assignments.hasNext()) && idleRounds < options.getMaxIdleRounds()) {
+			TagDataList inventory = executor.execute(options.getFilters(), readTid);
+			List<TagData> tags = inventory == null ? Collections.<TagData> emptyList() : inventory.getEntryList();
+			int newTags = 0;
+			for (TagData tag : tags) {
+				if (tag.getEpc() == null || visited.contains(Epc.valueOf(tag.getEpc())))
+					continue;
+				byte[] tid = getTid(tag);
+				if (tid == null ? !visited.add(Epc.valueOf(tag.getEpc())) : !visitedTids.add(Epc.valueOf(tid)))
+					continue;
+				newTags++;
+				if (listener.isCancelled())
+					break;
+				if (pending == null) {
+					if (!assignments.hasNext())
+						break;
+					pending = assignments.next();
+				}
+
+				Attempt attempt = commission(tag, tid, pending);
+				// the tag is not visited again after getting the new EPC
+				visited.add(Epc.valueOf(pending.getEpc()));
+				if (attempt.error == null) {
+					commissioned++;
+					listener.commissioned(pending, attempt.tag);
+					pending = null;
+				} else {
+					log.log(Level.FINE, "Commissioning of {0} failed: {1}", new Object[] { RFUtils.bytesToHex(tag.getEpc()), attempt.error });
+					listener.failed(pending, attempt.tag, attempt.error);
+					// a partly written tag holds the EPC, unless several tags
+					// have been selected
+					if (attempt.written && !attempt.ambiguous)
+						pending = null;
+				}
+			}
+			idleRounds = newTags == 0 ? idleRounds + 1 : 0;
+			listener.roundCompleted(++round, tags.size(), newTags);
+		}
+		if (pending != null)
+			listener.failed(pending, null, "No tag left for assignment");
+		return commissioned;
+	}
+
+	/**
+	 * Returns the TID read by the inventory or null if it does not identify
+	 * the tag.
+	 */
+	private static byte[] getTid(TagData tag) {
+		for (OperationResult result : tag.getResultList())
+			if (READ_TID_ID.equals(result.getOperationId()) && result instanceof ReadResult) {
+				ReadResult read = (ReadResult) result;
+				if (read.getResult() == ReadResult.Result.SUCCESS && read.getReadData() != null && read.getReadData().length >= MIN_TID_LENGTH)
+					return read.getReadData();
+			}
+		return null;
+	}
+
+	/**
+	 * Writes an assignment to the tag with the TID, PC and EPC of a tag found
+	 * by the inventory.
+	 */
+	private Attempt commission(TagData tag, byte[] tid, Assignment assignment) throws ImplementationException, ParameterException {
+		byte[] epc = assignment.getEpc();
+		byte[] userData = assignment.getUserData();
+		int password = options.getAccessPassword();
+
+		// the length bits of the PC specify the number of EPC words
+		int pc = tag.getPc() & 0x07FF | epc.length / 2 << 11;
+		byte[] pcAndEpc = new byte[epc.length + 2];
+		pcAndEpc[0] = (byte) (pc >> 8);
+		pcAndEpc[1] = (byte) pc;
+		System.arraycopy(epc, 0, pcAndEpc, 2, epc.length);
+
+		List<TagOperation> operations = new ArrayList<>();
+		operations.add(RFUtils.newWriteOperation(WRITE_EPC_ID, RFUtils.BANK_EPC, 1, pcAndEpc, password));
+		if (userData != null)
+			operations.add(RFUtils.newWriteOperation(WRITE_USER_ID, RFUtils.BANK_USR, 0, userData, password));
+		if (options.isVerify()) {
+			operations.add(RFUtils.newReadOperation(VERIFY_EPC_ID, RFUtils.BANK_EPC, 1, pcAndEpc.length / 2, password));
+			if (userData != null)
+				operations.add(RFUtils.newReadOperation(VERIFY_USER_ID, RFUtils.BANK_USR, 0, userData.length / 2, password));
+		}
+		if (options.getLockPrivilege() != null) {
+			operations.add(RFUtils.newLockOperation(LOCK_EPC_ID, Field.EPC_MEMORY, options.getLockPrivilege(), password));
+			if (userData != null)
+				operations.add(RFUtils.newLockOperation(LOCK_USER_ID, Field.USER_MEMORY, options.getLockPrivilege(), password));
+		}
+
+		byte[] currentPcAndEpc = new byte[tag.getEpc().length + 2];
+		currentPcAndEpc[0] = (byte) (tag.getPc() >> 8);
+		currentPcAndEpc[1] = (byte) tag.getPc();
+		System.arraycopy(tag.getEpc(), 0, currentPcAndEpc, 2, tag.getEpc().length);
+		List<Filter> filters = new ArrayList<>();
+		filters.add(RFUtils.newFilter(RFUtils.BANK_EPC, 0x10, currentPcAndEpc, null, currentPcAndEpc.length * 8, true));
+		if (tid != null)
+			filters.add(RFUtils.newFilter(RFUtils.BANK_TID, 0, tid, null, tid.length * 8, true));
+		TagDataList tdl = executor.execute(filters, operations);
+
+		Attempt attempt = new Attempt();
+		attempt.tag = tag;
+		if (tdl == null || tdl.getEntryList().isEmpty()) {
+			attempt.error = "No response";
+			return attempt;
+		}
+		for (TagData response : tdl.getEntryList())
+			attempt.written |= isWritten(response);
+		if (tdl.getEntryList().size() > 1) {
+			attempt.error = tdl.getEntryList().size() + (tid == null ? " tags with the same EPC" : " tags with the same TID");
+			attempt.ambiguous = true;
+			return attempt;
+		}
+
+		// the data expected by the verifying reads
+		Map<String, byte[]> expected = new HashMap<>();
+		expected.put(VERIFY_EPC_ID, pcAndEpc);
+		expected.put(VERIFY_USER_ID, userData);
+
+		TagData response = tdl.getEntryList().get(0);
+		tag.setResultList(response.getResultList());
+		for (OperationResult result : response.getResultList()) {
+			attempt.error = getError(result, expected.get(result.getOperationId()));
+			if (attempt.error != null)
+				return attempt;
+		}
+		if (response.getResultList().size() < operations.size())
+			attempt.error = "Missing operation results";
+		return attempt;
+	}
+
+	private static boolean isWritten(TagData tag) {
+		for (OperationResult result : tag.getResultList())
+			if (result instanceof WriteResult && ((WriteResult) result).getWordsWritten() > 0)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns the error of an operation result or null if the operation
+	 * succeeded and a read returned the expected data.
+	 */
+	private static String getError(OperationResult result, byte[] expected) {
+		if (result instanceof WriteResult) {
+			WriteResult write = (WriteResult) result;
+			if (write.getResult() != WriteResult.Result.SUCCESS)
+				return "Writing " + result.getOperationId() + " failed: " + write.getResult();
+		} else if (result instanceof ReadResult) {
+			ReadResult read = (ReadResult) result;
+			if (read.getResult() != ReadResult.Result.SUCCESS)
+				return "Reading " + result.getOperationId() + " failed: " + read.getResult();
+			if (expected != null && !(VERIFY_EPC_ID.equals(result.getOperationId()) ? equalsIgnoringUmi(expected, read.getReadData()) : Arrays.equals(
+					expected, read.getReadData())))
+				return "Verification of " + result.getOperationId() + " failed: read " + RFUtils.bytesToHex(read.getReadData());
+		} else if (result instanceof LockResult) {
+			LockResult lock = (LockResult) result;
+			if (lock.getResult() != LockResult.Result.SUCCESS)
+				return "Locking " + result.getOperationId() + " failed: " + lock.getResult();
+		}
+		return null;
+	}
+
+	/**
+	 * Compares PC and EPC ignoring the UMI bit of the PC, which is computed
+	 * by tags supporting it rather than written.
+	 */
+	private static boolean equalsIgnoringUmi(byte[] expected, byte[] actual) {
+		if (actual == null || actual.length != expected.length || actual.length < 2)
+			return false;
+		if (((expected[0] ^ actual[0]) & ~(PC_UMI >> 8)) != 0)
+			return false;
+		for (int i = 1; i < expected.length; i++)
+			if (expected[i] != actual[i])
+				return false;
+		return true;
+	}
+}
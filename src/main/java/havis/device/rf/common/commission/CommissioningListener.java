@@ -0,0 +1,56 @@
+package havis.device.rf.common.commission;
+
+import havis.device.rf.tag.TagData;
+
+/**
+ * Receives the progress of a commissioning run. The methods are called by the
+ * thread running the commissioning.
+ */
+public interface CommissioningListener {
+
+	/**
+	 * Called after a tag has been commissioned.
+	 *
+	 * @param assignment
+	 *            the assignment written to the tag
+	 * @param tag
+	 *            the tag with its EPC before commissioning and the results of
+	 *            the operations
+	 */
+	void commissioned(Assignment assignment, TagData tag);
+
+	/**
+	 * Called if commissioning of a tag failed. If nothing has been written to
+	 * the tag, the assignment is used for the next tag, otherwise the
+	 * assignment is discarded.
+	 *
+	 * @param assignment
+	 *            the assignment
+	 * @param tag
+	 *            the tag with the results of the operations or null if no tag
+	 *            was left for the assignment
+	 * @param reason
+	 *            the reason of the failure
+	 */
+	void failed(Assignment assignment, TagData tag, String reason);
+
+	/**
+	 * Called after each inventory round.
+	 *
+	 * @param round
+	 *            the number of the round starting with 1
+	 * @param tags
+	 *            the number of tags found
+	 * @param newTags
+	 *            the number of tags found for the first time
+	 */
+	void roundCompleted(int round, int tags, int newTags);
+
+	/**
+	 * Returns whether the commissioning should be stopped. Checked before
+	 * each round and each tag.
+	 *
+	 * @return true to stop
+	 */
+	boolean isCancelled();
+}
@@ -0,0 +1,99 @@
+package havis.device.rf.common.commission;
+
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.operation.LockOperation.Privilege;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The options of a commissioning run.
+ */
+public class CommissioningOptions {
+
+	private List<Filter> filters = new ArrayList<>();
+	private int accessPassword;
+	private boolean verify = true;
+	private Privilege lockPrivilege;
+	private int maxIdleRounds = 10;
+
+	/**
+	 * @return the filters selecting the tags to commission
+	 */
+	public List<Filter> getFilters() {
+		return filters;
+	}
+
+	/**
+	 * @param filters
+	 *            the filters selecting the tags to commission, e.g. tags with
+	 *            the EPC of the manufacturer, an empty list selects all tags
+	 */
+	public void setFilters(List<Filter> filters) {
+		this.filters = filters == null ? new ArrayList<Filter>() : filters;
+	}
+
+	/**
+	 * @return the access password
+	 */
+	public int getAccessPassword() {
+		return accessPassword;
+	}
+
+	/**
+	 * @param accessPassword
+	 *            the access password used for writing and locking, 0 if none
+	 */
+	public void setAccessPassword(int accessPassword) {
+		this.accessPassword = accessPassword;
+	}
+
+	/**
+	 * @return whether the written data is read back
+	 */
+	public boolean isVerify() {
+		return verify;
+	}
+
+	/**
+	 * @param verify
+	 *            whether the written data is read back and compared, default
+	 *            true
+	 */
+	public void setVerify(boolean verify) {
+		this.verify = verify;
+	}
+
+	/**
+	 * @return the lock privilege or null
+	 */
+	public Privilege getLockPrivilege() {
+		return lockPrivilege;
+	}
+
+	/**
+	 * @param lockPrivilege
+	 *            the privilege to set for the written memory banks after
+	 *            writing, null to leave the banks unlocked
+	 */
+	public void setLockPrivilege(Privilege lockPrivilege) {
+		this.lockPrivilege = lockPrivilege;
+	}
+
+	/**
+	 * @return the number of consecutive rounds without new tags after which
+	 *         the commissioning ends
+	 */
+	public int getMaxIdleRounds() {
+		return maxIdleRounds;
+	}
+
+	/**
+	 * @param maxIdleRounds
+	 *            the number of consecutive rounds without new tags after which
+	 *            the commissioning ends, default 10
+	 */
+	public void setMaxIdleRounds(int maxIdleRounds) {
+		this.maxIdleRounds = maxIdleRounds;
+	}
+}
@@ -0,0 +1,94 @@
+package havis.device.rf.common.filter;
+
+import havis.device.rf.common.util.BitMask;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagData;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A list of filters compiled to a predicate over the EPC bank data of a tag
+ * (CRC, PC, EPC and XPC). A tag matches if it matches all filters with the
+ * match flag set and none of the filters without it. Filters which cannot be
+ * evaluated from the inventory data (e.g. filters on the TID bank) are not
+ * part of the predicate and are available by {@link #getUnresolvedFilters()}.
+ *
+ * @see FilterCompiler
+ */
+public class CompiledFilter {
+
+	private final boolean unsatisfiable;
+	private final List<BitMask> required;
+	private final List<MaskGroup> excluded;
+	private final List<Filter> unresolved;
+
+	CompiledFilter(boolean unsatisfiable, List<BitMask> required, List<MaskGroup> excluded, List<Filter> unresolved) {
+		this.unsatisfiable = unsatisfiable;
+		this.required = required;
+		this.excluded = excluded;
+		this.unresolved = unresolved;
+	}
+
+	/**
+	 * Returns whether a tag matches the compiled filters.
+	 *
+	 * @param tag
+	 *            the tag
+	 * @return true if the tag matches, false otherwise
+	 */
+	public boolean matches(TagData tag) {
+		if (unsatisfiable)
+			return false;
+		TagMemory memory = new TagMemory(tag);
+		for (BitMask mask : required) {
+			byte[] value = memory.get(mask.getBitOffset());
+			if (value == null || !mask.matches(value, TagMemory.offset(mask.getBitOffset())))
+				return false;
+		}
+		for (MaskGroup group : excluded)
+			if (group.matchesAny(memory))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Removes all tags not matching the compiled filters from a list.
+	 *
+	 * @param tags
+	 *            a modifiable list of tags
+	 * @return the number of removed tags
+	 */
+	public int retain(List<TagData> tags) {
+		int removed = 0;
+		for (Iterator<TagData> it = tags.iterator(); it.hasNext();) {
+			if (!matches(it.next())) {
+				it.remove();
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * @return the filters which are not part of the predicate
+	 */
+	public List<Filter> getUnresolvedFilters() {
+		return new ArrayList<>(unresolved);
+	}
+
+	/**
+	 * @return true if all filters are part of the predicate
+	 */
+	public boolean isExact() {
+		return unresolved.isEmpty();
+	}
+
+	/**
+	 * @return true if the filters contradict each other, i.e. no tag can match
+	 */
+	public boolean isUnsatisfiable() {
+		return unsatisfiable;
+	}
+}
@@ -0,0 +1,172 @@
+package havis.device.rf.common.filter;
+
+import havis.device.rf.common.util.BitField;
+import havis.device.rf.common.util.BitMask;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.tag.Filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles lists of {@link Filter}s to {@link CompiledFilter}s which can be
+ * evaluated in software. This allows to pass a subset of the filters to the
+ * hardware, which selects more tags than requested, and to remove the
+ * additional tags from the result afterwards.
+ * <p>
+ * All filters with the match flag set must match, so they are merged to one
+ * mask per memory area (EPC bank up to the EPC and XPC words), which is
+ * compared a word at a time. Filters with overlapping bits requiring different
+ * values result in a filter no tag can match. Filters without the match flag
+ * are grouped by bit range and mask, each group is checked with a single hash
+ * lookup of the masked tag bits regardless of the number of filters in the
+ * group.
+ * </p>
+ */
+public class FilterCompiler {
+
+	private FilterCompiler() {
+	}
+
+	/**
+	 * Compiles a list of filters.
+	 *
+	 * @param filters
+	 *            the filters, may be null or empty
+	 * @return the compiled filter
+	 */
+	public static CompiledFilter compile(List<Filter> filters) {
+		List<Filter> unresolved = new ArrayList<>();
+		List<Filter> epcFilters = new ArrayList<>();
+		List<Filter> xpcFilters = new ArrayList<>();
+		Map<MaskGroup.Key, MaskGroup> groups = new LinkedHashMap<>();
+
+		if (filters != null) {
+			for (Filter filter : filters) {
+				if (!isResolvable(filter)) {
+					unresolved.add(filter);
+				} else if (filter.isMatch()) {
+					if (filter.getBitOffset() >= TagMemory.XPC_OFFSET)
+						xpcFilters.add(filter);
+					else
+						epcFilters.add(filter);
+				} else {
+					MaskGroup.Key key = MaskGroup.key(filter.getBitOffset(), filter.getBitLength(), filter.getMask());
+					MaskGroup group = groups.get(key);
+					if (group == null) {
+						group = new MaskGroup(filter.getBitOffset(), filter.getBitLength(), filter.getMask());
+						groups.put(key, group);
+					}
+					group.add(filter.getData());
+				}
+			}
+		}
+
+		List<BitMask> required = new ArrayList<>();
+		for (List<Filter> area : Arrays.asList(epcFilters, xpcFilters)) {
+			if (area.isEmpty())
+				continue;
+			BitMask mask = merge(area);
+			if (mask == null)
+				return new CompiledFilter(true, required, new ArrayList<MaskGroup>(), unresolved);
+			required.add(mask);
+		}
+		return new CompiledFilter(false, required, new ArrayList<>(groups.values()), unresolved);
+	}
+
+	/**
+	 * Returns whether a filter can be evaluated in software.
+	 *
+	 * @param filter
+	 *            the filter
+	 * @return true if the filter applies to the EPC bank data known from the
+	 *         inventory, false otherwise
+	 */
+	public static boolean isResolvable(Filter filter) {
+		return filter.getBank() == RFUtils.BANK_EPC && filter.getData() != null && filter.getBitOffset() >= 0 && filter.getBitLength() >= 0
+				&& TagMemory.isAddressable(filter.getBitOffset(), filter.getBitLength());
+	}
+
+	/**
+	 * Selects the filters to pass to the hardware if it supports less filters
+	 * than specified. The selection contains all filters which cannot be
+	 * evaluated in software, followed by the filters with match flag and then
+	 * the filters without, up to the maximum count. Since all filters must
+	 * apply, the hardware selects a superset of the requested tags, which can
+	 * be reduced by the compiled filter of the complete list.
+	 *
+	 * @param filters
+	 *            the filters
+	 * @param max
+	 *            the maximum number of filters supported by the hardware
+	 * @return the selected filters or null if there are more filters which
+	 *         cannot be evaluated in software than supported by the hardware
+	 */
+	public static List<Filter> selectHardwareFilters(List<Filter> filters, int max) {
+		List<Filter> result = new ArrayList<>();
+		for (Filter filter : filters)
+			if (!isResolvable(filter))
+				result.add(filter);
+		if (result.size() > max)
+			return null;
+		for (Filter filter : filters)
+			if (result.size() < max && isResolvable(filter) && filter.isMatch())
+				result.add(filter);
+		for (Filter filter : filters)
+			if (result.size() < max && isResolvable(filter) && !filter.isMatch())
+				result.add(filter);
+		return result;
+	}
+
+	/**
+	 * Merges filters to one mask spanning all filters.
+	 *
+	 * @param filters
+	 *            a non-empty list of filters
+	 * @return the merged mask or null if the filters require different values
+	 *         for the same bit
+	 */
+	private static BitMask merge(List<Filter> filters) {
+		if (filters.size() == 1) {
+			Filter filter = filters.get(0);
+			return new BitMask(filter.getBitOffset(), filter.getBitLength(), pad(filter.getData(), filter.getBitLength()), filter.getMask());
+		}
+		int from = Integer.MAX_VALUE, to = 0;
+		for (Filter filter : filters) {
+			from = Math.min(from, filter.getBitOffset());
+			to = Math.max(to, filter.getBitOffset() + filter.getBitLength());
+		}
+		int length = Math.max(0, to - from);
+		long[] mask = new long[(length + 63) / 64];
+		long[] pattern = new long[mask.length];
+
+		for (Filter filter : filters) {
+			int bitLength = filter.getBitLength();
+			for (int bit = 0; bit < bitLength; bit += 64) {
+				long m = filter.getMask() == null ? -1L : BitField.getBits(filter.getMask(), bit);
+				if (bitLength - bit < 64)
+					m &= -1L << (64 - (bitLength - bit));
+				long p = BitField.getBits(filter.getData(), bit) & m;
+				int pos = filter.getBitOffset() - from + bit;
+				if (((BitField.getBits(pattern, pos) ^ p) & BitField.getBits(mask, pos) & m) != 0)
+					return null;
+				BitField.or(mask, pos, m);
+				BitField.or(pattern, pos, p);
+			}
+		}
+		int byteCnt = (length + 7) / 8;
+		return new BitMask(from, length, BitField.unpack(pattern, byteCnt), BitField.unpack(mask, byteCnt));
+	}
+
+	private static byte[] pad(byte[] data, int bitLength) {
+		int byteCnt = (bitLength + 7) / 8;
+		if (data.length >= byteCnt)
+			return data;
+		byte[] result = new byte[byteCnt];
+		System.arraycopy(data, 0, result, 0, data.length);
+		return result;
+	}
+}
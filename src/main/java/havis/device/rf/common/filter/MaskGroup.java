@@ -0,0 +1,121 @@
+package havis.device.rf.common.filter;
+
+import havis.device.rf.common.util.BitField;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A group of patterns sharing the same bit range and mask. Instead of
+ * comparing a tag with each pattern, the masked bits of the tag are extracted
+ * once and looked up in a hash set of all patterns of the group.
+ */
+class MaskGroup {
+
+	private final int bitOffset;
+	private final int bitLength;
+	private final long[] mask;
+	private final Set<Key> patterns = new HashSet<>();
+
+	/**
+	 * A sequence of words usable as hash key
+	 */
+	static class Key {
+		private final long[] words;
+		private final int hash;
+
+		Key(long[] words) {
+			this.words = words;
+			this.hash = Arrays.hashCode(words);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Key && Arrays.equals(words, ((Key) obj).words);
+		}
+	}
+
+	/**
+	 * Creates a new group.
+	 *
+	 * @param bitOffset
+	 *            the bit offset of the range
+	 * @param bitLength
+	 *            the bit length of the range
+	 * @param mask
+	 *            the mask bits, only bits set in the mask are compared
+	 */
+	MaskGroup(int bitOffset, int bitLength, byte[] mask) {
+		this.bitOffset = bitOffset;
+		this.bitLength = bitLength;
+		this.mask = words(mask, 0, bitLength, null);
+	}
+
+	/**
+	 * Returns the key identifying groups with the same range and mask.
+	 *
+	 * @param bitOffset
+	 *            the bit offset of the range
+	 * @param bitLength
+	 *            the bit length of the range
+	 * @param mask
+	 *            the mask bits
+	 * @return the key
+	 */
+	static Key key(int bitOffset, int bitLength, byte[] mask) {
+		long[] maskWords = words(mask, 0, bitLength, null);
+		long[] words = new long[maskWords.length + 1];
+		words[0] = (long) bitOffset << 32 | bitLength;
+		System.arraycopy(maskWords, 0, words, 1, maskWords.length);
+		return new Key(words);
+	}
+
+	/**
+	 * Adds a pattern to the group.
+	 *
+	 * @param pattern
+	 *            the pattern bits
+	 */
+	void add(byte[] pattern) {
+		patterns.add(new Key(words(pattern, 0, bitLength, mask)));
+	}
+
+	/**
+	 * Returns whether the masked bits of a tag equal any pattern of the group.
+	 *
+	 * @param memory
+	 *            the tag memory
+	 * @return true if a pattern matches, false otherwise or if the memory of
+	 *         the tag does not cover the range
+	 */
+	boolean matchesAny(TagMemory memory) {
+		byte[] value = memory.get(bitOffset);
+		int from = bitOffset - TagMemory.offset(bitOffset);
+		if (value == null || value.length * 8L < (long) from + bitLength)
+			return false;
+		return patterns.contains(new Key(words(value, from, bitLength, mask)));
+	}
+
+	int size() {
+		return patterns.size();
+	}
+
+	private static long[] words(byte[] bytes, int from, int bitLength, long[] mask) {
+		long[] words = new long[(bitLength + 63) / 64];
+		for (int i = 0; i < words.length; i++) {
+			long word = bytes == null ? -1L : BitField.getBits(bytes, from + i * 64);
+			if (mask != null)
+				word &= mask[i];
+			else if (bitLength - i * 64 < 64)
+				word &= -1L << (64 - (bitLength - i * 64));
+			words[i] = word;
+		}
+		return words;
+	}
+}
@@ -0,0 +1,90 @@
+package havis.device.rf.common.filter;
+
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.tag.TagData;
+
+/**
+ * Provides the parts of the EPC bank of a tag which are known from the
+ * inventory data: CRC and PC (bit 0x00 to 0x1F), the EPC (from bit 0x20) and
+ * the XPC words (bit 0x210 to 0x22F) if the XI bit of the PC is set. Views are
+ * created lazily, a filter check on the EPC uses the EPC array of the tag
+ * without copying.
+ */
+class TagMemory {
+
+	static final int EPC_OFFSET = 0x20;
+	static final int XPC_OFFSET = 0x210;
+	static final int XPC_LENGTH = 32;
+	private static final int XI_BIT = 0x0200;
+
+	private final TagData tag;
+	private byte[] header;
+	private byte[] xpc;
+
+	TagMemory(TagData tag) {
+		this.tag = tag;
+	}
+
+	/**
+	 * Returns whether a bit range of the EPC bank can be evaluated from the
+	 * inventory data, i.e. does not span the unknown memory between the EPC
+	 * and the XPC words.
+	 *
+	 * @param bitOffset
+	 *            the bit offset
+	 * @param bitLength
+	 *            the bit length
+	 * @return true if the range lies before the XPC words or within them
+	 */
+	static boolean isAddressable(int bitOffset, int bitLength) {
+		return bitOffset + bitLength <= XPC_OFFSET || (bitOffset >= XPC_OFFSET && bitOffset + bitLength <= XPC_OFFSET + XPC_LENGTH);
+	}
+
+	/**
+	 * Returns the bit offset of the memory returned by {@link #get(int)}
+	 *
+	 * @param bitOffset
+	 *            the bit offset of a checked range
+	 * @return the bit offset of the first bit of the memory
+	 */
+	static int offset(int bitOffset) {
+		if (bitOffset >= XPC_OFFSET)
+			return XPC_OFFSET;
+		if (bitOffset >= EPC_OFFSET)
+			return EPC_OFFSET;
+		return 0;
+	}
+
+	/**
+	 * Returns the memory containing a checked range.
+	 *
+	 * @param bitOffset
+	 *            the bit offset of the checked range
+	 * @return the memory starting at {@link #offset(int)} or null if it is not
+	 *         known
+	 */
+	byte[] get(int bitOffset) {
+		if (bitOffset >= XPC_OFFSET)
+			return xpc();
+		if (bitOffset >= EPC_OFFSET)
+			return tag.getEpc();
+		return header();
+	}
+
+	private byte[] header() {
+		if (header == null) {
+			byte[] epc = tag.getEpc() == null ? new byte[0] : tag.getEpc();
+			header = new byte[4 + epc.length];
+			System.arraycopy(RFUtils.shortToBytes(tag.getCrc()), 0, header, 0, 2);
+			System.arraycopy(RFUtils.shortToBytes(tag.getPc()), 0, header, 2, 2);
+			System.arraycopy(epc, 0, header, 4, epc.length);
+		}
+		return header;
+	}
+
+	private byte[] xpc() {
+		if (xpc == null && (tag.getPc() & XI_BIT) != 0)
+			xpc = RFUtils.intToBytes(tag.getXpc());
+		return xpc;
+	}
+}
@@ -0,0 +1,130 @@
+package havis.device.rf.common.optimizer;
+
+import havis.device.rf.common.util.BitField;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.operation.WriteOperation;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The words of the memory of a tag whose content is known.
+ */
+class KnownMemory {
+
+	private final Map<Long, Integer> words;
+
+	KnownMemory() {
+		words = new HashMap<>();
+	}
+
+	KnownMemory(KnownMemory other) {
+		words = new HashMap<>(other.words);
+	}
+
+	/**
+	 * Creates the memory content known for all tags selected by filters: the
+	 * complete words of the ranges all bits of which are compared by a filter
+	 * with the match flag set.
+	 * <p>
+	 * This relies on the hardware selecting only tags which match all filters
+	 * (see {@link havis.device.rf.common.filter.FilterCompiler}), a tag
+	 * matching only some of the filters would not hold the content. Words
+	 * which filters require to hold different values are not known, as no tag
+	 * can be selected by such filters.
+	 * </p>
+	 *
+	 * @param filters
+	 *            the filters, may be null
+	 * @return the known memory
+	 */
+	static KnownMemory fromFilters(List<Filter> filters) {
+		KnownMemory memory = new KnownMemory();
+		if (filters == null)
+			return memory;
+		Set<Long> conflicting = new HashSet<>();
+		for (Filter filter : filters) {
+			if (!filter.isMatch() || filter.getData() == null)
+				continue;
+			int bitOffset = filter.getBitOffset() & 0xFFFF;
+			int bitLength = filter.getBitLength() & 0xFFFF;
+			if (bitLength == 0 || filter.getData().length * 8 < bitLength)
+				continue;
+			// first and last complete word of the range
+			int first = (bitOffset + 15) / 16;
+			int last = (bitOffset + bitLength) / 16;
+			for (int word = first; word < last; word++) {
+				int from = word * 16 - bitOffset;
+				if (filter.getMask() != null && (filter.getMask().length * 8 < from + 16 || BitField.getBits(filter.getMask(), from) >>> 48 != 0xFFFF))
+					continue;
+				Long key = key(filter.getBank(), word);
+				Integer value = Integer.valueOf((int) (BitField.getBits(filter.getData(), from) >>> 48));
+				Integer previous = memory.words.put(key, value);
+				if (conflicting.contains(key) || previous != null && !previous.equals(value)) {
+					conflicting.add(key);
+					memory.words.remove(key);
+				}
+			}
+		}
+		return memory;
+	}
+
+	/**
+	 * Sets the content of consecutive words.
+	 *
+	 * @param bank
+	 *            the memory bank
+	 * @param offset
+	 *            the first word
+	 * @param data
+	 *            the data of complete words
+	 */
+	void put(short bank, int offset, byte[] data) {
+		for (int i = 0; i + 1 < data.length; i += 2)
+			words.put(key(bank, offset + i / 2), Integer.valueOf((data[i] & 0xFF) << 8 | data[i + 1] & 0xFF));
+	}
+
+	/**
+	 * Marks the words written by an operation as unknown.
+	 *
+	 * @param write
+	 *            the write operation
+	 */
+	void forget(WriteOperation write) {
+		int offset = write.getOffset() & 0xFFFF;
+		for (int i = 0; i < (write.getData().length + 1) / 2; i++)
+			words.remove(key(write.getBank(), offset + i));
+	}
+
+	/**
+	 * Returns whether a write operation writes the known content of the
+	 * memory.
+	 *
+	 * @param write
+	 *            the write operation
+	 * @return true if all written words are known and equal the data
+	 */
+	boolean contains(WriteOperation write) {
+		byte[] data = write.getData();
+		if (data == null || data.length == 0 || data.length % 2 != 0)
+			return false;
+		int offset = write.getOffset() & 0xFFFF;
+		for (int i = 0; i < data.length; i += 2) {
+			Integer word = words.get(key(write.getBank(), offset + i / 2));
+			if (word == null || word.intValue() != ((data[i] & 0xFF) << 8 | data[i + 1] & 0xFF))
+				return false;
+		}
+		return true;
+	}
+
+	boolean isEmpty() {
+		return words.isEmpty();
+	}
+
+	private static Long key(short bank, int word) {
+		return Long.valueOf((long) (bank & 0xFFFF) << 32 | word);
+	}
+}
@@ -0,0 +1,290 @@
+package havis.device.rf.common.optimizer;
+
+import havis.device.rf.common.optimizer.OptimizedOperationList.Merged;
+import havis.device.rf.common.optimizer.OptimizedOperationList.MergedRead;
+import havis.device.rf.common.optimizer.OptimizedOperationList.MergedWrite;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.operation.WriteOperation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges read operations on the same memory bank with overlapping or adjacent
+ * word ranges into a single read operation and write operations to
+ * consecutive words into a single block write operation, so a tag is accessed
+ * with the minimal number of air commands.
+ * <p>
+ * Only read operations following each other directly are merged, any other
+ * operation keeps its position relative to the read operations. Read operations
+ * are merged if they access the same bank with the same password. A merged read
+ * operation takes the position of its first part and gets a generated
+ * operation ID.
+ * </p>
+ * <p>
+ * Write operations are merged if they follow each other directly, access the
+ * same bank with the same password and each one starts at the word following
+ * the last word of the previous one. The number of words of a block write is
+ * limited to the number of words the hardware writes with a single command.
+ * </p>
+ * <p>
+ * The results of the original operations are restored with
+ * {@link OptimizedOperationList#restore(List)}.
+ * </p>
+ */
+public class OperationListOptimizer {
+
+	static final String MERGED_ID_PREFIX = "_merged_";
+
+	private static final Comparator<ReadOperation> OFFSET_COMPARATOR = new Comparator<ReadOperation>() {
+		@Override
+		public int compare(ReadOperation o1, ReadOperation o2) {
+			return Integer.compare(o1.getOffset() & 0xFFFF, o2.getOffset() & 0xFFFF);
+		}
+	};
+
+	private OperationListOptimizer() {
+	}
+
+	/**
+	 * Optimizes the read operations of an operation list.
+	 *
+	 * @param operations
+	 *            the operations
+	 * @return the optimized operation list, containing the given operations if
+	 *         nothing can be merged or the operation IDs are not unique
+	 */
+	public static OptimizedOperationList optimize(List<TagOperation> operations) {
+		return optimize(operations, true, 0);
+	}
+
+	/**
+	 * Optimizes an operation list.
+	 *
+	 * @param operations
+	 *            the operations
+	 * @param mergeReads
+	 *            whether read operations are merged
+	 * @param maxBlockWriteWords
+	 *            the maximum number of words of a block write, write
+	 *            operations are not merged if less than 2
+	 * @return the optimized operation list, containing the given operations if
+	 *         nothing can be merged or the operation IDs are not unique
+	 */
+	public static OptimizedOperationList optimize(List<TagOperation> operations, boolean mergeReads, int maxBlockWriteWords) {
+		List<Merged<?>> merged = new ArrayList<>();
+		Set<String> ids = new HashSet<>();
+		for (TagOperation operation : operations)
+			if (operation.getOperationId() == null || !ids.add(operation.getOperationId()))
+				// results could not be assigned to the original operations
+				return new OptimizedOperationList(operations, operations, merged);
+
+		List<TagOperation> result = new ArrayList<>(operations.size());
+		List<ReadOperation> run = new ArrayList<>();
+		List<WriteOperation> block = new ArrayList<>();
+		for (TagOperation operation : operations) {
+			if (mergeReads && operation instanceof ReadOperation) {
+				mergeBlock(block, result, merged, ids);
+				run.add((ReadOperation) operation);
+				continue;
+			}
+			mergeRun(run, result, merged, ids);
+			if (maxBlockWriteWords > 1 && operation instanceof WriteOperation && isBlockWritable((WriteOperation) operation)) {
+				WriteOperation write = (WriteOperation) operation;
+				if (!block.isEmpty() && !continuesBlock(block, write, maxBlockWriteWords))
+					mergeBlock(block, result, merged, ids);
+				block.add(write);
+				continue;
+			}
+			mergeBlock(block, result, merged, ids);
+			result.add(operation);
+		}
+		mergeRun(run, result, merged, ids);
+		mergeBlock(block, result, merged, ids);
+
+		if (merged.isEmpty())
+			return new OptimizedOperationList(operations, operations, merged);
+		return new OptimizedOperationList(operations, result, merged);
+	}
+
+	/**
+	 * Returns whether a write operation can be part of a block write, which
+	 * requires the data to consist of complete words
+	 */
+	private static boolean isBlockWritable(WriteOperation operation) {
+		return operation.getData() != null && operation.getData().length > 0 && operation.getData().length % 2 == 0;
+	}
+
+	/**
+	 * Returns whether a write operation writes the words following a block of
+	 * write operations without exceeding the maximum block size
+	 */
+	private static boolean continuesBlock(List<WriteOperation> block, WriteOperation operation, int maxBlockWriteWords) {
+		WriteOperation first = block.get(0);
+		int words = 0;
+		for (WriteOperation write : block)
+			words += write.getData().length / 2;
+		return first.getBank() == operation.getBank() && first.getPassword() == operation.getPassword()
+				&& (operation.getOffset() & 0xFFFF) == (first.getOffset() & 0xFFFF) + words
+				&& words + operation.getData().length / 2 <= maxBlockWriteWords;
+	}
+
+	/**
+	 * Merges a block of consecutive write operations and adds the resulting
+	 * operation to a list. The block is cleared afterwards.
+	 */
+	private static void mergeBlock(List<WriteOperation> block, List<TagOperation> result, List<Merged<?>> merged, Set<String> ids) {
+		if (block.size() < 2) {
+			result.addAll(block);
+			block.clear();
+			return;
+		}
+		WriteOperation first = block.get(0);
+		int length = 0;
+		for (WriteOperation write : block)
+			length += write.getData().length;
+		byte[] data = new byte[length];
+		int index = 0;
+		for (WriteOperation write : block) {
+			System.arraycopy(write.getData(), 0, data, index, write.getData().length);
+			index += write.getData().length;
+		}
+
+		WriteOperation write = new WriteOperation();
+		write.setOperationId(generateId(ids));
+		write.setBank(first.getBank());
+		write.setPassword(first.getPassword());
+		write.setOffset(first.getOffset());
+		write.setData(data);
+		merged.add(new MergedWrite(write, new ArrayList<>(block)));
+		result.add(write);
+		block.clear();
+	}
+
+	/**
+	 * Merges a run of consecutive read operations and adds the resulting
+	 * operations to a list. The run is cleared afterwards.
+	 */
+	private static void mergeRun(List<ReadOperation> run, List<TagOperation> result, List<Merged<?>> mergedReads, Set<String> ids) {
+		if (run.size() < 2) {
+			result.addAll(run);
+			run.clear();
+			return;
+		}
+
+		// group by bank and password in order of first appearance
+		Map<Long, List<ReadOperation>> groups = new LinkedHashMap<>();
+		for (ReadOperation operation : run) {
+			Long key = Long.valueOf((long) (operation.getBank() & 0xFFFF) << 32 | operation.getPassword() & 0xFFFFFFFFL);
+			List<ReadOperation> group = groups.get(key);
+			if (group == null) {
+				group = new ArrayList<>();
+				groups.put(key, group);
+			}
+			group.add(operation);
+		}
+
+		// each resulting operation is placed at the position of its first part
+		final Map<TagOperation, Integer> positions = new IdentityHashMap<>();
+		List<TagOperation> merged = new ArrayList<>();
+		for (List<ReadOperation> group : groups.values()) {
+			List<ReadOperation> sorted = new ArrayList<>(group);
+			Collections.sort(sorted, OFFSET_COMPARATOR);
+
+			List<ReadOperation> parts = new ArrayList<>();
+			long start = 0, end = 0;
+			for (ReadOperation operation : sorted) {
+				long offset = operation.getOffset() & 0xFFFF;
+				long operationEnd = end(operation);
+				long mergedEnd = Math.max(end, operationEnd);
+				// the length of the merged operation must fit into a short
+				if (!parts.isEmpty() && offset <= end && (mergedEnd == Long.MAX_VALUE || mergedEnd - start <= Short.MAX_VALUE)) {
+					parts.add(operation);
+					end = mergedEnd;
+				} else {
+					add(parts, start, end, merged, positions, run, mergedReads, ids);
+					parts = new ArrayList<>();
+					parts.add(operation);
+					start = offset;
+					end = operationEnd;
+				}
+			}
+			add(parts, start, end, merged, positions, run, mergedReads, ids);
+		}
+
+		Collections.sort(merged, new Comparator<TagOperation>() {
+			@Override
+			public int compare(TagOperation o1, TagOperation o2) {
+				return positions.get(o1).compareTo(positions.get(o2));
+			}
+		});
+		result.addAll(merged);
+		run.clear();
+	}
+
+	/**
+	 * Returns the exclusive end word of a read operation, reading to the end of
+	 * the bank if the length is zero
+	 */
+	private static long end(ReadOperation operation) {
+		if (operation.getLength() == 0)
+			return Long.MAX_VALUE;
+		return (operation.getOffset() & 0xFFFF) + (operation.getLength() & 0xFFFF);
+	}
+
+	private static void add(List<ReadOperation> parts, long start, long end, List<TagOperation> merged, Map<TagOperation, Integer> positions,
+			List<ReadOperation> run, List<Merged<?>> mergedReads, Set<String> ids) {
+		if (parts.isEmpty())
+			return;
+		// keep the parts in their original order
+		final Map<ReadOperation, Integer> indexes = new IdentityHashMap<>();
+		for (ReadOperation part : parts)
+			indexes.put(part, Integer.valueOf(indexOf(run, part)));
+		List<ReadOperation> ordered = new ArrayList<>(parts);
+		Collections.sort(ordered, new Comparator<ReadOperation>() {
+			@Override
+			public int compare(ReadOperation o1, ReadOperation o2) {
+				return indexes.get(o1).compareTo(indexes.get(o2));
+			}
+		});
+
+		TagOperation operation;
+		if (parts.size() == 1) {
+			operation = parts.get(0);
+		} else {
+			ReadOperation read = new ReadOperation();
+			read.setOperationId(generateId(ids));
+			read.setBank(parts.get(0).getBank());
+			read.setPassword(parts.get(0).getPassword());
+			read.setOffset((short) start);
+			read.setLength(end == Long.MAX_VALUE ? 0 : (short) (end - start));
+			mergedReads.add(new MergedRead(read, ordered));
+			operation = read;
+		}
+		merged.add(operation);
+		positions.put(operation, indexes.get(ordered.get(0)));
+	}
+
+	private static int indexOf(List<ReadOperation> run, ReadOperation operation) {
+		for (int i = 0; i < run.size(); i++)
+			if (run.get(i) == operation)
+				return i;
+		return -1;
+	}
+
+	private static String generateId(Set<String> ids) {
+		for (int i = ids.size();; i++) {
+			String id = MERGED_ID_PREFIX + i;
+			if (ids.add(id))
+				return id;
+		}
+	}
+}
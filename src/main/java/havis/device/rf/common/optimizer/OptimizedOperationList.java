@@ -0,0 +1,236 @@
+package havis.device.rf.common.optimizer;
+
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.operation.WriteOperation;
+import havis.device.rf.tag.result.OperationResult;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The result of {@link OperationListOptimizer#optimize(List)}: the operation
+ * list to execute and the information required to restore the results of the
+ * original operations from the results of the executed ones.
+ */
+public class OptimizedOperationList {
+
+	/**
+	 * An operation replacing several original operations
+	 */
+	static abstract class Merged<T extends TagOperation> {
+		final T operation;
+		final List<T> parts;
+
+		Merged(T operation, List<T> parts) {
+			this.operation = operation;
+			this.parts = parts;
+		}
+
+		/**
+		 * Creates the result of an original operation from the result of the
+		 * merged operation.
+		 *
+		 * @param result
+		 *            the result of the merged operation
+		 * @param part
+		 *            the original operation
+		 * @return the result of the original operation or null if the result
+		 *         does not match the operation
+		 */
+		abstract OperationResult split(OperationResult result, T part);
+	}
+
+	/**
+	 * A read operation replacing several original read operations
+	 */
+	static class MergedRead extends Merged<ReadOperation> {
+
+		MergedRead(ReadOperation operation, List<ReadOperation> parts) {
+			super(operation, parts);
+		}
+
+		@Override
+		OperationResult split(OperationResult result, ReadOperation part) {
+			return result instanceof ReadResult ? slice((ReadResult) result, operation, part) : null;
+		}
+	}
+
+	/**
+	 * A write operation replacing several original write operations to
+	 * consecutive words
+	 */
+	static class MergedWrite extends Merged<WriteOperation> {
+
+		MergedWrite(WriteOperation operation, List<WriteOperation> parts) {
+			super(operation, parts);
+		}
+
+		@Override
+		OperationResult split(OperationResult result, WriteOperation part) {
+			return result instanceof WriteResult ? OptimizedOperationList.split((WriteResult) result, operation, part) : null;
+		}
+	}
+
+	private final List<TagOperation> original;
+	private final List<TagOperation> operations;
+	private final Map<String, Merged<?>> mergedByPartId = new HashMap<>();
+	private final Set<String> mergedIds = new HashSet<>();
+
+	OptimizedOperationList(List<TagOperation> original, List<TagOperation> operations, List<Merged<?>> merged) {
+		this.original = original;
+		this.operations = operations;
+		for (Merged<?> m : merged) {
+			mergedIds.add(m.operation.getOperationId());
+			for (TagOperation part : m.parts)
+				mergedByPartId.put(part.getOperationId(), m);
+		}
+	}
+
+	/**
+	 * @return the operations to execute
+	 */
+	public List<TagOperation> getOperations() {
+		return operations;
+	}
+
+	/**
+	 * @return true if the operations to execute differ from the original ones
+	 */
+	public boolean isOptimized() {
+		return !mergedByPartId.isEmpty();
+	}
+
+	/**
+	 * Replaces the results of the executed operations by the results of the
+	 * original operations in the result lists of the given tags. Results of
+	 * merged operations are split into the results of the original
+	 * operations, all results are ordered like the original operations.
+	 *
+	 * @param tags
+	 *            the tags returned by the execution of {@link #getOperations()}
+	 */
+	public void restore(List<TagData> tags) {
+		if (!isOptimized() || tags == null)
+			return;
+		for (TagData tag : tags) {
+			if (tag == null || tag.getResultList() == null)
+				continue;
+			Map<String, OperationResult> results = new LinkedHashMap<>();
+			for (OperationResult result : tag.getResultList())
+				results.put(result.getOperationId(), result);
+
+			List<OperationResult> restored = new ArrayList<>(tag.getResultList().size());
+			for (TagOperation operation : original) {
+				Merged<?> merged = mergedByPartId.get(operation.getOperationId());
+				OperationResult result;
+				if (merged != null) {
+					result = results.get(merged.operation.getOperationId());
+					if (result != null)
+						result = split(merged, result, operation);
+				} else
+					result = results.remove(operation.getOperationId());
+				if (result != null)
+					restored.add(result);
+			}
+			// keep results which do not belong to any operation
+			for (OperationResult result : results.values())
+				if (!mergedIds.contains(result.getOperationId()))
+					restored.add(result);
+			tag.setResultList(restored);
+		}
+	}
+
+	/**
+	 * Returns the original read operations of a restored tag which failed
+	 * because the merged read operation they are part of failed, e.g. because
+	 * a merged read covers locked or missing words between the parts. These
+	 * operations may succeed if executed individually. Parts of merged reads
+	 * without a response from the tag are not returned.
+	 *
+	 * @param tag
+	 *            a tag restored by {@link #restore(List)}
+	 * @return the failed read operations in the order of the original
+	 *         operations, an empty list if there are none
+	 */
+	public List<TagOperation> getFailedReads(TagData tag) {
+		List<TagOperation> failed = new ArrayList<>();
+		if (!isOptimized() || tag == null || tag.getResultList() == null)
+			return failed;
+		Map<String, OperationResult> results = new HashMap<>();
+		for (OperationResult result : tag.getResultList())
+			results.put(result.getOperationId(), result);
+		for (TagOperation operation : original) {
+			if (!(mergedByPartId.get(operation.getOperationId()) instanceof MergedRead))
+				continue;
+			OperationResult result = results.get(operation.getOperationId());
+			if (result instanceof ReadResult && ((ReadResult) result).getResult() != ReadResult.Result.SUCCESS
+					&& ((ReadResult) result).getResult() != ReadResult.Result.NO_RESPONSE_FROM_TAG)
+				failed.add(operation);
+		}
+		return failed;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T extends TagOperation> OperationResult split(Merged<T> merged, OperationResult result, TagOperation part) {
+		return merged.split(result, (T) part);
+	}
+
+	/**
+	 * Creates the result of an original read operation from the result of the
+	 * merged read operation.
+	 */
+	static ReadResult slice(ReadResult mergedResult, ReadOperation merged, ReadOperation part) {
+		ReadResult result = new ReadResult();
+		result.setOperationId(part.getOperationId());
+		result.setResult(mergedResult.getResult());
+		byte[] data = mergedResult.getReadData();
+		if (mergedResult.getResult() != ReadResult.Result.SUCCESS || data == null) {
+			result.setReadData(data == null ? null : new byte[0]);
+			return result;
+		}
+		int from = ((part.getOffset() & 0xFFFF) - (merged.getOffset() & 0xFFFF)) * 2;
+		int to = part.getLength() == 0 ? data.length : from + (part.getLength() & 0xFFFF) * 2;
+		if (from > data.length || to > data.length) {
+			// the tag returned less data than requested
+			result.setResult(ReadResult.Result.MEMORY_OVERRUN_ERROR);
+			result.setReadData(new byte[0]);
+			return result;
+		}
+		byte[] readData = new byte[to - from];
+		System.arraycopy(data, from, readData, 0, readData.length);
+		result.setReadData(readData);
+		return result;
+	}
+
+	/**
+	 * Creates the result of an original write operation from the result of
+	 * the merged write operation. The written words are assigned to the parts
+	 * in address order, a part is successful if all of its words have been
+	 * written.
+	 */
+	static WriteResult split(WriteResult mergedResult, WriteOperation merged, WriteOperation part) {
+		int start = (part.getOffset() & 0xFFFF) - (merged.getOffset() & 0xFFFF);
+		int words = part.getData().length / 2;
+		int written = Math.min(Math.max((mergedResult.getWordsWritten() & 0xFFFF) - start, 0), words);
+
+		WriteResult result = new WriteResult();
+		result.setOperationId(part.getOperationId());
+		result.setWordsWritten((short) written);
+		if (written == words)
+			result.setResult(WriteResult.Result.SUCCESS);
+		else if (mergedResult.getResult() == WriteResult.Result.SUCCESS)
+			result.setResult(WriteResult.Result.NON_SPECIFIC_TAG_ERROR);
+		else
+			result.setResult(mergedResult.getResult());
+		return result;
+	}
+}
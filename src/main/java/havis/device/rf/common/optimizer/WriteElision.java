@@ -0,0 +1,453 @@
+package havis.device.rf.common.optimizer;
+
+import havis.device.rf.common.cache.MemoryBankCache;
+import havis.device.rf.common.util.Epc;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.exception.ImplementationException;
+import havis.device.rf.exception.ParameterException;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.TagDataList;
+import havis.device.rf.tag.operation.LockOperation;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.operation.WriteOperation;
+import havis.device.rf.tag.result.KillResult;
+import havis.device.rf.tag.result.LockResult;
+import havis.device.rf.tag.result.OperationResult;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Skips write operations which write the content the tags already hold and
+ * reports them as successful.
+ * <p>
+ * The memory content is known from the filters of the execution, which all
+ * selected tags match, from reads at the beginning of the operation list and
+ * from the memory bank caches. Reads and cached data are tag specific, so the
+ * tags are determined first by executing the reads at the beginning of the
+ * operation list (or an inventory if there are none). This costs an additional
+ * execution, the tags are therefore only determined first if a preceding read
+ * covers the words of a write or a cache holds them for any tag, and less
+ * often if recent executions did not allow to skip any write. A write
+ * operation is skipped if it is redundant for all of these tags, the remaining
+ * operations are executed afterwards.
+ * </p>
+ * <p>
+ * The tags of both executions are matched by their EPC, considering writes to
+ * the EPC bank, tags sharing an EPC in the order of the first execution. Skipped writes of tags which only show up during the second
+ * execution are reported as failed, as they have not been executed. Tags which
+ * do not respond to the second execution keep the results of the first one,
+ * their skipped writes are reported as successful and the other operations as
+ * failed.
+ * </p>
+ */
+public class WriteElision {
+
+	/**
+	 * Executes operations on the hardware
+	 */
+	public interface OperationExecutor {
+		/**
+		 * Executes operations.
+		 *
+		 * @param operations
+		 *            the operations
+		 * @return the tags, may be null
+		 * @throws ImplementationException
+		 *             if the execution fails
+		 * @throws ParameterException
+		 *             if a parameter is invalid
+		 */
+		TagDataList execute(List<TagOperation> operations) throws ImplementationException, ParameterException;
+	}
+
+	/**
+	 * Minimum ratio of recent executions which determined the tags first and
+	 * could skip a write, below it the tags are only determined first every
+	 * {@link #PROBE_INTERVAL}-th time
+	 */
+	static final double MIN_PROBE_SUCCESS_RATIO = 0.25;
+
+	/**
+	 * Number of executions after which the tags are determined first again
+	 * while the success ratio is below {@link #MIN_PROBE_SUCCESS_RATIO}
+	 */
+	static final int PROBE_INTERVAL = 16;
+
+	private final List<MemoryBankCache> caches;
+	private final AtomicLong elidedWrites = new AtomicLong();
+	private double probeSuccessRatio = 1;
+	private int skippedProbes;
+
+	/**
+	 * Creates a write elision.
+	 *
+	 * @param caches
+	 *            the memory bank caches providing the content of recently read
+	 *            words
+	 */
+	public WriteElision(List<MemoryBankCache> caches) {
+		this.caches = caches;
+	}
+
+	/**
+	 * @return the number of write operations skipped so far, counted per tag
+	 */
+	public long getElidedWriteCount() {
+		return elidedWrites.get();
+	}
+
+	/**
+	 * Returns whether an operation list contains write operations.
+	 *
+	 * @param operations
+	 *            the operations
+	 * @return true if the list contains at least one write operation
+	 */
+	public static boolean containsWrite(List<TagOperation> operations) {
+		if (operations != null)
+			for (TagOperation operation : operations)
+				if (operation instanceof WriteOperation)
+					return true;
+		return false;
+	}
+
+	/**
+	 * Executes operations, skipping writes of content the tags already hold.
+	 *
+	 * @param executor
+	 *            the executor of the operations
+	 * @param filters
+	 *            the filters of the execution
+	 * @param operations
+	 *            the operations
+	 * @return the tags with the results of all operations in the order of the
+	 *         operations, may be null
+	 * @throws ImplementationException
+	 *             if the execution fails
+	 * @throws ParameterException
+	 *             if a parameter is invalid
+	 */
+	public TagDataList execute(OperationExecutor executor, List<Filter> filters, List<TagOperation> operations) throws ImplementationException,
+			ParameterException {
+		if (!hasUniqueIds(operations))
+			// results could not be assigned to the original operations
+			return executor.execute(operations);
+
+		KnownMemory filterMemory = KnownMemory.fromFilters(filters);
+		int probeEnd = getProbeEnd(operations);
+		if (probeEnd < 0) {
+			// the memory content known from the filters applies to all tags
+			Set<String> elided = elide(operations, 0, Collections.singletonList(filterMemory));
+			if (elided.isEmpty())
+				return executor.execute(operations);
+			TagDataList tdl = executor.execute(remove(operations, elided));
+			if (tdl != null)
+				for (TagData tag : tdl.getEntryList())
+					restore(tag, null, operations, elided, true);
+			return tdl;
+		}
+
+		TagDataList probe = executor.execute(new ArrayList<>(operations.subList(0, probeEnd)));
+		if (probe == null || probe.getEntryList().isEmpty())
+			return probe;
+
+		List<KnownMemory> memories = new ArrayList<>();
+		for (TagData tag : probe.getEntryList())
+			memories.add(getKnownMemory(tag, filterMemory, operations, probeEnd));
+		Set<String> elided = elide(operations, probeEnd, memories);
+		probed(!elided.isEmpty());
+		List<TagOperation> remaining = remove(operations.subList(probeEnd, operations.size()), elided);
+		if (remaining.isEmpty()) {
+			// all remaining operations have been skipped
+			for (TagData tag : probe.getEntryList())
+				restore(tag, null, operations, elided, true);
+			return probe;
+		}
+		TagDataList tdl = executor.execute(remaining);
+		if (tdl == null)
+			tdl = new TagDataList();
+
+		// combine the results of both executions, tags sharing an EPC are
+		// matched in the order of the probe execution
+		Map<Epc, List<TagData>> current = new HashMap<>();
+		Map<Epc, List<TagData>> expected = new HashMap<>();
+		for (TagData tag : probe.getEntryList()) {
+			index(current, Epc.valueOf(tag.getEpc()), tag);
+			index(expected, getExpectedEpc(tag, remaining), tag);
+		}
+		Set<TagData> unmatched = Collections.newSetFromMap(new IdentityHashMap<TagData, Boolean>());
+		unmatched.addAll(probe.getEntryList());
+		Set<Epc> responded = new HashSet<>();
+		for (TagData tag : tdl.getEntryList()) {
+			Epc epc = Epc.valueOf(tag.getEpc());
+			responded.add(epc);
+			// the EPC is unchanged if a write to the EPC bank failed
+			TagData probedTag = match(expected.get(epc), unmatched);
+			if (probedTag == null)
+				probedTag = match(current.get(epc), unmatched);
+			restore(tag, probedTag, operations, elided, probedTag != null);
+		}
+		// tags which did not respond to the second execution, unmatched tags
+		// with the EPC of a responding tag are duplicates of the same tag,
+		// e.g. reported by several antennas
+		for (TagData tag : probe.getEntryList()) {
+			if (unmatched.contains(tag) && !responded.contains(Epc.valueOf(tag.getEpc()))
+					&& !responded.contains(getExpectedEpc(tag, remaining))) {
+				for (TagOperation operation : remaining)
+					tag.getResultList().add(getFailedResult(operation));
+				restore(tag, null, operations, elided, true);
+				tdl.getEntryList().add(tag);
+			}
+		}
+		return tdl;
+	}
+
+	private static void index(Map<Epc, List<TagData>> tags, Epc epc, TagData tag) {
+		List<TagData> list = tags.get(epc);
+		if (list == null)
+			tags.put(epc, list = new ArrayList<>());
+		list.add(tag);
+	}
+
+	/**
+	 * Removes the first of the tags from the unmatched tags.
+	 *
+	 * @return the removed tag or null if none of the tags is unmatched
+	 */
+	private static TagData match(List<TagData> tags, Set<TagData> unmatched) {
+		if (tags != null)
+			for (TagData tag : tags)
+				if (unmatched.remove(tag))
+					return tag;
+		return null;
+	}
+
+	/**
+	 * Returns the EPC of a tag after successful writes to its EPC bank.
+	 */
+	private static Epc getExpectedEpc(TagData tag, List<TagOperation> operations) {
+		byte[] epc = tag.getEpc() == null ? new byte[0] : tag.getEpc();
+		// PC word followed by the EPC
+		byte[] memory = new byte[2 + epc.length];
+		memory[0] = (byte) (tag.getPc() >> 8);
+		memory[1] = (byte) tag.getPc();
+		System.arraycopy(epc, 0, memory, 2, epc.length);
+		boolean pcWritten = false;
+		for (TagOperation operation : operations) {
+			if (!(operation instanceof WriteOperation))
+				continue;
+			WriteOperation write = (WriteOperation) operation;
+			if (write.getBank() != RFUtils.BANK_EPC || write.getData() == null)
+				continue;
+			int from = ((write.getOffset() & 0xFFFF) - 1) * 2;
+			// skip the CRC word
+			int skip = Math.max(-from, 0);
+			if (write.getData().length <= skip)
+				continue;
+			if (from + write.getData().length > memory.length)
+				memory = Arrays.copyOf(memory, from + write.getData().length);
+			System.arraycopy(write.getData(), skip, memory, from + skip, write.getData().length - skip);
+			pcWritten |= from + skip == 0;
+		}
+		int length = pcWritten ? Math.min((memory[0] >> 3 & 0x1F) * 2, memory.length - 2) : epc.length;
+		return Epc.valueOf(Arrays.copyOfRange(memory, 2, 2 + length));
+	}
+
+	private static OperationResult getFailedResult(TagOperation operation) {
+		OperationResult result;
+		if (operation instanceof ReadOperation) {
+			ReadResult readResult = new ReadResult();
+			readResult.setResult(ReadResult.Result.NO_RESPONSE_FROM_TAG);
+			result = readResult;
+		} else if (operation instanceof WriteOperation) {
+			WriteResult writeResult = new WriteResult();
+			writeResult.setResult(WriteResult.Result.NO_RESPONSE_FROM_TAG);
+			result = writeResult;
+		} else if (operation instanceof LockOperation) {
+			LockResult lockResult = new LockResult();
+			lockResult.setResult(LockResult.Result.NO_RESPONSE_FROM_TAG);
+			result = lockResult;
+		} else {
+			KillResult killResult = new KillResult();
+			killResult.setResult(KillResult.Result.NO_RESPONSE_FROM_TAG);
+			result = killResult;
+		}
+		result.setOperationId(operation.getOperationId());
+		return result;
+	}
+
+	/**
+	 * Returns the number of read operations to execute before deciding which
+	 * writes to skip, which are the reads preceding the first write if the
+	 * content of a later write may be known from them or from the caches.
+	 *
+	 * @return the number of operations or -1 if the tags need not be
+	 *         determined first
+	 */
+	private int getProbeEnd(List<TagOperation> operations) {
+		int end = 0;
+		while (end < operations.size() && operations.get(end) instanceof ReadOperation)
+			end++;
+		for (TagOperation operation : operations.subList(end, operations.size())) {
+			if (!(operation instanceof WriteOperation) || ((WriteOperation) operation).getData() == null)
+				continue;
+			WriteOperation write = (WriteOperation) operation;
+			for (TagOperation read : operations.subList(0, end))
+				if (covers((ReadOperation) read, write))
+					return isProbeDue() ? end : -1;
+			for (MemoryBankCache cache : caches)
+				if (cache.getBank() == write.getBank() && cache.isHitRatioReached() && cache.isHeldByAny(write.getOffset() & 0xFFFF, write.getData()))
+					return isProbeDue() ? end : -1;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return true if the read operation reads all words of the write
+	 *         operation
+	 */
+	private static boolean covers(ReadOperation read, WriteOperation write) {
+		int offset = read.getOffset() & 0xFFFF;
+		int writeOffset = write.getOffset() & 0xFFFF;
+		return read.getBank() == write.getBank() && offset <= writeOffset
+				&& (read.getLength() == 0 || offset + (read.getLength() & 0xFFFF) >= writeOffset + write.getData().length / 2);
+	}
+
+	private synchronized boolean isProbeDue() {
+		if (probeSuccessRatio >= MIN_PROBE_SUCCESS_RATIO || ++skippedProbes >= PROBE_INTERVAL) {
+			skippedProbes = 0;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Updates the success ratio after the tags have been determined first.
+	 *
+	 * @param success
+	 *            whether a write could be skipped
+	 */
+	private synchronized void probed(boolean success) {
+		probeSuccessRatio = (probeSuccessRatio + (success ? 1 : 0)) / 2;
+	}
+
+	/**
+	 * Returns the memory content of a tag known from the filters, its read
+	 * results and the caches.
+	 */
+	private KnownMemory getKnownMemory(TagData tag, KnownMemory filterMemory, List<TagOperation> operations, int probeEnd) {
+		KnownMemory memory = new KnownMemory(filterMemory);
+		Epc epc = Epc.valueOf(tag.getEpc());
+		for (TagOperation operation : operations.subList(probeEnd, operations.size())) {
+			if (!(operation instanceof WriteOperation) || ((WriteOperation) operation).getData() == null)
+				continue;
+			WriteOperation write = (WriteOperation) operation;
+			for (MemoryBankCache cache : caches) {
+				byte[] data = cache.getBank() == write.getBank() ? cache.read(epc, write.getOffset() & 0xFFFF, write.getData().length / 2) : null;
+				if (data != null)
+					memory.put(write.getBank(), write.getOffset() & 0xFFFF, data);
+			}
+		}
+
+		// read results take precedence over cached data
+		Map<String, OperationResult> results = new HashMap<>();
+		for (OperationResult result : tag.getResultList())
+			results.put(result.getOperationId(), result);
+		for (TagOperation operation : operations.subList(0, probeEnd)) {
+			ReadOperation read = (ReadOperation) operation;
+			OperationResult result = results.get(read.getOperationId());
+			if (result instanceof ReadResult && ((ReadResult) result).getResult() == ReadResult.Result.SUCCESS && ((ReadResult) result).getReadData() != null)
+				memory.put(read.getBank(), read.getOffset() & 0xFFFF, ((ReadResult) result).getReadData());
+		}
+		return memory;
+	}
+
+	/**
+	 * Returns the IDs of the write operations from an index on which are
+	 * redundant for all tags.
+	 */
+	private static Set<String> elide(List<TagOperation> operations, int from, List<KnownMemory> memories) {
+		Set<String> elided = new HashSet<>();
+		for (TagOperation operation : operations.subList(from, operations.size())) {
+			if (!(operation instanceof WriteOperation))
+				continue;
+			WriteOperation write = (WriteOperation) operation;
+			boolean redundant = true;
+			for (KnownMemory memory : memories)
+				redundant &= memory.contains(write);
+			if (redundant) {
+				elided.add(operation.getOperationId());
+			} else if (write.getData() != null) {
+				// the content depends on the result of the write
+				for (KnownMemory memory : memories)
+					memory.forget(write);
+			}
+		}
+		return elided;
+	}
+
+	private static List<TagOperation> remove(List<TagOperation> operations, Set<String> ids) {
+		List<TagOperation> result = new ArrayList<>(operations.size());
+		for (TagOperation operation : operations)
+			if (!ids.contains(operation.getOperationId()))
+				result.add(operation);
+		return result;
+	}
+
+	/**
+	 * Sets the results of a tag in the order of the original operations,
+	 * adding the results of the probe execution and of the skipped writes.
+	 */
+	private void restore(TagData tag, TagData probedTag, List<TagOperation> operations, Set<String> elided, boolean known) {
+		Map<String, OperationResult> results = new LinkedHashMap<>();
+		if (probedTag != null)
+			for (OperationResult result : probedTag.getResultList())
+				results.put(result.getOperationId(), result);
+		for (OperationResult result : tag.getResultList())
+			results.put(result.getOperationId(), result);
+
+		List<OperationResult> restored = new ArrayList<>(operations.size());
+		for (TagOperation operation : operations) {
+			if (elided.contains(operation.getOperationId())) {
+				WriteResult result = new WriteResult();
+				result.setOperationId(operation.getOperationId());
+				if (known) {
+					result.setResult(WriteResult.Result.SUCCESS);
+					result.setWordsWritten((short) (((WriteOperation) operation).getData().length / 2));
+					elidedWrites.incrementAndGet();
+				} else {
+					result.setResult(WriteResult.Result.NON_SPECIFIC_TAG_ERROR);
+				}
+				restored.add(result);
+			} else {
+				OperationResult result = results.remove(operation.getOperationId());
+				if (result != null)
+					restored.add(result);
+			}
+		}
+		restored.addAll(results.values());
+		tag.setResultList(restored);
+	}
+
+	private static boolean hasUniqueIds(List<TagOperation> operations) {
+		Set<String> ids = new HashSet<>();
+		for (TagOperation operation : operations)
+			if (operation.getOperationId() == null || !ids.add(operation.getOperationId()))
+				return false;
+		return true;
+	}
+}
@@ -0,0 +1,288 @@
+package havis.device.rf.common.simulator;
+
+import havis.device.rf.RFConsumer;
+import havis.device.rf.capabilities.RegulatoryCapabilities;
+import havis.device.rf.common.BatchHardwareManager;
+import havis.device.rf.configuration.AntennaConfiguration;
+import havis.device.rf.configuration.AntennaConfigurationList;
+import havis.device.rf.configuration.AntennaProperties;
+import havis.device.rf.configuration.AntennaPropertyList;
+import havis.device.rf.configuration.ConnectType;
+import havis.device.rf.configuration.RFRegion;
+import havis.device.rf.configuration.RssiFilter;
+import havis.device.rf.configuration.SingulationControl;
+import havis.device.rf.exception.ConnectionException;
+import havis.device.rf.exception.ImplementationException;
+import havis.device.rf.exception.ParameterException;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.TagDataList;
+import havis.device.rf.tag.operation.KillOperation;
+import havis.device.rf.tag.operation.LockOperation;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.operation.WriteOperation;
+import havis.device.rf.tag.result.OperationResult;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A hardware manager simulating a population of tags, selected by setting
+ * <code>havis.device.rf.common.hardwareManager.class</code> to this class. The
+ * population is configured by the
+ * <code>havis.device.rf.common.simulator.*</code> properties, see
+ * {@link SimulatorSettings}.
+ * <p>
+ * Each execution inventories the tags visible on the given antennas which are
+ * selected by the filters. The singulation uses framed slotted ALOHA with
+ * 2<sup>Q</sup> slots per round and the Q value and number of rounds of the
+ * singulation control: tags replying in the same slot collide and are not read
+ * in this round. A tag is reported once per execution on the antenna it has
+ * been read on. The operations are executed on the memory of each read tag.
+ * The execution takes the simulated air time multiplied by the time scale.
+ * </p>
+ */
+public class SimulatedHardwareManager implements BatchHardwareManager {
+
+	private static final Logger log = Logger.getLogger(SimulatedHardwareManager.class.getName());
+
+	private static final short DEFAULT_Q = 4;
+	private static final short MAX_Q = 15;
+
+	/**
+	 * The deviation of the RSSI of a single reply from the mean RSSI of the tag
+	 */
+	private static final double RSSI_NOISE = 1;
+
+	private final SimulatorSettings settings;
+	private final TagPopulation population;
+	private String region;
+	private RssiFilter rssiFilter;
+	private SingulationControl singulationControl;
+
+	/**
+	 * Creates a hardware manager with the settings of the environment
+	 */
+	public SimulatedHardwareManager() {
+		this(new SimulatorSettings());
+	}
+
+	/**
+	 * Creates a hardware manager.
+	 *
+	 * @param settings
+	 *            the settings
+	 */
+	public SimulatedHardwareManager(SimulatorSettings settings) {
+		this(settings, new TagPopulation(settings));
+	}
+
+	SimulatedHardwareManager(SimulatorSettings settings, TagPopulation population) {
+		this.settings = settings;
+		this.population = population;
+	}
+
+	@Override
+	public void openConnection() throws ConnectionException, ImplementationException {
+		log.log(Level.FINE, "Simulating {0} tags on {1} antennas", new Object[] { settings.getTagCount(), settings.getAntennaCount() });
+	}
+
+	@Override
+	public void closeConnection() throws ConnectionException {
+	}
+
+	@Override
+	public TagDataList execute(List<Short> antennas, List<Filter> filter, List<TagOperation> operations, RFConsumer consumer)
+			throws ImplementationException, ParameterException {
+		if (operations != null)
+			for (TagOperation operation : operations)
+				if (!(operation instanceof ReadOperation || operation instanceof WriteOperation || operation instanceof LockOperation || operation instanceof KillOperation))
+					throw new ParameterException("Unsupported operation " + operation.getClass().getName());
+
+		Random random = population.getRandom();
+		List<SimulatedTag> tags = population.getTags();
+		Set<SimulatedTag> read = new HashSet<>();
+		TagDataList tdl = new TagDataList();
+		long micros = 0;
+		for (short antenna : getAntennas(antennas)) {
+			List<SimulatedTag> candidates = new ArrayList<>();
+			for (SimulatedTag tag : tags)
+				if (!read.contains(tag) && tag.getRssi(antenna) != null && isSelected(tag, filter))
+					candidates.add(tag);
+
+			for (int round = 0; round < getRounds() && !candidates.isEmpty(); round++) {
+				int slots = 1 << getQ();
+				List<List<SimulatedTag>> frame = new ArrayList<>(slots);
+				for (int i = 0; i < slots; i++)
+					frame.add(new ArrayList<SimulatedTag>(1));
+				for (SimulatedTag tag : candidates)
+					frame.get(random.nextInt(slots)).add(tag);
+
+				for (List<SimulatedTag> slot : frame) {
+					if (slot.isEmpty()) {
+						// the reader stops waiting for a reply early
+						micros += settings.getSlotMicros() / 4;
+					} else if (slot.size() > 1) {
+						micros += settings.getSlotMicros() / 2;
+					} else {
+						micros += settings.getSlotMicros();
+						SimulatedTag tag = slot.get(0);
+						candidates.remove(tag);
+						read.add(tag);
+						int rssi = (int) Math.round(tag.getRssi(antenna).doubleValue() + random.nextGaussian() * RSSI_NOISE);
+						if (!isInRange(rssi))
+							continue;
+						TagData tagData = new TagData();
+						tagData.setEpc(tag.getEpc());
+						tagData.setPc(tag.getPc());
+						tagData.setCrc(tag.getCrc());
+						tagData.setAntennaID(antenna);
+						tagData.setRssi(rssi);
+						if (operations != null)
+							for (TagOperation operation : operations) {
+								OperationResult result = tag.execute(operation);
+								tagData.getResultList().add(result);
+								micros += settings.getAccessMicros() + getWords(result) * settings.getWordMicros();
+							}
+						tdl.getEntryList().add(tagData);
+					}
+				}
+			}
+		}
+
+		long nanos = (long) (micros * 1000 * settings.getTimeScale());
+		if (nanos > 0)
+			LockSupport.parkNanos(nanos);
+		return tdl;
+	}
+
+	/**
+	 * @return the antennas to inventory, all antennas if the list is empty or
+	 *         contains antenna 0
+	 */
+	private List<Short> getAntennas(List<Short> antennas) {
+		List<Short> result = new ArrayList<>();
+		if (antennas == null || antennas.isEmpty() || antennas.contains(Short.valueOf((short) 0))) {
+			for (short antenna = 1; antenna <= settings.getAntennaCount(); antenna++)
+				result.add(Short.valueOf(antenna));
+		} else {
+			for (Short antenna : antennas)
+				if (antenna.shortValue() <= settings.getAntennaCount() && !result.contains(antenna))
+					result.add(antenna);
+		}
+		return result;
+	}
+
+	private static boolean isSelected(SimulatedTag tag, List<Filter> filters) {
+		if (filters != null)
+			for (Filter filter : filters)
+				if (!tag.isSelected(filter))
+					return false;
+		return true;
+	}
+
+	private boolean isInRange(int rssi) {
+		if (rssiFilter == null)
+			return true;
+		return (rssiFilter.getMinRssi() == 0 || rssi >= rssiFilter.getMinRssi()) && (rssiFilter.getMaxRssi() == 0 || rssi <= rssiFilter.getMaxRssi());
+	}
+
+	private short getQ() {
+		if (singulationControl == null)
+			return DEFAULT_Q;
+		return (short) Math.max(0, Math.min(MAX_Q, singulationControl.getQValue()));
+	}
+
+	private int getRounds() {
+		return singulationControl == null ? 1 : Math.max(1, singulationControl.getRounds());
+	}
+
+	/**
+	 * @return the number of words transferred by an operation
+	 */
+	private static int getWords(OperationResult result) {
+		if (result instanceof ReadResult && ((ReadResult) result).getReadData() != null)
+			return ((ReadResult) result).getReadData().length / 2;
+		if (result instanceof WriteResult)
+			return ((WriteResult) result).getWordsWritten();
+		return 0;
+	}
+
+	@Override
+	public String getRegion() {
+		return region;
+	}
+
+	@Override
+	public void setRegion(RFRegion rfcRegion, AntennaConfigurationList antennaConfigurationList) throws ParameterException,
+			ImplementationException {
+		region = rfcRegion == null ? null : rfcRegion.getId();
+	}
+
+	@Override
+	public void setAntennaConfiguration(AntennaConfiguration antennaConfiguration, RegulatoryCapabilities regulatoryCapabilities, boolean forceTune)
+			throws ParameterException, ImplementationException {
+	}
+
+	@Override
+	public void setAntennaConfigurations(List<AntennaConfiguration> antennaConfigurations, RegulatoryCapabilities regulatoryCapabilities,
+			boolean forceTune) throws ParameterException, ImplementationException {
+	}
+
+	@Override
+	public AntennaPropertyList getAntennaProperties(Map<Short, ConnectType> connectTypeMap) throws ImplementationException {
+		AntennaPropertyList list = new AntennaPropertyList();
+		for (short antenna = 1; antenna <= settings.getAntennaCount(); antenna++) {
+			ConnectType connectType = connectTypeMap == null ? null : connectTypeMap.get(Short.valueOf(antenna));
+			AntennaProperties properties = new AntennaProperties();
+			properties.setId(antenna);
+			properties.setConnected(connectType != ConnectType.FALSE);
+			list.getEntryList().add(properties);
+		}
+		return list;
+	}
+
+	@Override
+	public String getFirmwareVersion() throws ImplementationException {
+		return "simulator";
+	}
+
+	@Override
+	public void installFirmware() throws ImplementationException {
+	}
+
+	@Override
+	public RssiFilter getRssiFilter() {
+		return rssiFilter;
+	}
+
+	@Override
+	public void setRssiFilter(RssiFilter rssiFilter) throws ImplementationException {
+		this.rssiFilter = rssiFilter;
+	}
+
+	@Override
+	public SingulationControl getSingulationControl() {
+		return singulationControl;
+	}
+
+	@Override
+	public void setSingulationControl(SingulationControl singulationControl) throws ImplementationException {
+		this.singulationControl = singulationControl;
+	}
+
+	@Override
+	public int getMaxAntennas() throws ImplementationException {
+		return settings.getAntennaCount();
+	}
+}
@@ -0,0 +1,296 @@
+package havis.device.rf.common.simulator;
+
+import havis.device.rf.common.util.BitMask;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.operation.KillOperation;
+import havis.device.rf.tag.operation.LockOperation;
+import havis.device.rf.tag.operation.LockOperation.Field;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.operation.WriteOperation;
+import havis.device.rf.tag.result.KillResult;
+import havis.device.rf.tag.result.LockResult;
+import havis.device.rf.tag.result.OperationResult;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A simulated tag with reserved, EPC, TID and user memory. Memory accesses
+ * follow the access rules of the air protocol: locked banks are writable in
+ * the secured state only, which is entered with the access password or
+ * immediately if the access password is zero. The TID bank is permalocked.
+ */
+class SimulatedTag {
+
+	/**
+	 * Size of the EPC bank in words: CRC, PC and an EPC of up to 128 bits
+	 */
+	static final int EPC_BANK_WORDS = 10;
+
+	private final byte[][] banks = new byte[4][];
+	private final Map<Short, Double> rssi;
+	private final Set<Field> locked = EnumSet.noneOf(Field.class);
+	private final Set<Field> permalocked = EnumSet.noneOf(Field.class);
+	private final long departure;
+	private boolean killed;
+
+	/**
+	 * Creates a tag.
+	 *
+	 * @param epc
+	 *            the EPC of complete words
+	 * @param tid
+	 *            the TID
+	 * @param userBankWords
+	 *            the size of the user memory in words
+	 * @param rssi
+	 *            the mean RSSI by antenna on which the tag is visible
+	 * @param departure
+	 *            the time in milliseconds the tag leaves the field or
+	 *            {@link Long#MAX_VALUE}
+	 */
+	SimulatedTag(byte[] epc, byte[] tid, int userBankWords, Map<Short, Double> rssi, long departure) {
+		banks[RFUtils.BANK_PSW] = new byte[8];
+		banks[RFUtils.BANK_EPC] = new byte[EPC_BANK_WORDS * 2];
+		banks[RFUtils.BANK_TID] = tid.clone();
+		banks[RFUtils.BANK_USR] = new byte[userBankWords * 2];
+		this.rssi = rssi;
+		this.departure = departure;
+		int pc = epc.length / 2 << 11;
+		banks[RFUtils.BANK_EPC][2] = (byte) (pc >> 8);
+		banks[RFUtils.BANK_EPC][3] = (byte) pc;
+		System.arraycopy(epc, 0, banks[RFUtils.BANK_EPC], 4, epc.length);
+		updateCrc();
+	}
+
+	/**
+	 * @return the EPC as specified by the length bits of the PC
+	 */
+	byte[] getEpc() {
+		byte[] epcBank = banks[RFUtils.BANK_EPC];
+		int length = Math.min(getPc() >> 11 & 0x1F, EPC_BANK_WORDS - 2) * 2;
+		byte[] epc = new byte[length];
+		System.arraycopy(epcBank, 4, epc, 0, length);
+		return epc;
+	}
+
+	short getPc() {
+		return (short) ((banks[RFUtils.BANK_EPC][2] & 0xFF) << 8 | banks[RFUtils.BANK_EPC][3] & 0xFF);
+	}
+
+	short getCrc() {
+		return (short) ((banks[RFUtils.BANK_EPC][0] & 0xFF) << 8 | banks[RFUtils.BANK_EPC][1] & 0xFF);
+	}
+
+	/**
+	 * @param bank
+	 *            the memory bank
+	 * @return the memory of the bank, not a copy
+	 */
+	byte[] getBank(short bank) {
+		return banks[bank];
+	}
+
+	/**
+	 * @param antenna
+	 *            the antenna
+	 * @return the mean RSSI on the antenna or null if the tag is not visible
+	 */
+	Double getRssi(short antenna) {
+		return rssi.get(Short.valueOf(antenna));
+	}
+
+	/**
+	 * @param now
+	 *            the current time in milliseconds
+	 * @return true if the tag is in the field and has not been killed
+	 */
+	boolean isPresent(long now) {
+		return !killed && now < departure;
+	}
+
+	boolean isKilled() {
+		return killed;
+	}
+
+	/**
+	 * Returns whether the tag is selected by a filter.
+	 *
+	 * @param filter
+	 *            the filter
+	 * @return true if the memory matches the filter and the match flag is set
+	 *         or the memory does not match and the flag is not set
+	 */
+	boolean isSelected(Filter filter) {
+		byte[] memory = banks[filter.getBank()];
+		return BitMask.forFilter(filter).matches(memory) == filter.isMatch();
+	}
+
+	/**
+	 * Executes an access operation.
+	 *
+	 * @param operation
+	 *            the operation
+	 * @return the result
+	 */
+	OperationResult execute(TagOperation operation) {
+		OperationResult result;
+		if (operation instanceof ReadOperation)
+			result = read((ReadOperation) operation);
+		else if (operation instanceof WriteOperation)
+			result = write((WriteOperation) operation);
+		else if (operation instanceof LockOperation)
+			result = lock((LockOperation) operation);
+		else if (operation instanceof KillOperation)
+			result = kill((KillOperation) operation);
+		else
+			throw new IllegalArgumentException("Unsupported operation " + operation.getClass().getName());
+		result.setOperationId(operation.getOperationId());
+		return result;
+	}
+
+	private ReadResult read(ReadOperation operation) {
+		ReadResult result = new ReadResult();
+		byte[] memory = banks[operation.getBank()];
+		int offset = (operation.getOffset() & 0xFFFF) * 2;
+		int length = operation.getLength() == 0 ? memory.length - offset : (operation.getLength() & 0xFFFF) * 2;
+		if (!isPasswordValid(operation.getPassword()))
+			result.setResult(ReadResult.Result.INCORRECT_PASSWORD_ERROR);
+		else if (length <= 0 || offset + length > memory.length)
+			result.setResult(ReadResult.Result.MEMORY_OVERRUN_ERROR);
+		else if (operation.getBank() == RFUtils.BANK_PSW && !isSecured(operation.getPassword()) && isPasswordLocked(offset, length))
+			result.setResult(ReadResult.Result.MEMORY_LOCKED_ERROR);
+		else {
+			byte[] data = new byte[length];
+			System.arraycopy(memory, offset, data, 0, length);
+			result.setReadData(data);
+			result.setResult(ReadResult.Result.SUCCESS);
+		}
+		return result;
+	}
+
+	private WriteResult write(WriteOperation operation) {
+		WriteResult result = new WriteResult();
+		byte[] memory = banks[operation.getBank()];
+		byte[] data = operation.getData() == null ? new byte[0] : operation.getData();
+		int offset = (operation.getOffset() & 0xFFFF) * 2;
+		Field field = getField(operation.getBank(), offset);
+		if (!isPasswordValid(operation.getPassword()))
+			result.setResult(WriteResult.Result.INCORRECT_PASSWORD_ERROR);
+		else if (data.length == 0 || data.length % 2 != 0 || offset + data.length > memory.length)
+			result.setResult(WriteResult.Result.MEMORY_OVERRUN_ERROR);
+		else if (operation.getBank() == RFUtils.BANK_TID || permalocked.contains(field) || locked.contains(field)
+				&& !isSecured(operation.getPassword()) || operation.getBank() == RFUtils.BANK_PSW && !isSecured(operation.getPassword())
+				&& isPasswordLocked(offset, data.length))
+			result.setResult(WriteResult.Result.MEMORY_LOCKED_ERROR);
+		else if (operation.getBank() == RFUtils.BANK_EPC && offset == 0)
+			// the CRC is computed by the tag
+			result.setResult(WriteResult.Result.MEMORY_LOCKED_ERROR);
+		else {
+			System.arraycopy(data, 0, memory, offset, data.length);
+			if (operation.getBank() == RFUtils.BANK_EPC)
+				updateCrc();
+			result.setWordsWritten((short) (data.length / 2));
+			result.setResult(WriteResult.Result.SUCCESS);
+		}
+		return result;
+	}
+
+	private LockResult lock(LockOperation operation) {
+		LockResult result = new LockResult();
+		Field field = operation.getField();
+		if (!isPasswordValid(operation.getPassword()))
+			result.setResult(LockResult.Result.INCORRECT_PASSWORD_ERROR);
+		else if (field == Field.USER_MEMORY && banks[RFUtils.BANK_USR].length == 0)
+			result.setResult(LockResult.Result.MEMORY_OVERRUN_ERROR);
+		else if (permalocked.contains(field))
+			result.setResult(LockResult.Result.MEMORY_LOCKED_ERROR);
+		else {
+			switch (operation.getPrivilege()) {
+			case PERMALOCK:
+				permalocked.add(field);
+				locked.add(field);
+				break;
+			case LOCK:
+				locked.add(field);
+				break;
+			default:
+				locked.remove(field);
+				break;
+			}
+			result.setResult(LockResult.Result.SUCCESS);
+		}
+		return result;
+	}
+
+	private KillResult kill(KillOperation operation) {
+		KillResult result = new KillResult();
+		int killPassword = getPassword(0);
+		if (killPassword == 0)
+			result.setResult(KillResult.Result.ZERO_KILL_PASSWORD_ERROR);
+		else if (operation.getKillPassword() != killPassword)
+			result.setResult(KillResult.Result.INCORRECT_PASSWORD_ERROR);
+		else {
+			killed = true;
+			result.setResult(KillResult.Result.SUCCESS);
+		}
+		return result;
+	}
+
+	/**
+	 * A password given for an operation must be the access password
+	 */
+	private boolean isPasswordValid(int password) {
+		return password == 0 || password == getPassword(4);
+	}
+
+	private boolean isSecured(int password) {
+		int accessPassword = getPassword(4);
+		return accessPassword == 0 || password == accessPassword;
+	}
+
+	private boolean isPasswordLocked(int offset, int length) {
+		return offset < 4 && locked.contains(Field.KILL_PASSWORD) || offset + length > 4 && locked.contains(Field.ACCESS_PASSWORD);
+	}
+
+	private int getPassword(int offset) {
+		return RFUtils.bytesToInt(new byte[] { banks[RFUtils.BANK_PSW][offset], banks[RFUtils.BANK_PSW][offset + 1],
+				banks[RFUtils.BANK_PSW][offset + 2], banks[RFUtils.BANK_PSW][offset + 3] });
+	}
+
+	private static Field getField(short bank, int offset) {
+		switch (bank) {
+		case RFUtils.BANK_PSW:
+			return offset < 4 ? Field.KILL_PASSWORD : Field.ACCESS_PASSWORD;
+		case RFUtils.BANK_EPC:
+			return Field.EPC_MEMORY;
+		case RFUtils.BANK_TID:
+			return Field.TID_MEMORY;
+		default:
+			return Field.USER_MEMORY;
+		}
+	}
+
+	/**
+	 * Computes the CRC-16 of the PC and EPC as stored in the first word of the
+	 * EPC bank.
+	 */
+	private void updateCrc() {
+		byte[] epcBank = banks[RFUtils.BANK_EPC];
+		int words = Math.min(getPc() >> 11 & 0x1F, EPC_BANK_WORDS - 2) + 1;
+		int crc = 0xFFFF;
+		for (int i = 2; i < 2 + words * 2; i++) {
+			crc ^= (epcBank[i] & 0xFF) << 8;
+			for (int bit = 0; bit < 8; bit++)
+				crc = (crc & 0x8000) != 0 ? crc << 1 ^ 0x1021 : crc << 1;
+		}
+		crc = ~crc & 0xFFFF;
+		epcBank[0] = (byte) (crc >> 8);
+		epcBank[1] = (byte) crc;
+	}
+}
@@ -0,0 +1,212 @@
+package havis.device.rf.common.simulator;
+
+import havis.device.rf.common.Environment;
+
+/**
+ * The settings of the {@link SimulatedHardwareManager}, initialized from the
+ * <code>havis.device.rf.common.simulator.*</code> properties.
+ */
+public class SimulatorSettings {
+
+	private int tagCount = Environment.SIMULATOR_TAG_COUNT;
+	private int userBankWords = Environment.SIMULATOR_USER_BANK_WORDS;
+	private int antennaCount = Environment.SIMULATOR_ANTENNA_COUNT;
+	private double visibility = Environment.SIMULATOR_VISIBILITY;
+	private double rssiMean = Environment.SIMULATOR_RSSI_MEAN;
+	private double rssiDeviation = Environment.SIMULATOR_RSSI_DEVIATION;
+	private long dwellTime = Environment.SIMULATOR_DWELL_TIME;
+	private int slotMicros = Environment.SIMULATOR_SLOT_MICROS;
+	private int accessMicros = Environment.SIMULATOR_ACCESS_MICROS;
+	private int wordMicros = Environment.SIMULATOR_WORD_MICROS;
+	private double timeScale = Environment.SIMULATOR_TIME_SCALE;
+	private long seed = Environment.SIMULATOR_SEED;
+
+	/**
+	 * @return the number of tags in the field
+	 */
+	public int getTagCount() {
+		return tagCount;
+	}
+
+	/**
+	 * @param tagCount
+	 *            the number of tags in the field
+	 */
+	public void setTagCount(int tagCount) {
+		this.tagCount = tagCount;
+	}
+
+	/**
+	 * @return the size of the user memory in words
+	 */
+	public int getUserBankWords() {
+		return userBankWords;
+	}
+
+	/**
+	 * @param userBankWords
+	 *            the size of the user memory in words, 0 for tags without
+	 *            user memory
+	 */
+	public void setUserBankWords(int userBankWords) {
+		this.userBankWords = userBankWords;
+	}
+
+	/**
+	 * @return the number of antennas
+	 */
+	public int getAntennaCount() {
+		return antennaCount;
+	}
+
+	/**
+	 * @param antennaCount
+	 *            the number of antennas
+	 */
+	public void setAntennaCount(int antennaCount) {
+		this.antennaCount = antennaCount;
+	}
+
+	/**
+	 * @return the probability of a tag to be visible on an antenna
+	 */
+	public double getVisibility() {
+		return visibility;
+	}
+
+	/**
+	 * @param visibility
+	 *            the probability of a tag to be visible on an antenna, each
+	 *            tag is visible on at least one antenna
+	 */
+	public void setVisibility(double visibility) {
+		this.visibility = visibility;
+	}
+
+	/**
+	 * @return the mean RSSI of the tags
+	 */
+	public double getRssiMean() {
+		return rssiMean;
+	}
+
+	/**
+	 * @param rssiMean
+	 *            the mean RSSI of the tags in dBm
+	 */
+	public void setRssiMean(double rssiMean) {
+		this.rssiMean = rssiMean;
+	}
+
+	/**
+	 * @return the standard deviation of the RSSI between tags and antennas
+	 */
+	public double getRssiDeviation() {
+		return rssiDeviation;
+	}
+
+	/**
+	 * @param rssiDeviation
+	 *            the standard deviation of the RSSI between tags and antennas
+	 *            in dB
+	 */
+	public void setRssiDeviation(double rssiDeviation) {
+		this.rssiDeviation = rssiDeviation;
+	}
+
+	/**
+	 * @return the mean time a tag stays in the field in milliseconds
+	 */
+	public long getDwellTime() {
+		return dwellTime;
+	}
+
+	/**
+	 * @param dwellTime
+	 *            the mean time a tag stays in the field in milliseconds, a
+	 *            departed tag is replaced by a new tag. 0 for a static
+	 *            population.
+	 */
+	public void setDwellTime(long dwellTime) {
+		this.dwellTime = dwellTime;
+	}
+
+	/**
+	 * @return the duration of a singulation slot in microseconds
+	 */
+	public int getSlotMicros() {
+		return slotMicros;
+	}
+
+	/**
+	 * @param slotMicros
+	 *            the duration of a slot with a singulated tag in
+	 *            microseconds, empty and collided slots are shorter
+	 */
+	public void setSlotMicros(int slotMicros) {
+		this.slotMicros = slotMicros;
+	}
+
+	/**
+	 * @return the duration of an access operation in microseconds
+	 */
+	public int getAccessMicros() {
+		return accessMicros;
+	}
+
+	/**
+	 * @param accessMicros
+	 *            the duration of an access operation in microseconds
+	 *            without the transferred words
+	 */
+	public void setAccessMicros(int accessMicros) {
+		this.accessMicros = accessMicros;
+	}
+
+	/**
+	 * @return the duration of transferring a word in microseconds
+	 */
+	public int getWordMicros() {
+		return wordMicros;
+	}
+
+	/**
+	 * @param wordMicros
+	 *            the duration of reading or writing a word in microseconds
+	 */
+	public void setWordMicros(int wordMicros) {
+		this.wordMicros = wordMicros;
+	}
+
+	/**
+	 * @return the factor applied to the simulated air time
+	 */
+	public double getTimeScale() {
+		return timeScale;
+	}
+
+	/**
+	 * @param timeScale
+	 *            the factor applied to the simulated air time before waiting,
+	 *            0 to return immediately
+	 */
+	public void setTimeScale(double timeScale) {
+		this.timeScale = timeScale;
+	}
+
+	/**
+	 * @return the seed of the random numbers
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @param seed
+	 *            the seed of the random numbers, the same seed creates the
+	 *            same population
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+}
@@ -0,0 +1,93 @@
+package havis.device.rf.common.simulator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The tags in the field of the simulated antennas. Tags get a random EPC and
+ * TID and a mean RSSI on the antennas they are visible on. If a dwell time is
+ * configured, each tag leaves the field after an exponentially distributed
+ * time and is replaced by a new tag, so the number of tags stays constant.
+ */
+class TagPopulation {
+
+	private static final byte[] TID_PREFIX = new byte[] { (byte) 0xE2, (byte) 0x80, 0x11, 0x05, 0x20, 0x00 };
+	private static final int EPC_BYTES = 12;
+	private static final int SERIAL_BYTES = 6;
+
+	private final SimulatorSettings settings;
+	private final Random random;
+	private final List<SimulatedTag> tags = new ArrayList<>();
+
+	/**
+	 * Creates the population.
+	 *
+	 * @param settings
+	 *            the settings
+	 */
+	TagPopulation(SimulatorSettings settings) {
+		this.settings = settings;
+		this.random = new Random(settings.getSeed());
+		long now = now();
+		for (int i = 0; i < settings.getTagCount(); i++)
+			tags.add(createTag(now));
+	}
+
+	/**
+	 * Returns the tags in the field, replacing the tags which have left the
+	 * field or have been killed.
+	 *
+	 * @return the tags, not a copy
+	 */
+	List<SimulatedTag> getTags() {
+		long now = now();
+		for (int i = 0; i < tags.size(); i++)
+			if (!tags.get(i).isPresent(now))
+				tags.set(i, createTag(now));
+		return tags;
+	}
+
+	/**
+	 * @return the random number generator of the simulation
+	 */
+	Random getRandom() {
+		return random;
+	}
+
+	/**
+	 * @return the current time in milliseconds
+	 */
+	long now() {
+		return System.currentTimeMillis();
+	}
+
+	private SimulatedTag createTag(long now) {
+		byte[] epc = new byte[EPC_BYTES];
+		random.nextBytes(epc);
+		byte[] tid = new byte[TID_PREFIX.length + SERIAL_BYTES];
+		System.arraycopy(TID_PREFIX, 0, tid, 0, TID_PREFIX.length);
+		byte[] serial = new byte[SERIAL_BYTES];
+		random.nextBytes(serial);
+		System.arraycopy(serial, 0, tid, TID_PREFIX.length, SERIAL_BYTES);
+
+		Map<Short, Double> rssi = new HashMap<>();
+		int antennaCount = Math.max(1, settings.getAntennaCount());
+		for (short antenna = 1; antenna <= antennaCount; antenna++)
+			if (random.nextDouble() < settings.getVisibility())
+				rssi.put(Short.valueOf(antenna), Double.valueOf(nextRssi()));
+		if (rssi.isEmpty())
+			rssi.put(Short.valueOf((short) (1 + random.nextInt(antennaCount))), Double.valueOf(nextRssi()));
+
+		long departure = Long.MAX_VALUE;
+		if (settings.getDwellTime() > 0)
+			departure = now + (long) (-Math.log(1 - random.nextDouble()) * settings.getDwellTime());
+		return new SimulatedTag(epc, tid, settings.getUserBankWords(), rssi, departure);
+	}
+
+	private double nextRssi() {
+		return settings.getRssiMean() + random.nextGaussian() * settings.getRssiDeviation();
+	}
+}
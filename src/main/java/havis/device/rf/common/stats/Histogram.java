@@ -0,0 +1,139 @@
+package havis.device.rf.common.stats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A compact histogram of non-negative long values (e.g. latencies in
+ * microseconds). Values below 16 are counted exactly, larger values are
+ * counted in logarithmic buckets with 8 sub-buckets per power of two, which
+ * keeps the relative error of each bucket below 12.5%.
+ */
+public class Histogram {
+
+	private static final int LINEAR_BUCKETS = 16;
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT = LINEAR_BUCKETS + (64 - 4) * SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKET_COUNT];
+	private long count;
+	private long sum;
+	private long min = Long.MAX_VALUE;
+	private long max = Long.MIN_VALUE;
+
+	/**
+	 * Adds a value to the histogram. Negative values are recorded as 0.
+	 *
+	 * @param value
+	 *            the value to record
+	 */
+	public synchronized void record(long value) {
+		if (value < 0)
+			value = 0;
+		counts[bucketIndex(value)]++;
+		count++;
+		sum += value;
+		if (value < min)
+			min = value;
+		if (value > max)
+			max = value;
+	}
+
+	/**
+	 * @return the number of recorded values
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the smallest recorded value or 0 if the histogram is empty
+	 */
+	public synchronized long getMin() {
+		return count == 0 ? 0 : min;
+	}
+
+	/**
+	 * @return the largest recorded value or 0 if the histogram is empty
+	 */
+	public synchronized long getMax() {
+		return count == 0 ? 0 : max;
+	}
+
+	/**
+	 * @return the arithmetic mean of all recorded values or 0 if the histogram
+	 *         is empty
+	 */
+	public synchronized double getMean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	/**
+	 * Returns the value at the given percentile. The result is the upper bound
+	 * of the bucket containing the percentile, limited to the maximum recorded
+	 * value.
+	 *
+	 * @param percentile
+	 *            a percentile between 0 and 100
+	 * @return the value at the percentile or 0 if the histogram is empty
+	 */
+	public synchronized long getValueAtPercentile(double percentile) {
+		if (count == 0)
+			return 0;
+		long rank = (long) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100.0 * count);
+		if (rank < 1)
+			rank = 1;
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(upperBound(i), max);
+		}
+		return max;
+	}
+
+	/**
+	 * Returns the non-empty buckets of the histogram.
+	 *
+	 * @return a map of the (inclusive) upper bound of each non-empty bucket to
+	 *         the number of values counted in it, in ascending order
+	 */
+	public synchronized Map<Long, Long> getBuckets() {
+		Map<Long, Long> result = new LinkedHashMap<>();
+		for (int i = 0; i < counts.length; i++)
+			if (counts[i] > 0)
+				result.put(upperBound(i), counts[i]);
+		return result;
+	}
+
+	/**
+	 * Clears all recorded values.
+	 */
+	public synchronized void reset() {
+		for (int i = 0; i < counts.length; i++)
+			counts[i] = 0;
+		count = 0;
+		sum = 0;
+		min = Long.MAX_VALUE;
+		max = Long.MIN_VALUE;
+	}
+
+	static int bucketIndex(long value) {
+		if (value < LINEAR_BUCKETS)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+	}
+
+	static long upperBound(int index) {
+		if (index < LINEAR_BUCKETS)
+			return index;
+		int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+		long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+		long lower = (1L << exponent) | (subBucket << (exponent - SUB_BUCKET_BITS));
+		long upper = lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+		return upper < 0 ? Long.MAX_VALUE : upper;
+	}
+}
@@ -0,0 +1,120 @@
+package havis.device.rf.common.stats;
+
+import havis.device.rf.tag.operation.KillOperation;
+import havis.device.rf.tag.operation.LockOperation;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.operation.WriteOperation;
+
+/**
+ * Identifies a class of tag operations for which statistics are collected.
+ * Operations are classified by their type, the memory bank they access and
+ * the number of words they transfer. Word counts are grouped into buckets of
+ * powers of two (1, 2-3, 4-7, 8-15, ...), the bucket 0 stands for operations
+ * accessing the complete bank.
+ */
+public class OperationKey {
+
+	public enum Type {
+		READ, WRITE, LOCK, KILL, OTHER
+	}
+
+	/**
+	 * Bank value of operations that do not address a single memory bank
+	 */
+	public static final short NO_BANK = -1;
+
+	private final Type type;
+	private final short bank;
+	private final int wordBucket;
+
+	/**
+	 * Creates a new key.
+	 *
+	 * @param type
+	 *            the operation type
+	 * @param bank
+	 *            the memory bank or {@link #NO_BANK}
+	 * @param wordBucket
+	 *            the word count bucket, i.e. the lower bound of the bucket
+	 */
+	public OperationKey(Type type, short bank, int wordBucket) {
+		if (type == null)
+			throw new NullPointerException("type must not be null");
+		this.type = type;
+		this.bank = bank;
+		this.wordBucket = wordBucket;
+	}
+
+	/**
+	 * Creates the key for a tag operation.
+	 *
+	 * @param operation
+	 *            a tag operation
+	 * @return the key of the operation class
+	 */
+	public static OperationKey forOperation(TagOperation operation) {
+		if (operation instanceof ReadOperation) {
+			ReadOperation rdOp = (ReadOperation) operation;
+			return new OperationKey(Type.READ, rdOp.getBank(), wordBucket(rdOp.getLength()));
+		} else if (operation instanceof WriteOperation) {
+			WriteOperation wrOp = (WriteOperation) operation;
+			int words = wrOp.getData() == null ? 0 : (wrOp.getData().length + 1) / 2;
+			return new OperationKey(Type.WRITE, wrOp.getBank(), wordBucket(words));
+		} else if (operation instanceof LockOperation) {
+			return new OperationKey(Type.LOCK, NO_BANK, 0);
+		} else if (operation instanceof KillOperation) {
+			return new OperationKey(Type.KILL, NO_BANK, 0);
+		}
+		return new OperationKey(Type.OTHER, NO_BANK, 0);
+	}
+
+	/**
+	 * Returns the bucket of a word count.
+	 *
+	 * @param words
+	 *            a word count, 0 for the complete bank
+	 * @return the lower bound of the bucket, i.e. the largest power of two
+	 *         less or equal to <code>words</code> or 0
+	 */
+	public static int wordBucket(int words) {
+		return words <= 0 ? 0 : Integer.highestOneBit(words);
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public short getBank() {
+		return bank;
+	}
+
+	public int getWordBucket() {
+		return wordBucket;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + type.hashCode();
+		result = prime * result + bank;
+		result = prime * result + wordBucket;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		OperationKey other = (OperationKey) obj;
+		return type == other.type && bank == other.bank && wordBucket == other.wordBucket;
+	}
+
+	@Override
+	public String toString() {
+		return type + (bank == NO_BANK ? "" : "[bank=" + bank + ", words=" + (wordBucket == 0 ? "all" : wordBucket + "-" + (2 * wordBucket - 1)) + "]");
+	}
+}
@@ -0,0 +1,71 @@
+package havis.device.rf.common.stats;
+
+import havis.device.rf.tag.operation.TagOperation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Identifies a class of operation lists for which execute latencies are
+ * collected. An operation list is classified by the ordered
+ * {@link OperationKey}s of its operations, so lists which differ in the
+ * operation IDs, offsets or data only share a signature.
+ */
+public class OperationSignature {
+
+	private final List<OperationKey> keys;
+
+	/**
+	 * Creates a new signature.
+	 *
+	 * @param keys
+	 *            the keys of the operations in the order of the list
+	 */
+	public OperationSignature(List<OperationKey> keys) {
+		if (keys == null)
+			throw new NullPointerException("keys must not be null");
+		this.keys = Collections.unmodifiableList(new ArrayList<>(keys));
+	}
+
+	/**
+	 * Creates the signature of an operation list.
+	 *
+	 * @param operations
+	 *            the operations
+	 * @return the signature of the operation list
+	 */
+	public static OperationSignature forOperations(List<TagOperation> operations) {
+		List<OperationKey> keys = new ArrayList<>(operations.size());
+		for (TagOperation operation : operations)
+			if (operation != null)
+				keys.add(OperationKey.forOperation(operation));
+		return new OperationSignature(keys);
+	}
+
+	/**
+	 * @return the keys of the operations in the order of the list
+	 */
+	public List<OperationKey> getKeys() {
+		return keys;
+	}
+
+	@Override
+	public int hashCode() {
+		return keys.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		return keys.equals(((OperationSignature) obj).keys);
+	}
+
+	@Override
+	public String toString() {
+		return keys.isEmpty() ? "INVENTORY" : keys.toString();
+	}
+}
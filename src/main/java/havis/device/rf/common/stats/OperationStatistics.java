@@ -0,0 +1,179 @@
+package havis.device.rf.common.stats;
+
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.result.KillResult;
+import havis.device.rf.tag.result.LockResult;
+import havis.device.rf.tag.result.OperationResult;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collects measured execute latencies and result code distributions of tag
+ * operations. The statistics are recorded for each operation list executed on
+ * the hardware, i.e. writes which have been elided and reads which have been
+ * served from a cache are not recorded.
+ * <p>
+ * Since the hardware reports no timing per operation, the latency is the
+ * measured duration of the execute call on the hardware, keyed by the
+ * {@link OperationSignature} of the executed operation list. The result codes
+ * are counted per {@link OperationKey} from the operation results returned by
+ * the hardware.
+ * </p>
+ */
+public class OperationStatistics {
+
+	/**
+	 * Result code recorded if an operation has no result or the result type is
+	 * unknown
+	 */
+	public static final String UNKNOWN_RESULT = "UNKNOWN";
+
+	private final ConcurrentMap<OperationSignature, Histogram> latencies = new ConcurrentHashMap<>();
+	private final ConcurrentMap<OperationKey, ResultCounts> resultCounts = new ConcurrentHashMap<>();
+
+	/**
+	 * The result code counts of a single operation class
+	 */
+	private static class ResultCounts {
+		private final Map<String, Long> counts = new HashMap<>();
+
+		synchronized Map<String, Long> get() {
+			return new LinkedHashMap<>(counts);
+		}
+
+		synchronized void record(String result) {
+			Long cnt = counts.get(result);
+			counts.put(result, cnt == null ? 1 : cnt + 1);
+		}
+	}
+
+	/**
+	 * Records an execute call on the hardware.
+	 *
+	 * @param operations
+	 *            the operations executed on the hardware
+	 * @param tags
+	 *            the tags returned by the hardware, with the results of the
+	 *            operations
+	 * @param durationNanos
+	 *            the measured duration of the execute call in nanoseconds
+	 */
+	public void record(List<TagOperation> operations, List<TagData> tags, long durationNanos) {
+		if (operations == null)
+			return;
+
+		OperationSignature signature = OperationSignature.forOperations(operations);
+		Histogram latency = latencies.get(signature);
+		if (latency == null) {
+			Histogram newLatency = new Histogram();
+			latency = latencies.putIfAbsent(signature, newLatency);
+			if (latency == null)
+				latency = newLatency;
+		}
+		latency.record(durationNanos / 1000);
+
+		if (tags == null || operations.isEmpty())
+			return;
+		Map<String, OperationKey> keys = new HashMap<>();
+		for (TagOperation operation : operations)
+			if (operation != null)
+				keys.put(operation.getOperationId(), OperationKey.forOperation(operation));
+		for (TagData tag : tags) {
+			if (tag == null || tag.getResultList() == null)
+				continue;
+			for (OperationResult result : tag.getResultList()) {
+				OperationKey key = keys.get(result.getOperationId());
+				if (key != null)
+					getOrCreate(key).record(resultCode(result));
+			}
+		}
+	}
+
+	private ResultCounts getOrCreate(OperationKey key) {
+		ResultCounts counts = resultCounts.get(key);
+		if (counts == null) {
+			ResultCounts newCounts = new ResultCounts();
+			counts = resultCounts.putIfAbsent(key, newCounts);
+			if (counts == null)
+				counts = newCounts;
+		}
+		return counts;
+	}
+
+	/**
+	 * Returns the name of the result code of an operation result.
+	 *
+	 * @param result
+	 *            an operation result
+	 * @return the name of the result code or {@link #UNKNOWN_RESULT}
+	 */
+	static String resultCode(OperationResult result) {
+		Enum<?> code = null;
+		if (result instanceof ReadResult)
+			code = ((ReadResult) result).getResult();
+		else if (result instanceof WriteResult)
+			code = ((WriteResult) result).getResult();
+		else if (result instanceof LockResult)
+			code = ((LockResult) result).getResult();
+		else if (result instanceof KillResult)
+			code = ((KillResult) result).getResult();
+		return code == null ? UNKNOWN_RESULT : code.name();
+	}
+
+	/**
+	 * @return the signatures of all operation lists recorded so far
+	 */
+	public List<OperationSignature> getSignatures() {
+		return new ArrayList<>(latencies.keySet());
+	}
+
+	/**
+	 * Returns the execute latency histogram of an operation list class.
+	 *
+	 * @param signature
+	 *            the signature of the operation list class
+	 * @return the histogram in microseconds or null if nothing has been
+	 *         recorded for the signature
+	 */
+	public Histogram getLatency(OperationSignature signature) {
+		return latencies.get(signature);
+	}
+
+	/**
+	 * @return the keys of all operation classes of which results have been
+	 *         recorded so far
+	 */
+	public List<OperationKey> getKeys() {
+		return new ArrayList<>(resultCounts.keySet());
+	}
+
+	/**
+	 * Returns the result code counts of an operation class.
+	 *
+	 * @param key
+	 *            the key of the operation class
+	 * @return a map of result code names to counts, empty if nothing has been
+	 *         recorded for the key
+	 */
+	public Map<String, Long> getResultCounts(OperationKey key) {
+		ResultCounts counts = resultCounts.get(key);
+		return counts == null ? new LinkedHashMap<String, Long>() : counts.get();
+	}
+
+	/**
+	 * Clears all statistics.
+	 */
+	public void reset() {
+		latencies.clear();
+		resultCounts.clear();
+	}
+}
@@ -1,5 +1,6 @@
 package havis.device.rf.common.tagsmooth;
 
+import havis.device.rf.common.util.Epc;
 import havis.device.rf.tag.TagData;
 
 public class TagSmoothingEntry {
@@ -9,13 +10,25 @@ public class TagSmoothingEntry {
 	private long firstSeen;
 	private long lastSeen;
 	private TagData tag;
+	private Epc epc;
 
 	public TagSmoothingEntry(TagData tag) {
+		this(tag, Epc.valueOf(tag.getEpc()));
+	}
+
+	/**
+	 * @param tag
+	 *            the tag
+	 * @param epc
+	 *            the EPC of the tag
+	 */
+	public TagSmoothingEntry(TagData tag, Epc epc) {
 		seenCount = 0;
 		firstSeen = System.currentTimeMillis();
 		lastSeen = firstSeen;
 
 		this.tag = tag;
+		this.epc = epc;
 
 		isObserved = false;
 	}
@@ -51,13 +64,21 @@ public class TagSmoothingEntry {
 
 	public void setTag(TagData tag) {
 		this.tag = tag;
+		this.epc = Epc.valueOf(tag.getEpc());
+	}
+
+	/**
+	 * @return the EPC of the tag this entry has been created with
+	 */
+	public Epc getEpc() {
+		return epc;
 	}
 
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + java.util.Arrays.hashCode(tag.getEpc());
+		result = prime * result + (epc == null ? 0 : epc.hashCode());
 		return result;
 	}
 
@@ -74,8 +95,6 @@ public class TagSmoothingEntry {
 			return true;
 		if (other == null)
 			return false;
-		if (!java.util.Arrays.equals(tag.getEpc(), other.getEpc()))
-			return false;
-		return true;
+		return epc == null ? t.epc == null : epc.equals(t.epc);
 	}
 }
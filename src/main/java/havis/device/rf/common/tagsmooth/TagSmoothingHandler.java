@@ -1,5 +1,6 @@
 package havis.device.rf.common.tagsmooth;
 
+import havis.device.rf.common.util.Epc;
 import havis.device.rf.configuration.TagSmoothingSettings;
 import havis.device.rf.exception.ParameterException;
 import havis.device.rf.tag.TagData;
@@ -38,14 +39,14 @@ public class TagSmoothingHandler {
 	private final Integer lostTimeout;
 
 	/**
-	 * Set of observed TagSmoothingEntries
+	 * Observed TagSmoothingEntries by EPC
 	 */
-	private LinkedHashMap<TagSmoothingEntry, TagSmoothingEntry> observedEntries = new LinkedHashMap<TagSmoothingEntry, TagSmoothingEntry>();
+	private LinkedHashMap<Epc, TagSmoothingEntry> observedEntries = new LinkedHashMap<Epc, TagSmoothingEntry>();
 
 	/**
-	 * Set of glimpsed TagSmoothingEntries
+	 * Glimpsed TagSmoothingEntries by EPC
 	 */
-	private LinkedHashMap<TagSmoothingEntry, TagSmoothingEntry> glimpsedEntries = new LinkedHashMap<TagSmoothingEntry, TagSmoothingEntry>();
+	private LinkedHashMap<Epc, TagSmoothingEntry> glimpsedEntries = new LinkedHashMap<Epc, TagSmoothingEntry>();
 
 	public TagSmoothingHandler(TagSmoothingSettings settings)
 			throws ParameterException {
@@ -77,24 +78,23 @@ public class TagSmoothingHandler {
 	 * entry as unobserved Moving the existing entry to the head of the map is
 	 * done out of preparation for {@link removeExpiredEntries}
 	 * 
-	 * @param entry
-	 *            the entry which is to update
+	 * @param tag
+	 *            the tag of the entry
+	 * @param epc
+	 *            the EPC of the tag
 	 * @param entries
 	 *            the map which contains the entry to update
 	 * @return the processed entry
 	 */
-	private TagSmoothingEntry addOrMoveToEnd(TagSmoothingEntry entry,
-			LinkedHashMap<TagSmoothingEntry, TagSmoothingEntry> entries) {
+	private TagSmoothingEntry addOrMoveToEnd(TagData tag, Epc epc,
+			LinkedHashMap<Epc, TagSmoothingEntry> entries) {
 		// TODO add link to function in javadoc
 		synchronized (entries) {
-			TagSmoothingEntry element = entries.remove(entry);
-			if (element != null) {
-				entries.put(element, element);
-				return element;
-			} else {
-				entries.put(entry, entry);
-				return entry;
-			}
+			TagSmoothingEntry element = entries.remove(epc);
+			if (element == null)
+				element = new TagSmoothingEntry(tag, epc);
+			entries.put(epc, element);
+			return element;
 		}
 	}
 
@@ -163,12 +163,14 @@ public class TagSmoothingHandler {
 	 *            the tag which is to process
 	 */
 	private void process(TagData tag) {
-		TagSmoothingEntry entry = new TagSmoothingEntry(tag);
+		// the entry is only created when the tag is seen for the first time
+		Epc epc = Epc.valueOf(tag.getEpc());
+		TagSmoothingEntry entry;
 
-		if (observedEntries.containsKey(entry)) {
-			entry = addOrMoveToEnd(entry, observedEntries);
+		if (observedEntries.containsKey(epc)) {
+			entry = addOrMoveToEnd(tag, epc, observedEntries);
 		} else {
-			entry = addOrMoveToEnd(entry, glimpsedEntries);
+			entry = addOrMoveToEnd(tag, epc, glimpsedEntries);
 		}
 
 		entry.seen();
@@ -204,7 +206,7 @@ public class TagSmoothingHandler {
 	 *            the set of entries which is to update
 	 */
 	private void removeExpiredEntries(
-			LinkedHashMap<TagSmoothingEntry, TagSmoothingEntry> entries) {
+			LinkedHashMap<Epc, TagSmoothingEntry> entries) {
 		// TODO add link to function in javadoc
 		synchronized (entries) {
 			while (true) {
@@ -229,9 +231,11 @@ public class TagSmoothingHandler {
 	 *            the entry which should be set as observed
 	 */
 	private void setObserved(TagSmoothingEntry entry) {
-		glimpsedEntries.remove(entry);
+		glimpsedEntries.remove(entry.getEpc());
 		entry.setObserved(true);
-		addOrMoveToEnd(entry, observedEntries);
+		synchronized (observedEntries) {
+			observedEntries.put(entry.getEpc(), entry);
+		}
 	}
 
 	/**
@@ -0,0 +1,47 @@
+package havis.device.rf.common.trace;
+
+import havis.device.rf.capabilities.RegulatoryCapabilities;
+import havis.device.rf.common.BatchHardwareManager;
+import havis.device.rf.common.trace.TraceRecord.Call;
+import havis.device.rf.configuration.AntennaConfiguration;
+import havis.device.rf.exception.ImplementationException;
+import havis.device.rf.exception.ParameterException;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decorates a hardware manager supporting batches of antenna configurations,
+ * recording the batches as well as all other calls.
+ */
+public class RecordingBatchHardwareManager extends RecordingHardwareManager implements BatchHardwareManager {
+
+	private final BatchHardwareManager delegate;
+
+	/**
+	 * Creates a recording hardware manager.
+	 *
+	 * @param delegate
+	 *            the hardware manager
+	 * @param writer
+	 *            the writer of the trace
+	 */
+	public RecordingBatchHardwareManager(BatchHardwareManager delegate, TraceWriter writer) {
+		super(delegate, writer);
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void setAntennaConfigurations(List<AntennaConfiguration> antennaConfigurations, RegulatoryCapabilities regulatoryCapabilities,
+			boolean forceTune) throws ParameterException, ImplementationException {
+		long time = now();
+		List<Object> arguments = Arrays.<Object> asList(antennaConfigurations, Boolean.valueOf(forceTune));
+		try {
+			delegate.setAntennaConfigurations(antennaConfigurations, regulatoryCapabilities, forceTune);
+			record(Call.SET_ANTENNA_CONFIGURATIONS, time, arguments, null, null);
+		} catch (ParameterException | ImplementationException | RuntimeException e) {
+			record(Call.SET_ANTENNA_CONFIGURATIONS, time, arguments, null, e);
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,317 @@
+package havis.device.rf.common.trace;
+
+import havis.device.rf.RFConsumer;
+import havis.device.rf.capabilities.RegulatoryCapabilities;
+import havis.device.rf.common.BatchHardwareManager;
+import havis.device.rf.common.HardwareManager;
+import havis.device.rf.common.trace.TraceRecord.Call;
+import havis.device.rf.configuration.AntennaConfiguration;
+import havis.device.rf.configuration.AntennaConfigurationList;
+import havis.device.rf.configuration.AntennaPropertyList;
+import havis.device.rf.configuration.ConnectType;
+import havis.device.rf.configuration.RFRegion;
+import havis.device.rf.configuration.RssiFilter;
+import havis.device.rf.configuration.SingulationControl;
+import havis.device.rf.exception.ConnectionException;
+import havis.device.rf.exception.ImplementationException;
+import havis.device.rf.exception.ParameterException;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagDataList;
+import havis.device.rf.tag.operation.TagOperation;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decorates a hardware manager by recording every call with its arguments,
+ * result or exception, start time and duration to a trace. The trace can be
+ * played back by the {@link ReplayHardwareManager}. Failures of the recording
+ * are logged and stop the recording, the calls of the hardware manager are
+ * not affected. Hardware managers supporting the
+ * {@link havis.device.rf.common.BatchHardwareManager} extension are decorated
+ * by a {@link RecordingBatchHardwareManager}, see
+ * {@link #create(HardwareManager, TraceWriter)}.
+ */
+public class RecordingHardwareManager implements HardwareManager {
+
+	private static final Logger log = Logger.getLogger(RecordingHardwareManager.class.getName());
+
+	private final HardwareManager delegate;
+	private final TraceWriter writer;
+	private volatile boolean recording = true;
+
+	/**
+	 * Creates a recording hardware manager.
+	 *
+	 * @param delegate
+	 *            the hardware manager
+	 * @param writer
+	 *            the writer of the trace
+	 */
+	public RecordingHardwareManager(HardwareManager delegate, TraceWriter writer) {
+		this.delegate = delegate;
+		this.writer = writer;
+	}
+
+	/**
+	 * Creates a recording hardware manager which supports the extensions of
+	 * the decorated hardware manager.
+	 *
+	 * @param delegate
+	 *            the hardware manager
+	 * @param writer
+	 *            the writer of the trace
+	 * @return the recording hardware manager
+	 */
+	public static RecordingHardwareManager create(HardwareManager delegate, TraceWriter writer) {
+		if (delegate instanceof BatchHardwareManager)
+			return new RecordingBatchHardwareManager((BatchHardwareManager) delegate, writer);
+		return new RecordingHardwareManager(delegate, writer);
+	}
+
+	/**
+	 * @return the decorated hardware manager
+	 */
+	public HardwareManager getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Stops the recording and closes the trace, the decorated hardware manager
+	 * is not closed
+	 */
+	public void close() {
+		recording = false;
+		try {
+			writer.close();
+		} catch (IOException e) {
+			log.log(Level.FINE, "Failed to close trace", e);
+		}
+	}
+
+	@Override
+	public void openConnection() throws ConnectionException, ImplementationException {
+		long time = writer.now();
+		try {
+			delegate.openConnection();
+			record(Call.OPEN_CONNECTION, time, null, null, null);
+		} catch (ConnectionException | ImplementationException | RuntimeException e) {
+			record(Call.OPEN_CONNECTION, time, null, null, e);
+			throw e;
+		}
+	}
+
+	@Override
+	public void closeConnection() throws ConnectionException {
+		long time = writer.now();
+		try {
+			delegate.closeConnection();
+			record(Call.CLOSE_CONNECTION, time, null, null, null);
+		} catch (ConnectionException | RuntimeException e) {
+			record(Call.CLOSE_CONNECTION, time, null, null, e);
+			throw e;
+		}
+	}
+
+	@Override
+	public TagDataList execute(List<Short> antennas, List<Filter> filter, List<TagOperation> operations, RFConsumer consumer)
+			throws ImplementationException, ParameterException {
+		long time = writer.now();
+		// encoded before the call, the hardware manager may modify the lists
+		byte[] arguments = null;
+		if (recording) {
+			try {
+				arguments = TraceCodec.encodeExecute(antennas, filter, operations);
+			} catch (IOException e) {
+				log.log(Level.FINE, "Failed to encode execution arguments", e);
+			}
+		}
+		TagDataList result;
+		try {
+			result = delegate.execute(antennas, filter, operations, consumer);
+		} catch (ImplementationException | ParameterException | RuntimeException e) {
+			record(Call.EXECUTE, time, arguments, null, e);
+			throw e;
+		}
+		if (recording) {
+			long duration = writer.now() - time;
+			try {
+				write(Call.EXECUTE, time, duration, arguments, TraceCodec.encodeTags(result), null);
+			} catch (IOException e) {
+				log.log(Level.FINE, "Failed to encode execution result", e);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public String getRegion() {
+		long time = writer.now();
+		String region = delegate.getRegion();
+		record(Call.GET_REGION, time, null, region, null);
+		return region;
+	}
+
+	@Override
+	public void setRegion(RFRegion rfcRegion, AntennaConfigurationList antennaConfigurationList) throws ParameterException,
+			ImplementationException {
+		long time = writer.now();
+		try {
+			delegate.setRegion(rfcRegion, antennaConfigurationList);
+			record(Call.SET_REGION, time, Arrays.asList(rfcRegion, antennaConfigurationList), null, null);
+		} catch (ParameterException | ImplementationException | RuntimeException e) {
+			record(Call.SET_REGION, time, Arrays.asList(rfcRegion, antennaConfigurationList), null, e);
+			throw e;
+		}
+	}
+
+	@Override
+	public void setAntennaConfiguration(AntennaConfiguration antennaConfiguration, RegulatoryCapabilities regulatoryCapabilities, boolean forceTune)
+			throws ParameterException, ImplementationException {
+		long time = writer.now();
+		List<Object> arguments = Arrays.<Object> asList(antennaConfiguration, Boolean.valueOf(forceTune));
+		try {
+			delegate.setAntennaConfiguration(antennaConfiguration, regulatoryCapabilities, forceTune);
+			record(Call.SET_ANTENNA_CONFIGURATION, time, arguments, null, null);
+		} catch (ParameterException | ImplementationException | RuntimeException e) {
+			record(Call.SET_ANTENNA_CONFIGURATION, time, arguments, null, e);
+			throw e;
+		}
+	}
+
+	@Override
+	public AntennaPropertyList getAntennaProperties(Map<Short, ConnectType> connectTypeMap) throws ImplementationException {
+		long time = writer.now();
+		try {
+			AntennaPropertyList properties = delegate.getAntennaProperties(connectTypeMap);
+			record(Call.GET_ANTENNA_PROPERTIES, time, connectTypeMap, properties, null);
+			return properties;
+		} catch (ImplementationException | RuntimeException e) {
+			record(Call.GET_ANTENNA_PROPERTIES, time, connectTypeMap, null, e);
+			throw e;
+		}
+	}
+
+	@Override
+	public String getFirmwareVersion() throws ImplementationException {
+		long time = writer.now();
+		try {
+			String version = delegate.getFirmwareVersion();
+			record(Call.GET_FIRMWARE_VERSION, time, null, version, null);
+			return version;
+		} catch (ImplementationException | RuntimeException e) {
+			record(Call.GET_FIRMWARE_VERSION, time, null, null, e);
+			throw e;
+		}
+	}
+
+	@Override
+	public void installFirmware() throws ImplementationException {
+		long time = writer.now();
+		try {
+			delegate.installFirmware();
+			record(Call.INSTALL_FIRMWARE, time, null, null, null);
+		} catch (ImplementationException | RuntimeException e) {
+			record(Call.INSTALL_FIRMWARE, time, null, null, e);
+			throw e;
+		}
+	}
+
+	@Override
+	public RssiFilter getRssiFilter() {
+		long time = writer.now();
+		RssiFilter rssiFilter = delegate.getRssiFilter();
+		record(Call.GET_RSSI_FILTER, time, null, rssiFilter, null);
+		return rssiFilter;
+	}
+
+	@Override
+	public void setRssiFilter(RssiFilter rssiFilter) throws ImplementationException {
+		long time = writer.now();
+		try {
+			delegate.setRssiFilter(rssiFilter);
+			record(Call.SET_RSSI_FILTER, time, rssiFilter, null, null);
+		} catch (ImplementationException | RuntimeException e) {
+			record(Call.SET_RSSI_FILTER, time, rssiFilter, null, e);
+			throw e;
+		}
+	}
+
+	@Override
+	public SingulationControl getSingulationControl() {
+		long time = writer.now();
+		SingulationControl singulationControl = delegate.getSingulationControl();
+		record(Call.GET_SINGULATION_CONTROL, time, null, singulationControl, null);
+		return singulationControl;
+	}
+
+	@Override
+	public void setSingulationControl(SingulationControl singulationControl) throws ImplementationException {
+		long time = writer.now();
+		try {
+			delegate.setSingulationControl(singulationControl);
+			record(Call.SET_SINGULATION_CONTROL, time, singulationControl, null, null);
+		} catch (ImplementationException | RuntimeException e) {
+			record(Call.SET_SINGULATION_CONTROL, time, singulationControl, null, e);
+			throw e;
+		}
+	}
+
+	@Override
+	public int getMaxAntennas() throws ImplementationException {
+		long time = writer.now();
+		try {
+			int maxAntennas = delegate.getMaxAntennas();
+			record(Call.GET_MAX_ANTENNAS, time, null, Integer.valueOf(maxAntennas), null);
+			return maxAntennas;
+		} catch (ImplementationException | RuntimeException e) {
+			record(Call.GET_MAX_ANTENNAS, time, null, null, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the current time of the trace
+	 */
+	long now() {
+		return writer.now();
+	}
+
+	/**
+	 * Records a call with arguments and result encoded as JSON
+	 */
+	void record(Call call, long time, Object arguments, Object result, Throwable exception) {
+		if (!recording)
+			return;
+		long duration = writer.now() - time;
+		write(call, time, duration, encode(arguments), exception == null ? encode(result) : null, exception);
+	}
+
+	/**
+	 * Encodes an object, returns null if the object is null or cannot be
+	 * encoded
+	 */
+	private static byte[] encode(Object object) {
+		if (object == null)
+			return null;
+		try {
+			return TraceCodec.encodeObject(object);
+		} catch (IOException e) {
+			log.log(Level.FINE, "Failed to encode " + object.getClass().getName(), e);
+			return null;
+		}
+	}
+
+	private void write(Call call, long time, long duration, byte[] arguments, byte[] result, Throwable exception) {
+		try {
+			writer.write(call, time, duration, arguments, result, exception);
+		} catch (IOException e) {
+			recording = false;
+			log.log(Level.WARNING, "Failed to write trace, recording stopped", e);
+		}
+	}
+}
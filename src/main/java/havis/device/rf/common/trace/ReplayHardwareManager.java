@@ -0,0 +1,340 @@
+package havis.device.rf.common.trace;
+
+import havis.device.rf.RFConsumer;
+import havis.device.rf.capabilities.RegulatoryCapabilities;
+import havis.device.rf.common.BatchHardwareManager;
+import havis.device.rf.common.Environment;
+import havis.device.rf.common.trace.TraceRecord.Call;
+import havis.device.rf.configuration.AntennaConfiguration;
+import havis.device.rf.configuration.AntennaConfigurationList;
+import havis.device.rf.configuration.AntennaPropertyList;
+import havis.device.rf.configuration.ConnectType;
+import havis.device.rf.configuration.RFRegion;
+import havis.device.rf.configuration.RssiFilter;
+import havis.device.rf.configuration.SingulationControl;
+import havis.device.rf.exception.ConnectionException;
+import havis.device.rf.exception.ImplementationException;
+import havis.device.rf.exception.ParameterException;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagDataList;
+import havis.device.rf.tag.operation.TagOperation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A hardware manager playing back a trace recorded by the
+ * {@link RecordingHardwareManager}, selected by setting
+ * <code>havis.device.rf.common.hardwareManager.class</code> to this class and
+ * <code>havis.device.rf.common.replay.file</code> to the trace file.
+ * <p>
+ * The calls of each method return the recorded results or throw the recorded
+ * exceptions in the order of the trace, independent of the calls of other
+ * methods. Executions with arguments differing from the recorded arguments
+ * are counted as mismatches but return the recorded tags, so a replay is
+ * deterministic even if the caller has changed. In real time mode, each call
+ * takes the recorded duration, otherwise calls return immediately. If the
+ * executions of the trace have been played back, the playback starts over if
+ * looping is enabled or executions fail.
+ * </p>
+ * <p>
+ * Batches of antenna configurations play back the recorded batches. If the
+ * trace has been recorded from a hardware manager without batch support, a
+ * batch plays back the recorded calls of the single antennas instead.
+ * </p>
+ */
+public class ReplayHardwareManager implements BatchHardwareManager {
+
+	private static final Logger log = Logger.getLogger(ReplayHardwareManager.class.getName());
+
+	private final File file;
+	private final boolean realtime;
+	private final boolean loop;
+	private final Map<Call, List<TraceRecord>> records = new EnumMap<>(Call.class);
+	private final Map<Call, Integer> positions = new EnumMap<>(Call.class);
+	private boolean loaded;
+	private int mismatches;
+
+	private String region;
+	private RssiFilter rssiFilter;
+	private SingulationControl singulationControl;
+	private AntennaPropertyList antennaProperties;
+	private String firmwareVersion;
+	private int maxAntennas;
+
+	/**
+	 * Creates a hardware manager replaying the trace of the environment
+	 */
+	public ReplayHardwareManager() {
+		this(Environment.REPLAY_FILE == null ? null : new File(Environment.REPLAY_FILE), Environment.REPLAY_REALTIME, Environment.REPLAY_LOOP);
+	}
+
+	/**
+	 * Creates a hardware manager replaying a trace. The trace is loaded on
+	 * opening the connection.
+	 *
+	 * @param file
+	 *            the trace file
+	 * @param realtime
+	 *            whether calls take the recorded duration
+	 * @param loop
+	 *            whether the executions start over at the end of the trace
+	 */
+	public ReplayHardwareManager(File file, boolean realtime, boolean loop) {
+		this.file = file;
+		this.realtime = realtime;
+		this.loop = loop;
+	}
+
+	/**
+	 * @return the number of executions with arguments differing from the
+	 *         recorded arguments
+	 */
+	public synchronized int getMismatches() {
+		return mismatches;
+	}
+
+	private synchronized void load() throws ConnectionException {
+		if (loaded)
+			return;
+		if (file == null)
+			throw new ConnectionException("No trace file configured");
+		for (Call call : Call.values()) {
+			records.put(call, new ArrayList<TraceRecord>());
+			positions.put(call, Integer.valueOf(0));
+		}
+		int count = 0;
+		try (TraceReader reader = new TraceReader(file)) {
+			TraceRecord record;
+			while ((record = reader.next()) != null) {
+				records.get(record.getCall()).add(record);
+				count++;
+			}
+		} catch (IOException e) {
+			throw new ConnectionException("Failed to load trace " + file + ": " + e.getMessage(), e);
+		}
+		loaded = true;
+		log.log(Level.FINE, "Loaded {0} records with {1} executions from {2}", new Object[] { count, records.get(Call.EXECUTE).size(), file });
+	}
+
+	/**
+	 * Returns the next record of a method and waits for its duration in real
+	 * time mode.
+	 *
+	 * @return the record or null if all records of the method have been played
+	 *         back
+	 */
+	private TraceRecord next(Call call) {
+		TraceRecord record;
+		synchronized (this) {
+			if (!loaded)
+				return null;
+			List<TraceRecord> list = records.get(call);
+			int position = positions.get(call).intValue();
+			if (position >= list.size()) {
+				if (!loop || list.isEmpty())
+					return null;
+				position = 0;
+			}
+			record = list.get(position);
+			positions.put(call, Integer.valueOf(position + 1));
+		}
+		if (realtime) {
+			long deadline = System.nanoTime() + record.getDuration();
+			long remaining;
+			while ((remaining = deadline - System.nanoTime()) > 0)
+				LockSupport.parkNanos(remaining);
+		}
+		return record;
+	}
+
+	/**
+	 * Returns the decoded result of a record or the default if the record or
+	 * result is missing
+	 */
+	private static <T> T getResult(TraceRecord record, T defaultValue) {
+		if (record == null || record.getResult() == null)
+			return defaultValue;
+		try {
+			return TraceCodec.decodeObject(record.getResult());
+		} catch (IOException e) {
+			log.log(Level.FINE, "Failed to decode result of " + record.getCall(), e);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Creates the exception recorded for a call
+	 */
+	private static Exception getException(TraceRecord record) {
+		if (record == null || record.getExceptionClass() == null)
+			return null;
+		String message = record.getExceptionMessage();
+		if (ConnectionException.class.getName().equals(record.getExceptionClass()))
+			return new ConnectionException(message);
+		if (ImplementationException.class.getName().equals(record.getExceptionClass()))
+			return new ImplementationException(message);
+		if (ParameterException.class.getName().equals(record.getExceptionClass()))
+			return new ParameterException(message);
+		return new ImplementationException(record.getExceptionClass() + ": " + message);
+	}
+
+	private static void throwImplementationException(Exception e) throws ImplementationException {
+		if (e instanceof ImplementationException)
+			throw (ImplementationException) e;
+		if (e != null)
+			throw new ImplementationException(e.getMessage());
+	}
+
+	private static void throwException(Exception e) throws ImplementationException, ParameterException {
+		if (e instanceof ParameterException)
+			throw (ParameterException) e;
+		throwImplementationException(e);
+	}
+
+	@Override
+	public void openConnection() throws ConnectionException, ImplementationException {
+		load();
+		Exception e = getException(next(Call.OPEN_CONNECTION));
+		if (e instanceof ConnectionException)
+			throw (ConnectionException) e;
+		throwImplementationException(e);
+	}
+
+	@Override
+	public void closeConnection() throws ConnectionException {
+		Exception e = getException(next(Call.CLOSE_CONNECTION));
+		if (e != null)
+			throw e instanceof ConnectionException ? (ConnectionException) e : new ConnectionException(e.getMessage());
+	}
+
+	@Override
+	public TagDataList execute(List<Short> antennas, List<Filter> filter, List<TagOperation> operations, RFConsumer consumer)
+			throws ImplementationException, ParameterException {
+		TraceRecord record = next(Call.EXECUTE);
+		if (record == null)
+			throw new ImplementationException("No more executions in trace " + file);
+		try {
+			if (!Arrays.equals(record.getArguments(), TraceCodec.encodeExecute(antennas, filter, operations))) {
+				synchronized (this) {
+					mismatches++;
+				}
+				log.log(Level.FINE, "Execution at {0}ns differs from the trace", Long.valueOf(record.getTime()));
+			}
+		} catch (IOException e) {
+			log.log(Level.FINE, "Failed to encode execution arguments", e);
+		}
+		throwException(getException(record));
+		try {
+			return TraceCodec.decodeTags(record.getResult());
+		} catch (IOException e) {
+			throw new ImplementationException("Failed to decode execution result: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public synchronized String getRegion() {
+		region = getResult(next(Call.GET_REGION), region);
+		return region;
+	}
+
+	@Override
+	public void setRegion(RFRegion rfcRegion, AntennaConfigurationList antennaConfigurationList) throws ParameterException,
+			ImplementationException {
+		throwException(getException(next(Call.SET_REGION)));
+		synchronized (this) {
+			region = rfcRegion == null ? null : rfcRegion.getId();
+		}
+	}
+
+	@Override
+	public void setAntennaConfiguration(AntennaConfiguration antennaConfiguration, RegulatoryCapabilities regulatoryCapabilities, boolean forceTune)
+			throws ParameterException, ImplementationException {
+		throwException(getException(next(Call.SET_ANTENNA_CONFIGURATION)));
+	}
+
+	@Override
+	public void setAntennaConfigurations(List<AntennaConfiguration> antennaConfigurations, RegulatoryCapabilities regulatoryCapabilities,
+			boolean forceTune) throws ParameterException, ImplementationException {
+		boolean batches;
+		synchronized (this) {
+			batches = !loaded || !records.get(Call.SET_ANTENNA_CONFIGURATIONS).isEmpty();
+		}
+		if (batches)
+			throwException(getException(next(Call.SET_ANTENNA_CONFIGURATIONS)));
+		else
+			for (AntennaConfiguration antennaConfiguration : antennaConfigurations)
+				setAntennaConfiguration(antennaConfiguration, regulatoryCapabilities, forceTune);
+	}
+
+	@Override
+	public AntennaPropertyList getAntennaProperties(Map<Short, ConnectType> connectTypeMap) throws ImplementationException {
+		TraceRecord record = next(Call.GET_ANTENNA_PROPERTIES);
+		throwImplementationException(getException(record));
+		synchronized (this) {
+			antennaProperties = getResult(record, antennaProperties);
+			return antennaProperties;
+		}
+	}
+
+	@Override
+	public String getFirmwareVersion() throws ImplementationException {
+		TraceRecord record = next(Call.GET_FIRMWARE_VERSION);
+		throwImplementationException(getException(record));
+		synchronized (this) {
+			firmwareVersion = getResult(record, firmwareVersion);
+			return firmwareVersion;
+		}
+	}
+
+	@Override
+	public void installFirmware() throws ImplementationException {
+		throwImplementationException(getException(next(Call.INSTALL_FIRMWARE)));
+	}
+
+	@Override
+	public synchronized RssiFilter getRssiFilter() {
+		rssiFilter = getResult(next(Call.GET_RSSI_FILTER), rssiFilter);
+		return rssiFilter;
+	}
+
+	@Override
+	public void setRssiFilter(RssiFilter rssiFilter) throws ImplementationException {
+		throwImplementationException(getException(next(Call.SET_RSSI_FILTER)));
+		synchronized (this) {
+			this.rssiFilter = rssiFilter;
+		}
+	}
+
+	@Override
+	public synchronized SingulationControl getSingulationControl() {
+		singulationControl = getResult(next(Call.GET_SINGULATION_CONTROL), singulationControl);
+		return singulationControl;
+	}
+
+	@Override
+	public void setSingulationControl(SingulationControl singulationControl) throws ImplementationException {
+		throwImplementationException(getException(next(Call.SET_SINGULATION_CONTROL)));
+		synchronized (this) {
+			this.singulationControl = singulationControl;
+		}
+	}
+
+	@Override
+	public int getMaxAntennas() throws ImplementationException {
+		TraceRecord record = next(Call.GET_MAX_ANTENNAS);
+		throwImplementationException(getException(record));
+		synchronized (this) {
+			maxAntennas = getResult(record, Integer.valueOf(maxAntennas)).intValue();
+			return maxAntennas;
+		}
+	}
+}
@@ -0,0 +1,398 @@
+package havis.device.rf.common.trace;
+
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.TagDataList;
+import havis.device.rf.tag.operation.KillOperation;
+import havis.device.rf.tag.operation.LockOperation;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.operation.WriteOperation;
+import havis.device.rf.tag.result.KillResult;
+import havis.device.rf.tag.result.LockResult;
+import havis.device.rf.tag.result.OperationResult;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Encodes the arguments and results of hardware manager calls. Antennas,
+ * filters, operations and tags are written in a compact binary form with
+ * variable length integers, other objects and operations or results of
+ * unknown types as JSON with type information.
+ */
+class TraceCodec {
+
+	private static final int TYPE_JSON = 0;
+	private static final int TYPE_READ = 1;
+	private static final int TYPE_WRITE = 2;
+	private static final int TYPE_LOCK = 3;
+	private static final int TYPE_KILL = 4;
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	static {
+		mapper.enableDefaultTyping();
+		mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+	}
+
+	private TraceCodec() {
+	}
+
+	/**
+	 * Encodes the arguments of an execution.
+	 *
+	 * @param antennas
+	 *            the antennas
+	 * @param filters
+	 *            the filters
+	 * @param operations
+	 *            the operations
+	 * @return the encoded arguments
+	 * @throws IOException
+	 *             if an object cannot be serialized
+	 */
+	static byte[] encodeExecute(List<Short> antennas, List<Filter> filters, List<TagOperation> operations) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeAntennas(out, antennas);
+		writeFilters(out, filters);
+		writeOperations(out, operations);
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Encodes a list of tags.
+	 *
+	 * @param tags
+	 *            the tags, may be null
+	 * @return the encoded tags
+	 * @throws IOException
+	 *             if a result cannot be serialized
+	 */
+	static byte[] encodeTags(TagDataList tags) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		if (tags == null) {
+			writeVarInt(out, 0);
+		} else {
+			writeVarInt(out, tags.getEntryList().size() + 1);
+			for (TagData tag : tags.getEntryList())
+				writeTag(out, tag);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decodes a list of tags.
+	 *
+	 * @param data
+	 *            the encoded tags
+	 * @return the tags, may be null
+	 * @throws IOException
+	 *             if the data is invalid
+	 */
+	static TagDataList decodeTags(byte[] data) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		int count = readVarInt(in) - 1;
+		if (count < 0)
+			return null;
+		TagDataList tags = new TagDataList();
+		for (int i = 0; i < count; i++)
+			tags.getEntryList().add(readTag(in));
+		return tags;
+	}
+
+	/**
+	 * Encodes an object as its class name followed by the JSON
+	 * representation.
+	 *
+	 * @param object
+	 *            the object, not null
+	 * @return the encoded object
+	 * @throws IOException
+	 *             if the object cannot be serialized
+	 */
+	static byte[] encodeObject(Object object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeString(out, object.getClass().getName());
+		mapper.writeValue(out, object);
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decodes an object encoded by {@link #encodeObject(Object)}.
+	 *
+	 * @param data
+	 *            the encoded object
+	 * @return the object
+	 * @throws IOException
+	 *             if the data is invalid or the class is unknown
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> T decodeObject(byte[] data) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		String name = readString(in);
+		try {
+			return (T) mapper.readValue(in, Class.forName(name, true, TraceCodec.class.getClassLoader()));
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Unknown class " + name, e);
+		}
+	}
+
+	private static void writeAntennas(DataOutput out, List<Short> antennas) throws IOException {
+		if (antennas == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+		writeVarInt(out, antennas.size() + 1);
+		for (Short antenna : antennas)
+			out.writeShort(antenna.shortValue());
+	}
+
+	private static void writeFilters(DataOutput out, List<Filter> filters) throws IOException {
+		if (filters == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+		writeVarInt(out, filters.size() + 1);
+		for (Filter filter : filters) {
+			out.writeByte(filter.getBank());
+			out.writeShort(filter.getBitOffset());
+			out.writeShort(filter.getBitLength());
+			writeBytes(out, filter.getData());
+			writeBytes(out, filter.getMask());
+			out.writeBoolean(filter.isMatch());
+		}
+	}
+
+	private static void writeOperations(DataOutput out, List<TagOperation> operations) throws IOException {
+		if (operations == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+		writeVarInt(out, operations.size() + 1);
+		for (TagOperation operation : operations) {
+			if (operation instanceof ReadOperation) {
+				ReadOperation read = (ReadOperation) operation;
+				out.writeByte(TYPE_READ);
+				writeString(out, read.getOperationId());
+				out.writeByte(read.getBank());
+				out.writeShort(read.getOffset());
+				out.writeShort(read.getLength());
+				out.writeInt(read.getPassword());
+			} else if (operation instanceof WriteOperation) {
+				WriteOperation write = (WriteOperation) operation;
+				out.writeByte(TYPE_WRITE);
+				writeString(out, write.getOperationId());
+				out.writeByte(write.getBank());
+				out.writeShort(write.getOffset());
+				writeBytes(out, write.getData());
+				out.writeInt(write.getPassword());
+			} else if (operation instanceof LockOperation) {
+				LockOperation lock = (LockOperation) operation;
+				out.writeByte(TYPE_LOCK);
+				writeString(out, lock.getOperationId());
+				out.writeByte(lock.getField().ordinal());
+				out.writeByte(lock.getPrivilege().ordinal());
+				out.writeInt(lock.getPassword());
+			} else if (operation instanceof KillOperation) {
+				out.writeByte(TYPE_KILL);
+				writeString(out, operation.getOperationId());
+				out.writeInt(((KillOperation) operation).getKillPassword());
+			} else {
+				out.writeByte(TYPE_JSON);
+				writeBytes(out, encodeObject(operation));
+			}
+		}
+	}
+
+	private static void writeTag(DataOutput out, TagData tag) throws IOException {
+		writeVarLong(out, tag.getTagDataId());
+		writeBytes(out, tag.getEpc());
+		out.writeShort(tag.getPc());
+		out.writeInt(tag.getXpc());
+		out.writeShort(tag.getAntennaID());
+		writeVarLong(out, zigZag(tag.getRssi()));
+		out.writeShort(tag.getChannel());
+		out.writeShort(tag.getCrc());
+		List<OperationResult> results = tag.getResultList();
+		writeVarInt(out, results == null ? 0 : results.size());
+		if (results != null)
+			for (OperationResult result : results)
+				writeResult(out, result);
+	}
+
+	private static TagData readTag(DataInput in) throws IOException {
+		TagData tag = new TagData();
+		tag.setTagDataId(readVarLong(in));
+		tag.setEpc(readBytes(in));
+		tag.setPc(in.readShort());
+		tag.setXpc(in.readInt());
+		tag.setAntennaID(in.readShort());
+		tag.setRssi((int) unZigZag(readVarLong(in)));
+		tag.setChannel(in.readShort());
+		tag.setCrc(in.readShort());
+		int count = readVarInt(in);
+		for (int i = 0; i < count; i++)
+			tag.getResultList().add(readResult(in));
+		return tag;
+	}
+
+	private static void writeResult(DataOutput out, OperationResult result) throws IOException {
+		if (result instanceof ReadResult) {
+			ReadResult read = (ReadResult) result;
+			out.writeByte(TYPE_READ);
+			writeString(out, read.getOperationId());
+			writeEnum(out, read.getResult());
+			writeBytes(out, read.getReadData());
+		} else if (result instanceof WriteResult) {
+			WriteResult write = (WriteResult) result;
+			out.writeByte(TYPE_WRITE);
+			writeString(out, write.getOperationId());
+			writeEnum(out, write.getResult());
+			out.writeShort(write.getWordsWritten());
+		} else if (result instanceof LockResult) {
+			out.writeByte(TYPE_LOCK);
+			writeString(out, result.getOperationId());
+			writeEnum(out, ((LockResult) result).getResult());
+		} else if (result instanceof KillResult) {
+			out.writeByte(TYPE_KILL);
+			writeString(out, result.getOperationId());
+			writeEnum(out, ((KillResult) result).getResult());
+		} else {
+			out.writeByte(TYPE_JSON);
+			writeBytes(out, encodeObject(result));
+		}
+	}
+
+	private static OperationResult readResult(DataInput in) throws IOException {
+		int type = in.readUnsignedByte();
+		switch (type) {
+		case TYPE_READ:
+			ReadResult read = new ReadResult();
+			read.setOperationId(readString(in));
+			read.setResult(readEnum(in, ReadResult.Result.values()));
+			read.setReadData(readBytes(in));
+			return read;
+		case TYPE_WRITE:
+			WriteResult write = new WriteResult();
+			write.setOperationId(readString(in));
+			write.setResult(readEnum(in, WriteResult.Result.values()));
+			write.setWordsWritten(in.readShort());
+			return write;
+		case TYPE_LOCK:
+			LockResult lock = new LockResult();
+			lock.setOperationId(readString(in));
+			lock.setResult(readEnum(in, LockResult.Result.values()));
+			return lock;
+		case TYPE_KILL:
+			KillResult kill = new KillResult();
+			kill.setOperationId(readString(in));
+			kill.setResult(readEnum(in, KillResult.Result.values()));
+			return kill;
+		case TYPE_JSON:
+			return decodeObject(readBytes(in));
+		default:
+			throw new IOException("Unknown result type " + type);
+		}
+	}
+
+	private static void writeEnum(DataOutput out, Enum<?> value) throws IOException {
+		out.writeByte(value == null ? 0 : value.ordinal() + 1);
+	}
+
+	private static <E extends Enum<E>> E readEnum(DataInput in, E[] values) throws IOException {
+		int ordinal = in.readUnsignedByte() - 1;
+		if (ordinal < 0)
+			return null;
+		if (ordinal >= values.length)
+			throw new IOException("Invalid enum ordinal " + ordinal);
+		return values[ordinal];
+	}
+
+	static void writeString(DataOutput out, String value) throws IOException {
+		writeBytes(out, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	static String readString(DataInput in) throws IOException {
+		byte[] bytes = readBytes(in);
+		return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes a byte array with its length plus one, zero for null
+	 */
+	static void writeBytes(DataOutput out, byte[] value) throws IOException {
+		if (value == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+		writeVarInt(out, value.length + 1);
+		out.write(value);
+	}
+
+	static byte[] readBytes(DataInput in) throws IOException {
+		int length = readVarInt(in) - 1;
+		if (length < 0)
+			return null;
+		byte[] value = new byte[length];
+		in.readFully(value);
+		return value;
+	}
+
+	static void writeVarInt(DataOutput out, int value) throws IOException {
+		writeVarLong(out, value & 0xFFFFFFFFL);
+	}
+
+	static int readVarInt(DataInput in) throws IOException {
+		long value = readVarLong(in);
+		if (value > Integer.MAX_VALUE)
+			throw new IOException("Invalid length " + value);
+		return (int) value;
+	}
+
+	/**
+	 * Writes an unsigned value with seven bits per byte, the highest bit
+	 * indicating that more bytes follow
+	 */
+	static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Invalid variable length integer");
+	}
+
+	private static long zigZag(long value) {
+		return value << 1 ^ value >> 63;
+	}
+
+	private static long unZigZag(long value) {
+		return value >>> 1 ^ -(value & 1);
+	}
+}
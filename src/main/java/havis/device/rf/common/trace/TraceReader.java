@@ -0,0 +1,104 @@
+package havis.device.rf.common.trace;
+
+import havis.device.rf.common.trace.TraceRecord.Call;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads the records of a trace file written by {@link TraceWriter}. The times
+ * of the records of consecutive sessions are continued, so the times increase
+ * over the complete trace. A record truncated by the termination of the
+ * recording process ends the trace.
+ */
+public class TraceReader implements Closeable {
+
+	private static final Logger log = Logger.getLogger(TraceReader.class.getName());
+
+	private final DataInputStream in;
+	private long sessionOffset;
+	private long end;
+
+	/**
+	 * Opens a trace file.
+	 *
+	 * @param file
+	 *            the trace file
+	 * @throws IOException
+	 *             if the file cannot be opened or is not a trace file
+	 */
+	public TraceReader(File file) throws IOException {
+		this(new FileInputStream(file));
+	}
+
+	/**
+	 * Creates a reader of a trace.
+	 *
+	 * @param stream
+	 *            the trace
+	 * @throws IOException
+	 *             if the stream does not contain a trace
+	 */
+	public TraceReader(InputStream stream) throws IOException {
+		in = new DataInputStream(new BufferedInputStream(stream));
+		try {
+			if (in.readInt() != TraceWriter.MAGIC)
+				throw new IOException("Not a trace file");
+			int version = in.readUnsignedByte();
+			if (version != TraceWriter.VERSION)
+				throw new IOException("Unsupported trace version " + version);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the next record.
+	 *
+	 * @return the record or null at the end of the trace
+	 * @throws IOException
+	 *             if the trace is invalid
+	 */
+	public TraceRecord next() throws IOException {
+		try {
+			int type = in.read();
+			while (type == TraceWriter.SESSION) {
+				in.readLong();
+				sessionOffset = end;
+				type = in.read();
+			}
+			if (type < 0)
+				return null;
+			if (type >= Call.values().length)
+				throw new IOException("Unknown call " + type);
+			Call call = Call.values()[type];
+			long time = sessionOffset + TraceCodec.readVarLong(in);
+			long duration = TraceCodec.readVarLong(in);
+			byte[] arguments = TraceCodec.readBytes(in);
+			TraceRecord record;
+			if (in.readUnsignedByte() == TraceWriter.OUTCOME_EXCEPTION)
+				record = new TraceRecord(call, time, duration, arguments, null, TraceCodec.readString(in), TraceCodec.readString(in));
+			else
+				record = new TraceRecord(call, time, duration, arguments, TraceCodec.readBytes(in), null, null);
+			end = Math.max(end, time + duration);
+			return record;
+		} catch (EOFException e) {
+			log.log(Level.FINE, "Trace ends with a truncated record");
+			return null;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
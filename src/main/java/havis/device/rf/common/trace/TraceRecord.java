@@ -0,0 +1,84 @@
+package havis.device.rf.common.trace;
+
+/**
+ * A call of a hardware manager method as stored in a trace.
+ */
+public class TraceRecord {
+
+	/**
+	 * The recorded methods
+	 */
+	public enum Call {
+		OPEN_CONNECTION, CLOSE_CONNECTION, EXECUTE, GET_REGION, SET_REGION, SET_ANTENNA_CONFIGURATION, GET_ANTENNA_PROPERTIES, GET_FIRMWARE_VERSION,
+		INSTALL_FIRMWARE, GET_RSSI_FILTER, SET_RSSI_FILTER, GET_SINGULATION_CONTROL, SET_SINGULATION_CONTROL, GET_MAX_ANTENNAS,
+		SET_ANTENNA_CONFIGURATIONS
+	}
+
+	private final Call call;
+	private final long time;
+	private final long duration;
+	private final byte[] arguments;
+	private final byte[] result;
+	private final String exceptionClass;
+	private final String exceptionMessage;
+
+	TraceRecord(Call call, long time, long duration, byte[] arguments, byte[] result, String exceptionClass, String exceptionMessage) {
+		this.call = call;
+		this.time = time;
+		this.duration = duration;
+		this.arguments = arguments;
+		this.result = result;
+		this.exceptionClass = exceptionClass;
+		this.exceptionMessage = exceptionMessage;
+	}
+
+	/**
+	 * @return the method
+	 */
+	public Call getCall() {
+		return call;
+	}
+
+	/**
+	 * @return the start of the call in nanoseconds since the start of the
+	 *         recording session
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * @return the duration of the call in nanoseconds
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * @return the encoded arguments, may be null
+	 */
+	byte[] getArguments() {
+		return arguments;
+	}
+
+	/**
+	 * @return the encoded result, null if the call failed or has no result
+	 */
+	byte[] getResult() {
+		return result;
+	}
+
+	/**
+	 * @return the class name of the exception thrown by the call or null
+	 */
+	public String getExceptionClass() {
+		return exceptionClass;
+	}
+
+	/**
+	 * @return the message of the exception thrown by the call
+	 */
+	public String getExceptionMessage() {
+		return exceptionMessage;
+	}
+}
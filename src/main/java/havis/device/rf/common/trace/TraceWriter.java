@@ -0,0 +1,98 @@
+package havis.device.rf.common.trace;
+
+import havis.device.rf.common.trace.TraceRecord.Call;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Appends records to a trace file. A trace file starts with a header followed
+ * by recording sessions. Each writer starts a new session with the wall clock
+ * time, the records of the session contain the time relative to the start of
+ * the session. Every record is flushed to the file, so a trace is complete up
+ * to the last record if the process terminates.
+ */
+public class TraceWriter implements Closeable {
+
+	static final int MAGIC = 0x52465452; // "RFTR"
+	static final int VERSION = 1;
+	static final int SESSION = 0xFF;
+	static final int OUTCOME_RESULT = 0;
+	static final int OUTCOME_EXCEPTION = 1;
+
+	private final DataOutputStream out;
+	private final long start = System.nanoTime();
+
+	/**
+	 * Opens a trace file for appending and starts a new session.
+	 *
+	 * @param file
+	 *            the trace file, created if it does not exist
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public TraceWriter(File file) throws IOException {
+		boolean empty = !file.exists() || file.length() == 0;
+		if (file.getParentFile() != null)
+			file.getParentFile().mkdirs();
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+		if (empty) {
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+		}
+		out.writeByte(SESSION);
+		out.writeLong(System.currentTimeMillis());
+		out.flush();
+	}
+
+	/**
+	 * @return the current time in nanoseconds relative to the start of the
+	 *         session
+	 */
+	long now() {
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Appends a record.
+	 *
+	 * @param call
+	 *            the method
+	 * @param time
+	 *            the start of the call relative to the start of the session
+	 * @param duration
+	 *            the duration of the call in nanoseconds
+	 * @param arguments
+	 *            the encoded arguments or null
+	 * @param result
+	 *            the encoded result or null
+	 * @param exception
+	 *            the exception thrown by the call or null
+	 * @throws IOException
+	 *             if the record cannot be written
+	 */
+	synchronized void write(Call call, long time, long duration, byte[] arguments, byte[] result, Throwable exception) throws IOException {
+		out.writeByte(call.ordinal());
+		TraceCodec.writeVarLong(out, time);
+		TraceCodec.writeVarLong(out, duration);
+		TraceCodec.writeBytes(out, arguments);
+		if (exception == null) {
+			out.writeByte(OUTCOME_RESULT);
+			TraceCodec.writeBytes(out, result);
+		} else {
+			out.writeByte(OUTCOME_EXCEPTION);
+			TraceCodec.writeString(out, exception.getClass().getName());
+			TraceCodec.writeString(out, exception.getMessage());
+		}
+		out.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,415 @@
+package havis.device.rf.common.util;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Bit field operations on arrays of 64-bit words. Bits are packed in
+ * big-endian order, i.e. bit 0 is the most significant bit of the first word.
+ * This is the same bit order as used for tag memory as byte arrays, where bit 0
+ * is the most significant bit of the first byte, so a byte array can be packed
+ * into words and back without reordering any bits. All operations work on
+ * whole words instead of single bits.
+ */
+public class BitField {
+
+	private BitField() {
+	}
+
+	/**
+	 * Packs an array of bytes into an array of words.
+	 *
+	 * @param bytes
+	 *            an array of bytes
+	 * @return an array of words containing the bits of <code>bytes</code>, the
+	 *         last word is zero-filled
+	 */
+	public static long[] pack(byte[] bytes) {
+		return pack(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Packs a range of an array of bytes into an array of words.
+	 *
+	 * @param bytes
+	 *            an array of bytes
+	 * @param offset
+	 *            the index of the first byte to pack
+	 * @param length
+	 *            the number of bytes to pack
+	 * @return an array of words containing the bits of the byte range, the last
+	 *         word is zero-filled
+	 */
+	public static long[] pack(byte[] bytes, int offset, int length) {
+		long[] words = new long[(length + 7) / 8];
+		int i = 0, w = 0;
+		for (; i + 8 <= length; i += 8)
+			words[w++] = getLong(bytes, offset + i);
+		if (i < length) {
+			long word = 0;
+			for (int shift = 56; i < length; i++, shift -= 8)
+				word |= (bytes[offset + i] & 0xFFL) << shift;
+			words[w] = word;
+		}
+		return words;
+	}
+
+	/**
+	 * Unpacks the leading bytes of an array of words.
+	 *
+	 * @param words
+	 *            an array of words
+	 * @param byteCnt
+	 *            the number of bytes to unpack
+	 * @return an array of <code>byteCnt</code> bytes, zero-filled beyond the
+	 *         end of <code>words</code>
+	 */
+	public static byte[] unpack(long[] words, int byteCnt) {
+		byte[] result = new byte[byteCnt];
+		for (int w = 0, i = 0; w < words.length && i < byteCnt; w++, i += 8)
+			putLong(words[w], result, i, Math.min(8, byteCnt - i));
+		return result;
+	}
+
+	/**
+	 * Returns 64 bits starting at an arbitrary bit position. Bits beyond the
+	 * end of <code>words</code> are returned as 0.
+	 *
+	 * @param words
+	 *            an array of words
+	 * @param from
+	 *            the index of the first bit
+	 * @return a word with bit <code>from</code> as its most significant bit
+	 */
+	public static long getBits(long[] words, int from) {
+		int index = from >>> 6;
+		int shift = from & 63;
+		long hi = index < words.length ? words[index] : 0;
+		if (shift == 0)
+			return hi;
+		long lo = index + 1 < words.length ? words[index + 1] : 0;
+		return hi << shift | lo >>> (64 - shift);
+	}
+
+	/**
+	 * Sets the bits of a word at an arbitrary bit position by OR-ing them into
+	 * an array of words. Bits beyond the end of <code>words</code> are
+	 * discarded.
+	 *
+	 * @param words
+	 *            an array of words
+	 * @param from
+	 *            the index of the bit corresponding to the most significant bit
+	 *            of <code>bits</code>
+	 * @param bits
+	 *            the bits to set
+	 */
+	public static void or(long[] words, int from, long bits) {
+		int index = from >>> 6;
+		int shift = from & 63;
+		if (index < words.length)
+			words[index] |= bits >>> shift;
+		if (shift > 0 && index + 1 < words.length)
+			words[index + 1] |= bits << (64 - shift);
+	}
+
+	/**
+	 * Returns 64 bits of a byte array starting at an arbitrary bit position.
+	 * Bits beyond the end of <code>bytes</code> are returned as 0.
+	 *
+	 * @param bytes
+	 *            an array of bytes
+	 * @param from
+	 *            the index of the first bit
+	 * @return a word with bit <code>from</code> as its most significant bit
+	 */
+	public static long getBits(byte[] bytes, int from) {
+		int index = from >>> 3;
+		int shift = from & 7;
+		long word = 0;
+		if (index + 8 <= bytes.length)
+			word = getLong(bytes, index);
+		else
+			for (int i = index, s = 56; i < bytes.length; i++, s -= 8)
+				word |= (bytes[i] & 0xFFL) << s;
+		if (shift > 0)
+			word = word << shift | (index + 8 < bytes.length ? (bytes[index + 8] & 0xFF) >>> (8 - shift) : 0);
+		return word;
+	}
+
+	/**
+	 * Copies a bit range of a byte array to the start of a byte range of
+	 * another array, 64 bits at a time. Bits before the start or beyond the end
+	 * of <code>bytes</code> are copied as 0, as are the bits of the last
+	 * destination byte following the range.
+	 *
+	 * @param bytes
+	 *            the source array
+	 * @param from
+	 *            the index of the first bit to copy, may be negative to prepend
+	 *            0 bits
+	 * @param bitCnt
+	 *            the number of bits to copy
+	 * @param dst
+	 *            the destination array
+	 * @param dstOffset
+	 *            the index of the first destination byte
+	 * @return the number of bytes written, i.e. <code>ceil(bitCnt / 8)</code>
+	 * @throws IndexOutOfBoundsException
+	 *             if the destination array is too small
+	 */
+	public static int copy(byte[] bytes, int from, int bitCnt, byte[] dst, int dstOffset) {
+		int byteCnt = (bitCnt + 7) / 8;
+		if (dstOffset < 0 || dstOffset + byteCnt > dst.length)
+			throw new IndexOutOfBoundsException("Destination too small for " + byteCnt + " bytes at offset " + dstOffset);
+		for (int bit = 0, i = dstOffset; bit < bitCnt; bit += 64, i += 8)
+			putLong(getRangeBits(bytes, from, bit, bitCnt), dst, i, Math.min(8, dstOffset + byteCnt - i));
+		return byteCnt;
+	}
+
+	/**
+	 * Copies a bit range of a byte array to a byte buffer, 64 bits at a time.
+	 * Bits before the start or beyond the end of <code>bytes</code> are copied
+	 * as 0, as are the bits of the last byte following the range. The bytes
+	 * are written at the current position of the buffer, which is advanced.
+	 *
+	 * @param bytes
+	 *            the source array
+	 * @param from
+	 *            the index of the first bit to copy, may be negative to prepend
+	 *            0 bits
+	 * @param bitCnt
+	 *            the number of bits to copy
+	 * @param dst
+	 *            the destination buffer
+	 * @return the number of bytes written, i.e. <code>ceil(bitCnt / 8)</code>
+	 * @throws BufferOverflowException
+	 *             if the buffer has not enough space left
+	 */
+	public static int copy(byte[] bytes, int from, int bitCnt, ByteBuffer dst) {
+		int byteCnt = (bitCnt + 7) / 8;
+		if (dst.remaining() < byteCnt)
+			throw new BufferOverflowException();
+		if (dst.hasArray()) {
+			copy(bytes, from, bitCnt, dst.array(), dst.arrayOffset() + dst.position());
+			dst.position(dst.position() + byteCnt);
+			return byteCnt;
+		}
+		for (int bit = 0, i = 0; bit < bitCnt; bit += 64, i += 8) {
+			long word = getRangeBits(bytes, from, bit, bitCnt);
+			int cnt = Math.min(8, byteCnt - i);
+			if (cnt == 8 && dst.order() == ByteOrder.BIG_ENDIAN)
+				dst.putLong(word);
+			else
+				for (int j = 0, shift = 56; j < cnt; j++, shift -= 8)
+					dst.put((byte) (word >>> shift));
+		}
+		return byteCnt;
+	}
+
+	/**
+	 * Returns the 64 bits at position <code>bit</code> of the range starting
+	 * at <code>from</code>, cleared beyond the end of the range
+	 */
+	private static long getRangeBits(byte[] bytes, int from, int bit, int bitCnt) {
+		int index = from + bit;
+		long word;
+		if (index >= 0)
+			word = getBits(bytes, index);
+		else if (index <= -64)
+			word = 0;
+		else
+			word = getBits(bytes, 0) >>> -index;
+		int remaining = bitCnt - bit;
+		if (remaining < 64)
+			word &= -1L << (64 - remaining);
+		return word;
+	}
+
+	/**
+	 * Compares the bits <code>from</code> (inclusive) to <code>to</code>
+	 * (exclusive) of two byte arrays as unsigned numbers, 64 bits at a time.
+	 * Bits beyond the end of an array are considered to be 0.
+	 *
+	 * @param left
+	 *            the left array
+	 * @param right
+	 *            the right array
+	 * @param from
+	 *            the index of the first bit
+	 * @param to
+	 *            the index after the last bit
+	 * @return a negative number, zero or a positive number if the bits of
+	 *         <code>left</code> are lower, equal to or greater than the bits of
+	 *         <code>right</code>
+	 */
+	public static int compare(byte[] left, byte[] right, int from, int to) {
+		for (int bit = from; bit < to; bit += 64) {
+			long l = getBits(left, bit);
+			long r = getBits(right, bit);
+			int remaining = to - bit;
+			if (remaining < 64) {
+				long mask = -1L << (64 - remaining);
+				l &= mask;
+				r &= mask;
+			}
+			if (l != r)
+				return compareUnsigned(l, r);
+		}
+		return 0;
+	}
+
+	/**
+	 * Compares two words as unsigned numbers.
+	 *
+	 * @param left
+	 *            the left word
+	 * @param right
+	 *            the right word
+	 * @return -1, 0 or 1 if <code>left</code> is lower, equal to or greater
+	 *         than <code>right</code>
+	 */
+	public static int compareUnsigned(long left, long right) {
+		if (left == right)
+			return 0;
+		return (left ^ Long.MIN_VALUE) < (right ^ Long.MIN_VALUE) ? -1 : 1;
+	}
+
+	/**
+	 * Returns the index of the first set bit at or after a bit position.
+	 *
+	 * @param words
+	 *            an array of words
+	 * @param from
+	 *            the index to start from
+	 * @return the index of the next set bit or -1 if there is none
+	 */
+	public static int nextSetBit(long[] words, int from) {
+		if (from < 0)
+			throw new IndexOutOfBoundsException("from < 0: " + from);
+		int index = from >>> 6;
+		if (index >= words.length)
+			return -1;
+		long word = words[index] & (-1L >>> (from & 63));
+		while (true) {
+			if (word != 0)
+				return index * 64 + Long.numberOfLeadingZeros(word);
+			if (++index == words.length)
+				return -1;
+			word = words[index];
+		}
+	}
+
+	/**
+	 * Returns the index of the first clear bit at or after a bit position. All
+	 * bits beyond the end of <code>words</code> are considered to be clear.
+	 *
+	 * @param words
+	 *            an array of words
+	 * @param from
+	 *            the index to start from
+	 * @return the index of the next clear bit
+	 */
+	public static int nextClearBit(long[] words, int from) {
+		if (from < 0)
+			throw new IndexOutOfBoundsException("from < 0: " + from);
+		int index = from >>> 6;
+		if (index >= words.length)
+			return from;
+		long word = ~words[index] & (-1L >>> (from & 63));
+		while (true) {
+			if (word != 0)
+				return index * 64 + Long.numberOfLeadingZeros(word);
+			if (++index == words.length)
+				return words.length * 64;
+			word = ~words[index];
+		}
+	}
+
+	/**
+	 * Copies the bits <code>from</code> (inclusive) to <code>to</code>
+	 * (exclusive) to a new byte array. The bits are shifted to start at bit 0
+	 * of the result, the bits of the last byte following the slice are 0.
+	 *
+	 * @param words
+	 *            an array of words
+	 * @param from
+	 *            the index of the first bit
+	 * @param to
+	 *            the index after the last bit
+	 * @return an array of <code>ceil((to - from) / 8)</code> bytes
+	 */
+	public static byte[] slice(long[] words, int from, int to) {
+		if (from < 0 || to < from)
+			throw new IndexOutOfBoundsException("from: " + from + ", to: " + to);
+		int bitCnt = to - from;
+		byte[] result = new byte[(bitCnt + 7) / 8];
+		for (int bit = 0, i = 0; bit < bitCnt; bit += 64, i += 8) {
+			long word = getBits(words, from + bit);
+			int remaining = bitCnt - bit;
+			if (remaining < 64)
+				word &= -1L << (64 - remaining);
+			putLong(word, result, i, Math.min(8, result.length - i));
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a byte array with the leading <code>bitCnt</code> bits set.
+	 *
+	 * @param bitCnt
+	 *            the number of bits to set
+	 * @return an array of <code>ceil(bitCnt / 8)</code> bytes
+	 */
+	public static byte[] ones(int bitCnt) {
+		byte[] result = new byte[(bitCnt + 7) / 8];
+		Arrays.fill(result, (byte) 0xFF);
+		if (bitCnt % 8 > 0)
+			result[result.length - 1] = (byte) (0xFF << (8 - bitCnt % 8));
+		return result;
+	}
+
+	/**
+	 * Converts an array of words to a {@link BitSet}. The bit indices of the
+	 * bit set equal the bit indices of the words.
+	 *
+	 * @param words
+	 *            an array of words
+	 * @return a bit set
+	 */
+	public static BitSet toBitSet(long[] words) {
+		long[] reversed = new long[words.length];
+		for (int i = 0; i < words.length; i++)
+			reversed[i] = Long.reverse(words[i]);
+		return BitSet.valueOf(reversed);
+	}
+
+	/**
+	 * Converts a {@link BitSet} to an array of words. The bit indices of the
+	 * words equal the bit indices of the bit set.
+	 *
+	 * @param bitSet
+	 *            a bit set
+	 * @return an array of words
+	 */
+	public static long[] fromBitSet(BitSet bitSet) {
+		long[] words = bitSet.toLongArray();
+		for (int i = 0; i < words.length; i++)
+			words[i] = Long.reverse(words[i]);
+		return words;
+	}
+
+	static long getLong(byte[] bytes, int offset) {
+		return (bytes[offset] & 0xFFL) << 56 | (bytes[offset + 1] & 0xFFL) << 48 | (bytes[offset + 2] & 0xFFL) << 40
+				| (bytes[offset + 3] & 0xFFL) << 32 | (bytes[offset + 4] & 0xFFL) << 24 | (bytes[offset + 5] & 0xFFL) << 16
+				| (bytes[offset + 6] & 0xFFL) << 8 | (bytes[offset + 7] & 0xFFL);
+	}
+
+	static void putLong(long word, byte[] bytes, int offset, int byteCnt) {
+		for (int i = 0, shift = 56; i < byteCnt; i++, shift -= 8)
+			bytes[offset + i] = (byte) (word >>> shift);
+	}
+}
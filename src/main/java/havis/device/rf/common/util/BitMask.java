@@ -0,0 +1,133 @@
+package havis.device.rf.common.util;
+
+import havis.device.rf.tag.Filter;
+
+/**
+ * A precomputed bit pattern with a mask for matching tag memory, e.g. the EPC
+ * of many tags against the same filter. Pattern and mask are packed into 64-bit
+ * words once on creation, so each match compares a word at a time without
+ * allocating memory.
+ */
+public class BitMask {
+
+	private final int bitOffset;
+	private final int bitLength;
+	private final long[] mask;
+	private final long[] pattern;
+
+	/**
+	 * Creates a new bit mask.
+	 *
+	 * @param bitOffset
+	 *            the bit offset of the pattern within the memory to match
+	 * @param bitLength
+	 *            the number of bits of the pattern
+	 * @param pattern
+	 *            the pattern bits
+	 * @param mask
+	 *            the mask bits, only bits set in the mask are compared. If
+	 *            null, all bits are compared.
+	 * @throws IllegalArgumentException
+	 *             if offset or length are negative or the pattern is shorter
+	 *             than <code>bitLength</code>
+	 */
+	public BitMask(int bitOffset, int bitLength, byte[] pattern, byte[] mask) {
+		if (bitOffset < 0 || bitLength < 0)
+			throw new IllegalArgumentException("Bit offset and length must not be negative");
+		if (pattern == null || pattern.length * 8L < bitLength)
+			throw new IllegalArgumentException("Pattern must contain at least " + bitLength + " bits");
+		this.bitOffset = bitOffset;
+		this.bitLength = bitLength;
+
+		int words = (bitLength + 63) / 64;
+		this.mask = new long[words];
+		this.pattern = new long[words];
+		for (int i = 0; i < words; i++) {
+			long m = mask == null ? -1L : BitField.getBits(mask, i * 64);
+			int remaining = bitLength - i * 64;
+			if (remaining < 64)
+				m &= -1L << (64 - remaining);
+			this.mask[i] = m;
+			this.pattern[i] = BitField.getBits(pattern, i * 64) & m;
+		}
+	}
+
+	/**
+	 * Creates a bit mask from a filter.
+	 *
+	 * @param filter
+	 *            a filter
+	 * @return a bit mask with the offset, length, data and mask of the filter
+	 */
+	public static BitMask forFilter(Filter filter) {
+		return new BitMask(filter.getBitOffset(), filter.getBitLength(), filter.getData(), filter.getMask());
+	}
+
+	/**
+	 * Returns whether the masked bits of a memory area match the pattern.
+	 *
+	 * @param value
+	 *            the memory area starting at bit 0
+	 * @return true if the bits match, false otherwise or if
+	 *         <code>value</code> does not cover the pattern
+	 */
+	public boolean matches(byte[] value) {
+		return matches(value, 0);
+	}
+
+	/**
+	 * Returns whether the masked bits of a memory area match the pattern.
+	 *
+	 * @param value
+	 *            the memory area
+	 * @param valueBitOffset
+	 *            the bit offset of the first bit of <code>value</code> within
+	 *            the memory
+	 * @return true if the bits match, false otherwise or if
+	 *         <code>value</code> does not cover the pattern
+	 */
+	public boolean matches(byte[] value, int valueBitOffset) {
+		int from = bitOffset - valueBitOffset;
+		if (from < 0 || value.length * 8L < (long) from + bitLength)
+			return false;
+		for (int i = 0; i < mask.length; i++)
+			if ((BitField.getBits(value, from + i * 64) & mask[i]) != pattern[i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Compares the masked bits of a memory area with the pattern as unsigned
+	 * numbers.
+	 *
+	 * @param value
+	 *            the memory area
+	 * @param valueBitOffset
+	 *            the bit offset of the first bit of <code>value</code> within
+	 *            the memory
+	 * @return a negative number, zero or a positive number if the bits of
+	 *         <code>value</code> are lower, equal to or greater than the
+	 *         pattern
+	 * @throws IndexOutOfBoundsException
+	 *             if <code>value</code> does not cover the pattern
+	 */
+	public int compare(byte[] value, int valueBitOffset) {
+		int from = bitOffset - valueBitOffset;
+		if (from < 0 || value.length * 8L < (long) from + bitLength)
+			throw new IndexOutOfBoundsException("Value does not cover bits " + bitOffset + " to " + (bitOffset + bitLength));
+		for (int i = 0; i < mask.length; i++) {
+			long bits = BitField.getBits(value, from + i * 64) & mask[i];
+			if (bits != pattern[i])
+				return BitField.compareUnsigned(bits, pattern[i]);
+		}
+		return 0;
+	}
+
+	public int getBitOffset() {
+		return bitOffset;
+	}
+
+	public int getBitLength() {
+		return bitLength;
+	}
+}
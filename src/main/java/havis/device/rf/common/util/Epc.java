@@ -0,0 +1,153 @@
+package havis.device.rf.common.util;
+
+import java.util.Arrays;
+
+/**
+ * An immutable EPC value. EPCs of up to 128 bits are stored in two words, longer
+ * EPCs in a private copy of the bytes. The hash code is computed once on
+ * creation and the hex representation on first use, so the value can be used
+ * as map key and in log output without hashing or encoding the bytes again.
+ */
+public final class Epc implements Comparable<Epc> {
+
+	private final int length;
+	private final long hi;
+	private final long lo;
+	private final byte[] bytes;
+	private final int hash;
+	private String hex;
+
+	private Epc(byte[] epc) {
+		length = epc.length;
+		if (length <= 16) {
+			hi = getWord(epc, 0);
+			lo = getWord(epc, 8);
+			bytes = null;
+			long h = hi * 31 + lo;
+			hash = (int) (h ^ (h >>> 32)) * 31 + length;
+		} else {
+			hi = 0;
+			lo = 0;
+			bytes = epc.clone();
+			hash = Arrays.hashCode(bytes);
+		}
+	}
+
+	/**
+	 * Creates an EPC value.
+	 *
+	 * @param epc
+	 *            the EPC bytes, may be null
+	 * @return the EPC value or null if <code>epc</code> is null
+	 */
+	public static Epc valueOf(byte[] epc) {
+		return epc == null ? null : new Epc(epc);
+	}
+
+	/**
+	 * @return the number of bytes of the EPC
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * @return a copy of the EPC bytes
+	 */
+	public byte[] toBytes() {
+		if (bytes != null)
+			return bytes.clone();
+		byte[] result = new byte[length];
+		for (int i = 0; i < length; i++)
+			result[i] = byteAt(i);
+		return result;
+	}
+
+	/**
+	 * Returns whether the value matches an array of EPC bytes.
+	 *
+	 * @param epc
+	 *            the EPC bytes, may be null
+	 * @return true if <code>epc</code> contains the bytes of this value
+	 */
+	public boolean matches(byte[] epc) {
+		if (epc == null || epc.length != length)
+			return false;
+		if (bytes != null)
+			return Arrays.equals(bytes, epc);
+		return hi == getWord(epc, 0) && lo == getWord(epc, 8);
+	}
+
+	/**
+	 * @return the EPC in upper case hex notation without prefix
+	 */
+	public String toHex() {
+		String result = hex;
+		if (result == null) {
+			char[] chars = new char[length * 2];
+			for (int i = 0; i < length; i++) {
+				int b = byteAt(i) & 0xFF;
+				chars[2 * i] = HexCodec.DIGITS[b >>> 4];
+				chars[2 * i + 1] = HexCodec.DIGITS[b & 0x0F];
+			}
+			hex = result = new String(chars);
+		}
+		return result;
+	}
+
+	@Override
+	public int compareTo(Epc other) {
+		int common = Math.min(length, other.length);
+		if (bytes == null && other.bytes == null) {
+			int c = BitField.compareUnsigned(hi, other.hi);
+			if (c == 0)
+				c = BitField.compareUnsigned(lo, other.lo);
+			// equal words are followed by zero padding, so the shorter value
+			// is a prefix of the longer one
+			return c != 0 ? c : length - other.length;
+		}
+		for (int i = 0; i < common; i++) {
+			int c = (byteAt(i) & 0xFF) - (other.byteAt(i) & 0xFF);
+			if (c != 0)
+				return c;
+		}
+		return length - other.length;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Epc))
+			return false;
+		Epc other = (Epc) obj;
+		if (hash != other.hash || length != other.length)
+			return false;
+		if (bytes != null || other.bytes != null)
+			return Arrays.equals(bytes, other.bytes);
+		return hi == other.hi && lo == other.lo;
+	}
+
+	@Override
+	public String toString() {
+		return toHex();
+	}
+
+	private byte byteAt(int index) {
+		if (bytes != null)
+			return bytes[index];
+		return (byte) ((index < 8 ? hi : lo) >>> (56 - 8 * (index % 8)));
+	}
+
+	private static long getWord(byte[] epc, int offset) {
+		long word = 0;
+		for (int i = offset, shift = 56; i < offset + 8 && i < epc.length; i++, shift -= 8)
+			word |= (epc[i] & 0xFFL) << shift;
+		return word;
+	}
+}
@@ -0,0 +1,303 @@
+package havis.device.rf.common.util;
+
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.TagDataList;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Table-driven conversion of bytes to hexadecimal and binary notation and back.
+ * Encoding writes to caller-supplied {@link Appendable}s or {@link CharBuffer}
+ * s, decoding to caller-supplied byte arrays, so no intermediate strings are
+ * created.
+ */
+public class HexCodec {
+
+	static final char[] DIGITS = "0123456789ABCDEF".toCharArray();
+
+	private static final byte INVALID = -1;
+	private static final byte SKIP = -2;
+	private static final byte[] VALUES = new byte[128];
+
+	static {
+		Arrays.fill(VALUES, INVALID);
+		for (int i = 0; i < 10; i++)
+			VALUES['0' + i] = (byte) i;
+		for (int i = 0; i < 6; i++) {
+			VALUES['A' + i] = (byte) (10 + i);
+			VALUES['a' + i] = (byte) (10 + i);
+		}
+		// white spaces and underscores may be used to group digits
+		for (char c : new char[] { ' ', '\t', '\n', '\u000B', '\f', '\r', '_' })
+			VALUES[c] = SKIP;
+	}
+
+	private HexCodec() {
+	}
+
+	/**
+	 * Returns the number of bytes represented by a hex string. White spaces
+	 * and underscores are ignored.
+	 *
+	 * @param hex
+	 *            a hex string
+	 * @return the number of bytes
+	 * @throws NumberFormatException
+	 *             if the string contains an invalid character
+	 * @throws IllegalArgumentException
+	 *             if the string has an odd number of digits
+	 */
+	public static int decodedLength(CharSequence hex) {
+		int digits = 0;
+		for (int i = 0; i < hex.length(); i++)
+			if (value(hex, i) != SKIP)
+				digits++;
+		if (digits % 2 != 0)
+			throw new IllegalArgumentException("Hex string must have an even number of characters.");
+		return digits / 2;
+	}
+
+	/**
+	 * Converts a hex string to a new byte array. White spaces and underscores
+	 * are ignored.
+	 *
+	 * @param hex
+	 *            a hex string
+	 * @return an array of bytes
+	 * @throws NumberFormatException
+	 *             if the string contains an invalid character
+	 * @throws IllegalArgumentException
+	 *             if the string has an odd number of digits
+	 */
+	public static byte[] decode(CharSequence hex) {
+		byte[] result = new byte[decodedLength(hex)];
+		decode(hex, result, 0);
+		return result;
+	}
+
+	/**
+	 * Converts a hex string to bytes written to a byte array. White spaces and
+	 * underscores are ignored.
+	 *
+	 * @param hex
+	 *            a hex string
+	 * @param dst
+	 *            the destination array
+	 * @param offset
+	 *            the index of the first byte to write
+	 * @return the number of bytes written
+	 * @throws NumberFormatException
+	 *             if the string contains an invalid character
+	 * @throws IllegalArgumentException
+	 *             if the string has an odd number of digits
+	 * @throws IndexOutOfBoundsException
+	 *             if the destination array is too small
+	 */
+	public static int decode(CharSequence hex, byte[] dst, int offset) {
+		int index = offset;
+		int high = -1;
+		for (int i = 0; i < hex.length(); i++) {
+			int value = value(hex, i);
+			if (value == SKIP)
+				continue;
+			if (high < 0) {
+				high = value;
+			} else {
+				dst[index++] = (byte) (high << 4 | value);
+				high = -1;
+			}
+		}
+		if (high >= 0)
+			throw new IllegalArgumentException("Hex string must have an even number of characters.");
+		return index - offset;
+	}
+
+	/**
+	 * Converts bytes to a hex string.
+	 *
+	 * @param bytes
+	 *            an array of bytes
+	 * @return the hex string in upper case letters
+	 */
+	public static String encode(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		encode(bytes, 0, bytes.length, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Appends bytes in hex notation to a string builder.
+	 *
+	 * @param bytes
+	 *            an array of bytes
+	 * @param out
+	 *            the string builder
+	 * @return the string builder
+	 */
+	public static StringBuilder encode(byte[] bytes, StringBuilder out) {
+		out.ensureCapacity(out.length() + bytes.length * 2);
+		for (byte b : bytes)
+			out.append(DIGITS[(b >>> 4) & 0x0F]).append(DIGITS[b & 0x0F]);
+		return out;
+	}
+
+	/**
+	 * Writes bytes in hex notation to a char buffer.
+	 *
+	 * @param bytes
+	 *            an array of bytes
+	 * @param out
+	 *            the char buffer
+	 * @return the char buffer
+	 * @throws BufferOverflowException
+	 *             if the buffer has not enough space left
+	 */
+	public static CharBuffer encode(byte[] bytes, CharBuffer out) {
+		if (out.hasArray()) {
+			if (out.remaining() < bytes.length * 2)
+				throw new BufferOverflowException();
+			encode(bytes, 0, bytes.length, out.array(), out.arrayOffset() + out.position());
+			out.position(out.position() + bytes.length * 2);
+		} else {
+			for (byte b : bytes)
+				out.put(DIGITS[(b >>> 4) & 0x0F]).put(DIGITS[b & 0x0F]);
+		}
+		return out;
+	}
+
+	/**
+	 * Appends bytes in hex notation to an {@link Appendable}.
+	 *
+	 * @param bytes
+	 *            an array of bytes
+	 * @param out
+	 *            the appendable
+	 * @return the appendable
+	 * @throws IOException
+	 *             if appending fails
+	 */
+	public static <A extends Appendable> A encode(byte[] bytes, A out) throws IOException {
+		if (out instanceof StringBuilder) {
+			encode(bytes, (StringBuilder) out);
+		} else if (out instanceof CharBuffer) {
+			encode(bytes, (CharBuffer) out);
+		} else {
+			for (byte b : bytes)
+				out.append(DIGITS[(b >>> 4) & 0x0F]).append(DIGITS[b & 0x0F]);
+		}
+		return out;
+	}
+
+	/**
+	 * Writes bytes in hex notation to a char array.
+	 *
+	 * @param bytes
+	 *            an array of bytes
+	 * @param offset
+	 *            the index of the first byte
+	 * @param length
+	 *            the number of bytes
+	 * @param dst
+	 *            the destination array
+	 * @param dstOffset
+	 *            the index of the first char to write
+	 * @return the number of chars written
+	 */
+	public static int encode(byte[] bytes, int offset, int length, char[] dst, int dstOffset) {
+		for (int i = offset, j = dstOffset; i < offset + length; i++) {
+			dst[j++] = DIGITS[(bytes[i] >>> 4) & 0x0F];
+			dst[j++] = DIGITS[bytes[i] & 0x0F];
+		}
+		return length * 2;
+	}
+
+	/**
+	 * Appends bytes in binary notation to a string builder. The bits are
+	 * grouped by 4 bits separated by a space.
+	 *
+	 * @param bytes
+	 *            an array of bytes
+	 * @param out
+	 *            the string builder
+	 * @return the string builder
+	 */
+	public static StringBuilder encodeBinary(byte[] bytes, StringBuilder out) {
+		out.ensureCapacity(out.length() + bytes.length * 10);
+		for (int i = 0; i < bytes.length; i++) {
+			if (i > 0)
+				out.append(' ');
+			appendNibble(out, (bytes[i] >>> 4) & 0x0F);
+			out.append(' ');
+			appendNibble(out, bytes[i] & 0x0F);
+		}
+		return out;
+	}
+
+	/**
+	 * Converts the EPCs of all tags of a list to hex strings, using a single
+	 * conversion buffer.
+	 *
+	 * @param tags
+	 *            a list of tags
+	 * @return a list of hex strings in the order of the tags, null for tags
+	 *         without EPC
+	 */
+	public static List<String> encodeEpcs(TagDataList tags) {
+		List<TagData> entries = tags.getEntryList();
+		List<String> result = new ArrayList<>(entries.size());
+		char[] buffer = new char[64];
+		for (TagData tag : entries) {
+			byte[] epc = tag.getEpc();
+			if (epc == null) {
+				result.add(null);
+				continue;
+			}
+			if (buffer.length < epc.length * 2)
+				buffer = new char[epc.length * 2];
+			result.add(new String(buffer, 0, encode(epc, 0, epc.length, buffer, 0)));
+		}
+		return result;
+	}
+
+	/**
+	 * Appends the EPCs of all tags of a list in hex notation to a string
+	 * builder.
+	 *
+	 * @param tags
+	 *            a list of tags
+	 * @param separator
+	 *            the separator between two EPCs
+	 * @param out
+	 *            the string builder
+	 * @return the string builder
+	 */
+	public static StringBuilder encodeEpcs(TagDataList tags, char separator, StringBuilder out) {
+		boolean first = true;
+		for (TagData tag : tags.getEntryList()) {
+			if (!first)
+				out.append(separator);
+			first = false;
+			if (tag.getEpc() != null)
+				encode(tag.getEpc(), out);
+		}
+		return out;
+	}
+
+	private static void appendNibble(StringBuilder out, int nibble) {
+		out.append((nibble & 8) == 0 ? '0' : '1').append((nibble & 4) == 0 ? '0' : '1').append((nibble & 2) == 0 ? '0' : '1')
+				.append((nibble & 1) == 0 ? '0' : '1');
+	}
+
+	private static int value(CharSequence hex, int index) {
+		char c = hex.charAt(index);
+		int value = c < VALUES.length ? VALUES[c] : INVALID;
+		if (value == INVALID)
+			throw new NumberFormatException("Invalid hex character '" + c + "' at index " + index);
+		return value;
+	}
+}
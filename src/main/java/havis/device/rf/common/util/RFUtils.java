@@ -17,6 +17,7 @@ import havis.device.rf.tag.result.ReadResult;
 import havis.device.rf.tag.result.WriteResult;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
@@ -86,6 +87,22 @@ public class RFUtils {
 		return new OperationListInspectionResult(flags, tidRdOp);
 	}
 
+	/**
+	 * Returns whether an operation list only reads tag memory, i.e. whether
+	 * executing it on a tag does not change the tag.
+	 * 
+	 * @param operations
+	 *            a list of TagOperation instances, may be null
+	 * @return true if the list is null, empty or only contains read operations
+	 */
+	public static boolean isReadOnly(List<TagOperation> operations) {
+		if (operations != null)
+			for (TagOperation operation : operations)
+				if (!(operation instanceof ReadOperation))
+					return false;
+		return true;
+	}
+
 	public static class OperationListInspectionResult {
 
 		public static final int LIST_INSPECTION_NONE = 0b0000;
@@ -126,21 +143,7 @@ public class RFUtils {
 	public static String bytesToHex(byte[] bytes) {
 		if (bytes == null)
 			return null;
-
-		char[] hexChars = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9',
-				'A', 'B', 'C', 'D', 'E', 'F' };
-		char[] resChars = new char[bytes.length * 2];
-
-		for (int iByte = 0; iByte < bytes.length; iByte++) {
-			byte b = bytes[iByte];
-			int b0 = (b & 0xf0) >> 4;
-			int b1 = b & 0x0f;
-
-			resChars[2 * iByte] = hexChars[b0];
-			resChars[2 * iByte + 1] = hexChars[b1];
-		}
-		return new String(resChars);
-
+		return HexCodec.encode(bytes);
 	}
 
 	/**
@@ -175,16 +178,15 @@ public class RFUtils {
 	 * @return a list of sub filters
 	 */
 	public static List<Filter> applyMask(Filter filter) {
-		BitSet data = bytesToBitSet(filter.getData());
-		BitSet mask = bytesToBitSet(filter.getMask());
+		long[] data = BitField.pack(filter.getData());
+		long[] mask = BitField.pack(filter.getMask());
 		List<Filter> subFilters = null;
 
 		int l = 0, r = 0;
-		BitSet subSet = null;
 		while (true) {
 			// get the next set bit starting from the position of the first
 			// clear bit from the previous round
-			l = mask.nextSetBit(r);
+			l = BitField.nextSetBit(mask, r);
 
 			// No more set mask bits found or set bit lies behind filters bit
 			// count boundaries
@@ -193,7 +195,7 @@ public class RFUtils {
 
 			// get the next clear bit starting from the position of the set bit
 			// found above
-			r = mask.nextClearBit(l);
+			r = BitField.nextClearBit(mask, l);
 
 			// if first clear bit lies behind filters bit count boundaries, set
 			// r to maximum bit count
@@ -211,14 +213,8 @@ public class RFUtils {
 					int offset = 0;
 					while (remaining > 0) {
 						int length = Math.min(255, remaining);
-						Filter subFilter = new Filter();
-						subFilter.setMatch(filter.isMatch());
-						subFilter.setBank(filter.getBank());
-						subFilter.setBitLength((short) length);
-						subFilter.setBitOffset((short) (filter.getBitOffset() + offset));
-						subFilter.setData(bitSetToBytes(data.get(offset, offset + length), subFilter.getBitLength(), true));
-						subFilter.setMask(bitSetToBytes(mask.get(offset, offset + length), subFilter.getBitLength(), true));
-						subFilters.add(subFilter);
+						subFilters.add(newSubFilter(filter, offset, length, BitField.slice(data, offset, offset + length),
+								BitField.slice(mask, offset, offset + length)));
 						remaining -= length;
 						offset += length;
 					}
@@ -239,26 +235,27 @@ public class RFUtils {
 
 			// Create the subfilter from the bit positions (start and end index
 			// of a block of 1s) determined above
-			subSet = data.get(l, r);
-			Filter subFilter = new Filter();
-			subFilter.setMatch(filter.isMatch());
-			subFilter.setBank(filter.getBank());
-			subFilter.setBitLength((short) (r - l));
-			subFilter.setBitOffset((short) (filter.getBitOffset() + l));
-			subFilter.setData(bitSetToBytes(subSet, subFilter.getBitLength(), true));
-			subSet.set(0, subFilter.getBitLength(), true);
-			subFilter.setMask(bitSetToBytes(subSet, subFilter.getBitLength(), true));
-			subFilters.add(subFilter);
+			subFilters.add(newSubFilter(filter, l, r - l, BitField.slice(data, l, r), BitField.ones(r - l)));
 		}
 		return subFilters;
 	}
 
+	private static Filter newSubFilter(Filter filter, int offset, int length, byte[] data, byte[] mask) {
+		Filter subFilter = new Filter();
+		subFilter.setMatch(filter.isMatch());
+		subFilter.setBank(filter.getBank());
+		subFilter.setBitLength((short) length);
+		subFilter.setBitOffset((short) (filter.getBitOffset() + offset));
+		subFilter.setData(data);
+		subFilter.setMask(mask);
+		return subFilter;
+	}
+
 	/**
-	 * Converts a given bit set to a byte array by adding each bit to a new byte
-	 * and adding a new byte for each 8th bit. Result is a byte array containing
-	 * the bit set's bits in the same order they originally were (in contrast to
-	 * using the BitSet method toByteArray which returns the bytes in reversed
-	 * bit order.)
+	 * Converts a given bit set to a byte array. Result is a byte array
+	 * containing the bit set's bits in the same order they originally were (in
+	 * contrast to using the BitSet method toByteArray which returns the bytes
+	 * in reversed bit order.)
 	 * 
 	 * @param data
 	 *            a bit set
@@ -275,16 +272,11 @@ public class RFUtils {
 	 */
 	public static byte[] bitSetToBytes(BitSet data, int bitCnt, boolean fill) {
 		int byteCnt = (int) Math.ceil(bitCnt / 8.0f);
-		byte[] ret = new byte[byteCnt];
-
-		for (int bytes = 0; bytes < byteCnt; bytes++) {
-			byte b = 0;
-			for (int bit = 0; fill ? (bit < 8) : (bit < 8 && (bytes * 8 + bit) < bitCnt); bit++) {
-				int bitNo = bytes * 8 + bit;
-				b <<= 1;
-				b |= (data.get(bitNo) ? 1 : 0);
-			}
-			ret[bytes] = b;
+		byte[] ret = BitField.slice(BitField.fromBitSet(data), 0, fill ? byteCnt * 8 : bitCnt);
+		if (!fill && bitCnt % 8 > 0) {
+			// the incomplete last byte holds the remaining bits in its lowest
+			// bits
+			ret[byteCnt - 1] = (byte) ((ret[byteCnt - 1] & 0xFF) >>> (8 - bitCnt % 8));
 		}
 		return ret;
 	}
@@ -299,15 +291,7 @@ public class RFUtils {
 	 *         <code>data</code> array.
 	 */
 	public static BitSet bytesToBitSet(byte[] data) {
-		BitSet bs = new BitSet();
-		for (int bytes = 0; bytes < data.length; bytes++) {
-			boolean b;
-			for (int bit = 0; bit < 8; bit++) {
-				b = ((data[bytes]) & (1 << 7 - bit)) > 0;
-				bs.set(bytes * 8 + bit, b);
-			}
-		}
-		return bs;
+		return BitField.toBitSet(BitField.pack(data));
 	}
 
 	/**
@@ -321,25 +305,7 @@ public class RFUtils {
 	public static String bytesToBin(byte[] bytes) {
 		if (bytes == null)
 			return null;
-
-		String[] binStrings = { "0000", "0001", "0010", "0011", "0100", "0101",
-				"0110", "0111", "1000", "1001", "1010", "1011", "1100", "1101",
-				"1110", "1111" };
-		StringBuffer resultBuffer = new StringBuffer(bytes.length * 8 + 16);
-
-		for (int iByte = 0; iByte < bytes.length; iByte++) {
-			byte b = bytes[iByte];
-			int b0 = (b & 0xf0) >> 4;
-			int b1 = b & 0x0f;
-
-			resultBuffer.append(binStrings[b0]);
-			resultBuffer.append(" ");
-			resultBuffer.append(binStrings[b1]);
-			resultBuffer.append(" ");
-
-		}
-		return resultBuffer.toString().trim();
-
+		return HexCodec.encodeBinary(bytes, new StringBuilder()).toString();
 	}
 
 	/**
@@ -353,17 +319,7 @@ public class RFUtils {
 	 */
 	public static byte[] hexToBytes(String hexStr)
 			throws IllegalArgumentException {
-		hexStr = hexStr.replaceAll("\\s|_", "");
-		if (hexStr.length() % 2 != 0)
-			throw new IllegalArgumentException(
-					"Hex string must have an even number of characters.");
-
-		byte[] result = new byte[hexStr.length() / 2];
-		for (int i = 0; i < hexStr.length(); i += 2)
-			result[i / 2] = Integer.decode(
-					"0x" + hexStr.charAt(i) + hexStr.charAt(i + 1)).byteValue();
-
-		return result;
+		return HexCodec.decode(hexStr);
 	}
 
 	/**
@@ -568,7 +524,7 @@ public class RFUtils {
 			System.out.printf("Channel: %d\n", td.getChannel());
 			System.out.printf("CRC: %s\n",
 					bytesToHex(shortToBytes(td.getCrc())));
-			System.out.printf("EPC: %s\n", bytesToHex(td.getEpc()));
+			System.out.printf("EPC: %s\n", Epc.valueOf(td.getEpc()));
 			System.out.printf("PC: %s\n", bytesToBin(shortToBytes(td.getPc())));
 			System.out.printf("RSSI: %d\n", td.getRssi());
 			System.out.printf("XPC: %s\n", bytesToHex(intToBytes(td.getXpc())));
@@ -733,6 +689,15 @@ public class RFUtils {
 	 *             if the size of left or right array is to low for comparison
 	 */
 	static int compare(byte[] left, byte[] right, int n, int offset) {
+		if (offset == 0 || n >= (offset / 8 + 1) * 8) {
+			// the range starts at bit 0 or spans complete bytes after the
+			// first byte, i.e. it is exactly the bit range [offset, n)
+			if (n <= offset)
+				return 0;
+			if (left.length < size(n) || right.length < size(n))
+				throw new ArrayIndexOutOfBoundsException("Bit length " + n + " exceeds array size");
+			return BitField.compare(left, right, offset, n);
+		}
 		if (offset > 0) {
 			int c = compare(left[offset / 8], right[offset / 8], n > 8 - offset % 8 ? 8 - offset % 8 : n, offset % 8);
 			if (c != 0)
@@ -841,36 +806,70 @@ public class RFUtils {
 	 *             if n is not lower than bytes size
 	 */
 	public static byte[] shift(byte[] bytes, int length, int n) {
-		if (n <= bytes.length * 8) {
-			byte[] result = new byte[size(bytes.length * 8 - n)];
-			if (bytes.length > 0) {
-				if (n % 8 > 0) {
-					for (int i = 0; i < result.length - 1; i++) {
-						result[i] = (byte) (((bytes[i + n / 8] & 0xFF) << (n % 8)) + ((bytes[i + n / 8 + 1] & 0xFF) >> (8 - (n % 8))));
-					}
-					result[result.length - 1] = (byte) ((bytes[result.length - 1 + n / 8] & 0xFF) << (n % 8));
-				} else if (n % 8 < 0) {
-					result[-n / 8] = (byte) ((bytes[0] & 0xFF) >> (-n % 8));
-					for (int i = 0; i < bytes.length - 1; i++) {
-						result[i - n / 8 + 1] = (byte) (((bytes[i] & 0xFF) << (8 + (n % 8))) + ((bytes[i + 1] & 0xFF) >> (-n % 8)));
-					}
-					result[result.length - 1] = (byte) ((bytes[bytes.length - 1] & 0xFF) << (8 + (n % 8)));
-				} else {
-					if (n < 0) {
-						for (int i = 0; i < bytes.length; i++) {
-							result[i - n / 8] = bytes[i];
-						}
-					} else {
-						for (int i = 0; i < result.length; i++) {
-							result[i] = bytes[i + n / 8];
-						}
-					}
-				}
-			}
-			return strip(result, 0, (((length - n) / 8) + (((length - n) % 8 > 0) ? 1 : 0)) * 8);
-		} else {
+		byte[] result = new byte[shiftSize(bytes, length, n)];
+		BitField.copy(bytes, n, result.length * 8, result, 0);
+		return result;
+	}
+
+	/**
+	 * Shifts byte array n bits left and writes the result to another array
+	 * 
+	 * @param bytes
+	 *            The byte array
+	 * @param length
+	 *            The bit length of bytes
+	 * @param n
+	 *            The bit count
+	 * @param dst
+	 *            The destination array
+	 * @param dstOffset
+	 *            The index of the first byte to write
+	 * @return The number of bytes written
+	 * @throws IllegalArgumentException
+	 *             if n is not lower than bytes size
+	 * @throws IndexOutOfBoundsException
+	 *             if the destination array is too small
+	 */
+	public static int shift(byte[] bytes, int length, int n, byte[] dst, int dstOffset) {
+		return BitField.copy(bytes, n, shiftSize(bytes, length, n) * 8, dst, dstOffset);
+	}
+
+	/**
+	 * Shifts byte array n bits left and writes the result to a buffer
+	 * 
+	 * @param bytes
+	 *            The byte array
+	 * @param length
+	 *            The bit length of bytes
+	 * @param n
+	 *            The bit count
+	 * @param dst
+	 *            The destination buffer, the result is written at its
+	 *            position
+	 * @return The number of bytes written
+	 * @throws IllegalArgumentException
+	 *             if n is not lower than bytes size
+	 * @throws java.nio.BufferOverflowException
+	 *             if the buffer has not enough space left
+	 */
+	public static int shift(byte[] bytes, int length, int n, ByteBuffer dst) {
+		return BitField.copy(bytes, n, shiftSize(bytes, length, n) * 8, dst);
+	}
+
+	/**
+	 * Returns the byte size of the result of {@link #shift(byte[], int, int)}
+	 */
+	private static int shiftSize(byte[] bytes, int length, int n) {
+		if (n > bytes.length * 8)
 			throw new IllegalArgumentException("The bit count should be lower or equal to bit length of bytes");
-		}
+		int shifted = size(bytes.length * 8 - n);
+		// the shifted bytes are cut to the remaining bit length
+		int stripped = ((length - n) / 8) + (((length - n) % 8 > 0) ? 1 : 0);
+		if (stripped == 0)
+			return shifted;
+		if (stripped > shifted)
+			throw new IndexOutOfBoundsException("Offset plus length must not be greater than bytes.lenght");
+		return size(stripped * 8);
 	}
 
 	/**
@@ -886,35 +885,65 @@ public class RFUtils {
 	 * @return The striped byte array
 	 */
 	public static byte[] strip(byte[] bytes, int offset, int length) {
-		if ((offset + length) / 8 + ((offset + length) % 8 == 0 ? 0 : 1) <= bytes.length) {
-			int l = length == 0 ? bytes.length - offset / 8 : size(length);
-			// number of bytes of the result data
-			byte[] result = new byte[l];
-
-			// skip bytes depending on field offset
-			int byteIndex = offset / 8;
-			int byteLength = byteIndex + (length == 0 ? bytes.length - offset / 8 : size(offset % 8 + length));
-
-			// number of bits to move within a byte
-			offset = offset % 8;
-			if (byteIndex < byteLength) {
-				for (int i = 0; i < result.length; i++) {
-					// move current byte offset bits left and add next byte, if
-					// offset greater then zero move next byte (8 - offset) bits
-					// right
-					result[i] = (byte) (((bytes[byteIndex] & 0xFF) << offset) + ((++byteIndex < byteLength) && offset > 0 ? (bytes[byteIndex] & 0xFF) >> (8 - offset)
-							: 0));
-				}
-				if (length % 8 > 0) {
-					// blank last bits
-					int current = result[result.length - 1] & 0xFF;
-					current &= 0xFF << (8 - length % 8);
-					result[result.length - 1] = (byte) current;
-				}
-			}
-			return result;
-		} else {
+		byte[] result = new byte[stripSize(bytes, offset, length)];
+		BitField.copy(bytes, offset, length == 0 ? result.length * 8 : length, result, 0);
+		return result;
+	}
+
+	/**
+	 * Strips the byte array and writes the result to another array. Shifts
+	 * byte array offset bits left and cuts data by length
+	 * 
+	 * @param bytes
+	 *            The byte array
+	 * @param offset
+	 *            The bit offset
+	 * @param length
+	 *            The bit length
+	 * @param dst
+	 *            The destination array
+	 * @param dstOffset
+	 *            The index of the first byte to write
+	 * @return The number of bytes written
+	 * @throws IndexOutOfBoundsException
+	 *             if offset plus length exceeds the byte array or the
+	 *             destination array is too small
+	 */
+	public static int strip(byte[] bytes, int offset, int length, byte[] dst, int dstOffset) {
+		int size = stripSize(bytes, offset, length);
+		return BitField.copy(bytes, offset, length == 0 ? size * 8 : length, dst, dstOffset);
+	}
+
+	/**
+	 * Strips the byte array and writes the result to a buffer. Shifts byte
+	 * array offset bits left and cuts data by length
+	 * 
+	 * @param bytes
+	 *            The byte array
+	 * @param offset
+	 *            The bit offset
+	 * @param length
+	 *            The bit length
+	 * @param dst
+	 *            The destination buffer, the result is written at its
+	 *            position
+	 * @return The number of bytes written
+	 * @throws IndexOutOfBoundsException
+	 *             if offset plus length exceeds the byte array
+	 * @throws java.nio.BufferOverflowException
+	 *             if the buffer has not enough space left
+	 */
+	public static int strip(byte[] bytes, int offset, int length, ByteBuffer dst) {
+		int size = stripSize(bytes, offset, length);
+		return BitField.copy(bytes, offset, length == 0 ? size * 8 : length, dst);
+	}
+
+	/**
+	 * Returns the byte size of the result of {@link #strip(byte[], int, int)}
+	 */
+	private static int stripSize(byte[] bytes, int offset, int length) {
+		if ((offset + length) / 8 + ((offset + length) % 8 == 0 ? 0 : 1) > bytes.length)
 			throw new IndexOutOfBoundsException("Offset plus length must not be greater than bytes.lenght");
-		}
+		return length == 0 ? bytes.length - offset / 8 : size(length);
 	}
 }
@@ -0,0 +1,530 @@
+package havis.device.rf.common.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Provides binary snapshots of objects deserialized from JSON sources. A
+ * snapshot is generated when a JSON source is deserialized and is loaded
+ * instead of parsing the JSON source as long as the checksum of the source
+ * stored in the snapshot matches. Stale, corrupt or incompatible snapshots are
+ * ignored and replaced.
+ * <p>
+ * The snapshot holds the fields of the objects. Each class is described once
+ * by its name and field names, so a snapshot of classes which have changed
+ * since is rejected. Supported are objects with a no-argument constructor,
+ * strings, primitives and their wrappers, enums, arrays, collections and
+ * maps.
+ * </p>
+ */
+public class SnapshotSerializer {
+
+	private static final Logger log = Logger.getLogger(SnapshotSerializer.class.getName());
+
+	private static final int MAGIC = 0x52465342;
+	private static final byte VERSION = 1;
+
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte BOOLEAN = 2;
+	private static final byte BYTE = 3;
+	private static final byte SHORT = 4;
+	private static final byte INT = 5;
+	private static final byte LONG = 6;
+	private static final byte FLOAT = 7;
+	private static final byte DOUBLE = 8;
+	private static final byte CHAR = 9;
+	private static final byte ENUM = 10;
+	private static final byte ARRAY = 11;
+	private static final byte COLLECTION = 12;
+	private static final byte MAP = 13;
+	private static final byte OBJECT = 14;
+
+	/**
+	 * Returns the file of the binary snapshot of a JSON source.
+	 *
+	 * @param snapshotPath
+	 *            the directory of the snapshots, null or empty if snapshots
+	 *            are disabled
+	 * @param source
+	 *            the path of the JSON source
+	 * @return the snapshot file or null if snapshots are disabled
+	 */
+	public static File getSnapshotFile(String snapshotPath, String source) {
+		if (snapshotPath == null || snapshotPath.isEmpty() || source == null)
+			return null;
+		return new File(snapshotPath, source + ".bin");
+	}
+
+	/**
+	 * Deserializes a JSON source, using and updating a snapshot of the result.
+	 *
+	 * @param source
+	 *            the JSON source, closed afterwards
+	 * @param clazz
+	 *            the class of the object
+	 * @param snapshot
+	 *            the snapshot file or null to parse the source only
+	 * @return the object
+	 * @throws IOException
+	 *             if the source cannot be read or parsed
+	 */
+	public static <T> T deserialize(InputStream source, Class<T> clazz, File snapshot) throws IOException {
+		if (source == null)
+			throw new IOException("Source of " + clazz.getName() + " not found");
+		byte[] json;
+		try (InputStream stream = source) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int count;
+			while ((count = stream.read(buffer)) > -1)
+				out.write(buffer, 0, count);
+			json = out.toByteArray();
+		}
+		long checksum = checksum(json);
+
+		if (snapshot != null && snapshot.exists()) {
+			try {
+				T object = read(snapshot, checksum, clazz);
+				if (object != null) {
+					log.log(Level.FINER, "Loaded snapshot {0}", snapshot);
+					return object;
+				}
+				log.log(Level.FINER, "Snapshot {0} is stale", snapshot);
+			} catch (IOException e) {
+				log.log(Level.FINE, "Failed to load snapshot " + snapshot, e);
+			}
+		}
+
+		T object = new JsonSerializer(clazz).deserialize(new ByteArrayInputStream(json), clazz);
+		if (snapshot != null) {
+			try {
+				write(snapshot, checksum, object);
+			} catch (IOException e) {
+				log.log(Level.FINE, "Failed to write snapshot " + snapshot, e);
+			}
+		}
+		return object;
+	}
+
+	/**
+	 * Computes the checksum of a source, combining its length and CRC32.
+	 *
+	 * @param source
+	 *            the source
+	 * @return the checksum
+	 */
+	public static long checksum(byte[] source) {
+		CRC32 crc = new CRC32();
+		crc.update(source);
+		return (long) source.length << 32 | crc.getValue();
+	}
+
+	/**
+	 * Writes a snapshot atomically.
+	 *
+	 * @param snapshot
+	 *            the snapshot file
+	 * @param checksum
+	 *            the checksum of the source
+	 * @param object
+	 *            the object
+	 * @throws IOException
+	 *             if the object is not supported or the file cannot be
+	 *             written
+	 */
+	static void write(File snapshot, long checksum, Object object) throws IOException {
+		byte[] body = encode(object);
+		CRC32 crc = new CRC32();
+		crc.update(body);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length + 21);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeLong(checksum);
+		out.writeInt((int) crc.getValue());
+		out.writeInt(body.length);
+		out.write(body);
+
+		File directory = snapshot.getAbsoluteFile().getParentFile();
+		Files.createDirectories(directory.toPath());
+		File tmpFile = File.createTempFile(snapshot.getName(), ".tmp", directory);
+		try {
+			Files.write(tmpFile.toPath(), bytes.toByteArray());
+			Files.move(tmpFile.toPath(), snapshot.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			tmpFile.delete();
+		}
+	}
+
+	/**
+	 * Reads a snapshot.
+	 *
+	 * @param snapshot
+	 *            the snapshot file
+	 * @param checksum
+	 *            the checksum of the current source
+	 * @param clazz
+	 *            the class of the object
+	 * @return the object or null if the snapshot is stale
+	 * @throws IOException
+	 *             if the snapshot is corrupt or incompatible
+	 */
+	static <T> T read(File snapshot, long checksum, Class<T> clazz) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(snapshot.toPath())));
+		if (in.readInt() != MAGIC)
+			throw new IOException("Not a snapshot");
+		if (in.readByte() != VERSION)
+			throw new IOException("Unsupported snapshot version");
+		if (in.readLong() != checksum)
+			return null;
+		int bodyCrc = in.readInt();
+		byte[] body = new byte[in.readInt()];
+		in.readFully(body);
+		CRC32 crc = new CRC32();
+		crc.update(body);
+		if ((int) crc.getValue() != bodyCrc)
+			throw new IOException("Snapshot is corrupt");
+		Object object = decode(body);
+		if (!clazz.isInstance(object))
+			throw new IOException("Snapshot does not contain " + clazz.getName());
+		return clazz.cast(object);
+	}
+
+	/**
+	 * Encodes an object graph.
+	 *
+	 * @param object
+	 *            the object
+	 * @return the encoded object
+	 * @throws IOException
+	 *             if the object graph contains unsupported objects or cycles
+	 */
+	static byte[] encode(Object object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new Encoder(new DataOutputStream(bytes)).write(object);
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decodes an object graph.
+	 *
+	 * @param bytes
+	 *            the encoded object
+	 * @return the object
+	 * @throws IOException
+	 *             if the data is invalid or refers to unknown classes or
+	 *             fields
+	 */
+	static Object decode(byte[] bytes) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		Object object = new Decoder(in).read();
+		if (in.available() > 0)
+			throw new IOException("Unexpected data after object");
+		return object;
+	}
+
+	/**
+	 * Returns the serialized fields of a class and its super classes
+	 */
+	private static List<Field> fields(Class<?> clazz) {
+		List<Field> fields = new ArrayList<>();
+		for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+			List<Field> declared = new ArrayList<>();
+			for (Field field : c.getDeclaredFields()) {
+				if ((field.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) == 0 && !field.isSynthetic()) {
+					field.setAccessible(true);
+					declared.add(field);
+				}
+			}
+			fields.addAll(0, declared);
+		}
+		return fields;
+	}
+
+	private static class Encoder {
+		private final DataOutputStream out;
+		private final Map<Class<?>, Integer> classes = new HashMap<>();
+		private final Map<Class<?>, List<Field>> fields = new HashMap<>();
+		private final Map<Object, Object> path = new IdentityHashMap<>();
+
+		Encoder(DataOutputStream out) {
+			this.out = out;
+		}
+
+		/**
+		 * Writes a class reference, describing the class on its first use
+		 */
+		private void writeClass(Class<?> clazz, boolean describeFields) throws IOException {
+			Integer index = classes.get(clazz);
+			if (index != null) {
+				out.writeShort(index.intValue());
+				return;
+			}
+			classes.put(clazz, Integer.valueOf(classes.size()));
+			out.writeShort(classes.size() - 1);
+			out.writeUTF(clazz.getName());
+			if (describeFields) {
+				List<Field> list = fields(clazz);
+				fields.put(clazz, list);
+				out.writeShort(list.size());
+				for (Field field : list)
+					out.writeUTF(field.getName());
+			}
+		}
+
+		void write(Object value) throws IOException {
+			if (value == null) {
+				out.writeByte(NULL);
+			} else if (value instanceof String) {
+				out.writeByte(STRING);
+				out.writeUTF((String) value);
+			} else if (value instanceof Boolean) {
+				out.writeByte(BOOLEAN);
+				out.writeBoolean(((Boolean) value).booleanValue());
+			} else if (value instanceof Byte) {
+				out.writeByte(BYTE);
+				out.writeByte(((Byte) value).byteValue());
+			} else if (value instanceof Short) {
+				out.writeByte(SHORT);
+				out.writeShort(((Short) value).shortValue());
+			} else if (value instanceof Integer) {
+				out.writeByte(INT);
+				out.writeInt(((Integer) value).intValue());
+			} else if (value instanceof Long) {
+				out.writeByte(LONG);
+				out.writeLong(((Long) value).longValue());
+			} else if (value instanceof Float) {
+				out.writeByte(FLOAT);
+				out.writeFloat(((Float) value).floatValue());
+			} else if (value instanceof Double) {
+				out.writeByte(DOUBLE);
+				out.writeDouble(((Double) value).doubleValue());
+			} else if (value instanceof Character) {
+				out.writeByte(CHAR);
+				out.writeChar(((Character) value).charValue());
+			} else if (value instanceof Enum) {
+				out.writeByte(ENUM);
+				writeClass(((Enum<?>) value).getDeclaringClass(), false);
+				out.writeUTF(((Enum<?>) value).name());
+			} else {
+				if (path.put(value, value) != null)
+					throw new IOException("Cycle at " + value.getClass().getName());
+				if (value.getClass().isArray()) {
+					out.writeByte(ARRAY);
+					writeClass(value.getClass().getComponentType(), false);
+					int length = Array.getLength(value);
+					out.writeInt(length);
+					for (int i = 0; i < length; i++)
+						write(Array.get(value, i));
+				} else if (value instanceof Collection) {
+					out.writeByte(COLLECTION);
+					writeClass(instantiable(value.getClass(), ArrayList.class), false);
+					out.writeInt(((Collection<?>) value).size());
+					for (Object element : (Collection<?>) value)
+						write(element);
+				} else if (value instanceof Map) {
+					out.writeByte(MAP);
+					writeClass(instantiable(value.getClass(), LinkedHashMap.class), false);
+					out.writeInt(((Map<?, ?>) value).size());
+					for (Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+						write(entry.getKey());
+						write(entry.getValue());
+					}
+				} else {
+					Class<?> clazz = value.getClass();
+					try {
+						clazz.getDeclaredConstructor();
+					} catch (NoSuchMethodException e) {
+						throw new IOException("Unsupported class " + clazz.getName());
+					}
+					out.writeByte(OBJECT);
+					writeClass(clazz, true);
+					try {
+						for (Field field : fields.get(clazz))
+							write(field.get(value));
+					} catch (IllegalAccessException e) {
+						throw new IOException(e);
+					}
+				}
+				path.remove(value);
+			}
+		}
+
+		/**
+		 * Returns the class of a collection if it can be instantiated,
+		 * otherwise the replacement
+		 */
+		private static Class<?> instantiable(Class<?> clazz, Class<?> replacement) {
+			try {
+				if (Modifier.isPublic(clazz.getModifiers()) && Modifier.isPublic(clazz.getConstructor().getModifiers()))
+					return clazz;
+			} catch (NoSuchMethodException e) {
+				// replaced
+			}
+			return replacement;
+		}
+	}
+
+	private static class Decoder {
+		private final DataInputStream in;
+		private final List<Class<?>> classes = new ArrayList<>();
+		private final Map<Class<?>, Field[]> fields = new HashMap<>();
+
+		Decoder(DataInputStream in) {
+			this.in = in;
+		}
+
+		private Class<?> readClass(boolean describedFields) throws IOException {
+			int index = in.readUnsignedShort();
+			if (index < classes.size())
+				return classes.get(index);
+			if (index != classes.size())
+				throw new IOException("Invalid class reference " + index);
+			String name = in.readUTF();
+			Class<?> clazz;
+			try {
+				clazz = primitive(name);
+				if (clazz == null)
+					clazz = Class.forName(name, false, SnapshotSerializer.class.getClassLoader());
+			} catch (ClassNotFoundException e) {
+				throw new IOException("Unknown class " + name);
+			}
+			classes.add(clazz);
+			if (describedFields) {
+				Map<String, Field> available = new HashMap<>();
+				for (Field field : fields(clazz))
+					available.put(field.getName(), field);
+				Field[] described = new Field[in.readUnsignedShort()];
+				if (described.length != available.size())
+					throw new IOException("Fields of " + name + " have changed");
+				for (int i = 0; i < described.length; i++) {
+					String fieldName = in.readUTF();
+					described[i] = available.get(fieldName);
+					if (described[i] == null)
+						throw new IOException("Unknown field " + name + "." + fieldName);
+				}
+				fields.put(clazz, described);
+			}
+			return clazz;
+		}
+
+		private static Class<?> primitive(String name) {
+			for (Class<?> clazz : Arrays.<Class<?>> asList(boolean.class, byte.class, short.class, int.class, long.class, float.class, double.class,
+					char.class))
+				if (clazz.getName().equals(name))
+					return clazz;
+			return null;
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Object read() throws IOException {
+			byte type = in.readByte();
+			switch (type) {
+			case NULL:
+				return null;
+			case STRING:
+				return in.readUTF();
+			case BOOLEAN:
+				return Boolean.valueOf(in.readBoolean());
+			case BYTE:
+				return Byte.valueOf(in.readByte());
+			case SHORT:
+				return Short.valueOf(in.readShort());
+			case INT:
+				return Integer.valueOf(in.readInt());
+			case LONG:
+				return Long.valueOf(in.readLong());
+			case FLOAT:
+				return Float.valueOf(in.readFloat());
+			case DOUBLE:
+				return Double.valueOf(in.readDouble());
+			case CHAR:
+				return Character.valueOf(in.readChar());
+			case ENUM:
+				Class<?> enumClass = readClass(false);
+				if (!enumClass.isEnum())
+					throw new IOException(enumClass.getName() + " is not an enum");
+				try {
+					return Enum.valueOf((Class<Enum>) enumClass, in.readUTF());
+				} catch (IllegalArgumentException e) {
+					throw new IOException(e.getMessage());
+				}
+			case ARRAY:
+				Class<?> componentType = readClass(false);
+				Object array = Array.newInstance(componentType, length());
+				try {
+					for (int i = 0; i < Array.getLength(array); i++)
+						Array.set(array, i, read());
+				} catch (IllegalArgumentException e) {
+					throw new IOException("Invalid element of " + componentType.getName() + " array");
+				}
+				return array;
+			case COLLECTION:
+				Collection<Object> collection = (Collection<Object>) instantiate(readClass(false), Collection.class);
+				for (int i = length(); i > 0; i--)
+					collection.add(read());
+				return collection;
+			case MAP:
+				Map<Object, Object> map = (Map<Object, Object>) instantiate(readClass(false), Map.class);
+				for (int i = length(); i > 0; i--)
+					map.put(read(), read());
+				return map;
+			case OBJECT:
+				Class<?> clazz = readClass(true);
+				Object object = instantiate(clazz, Object.class);
+				try {
+					for (Field field : fields.get(clazz))
+						field.set(object, read());
+				} catch (IllegalAccessException | IllegalArgumentException e) {
+					throw new IOException("Invalid field value of " + clazz.getName() + ": " + e.getMessage());
+				}
+				return object;
+			default:
+				throw new IOException("Invalid type " + type);
+			}
+		}
+
+		private int length() throws IOException {
+			int length = in.readInt();
+			if (length < 0 || length > in.available())
+				throw new IOException("Invalid length " + length);
+			return length;
+		}
+
+		private static Object instantiate(Class<?> clazz, Class<?> expected) throws IOException {
+			if (!expected.isAssignableFrom(clazz))
+				throw new IOException(clazz.getName() + " is not a " + expected.getName());
+			try {
+				Constructor<?> constructor = clazz.getDeclaredConstructor();
+				constructor.setAccessible(true);
+				return constructor.newInstance();
+			} catch (ReflectiveOperationException e) {
+				throw new IOException("Failed to instantiate " + clazz.getName(), e);
+			}
+		}
+	}
+}
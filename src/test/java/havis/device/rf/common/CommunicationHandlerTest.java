@@ -8,6 +8,9 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import havis.device.rf.RFConsumer;
 import havis.device.rf.capabilities.CapabilityType;
+import havis.device.rf.common.commission.Assignment;
+import havis.device.rf.common.commission.CommissioningListener;
+import havis.device.rf.common.commission.CommissioningOptions;
 import havis.device.rf.common.test.TestHardwareManager;
 import havis.device.rf.configuration.Configuration;
 import havis.device.rf.configuration.ConfigurationType;
@@ -17,9 +20,13 @@ import havis.device.rf.exception.ParameterException;
 import havis.device.rf.tag.Filter;
 import havis.device.rf.tag.TagData;
 import havis.device.rf.tag.operation.TagOperation;
+import havis.util.monitor.Broker;
+import havis.util.monitor.Source;
+import havis.util.monitor.TagEvent;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -574,6 +581,50 @@ public class CommunicationHandlerTest {
 		}
 	}
 
+	@Test
+	public void testExecuteForceLiveRead() throws ImplementationException, ParameterException {
+		/* 
+		 * Test: 
+		 * - execute call with mainController field being null
+		 * 
+		 * Expected: 
+		 * - Connection exception being thrown 
+		 */				
+		CommunicationHandler cmmHdl = new CommunicationHandler();
+		final List<Short> antennas = Arrays.asList((short) 1);
+		final List<Filter> filters = new ArrayList<Filter>();
+		final List<TagOperation> operations = new ArrayList<TagOperation>();
+		
+		try {
+			cmmHdl.execute(antennas, filters, operations, true);
+			fail("Exception expected but none thrown.");
+		} catch (ConnectionException cex) {
+		} catch (Exception ex) {
+			fail("Exception not expected.");
+		}
+
+		/* 
+		 * Test: 
+		 * - execute call with mainController field being not null
+		 * 
+		 * Expected: 
+		 * - execute called on mainController instance with flag   
+		 */
+		setField(cmmHdl, "mainController", mainController);
+		try {
+			cmmHdl.execute(antennas, filters, operations, true);
+		} catch (Exception ex) {
+			fail("Exception not expected.");
+		}
+
+		new Verifications() {
+			{
+				mainController.execute(withSameInstance(antennas), withSameInstance(filters), withSameInstance(operations), true);
+				times = 1;
+			}
+		};
+	}
+
 	@Test
 	public void installFirmware() throws ImplementationException, ParameterException {
 		/* 
@@ -614,4 +665,67 @@ public class CommunicationHandlerTest {
 			}
 		};
 	}
+
+	@Test
+	public void testCommission(@Mocked final Connector connector, @Mocked final Broker broker, @Mocked TagEvent tagEvent) throws Exception {
+		/*
+		 * Test:
+		 * - a tag is commissioned
+		 *
+		 * Expected:
+		 * - the listener is notified
+		 * - a tag event with the new EPC is published
+		 */
+		CommunicationHandler cmmHdl = new CommunicationHandler();
+		setField(cmmHdl, "mainController", mainController);
+		final List<Short> antennas = Arrays.asList((short) 1);
+		final CommissioningOptions options = new CommissioningOptions();
+		final List<Assignment> commissioned = new ArrayList<>();
+		final List<CommissioningListener> listeners = new ArrayList<>();
+		new NonStrictExpectations() {
+			{
+				Connector.getFactory();
+				result = connector;
+				connector.getBroker();
+				result = broker;
+				mainController.commission(antennas, options, null, withCapture(listeners));
+				result = Integer.valueOf(1);
+			}
+		};
+		assertEquals(1, cmmHdl.commission(antennas, options, null, new CommissioningListener() {
+			@Override
+			public void commissioned(Assignment assignment, TagData tag) {
+				commissioned.add(assignment);
+			}
+
+			@Override
+			public void failed(Assignment assignment, TagData tag, String reason) {
+			}
+
+			@Override
+			public void roundCompleted(int round, int tags, int newTags) {
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		}));
+
+		final Assignment assignment = new Assignment(new byte[] { 0x30, 1 });
+		TagData tag = new TagData();
+		tag.setEpc(new byte[] { 1, 1 });
+		tag.setAntennaID((short) 1);
+		listeners.get(0).commissioned(assignment, tag);
+		assertEquals(Arrays.asList(assignment), commissioned);
+
+		new Verifications() {
+			{
+				new TagEvent((Date) any, withSameInstance(assignment.getEpc()), (short) 1, anyInt);
+				times = 1;
+				broker.notify((Source) any, (TagEvent) any);
+				times = 1;
+			}
+		};
+	}
 }
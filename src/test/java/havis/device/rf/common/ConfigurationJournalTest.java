@@ -0,0 +1,216 @@
+package havis.device.rf.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.common.ConfigurationJournal.Entry;
+import havis.device.rf.common.ConfigurationJournal.FsyncPolicy;
+import havis.device.rf.common.ConfigurationJournal.Type;
+import havis.device.rf.configuration.AntennaConfiguration;
+import havis.device.rf.configuration.ConnectType;
+import havis.device.rf.configuration.KeepAliveConfiguration;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConfigurationJournalTest {
+
+	private static class TestTarget implements ConfigurationPersister.Target {
+		final List<String> written = Collections.synchronizedList(new ArrayList<String>());
+		volatile String value = "";
+		// blocks writing the snapshot until counted down
+		volatile CountDownLatch release;
+		final CountDownLatch writing = new CountDownLatch(1);
+
+		@Override
+		public String snapshot() {
+			return value;
+		}
+
+		@Override
+		public void write(String snapshot) {
+			writing.countDown();
+			try {
+				if (release != null)
+					release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			written.add(snapshot);
+		}
+	}
+
+	private File file;
+
+	@Before
+	public void setup() throws Exception {
+		file = File.createTempFile("config_", ".journal");
+		file.delete();
+	}
+
+	@After
+	public void cleanup() {
+		file.delete();
+	}
+
+	private static AntennaConfiguration antenna(int id, int transmitPower) {
+		AntennaConfiguration antenna = new AntennaConfiguration();
+		antenna.setId((short) id);
+		antenna.setTransmitPower(Short.valueOf((short) transmitPower));
+		antenna.setConnect(ConnectType.AUTO);
+		return antenna;
+	}
+
+	private static void append(Lock lock, ConfigurationJournal journal, Entry... entries) throws Exception {
+		lock.lock();
+		try {
+			journal.append(Arrays.asList(entries));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Test
+	public void testAppend() throws Exception {
+		Lock lock = new ReentrantLock();
+		ConfigurationJournal journal = new ConfigurationJournal(file, lock, new TestTarget(), FsyncPolicy.ALWAYS, 0, Long.MAX_VALUE);
+		assertTrue(ConfigurationJournal.read(file).isEmpty());
+
+		KeepAliveConfiguration keepAlive = new KeepAliveConfiguration();
+		keepAlive.setEnable(true);
+		keepAlive.setInterval(500);
+		append(lock, journal, new Entry(Type.REGION, "EU"), new Entry(Type.ANTENNA_CONFIGURATION, antenna(1, 20)));
+		append(lock, journal, new Entry(Type.KEEP_ALIVE_CONFIGURATION, keepAlive));
+		journal.close();
+
+		List<Entry> entries = ConfigurationJournal.read(file);
+		assertEquals(3, entries.size());
+		assertEquals(Type.REGION, entries.get(0).getType());
+		assertEquals("EU", entries.get(0).getValue());
+		AntennaConfiguration antenna = entries.get(1).getValue();
+		assertEquals(1, antenna.getId());
+		assertEquals(Short.valueOf((short) 20), antenna.getTransmitPower());
+		assertEquals(ConnectType.AUTO, antenna.getConnect());
+		KeepAliveConfiguration read = entries.get(2).getValue();
+		assertTrue(read.isEnable());
+		assertEquals(500, read.getInterval());
+	}
+
+	@Test
+	public void testCorruptEntry() throws Exception {
+		Lock lock = new ReentrantLock();
+		ConfigurationJournal journal = new ConfigurationJournal(file, lock, new TestTarget(), FsyncPolicy.NEVER, 0, Long.MAX_VALUE);
+		append(lock, journal, new Entry(Type.REGION, "EU"), new Entry(Type.REGION, "FCC"));
+		journal.close();
+
+		// torn entry
+		long length = file.length();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(length - 3);
+		}
+		assertEquals(1, ConfigurationJournal.read(file).size());
+
+		// appending removes the torn entry
+		journal = new ConfigurationJournal(file, lock, new TestTarget(), FsyncPolicy.INTERVAL, 1000, Long.MAX_VALUE);
+		append(lock, journal, new Entry(Type.REGION, "ETSI"));
+		journal.close();
+		List<Entry> entries = ConfigurationJournal.read(file);
+		assertEquals(2, entries.size());
+		assertEquals("ETSI", entries.get(1).getValue());
+
+		// corrupt entry
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(file.length() - 2);
+			raf.write('X');
+		}
+		assertEquals(1, ConfigurationJournal.read(file).size());
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		Lock lock = new ReentrantLock();
+		TestTarget target = new TestTarget();
+		ConfigurationJournal journal = new ConfigurationJournal(file, lock, target, FsyncPolicy.ALWAYS, 0, 50);
+		target.value = "1";
+		append(lock, journal, new Entry(Type.ANTENNA_CONFIGURATION, antenna(1, 10)));
+		assertTrue(target.written.isEmpty());
+		target.value = "2";
+		append(lock, journal, new Entry(Type.ANTENNA_CONFIGURATION, antenna(1, 20)), new Entry(Type.ANTENNA_CONFIGURATION, antenna(2, 20)));
+		for (int i = 0; i < 100 && journal.size() > 0; i++)
+			Thread.sleep(10);
+		assertEquals(Collections.singletonList("2"), target.written);
+		assertEquals(0, journal.size());
+		assertTrue(ConfigurationJournal.read(file).isEmpty());
+
+		append(lock, journal, new Entry(Type.REGION, "EU"));
+		assertEquals(1, ConfigurationJournal.read(file).size());
+		journal.close();
+	}
+
+	@Test
+	public void testAppendDuringCompaction() throws Exception {
+		Lock lock = new ReentrantLock();
+		TestTarget target = new TestTarget();
+		target.release = new CountDownLatch(1);
+		ConfigurationJournal journal = new ConfigurationJournal(file, lock, target, FsyncPolicy.ALWAYS, 0, 50);
+		target.value = "1";
+		append(lock, journal, new Entry(Type.ANTENNA_CONFIGURATION, antenna(1, 10)), new Entry(Type.ANTENNA_CONFIGURATION, antenna(2, 10)));
+		assertTrue(target.writing.await(1, TimeUnit.SECONDS));
+
+		// entries appended while the snapshot is written are kept
+		target.value = "2";
+		append(lock, journal, new Entry(Type.REGION, "EU"), new Entry(Type.REGION, "FCC"));
+		target.release.countDown();
+		for (int i = 0; i < 100 && ConfigurationJournal.read(file).size() > 2; i++)
+			Thread.sleep(10);
+		assertEquals(Collections.singletonList("1"), target.written);
+		List<Entry> entries = ConfigurationJournal.read(file);
+		assertEquals(2, entries.size());
+		assertEquals("EU", entries.get(0).getValue());
+		assertEquals("FCC", entries.get(1).getValue());
+
+		// the journal is reopened after the compaction
+		append(lock, journal, new Entry(Type.REGION, "ETSI"));
+		assertEquals(3, ConfigurationJournal.read(file).size());
+		journal.close();
+	}
+
+	@Test
+	public void testCheckpoint() throws Exception {
+		Lock lock = new ReentrantLock();
+		TestTarget target = new TestTarget();
+		ConfigurationJournal journal = new ConfigurationJournal(file, lock, target, FsyncPolicy.ALWAYS, 0, Long.MAX_VALUE);
+		append(lock, journal, new Entry(Type.REGION, "EU"));
+		target.value = "snapshot";
+		lock.lock();
+		try {
+			journal.checkpoint();
+		} finally {
+			lock.unlock();
+		}
+		assertEquals(Collections.singletonList("snapshot"), target.written);
+		assertTrue(ConfigurationJournal.read(file).isEmpty());
+
+		append(lock, journal, new Entry(Type.REGION, "EU"));
+		lock.lock();
+		try {
+			journal.delete();
+		} finally {
+			lock.unlock();
+		}
+		assertFalse(file.exists());
+		journal.close();
+	}
+}
@@ -3,6 +3,9 @@ package havis.device.rf.common;
 import static mockit.Deencapsulation.getField;
 import static mockit.Deencapsulation.setField;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import havis.device.rf.capabilities.Capabilities;
@@ -34,9 +37,12 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -424,6 +430,313 @@ public class ConfigurationManagerTest {
 		assertEquals(cfgMgr.getSupportedRegions(), ((Map<String, String>) getField(cfgMgr, "supportedRegions")).keySet());
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSetConfigurations(@Mocked final MainController mainController, @Mocked final TestHardwareManager hwMgr) throws ImplementationException, ParameterException {
+		new NonStrictExpectations() {{
+			mainController.getHardwareManager();
+			result = hwMgr;
+		}};
+
+		final ConfigurationManager cfgManager = new ConfigurationManager(mainController);
+		final RFConfiguration conf = new RFConfiguration();
+		conf.setAntennaConfigurationList(new AntennaConfigurationList());
+		for (short id = 1; id <= 3; id++) {
+			AntennaConfiguration aCfg = new AntennaConfiguration();
+			aCfg.setId(id);
+			aCfg.setConnect(ConnectType.AUTO);
+			aCfg.setTransmitPower((short) 5);
+			conf.getAntennaConfigurationList().getEntryList().add(aCfg);
+		}
+		setField(cfgManager, "config", conf);
+
+		/*
+		 * Test:
+		 * 	- set antenna configurations and properties separated by a keep-alive configuration
+		 * Expected:
+		 * 	- consecutive antenna changes are merged and applied in one batch per group
+		 */
+		List<Configuration> configs = new ArrayList<>();
+		configs.add(new AntennaConfiguration() {{ setId((short) 1); setTransmitPower((short) 20); }});
+		configs.add(new AntennaProperties() {{ setId((short) 1); setConnected(false); }});
+		configs.add(new AntennaConfiguration() {{ setId((short) 2); setChannelIndex((short) 3); }});
+		configs.add(new KeepAliveConfiguration() {{ setEnable(true); setInterval(100); }});
+		configs.add(new AntennaConfiguration() {{ setId((short) 0); setReceiveSensitivity((short) 1); }});
+		cfgManager.setConfigurations(configs);
+
+		final List<List<AntennaConfiguration>> batches = new ArrayList<>();
+		new Verifications() {{
+			hwMgr.setAntennaConfigurations(withCapture(batches), null, false);
+			times = 2;
+		}};
+		assertEquals(2, batches.get(0).size());
+		assertEquals(1, batches.get(0).get(0).getId());
+		assertEquals(new Short((short) 20), batches.get(0).get(0).getTransmitPower());
+		assertEquals(ConnectType.FALSE, batches.get(0).get(0).getConnect());
+		assertEquals(2, batches.get(0).get(1).getId());
+		assertEquals(3, batches.get(1).size());
+
+		List<AntennaConfiguration> aCfgs = conf.getAntennaConfigurationList().getEntryList();
+		assertEquals(ConnectType.FALSE, aCfgs.get(0).getConnect());
+		assertEquals(new Short((short) 3), aCfgs.get(1).getChannelIndex());
+		assertEquals(new Short((short) 1), aCfgs.get(2).getReceiveSensitivity());
+		assertEquals(100, conf.getKeepAliveConfiguration().getInterval());
+
+		/*
+		 * Test:
+		 * 	- hardware fails to apply a batch
+		 * Expected:
+		 * 	- implementation exception thrown, no antenna configuration of the batch changed
+		 */
+		new NonStrictExpectations() {{
+			hwMgr.setAntennaConfigurations((List<AntennaConfiguration>) any, (RegulatoryCapabilities) any, anyBoolean);
+			result = new ImplementationException("Tuning failed");
+		}};
+		setField(cfgManager, "unsavedChanges", false);
+		configs = new ArrayList<>();
+		configs.add(new AntennaConfiguration() {{ setId((short) 1); setTransmitPower((short) 30); }});
+		configs.add(new AntennaConfiguration() {{ setId((short) 3); setTransmitPower((short) 30); }});
+		try {
+			cfgManager.setConfigurations(configs);
+			fail("Exception expected");
+		} catch (ImplementationException e) {
+			assertEquals("Tuning failed", e.getMessage());
+		}
+		assertEquals(new Short((short) 20), aCfgs.get(0).getTransmitPower());
+		assertEquals(new Short((short) 5), aCfgs.get(2).getTransmitPower());
+		assertEquals(false, cfgManager.hasUnsavedChanges());
+
+		/*
+		 * Test:
+		 * 	- batch containing a non-existent antenna
+		 * Expected:
+		 * 	- parameter exception thrown before the hardware is accessed
+		 */
+		configs = new ArrayList<>();
+		configs.add(new AntennaConfiguration() {{ setId((short) 2); setTransmitPower((short) 30); }});
+		configs.add(new AntennaConfiguration() {{ setId((short) 4); setTransmitPower((short) 30); }});
+		try {
+			cfgManager.setConfigurations(configs);
+			fail("Exception expected");
+		} catch (ParameterException e) {
+			assertEquals("No antenna with ID 4 exists.", e.getMessage());
+		}
+		assertEquals(new Short((short) 5), aCfgs.get(1).getTransmitPower());
+		new Verifications() {{
+			// only the rejected batch since the last expectations
+			hwMgr.setAntennaConfigurations((List<AntennaConfiguration>) any, (RegulatoryCapabilities) any, anyBoolean);
+			times = 1;
+		}};
+	}
+
+	@Test
+	public void testSetConfigurationsIndividually(@Mocked final MainController mainController, @Mocked final HardwareManager hwMgr)
+			throws ImplementationException, ParameterException {
+		new NonStrictExpectations() {{
+			mainController.getHardwareManager();
+			result = hwMgr;
+		}};
+
+		final ConfigurationManager cfgManager = new ConfigurationManager(mainController);
+		final RFConfiguration conf = new RFConfiguration();
+		conf.setAntennaConfigurationList(new AntennaConfigurationList());
+		for (short id = 1; id <= 3; id++) {
+			AntennaConfiguration aCfg = new AntennaConfiguration();
+			aCfg.setId(id);
+			aCfg.setConnect(ConnectType.AUTO);
+			aCfg.setTransmitPower((short) 5);
+			conf.getAntennaConfigurationList().getEntryList().add(aCfg);
+		}
+		setField(cfgManager, "config", conf);
+		final List<AntennaConfiguration> aCfgs = conf.getAntennaConfigurationList().getEntryList();
+		final List<AntennaConfiguration> originals = new ArrayList<>(aCfgs);
+
+		/*
+		 * Test:
+		 * 	- set the configuration of all antennas on a hardware manager without batch support
+		 * Expected:
+		 * 	- one hardware call per antenna
+		 */
+		cfgManager.setConfigurations(Arrays.<Configuration> asList(new AntennaConfiguration() {{ setId((short) 0); setTransmitPower((short) 20); }}));
+		final List<AntennaConfiguration> applied = new ArrayList<>();
+		new Verifications() {{
+			hwMgr.setAntennaConfiguration(withCapture(applied), (RegulatoryCapabilities) any, false);
+			times = 3;
+		}};
+		for (int i = 0; i < 3; i++) {
+			assertEquals(i + 1, applied.get(i).getId());
+			assertSame(aCfgs.get(i), applied.get(i));
+			assertEquals(new Short((short) 20), aCfgs.get(i).getTransmitPower());
+		}
+
+		/*
+		 * Test:
+		 * 	- hardware fails to apply the second antenna
+		 * Expected:
+		 * 	- the previous configurations of the first and second antenna are restored
+		 * 	- implementation exception thrown, no antenna configuration changed
+		 */
+		originals.clear();
+		originals.addAll(aCfgs);
+		new NonStrictExpectations() {{
+			hwMgr.setAntennaConfiguration(withInstanceOf(AntennaConfiguration.class), (RegulatoryCapabilities) any, false);
+			result = null;
+			result = new ImplementationException("Tuning failed");
+			result = null;
+		}};
+		try {
+			cfgManager.setConfigurations(Arrays.<Configuration> asList(new AntennaConfiguration() {{ setId((short) 0); setTransmitPower((short) 30); }}));
+			fail("Exception expected");
+		} catch (ImplementationException e) {
+			assertEquals("Tuning failed", e.getMessage());
+		}
+		applied.clear();
+		new Verifications() {{
+			hwMgr.setAntennaConfiguration(withCapture(applied), (RegulatoryCapabilities) any, false);
+			times = 4;
+		}};
+		assertEquals(new Short((short) 30), applied.get(0).getTransmitPower());
+		assertEquals(new Short((short) 30), applied.get(1).getTransmitPower());
+		assertSame(originals.get(1), applied.get(2));
+		assertSame(originals.get(0), applied.get(3));
+		assertEquals(originals, aCfgs);
+		assertEquals(new Short((short) 20), aCfgs.get(0).getTransmitPower());
+	}
+
+	private static RFConfiguration createReloadConfiguration(short transmitPower2, short minRssi) {
+		RFConfiguration conf = new RFConfiguration();
+		conf.setRegion("EU");
+		conf.setAntennaConfigurationList(new AntennaConfigurationList());
+		for (short id = 1; id <= 2; id++) {
+			AntennaConfiguration aCfg = new AntennaConfiguration();
+			aCfg.setId(id);
+			aCfg.setConnect(ConnectType.AUTO);
+			aCfg.setTransmitPower(id == 2 ? transmitPower2 : (short) 5);
+			conf.getAntennaConfigurationList().getEntryList().add(aCfg);
+		}
+		conf.setInventorySettings(new InventorySettings());
+		conf.getInventorySettings().setRssiFilter(new RssiFilter());
+		conf.getInventorySettings().getRssiFilter().setMinRssi(minRssi);
+		conf.getInventorySettings().setSingulationControl(new SingulationControl());
+		KeepAliveConfiguration keepAlive = new KeepAliveConfiguration();
+		keepAlive.setEnable(true);
+		keepAlive.setInterval(1000);
+		conf.setKeepAliveConfiguration(keepAlive);
+		return conf;
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testReloadConfiguration(@Mocked final MainController mainController, @Mocked final TestHardwareManager hwMgr) throws Exception {
+		new NonStrictExpectations() {{
+			mainController.getHardwareManager();
+			result = hwMgr;
+		}};
+
+		final File tmpFile = File.createTempFile("current_", ".json");
+		setField(Environment.class, "CUSTOM_CONFIG_FILE", tmpFile.getAbsolutePath());
+		setField(Environment.class, "CONFIG_JOURNAL", true);
+		final ConfigurationManager cfgManager = new ConfigurationManager(mainController);
+		RFConfiguration conf = createReloadConfiguration((short) 5, (short) -70);
+		setField(cfgManager, "config", conf);
+
+		/* a journal with an older change of antenna 2 */
+		File journalFile = new File(tmpFile.getAbsolutePath() + ".journal");
+		Lock lock = new ReentrantLock();
+		ConfigurationJournal journal = new ConfigurationJournal(journalFile, lock, null, ConfigurationJournal.FsyncPolicy.NEVER, 0, Long.MAX_VALUE);
+		lock.lock();
+		try {
+			AntennaConfiguration journaled = conf.getAntennaConfigurationList().getEntryList().get(1).clone();
+			journaled.setTransmitPower((short) 25);
+			journal.append(Arrays.asList(new ConfigurationJournal.Entry(ConfigurationJournal.Type.ANTENNA_CONFIGURATION, journaled)));
+		} finally {
+			lock.unlock();
+		}
+		journal.close();
+
+		/*
+		 * Test:
+		 * 	- reload a configuration with a changed transmit power of antenna 2 and a changed RSSI filter
+		 * Expected:
+		 * 	- only antenna 2 and the RSSI filter are applied to the hardware
+		 * 	- the journal does not override the file and is deleted
+		 * 	- the configuration is not written again
+		 */
+		try {
+			cfgManager.reloadConfiguration(createReloadConfiguration((short) 15, (short) -60));
+		} finally {
+			setField(Environment.class, "CONFIG_JOURNAL", false);
+			tmpFile.delete();
+		}
+		assertFalse(journalFile.exists());
+
+		final List<List<AntennaConfiguration>> batches = new ArrayList<>();
+		new Verifications() {{
+			hwMgr.setAntennaConfigurations(withCapture(batches), (RegulatoryCapabilities) any, anyBoolean);
+			times = 1;
+			hwMgr.setRssiFilter(withInstanceOf(RssiFilter.class));
+			times = 1;
+			hwMgr.setSingulationControl(withInstanceOf(SingulationControl.class));
+			times = 0;
+			hwMgr.setRegion(withInstanceOf(RFRegion.class), withInstanceOf(AntennaConfigurationList.class));
+			times = 0;
+			mainController.restartKeepAliveThread(withInstanceOf(KeepAliveConfiguration.class));
+			times = 0;
+		}};
+		assertEquals(1, batches.get(0).size());
+		assertEquals(2, batches.get(0).get(0).getId());
+		assertEquals(new Short((short) 15), conf.getAntennaConfigurationList().getEntryList().get(1).getTransmitPower());
+		assertEquals(-60, conf.getInventorySettings().getRssiFilter().getMinRssi());
+		assertEquals(false, cfgManager.hasUnsavedChanges());
+		assertEquals(new Short((short) 15), cfgManager.getSnapshot().getAntennaConfiguration((short) 2).getTransmitPower());
+
+		/*
+		 * Test:
+		 * 	- reload an unchanged configuration
+		 * Expected:
+		 * 	- nothing is applied to the hardware
+		 */
+		cfgManager.reloadConfiguration(createReloadConfiguration((short) 15, (short) -60));
+		new Verifications() {{
+			hwMgr.setAntennaConfigurations((List<AntennaConfiguration>) any, (RegulatoryCapabilities) any, anyBoolean);
+			times = 1;
+			hwMgr.setRssiFilter(withInstanceOf(RssiFilter.class));
+			times = 1;
+		}};
+	}
+
+	@Test
+	public void testReadCustomConfig(@Mocked final MainController mainController) throws Exception {
+		final File tmpFile = File.createTempFile("current_", ".json");
+		tmpFile.delete();
+		setField(Environment.class, "CUSTOM_CONFIG_FILE", tmpFile.getAbsolutePath());
+		ConfigurationManager cfgMgr = new ConfigurationManager(mainController);
+		setField(cfgMgr, "config", createReloadConfiguration((short) 5, (short) -70));
+		try {
+			/*
+			 * Test:
+			 * 	- read a missing file and a file written by the configuration manager
+			 * Expected:
+			 * 	- no configuration returned
+			 */
+			assertEquals(null, cfgMgr.readCustomConfig());
+			cfgMgr.saveConfig();
+			assertEquals(null, cfgMgr.readCustomConfig());
+
+			/*
+			 * Test:
+			 * 	- read a file changed by another process
+			 * Expected:
+			 * 	- the configuration of the file is returned
+			 */
+			FileUtils.serialize(tmpFile, createReloadConfiguration((short) 25, (short) -70));
+			RFConfiguration config = cfgMgr.readCustomConfig();
+			assertEquals(new Short((short) 25), config.getAntennaConfigurationList().getEntryList().get(1).getTransmitPower());
+		} finally {
+			tmpFile.delete();
+		}
+	}
+
 	@Test
 	public void testSetConfiguration(@Mocked final MainController mainController, @Mocked final TestHardwareManager hwMgr) throws ImplementationException, ParameterException {
 		
@@ -513,7 +826,7 @@ public class ConfigurationManagerTest {
 		 * 	- set connect type and transmit power of antenna with ID 0
 		 * Expected:
 		 * 	- transmit power of both antennas is changed
-		 *  - setAntennaConfiguration method of hardware manager is called twice 
+		 *  - setAntennaConfigurations method of hardware manager is called once with both antennas
 		 **/
 		
 		AntennaConfiguration newCfg = new AntennaConfiguration() {{ setId((short) 0); setTransmitPower((short) 15); setConnect(ConnectType.TRUE); }};
@@ -526,8 +839,12 @@ public class ConfigurationManagerTest {
 		assertEquals(new Short((short) 15), rfConfig.getAntennaConfigurationList().getEntryList().get(1).getTransmitPower());		
 		
 		new Verifications() {{
-			hwMgr.setAntennaConfiguration(withInstanceOf(AntennaConfiguration.class), withSameInstance(regCaps), false);
-			times = 2;
+			List<AntennaConfiguration> batch;
+			hwMgr.setAntennaConfigurations(batch = withCapture(), withSameInstance(regCaps), false);
+			times = 1;
+			assertEquals(2, batch.size());
+			hwMgr.setAntennaConfiguration(withInstanceOf(AntennaConfiguration.class), withSameInstance(regCaps), anyBoolean);
+			times = 0;
 		}};
 		
 		/*
@@ -535,7 +852,7 @@ public class ConfigurationManagerTest {
 		 * 	- call of setConfiguration method with AntennaProperties object
 		 * Expected
 		 * 	- connectType of antenna config is set according to isConnected property of antenna properties object
-		 *  - setAntennaConfiguration method of hardware manager is called
+		 *  - setAntennaConfigurations method of hardware manager is called
 		 */
 		AntennaProperties antProps = new AntennaProperties() {{ setId((short) 0); setConnected(false); }};
 		cfgManager.setConfiguration(antProps);		
@@ -544,8 +861,8 @@ public class ConfigurationManagerTest {
 		assertEquals(ConnectType.FALSE, rfConfig.getAntennaConfigurationList().getEntryList().get(1).getConnect());
 		
 		new Verifications() {{
-			hwMgr.setAntennaConfiguration(withInstanceOf(AntennaConfiguration.class), withSameInstance(regCaps), false);
-			times = 4;			
+			hwMgr.setAntennaConfigurations(withInstanceOf(List.class), withSameInstance(regCaps), false);
+			times = 2;			
 		}};
 		
 		antProps = new AntennaProperties() {{ setId((short) 0); setConnected(true); }};
@@ -555,8 +872,8 @@ public class ConfigurationManagerTest {
 		assertEquals(ConnectType.TRUE, rfConfig.getAntennaConfigurationList().getEntryList().get(1).getConnect());
 		
 		new Verifications() {{
-			hwMgr.setAntennaConfiguration(withInstanceOf(AntennaConfiguration.class), withSameInstance(regCaps), false);
-			times = 6;			
+			hwMgr.setAntennaConfigurations(withInstanceOf(List.class), withSameInstance(regCaps), false);
+			times = 3;			
 		}};
 				
 		/*
@@ -768,7 +1085,7 @@ public class ConfigurationManagerTest {
 		 */
 		List<Configuration> configs = cfgManager.getConfiguration(ConfigurationType.KEEP_ALIVE_CONFIGURATION, (short) 0);
 		assertEquals(1, configs.size());
-		assertEquals(keepAliveConfiguration.getClass(), configs.get(0).getClass());
+		assertTrue(configs.get(0) instanceof KeepAliveConfiguration);
 
 		/*
 		 * Test:
@@ -778,7 +1095,7 @@ public class ConfigurationManagerTest {
 		 */
 		configs = cfgManager.getConfiguration(ConfigurationType.ANTENNA_CONFIGURATION, (short) 1);
 		assertEquals(1, configs.size());
-		assertEquals(AntennaConfiguration.class, configs.get(0).getClass());
+		assertTrue(configs.get(0) instanceof AntennaConfiguration);
 		assertEquals(antCfg1.getId(), ((AntennaConfiguration) configs.get(0)).getId());
 
 		/*
@@ -789,7 +1106,7 @@ public class ConfigurationManagerTest {
 		 */
 		configs = cfgManager.getConfiguration(ConfigurationType.ANTENNA_CONFIGURATION, (short) 2);
 		assertEquals(1, configs.size());
-		assertEquals(AntennaConfiguration.class, configs.get(0).getClass());
+		assertTrue(configs.get(0) instanceof AntennaConfiguration);
 		assertEquals(antCfg2.getId(), ((AntennaConfiguration) configs.get(0)).getId());
 
 		/*
@@ -800,9 +1117,9 @@ public class ConfigurationManagerTest {
 		 */
 		configs = cfgManager.getConfiguration(ConfigurationType.ANTENNA_CONFIGURATION, (short) 0);
 		assertEquals(2, configs.size());		
-		assertEquals(AntennaConfiguration.class, configs.get(0).getClass());
+		assertTrue(configs.get(0) instanceof AntennaConfiguration);
 		assertEquals(antCfg1.getId(), ((AntennaConfiguration) configs.get(0)).getId());
-		assertEquals(AntennaConfiguration.class, configs.get(1).getClass());
+		assertTrue(configs.get(1) instanceof AntennaConfiguration);
 		assertEquals(antCfg2.getId(), ((AntennaConfiguration) configs.get(1)).getId());
 		
 		/*
@@ -813,8 +1130,8 @@ public class ConfigurationManagerTest {
 		 */
 		configs = cfgManager.getConfiguration(ConfigurationType.ANTENNA_PROPERTIES, (short) 0);
 		assertEquals(2, configs.size());
-		assertEquals(AntennaProperties.class, configs.get(0).getClass());
-		assertEquals(AntennaProperties.class, configs.get(1).getClass());
+		assertTrue(configs.get(0) instanceof AntennaProperties);
+		assertTrue(configs.get(1) instanceof AntennaProperties);
 		assertEquals(apl.getEntryList().get(0).getId(), ((AntennaProperties)configs.get(0)).getId());
 		assertEquals(apl.getEntryList().get(1).getId(), ((AntennaProperties)configs.get(1)).getId());
 
@@ -826,7 +1143,7 @@ public class ConfigurationManagerTest {
 		 */
 		configs = cfgManager.getConfiguration(ConfigurationType.ANTENNA_PROPERTIES, (short) 1);
 		assertEquals(1, configs.size());
-		assertEquals(AntennaProperties.class, configs.get(0).getClass());
+		assertTrue(configs.get(0) instanceof AntennaProperties);
 		assertEquals(apl.getEntryList().get(0).getId(), ((AntennaProperties)configs.get(0)).getId());		
 		
 		/*
@@ -837,16 +1154,23 @@ public class ConfigurationManagerTest {
 		 */
 		configs = cfgManager.getConfiguration(ConfigurationType.ALL, (short) 0);
 		assertEquals(5, configs.size());
-		assertEquals(AntennaConfiguration.class, configs.get(0).getClass());
-		assertEquals(AntennaConfiguration.class, configs.get(1).getClass());
-		assertEquals(AntennaProperties.class, configs.get(2).getClass());
-		assertEquals(AntennaProperties.class, configs.get(3).getClass());
-		assertEquals(keepAliveConfiguration.getClass(), configs.get(4).getClass());		
+		assertTrue(configs.get(0) instanceof AntennaConfiguration);
+		assertTrue(configs.get(1) instanceof AntennaConfiguration);
+		assertTrue(configs.get(2) instanceof AntennaProperties);
+		assertTrue(configs.get(3) instanceof AntennaProperties);
+		assertTrue(configs.get(4) instanceof KeepAliveConfiguration);
 				
 	}
 
 	@Test
-	public void testGetCapabilitiesByType(@Mocked final MainController mainController) throws ImplementationException, ConnectionException {
+	public void testGetCapabilitiesByType(@Mocked final MainController mainController, @Mocked final HardwareManager hwMgr) throws ImplementationException, ConnectionException {
+		new NonStrictExpectations() {{
+			mainController.getHardwareManager();
+			result = hwMgr;
+
+			hwMgr.getFirmwareVersion();
+			result = "1.0";
+		}};
 		final ConfigurationManager cfgManager = new ConfigurationManager(mainController);
 
 		final RFConfiguration conf = new RFConfiguration();
@@ -860,6 +1184,9 @@ public class ConfigurationManagerTest {
 		List<Capabilities> caps = cfgManager.getCapabilitiesByType(CapabilityType.DEVICE_CAPABILITIES);
 		assertEquals(caps.size(), 1);
 		assertEquals(caps.get(0).getClass(), devCaps.getClass());
+		assertEquals("1.0", ((DeviceCapabilities) caps.get(0)).getFirmware());
+		// the firmware version is not written into the configuration
+		assertNull(devCaps.getFirmware());
 
 		caps = cfgManager.getCapabilitiesByType(CapabilityType.REGULATORY_CAPABILITIES);
 		assertEquals(caps.size(), 1);
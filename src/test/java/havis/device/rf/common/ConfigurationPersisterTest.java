@@ -0,0 +1,161 @@
+package havis.device.rf.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.exception.ImplementationException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.Test;
+
+public class ConfigurationPersisterTest {
+
+	private static class TestTarget implements ConfigurationPersister.Target {
+		final List<String> written = Collections.synchronizedList(new ArrayList<String>());
+		volatile int value;
+		volatile int failures;
+		volatile int snapshotFailures;
+
+		@Override
+		public String snapshot() throws ImplementationException {
+			if (snapshotFailures > 0) {
+				snapshotFailures--;
+				throw new ImplementationException("Serialization failed");
+			}
+			return Integer.toString(value);
+		}
+
+		@Override
+		public void write(String snapshot) throws ImplementationException {
+			if (failures > 0) {
+				failures--;
+				throw new ImplementationException("Disk full");
+			}
+			written.add(snapshot);
+		}
+	}
+
+	private static void change(Lock lock, TestTarget target, ConfigurationPersister persister, int value) {
+		lock.lock();
+		try {
+			target.value = value;
+			persister.changed();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Test
+	public void testCoalesce() throws Exception {
+		Lock lock = new ReentrantLock();
+		TestTarget target = new TestTarget();
+		ConfigurationPersister persister = new ConfigurationPersister(lock, target, 100, 10000);
+		for (int i = 1; i <= 10; i++)
+			change(lock, target, persister, i);
+		assertTrue(persister.isDirty());
+		assertTrue(target.written.isEmpty());
+		Thread.sleep(500);
+		assertEquals(Collections.singletonList("10"), target.written);
+		assertFalse(persister.isDirty());
+		persister.close();
+	}
+
+	@Test
+	public void testMaxDelay() throws Exception {
+		Lock lock = new ReentrantLock();
+		TestTarget target = new TestTarget();
+		ConfigurationPersister persister = new ConfigurationPersister(lock, target, 50, 100);
+		// changes without a quiet period are written after the maximum delay
+		for (int i = 1; i <= 40; i++) {
+			change(lock, target, persister, i);
+			Thread.sleep(10);
+		}
+		assertTrue(target.written.size() >= 2);
+		persister.close();
+		assertEquals("40", target.written.get(target.written.size() - 1));
+	}
+
+	@Test
+	public void testFlush() throws Exception {
+		Lock lock = new ReentrantLock();
+		TestTarget target = new TestTarget();
+		ConfigurationPersister persister = new ConfigurationPersister(lock, target, 10000, 10000);
+		persister.flush();
+		assertTrue(target.written.isEmpty());
+		change(lock, target, persister, 1);
+		change(lock, target, persister, 2);
+		// flushing with the lock held must not dead lock
+		lock.lock();
+		try {
+			persister.flush();
+		} finally {
+			lock.unlock();
+		}
+		assertEquals(Collections.singletonList("2"), target.written);
+		assertFalse(persister.isDirty());
+
+		change(lock, target, persister, 3);
+		persister.close();
+		assertEquals("3", target.written.get(1));
+		// no writes after closing
+		change(lock, target, persister, 4);
+		Thread.sleep(50);
+		assertEquals(2, target.written.size());
+	}
+
+	@Test
+	public void testRetry() throws Exception {
+		Lock lock = new ReentrantLock();
+		TestTarget target = new TestTarget();
+		ConfigurationPersister persister = new ConfigurationPersister(lock, target, 50, 50);
+		target.failures = 1;
+		change(lock, target, persister, 1);
+		Thread.sleep(400);
+		assertEquals(Collections.singletonList("1"), target.written);
+
+		target.failures = 1;
+		change(lock, target, persister, 2);
+		try {
+			persister.flush();
+			throw new AssertionError("Failed write not reported");
+		} catch (ImplementationException e) {
+			assertEquals("Disk full", e.getMessage());
+		}
+		assertTrue(persister.isDirty());
+		persister.close();
+		assertEquals("2", target.written.get(1));
+	}
+
+	@Test
+	public void testSnapshotRetry() throws Exception {
+		Lock lock = new ReentrantLock();
+		TestTarget target = new TestTarget();
+		ConfigurationPersister persister = new ConfigurationPersister(lock, target, 50, 50);
+		target.snapshotFailures = 2;
+		change(lock, target, persister, 1);
+		Thread.sleep(400);
+		assertEquals(Collections.singletonList("1"), target.written);
+		assertFalse(persister.isDirty());
+
+		// failed snapshot of a flush is retried in the background
+		persister = new ConfigurationPersister(lock, target, 50, 10000);
+		target.snapshotFailures = 1;
+		change(lock, target, persister, 2);
+		try {
+			persister.flush();
+			throw new AssertionError("Failed snapshot not reported");
+		} catch (ImplementationException e) {
+			assertEquals("Serialization failed", e.getMessage());
+		}
+		assertTrue(persister.isDirty());
+		Thread.sleep(400);
+		assertEquals("2", target.written.get(1));
+		assertFalse(persister.isDirty());
+		persister.close();
+	}
+}
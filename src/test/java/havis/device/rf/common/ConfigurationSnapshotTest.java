@@ -0,0 +1,163 @@
+package havis.device.rf.common;
+
+import static mockit.Deencapsulation.setField;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.configuration.AntennaConfiguration;
+import havis.device.rf.configuration.AntennaConfigurationList;
+import havis.device.rf.configuration.ConfigurationType;
+import havis.device.rf.configuration.ConnectType;
+import havis.device.rf.configuration.InventorySettings;
+import havis.device.rf.configuration.KeepAliveConfiguration;
+import havis.device.rf.configuration.RFConfiguration;
+import havis.device.rf.configuration.SelectionMask;
+import havis.device.rf.exception.ParameterException;
+
+import java.util.List;
+
+import mockit.Mocked;
+
+import org.junit.Test;
+
+public class ConfigurationSnapshotTest {
+
+	private static RFConfiguration createConfiguration() {
+		RFConfiguration config = new RFConfiguration();
+		config.setRegion("EU");
+		config.setAntennaConfigurationList(new AntennaConfigurationList());
+		for (short id = 1; id <= 4; id++) {
+			AntennaConfiguration aCfg = new AntennaConfiguration();
+			aCfg.setId(id);
+			aCfg.setTransmitPower(Short.valueOf((short) 10));
+			aCfg.setConnect(ConnectType.AUTO);
+			config.getAntennaConfigurationList().getEntryList().add(aCfg);
+		}
+		config.setInventorySettings(new InventorySettings());
+		config.getInventorySettings().getSelectionMasks().add(new SelectionMask());
+		KeepAliveConfiguration keepAlive = new KeepAliveConfiguration();
+		keepAlive.setInterval(1000);
+		config.setKeepAliveConfiguration(keepAlive);
+		return config;
+	}
+
+	@Test
+	public void testSnapshot() {
+		RFConfiguration config = createConfiguration();
+		ConfigurationSnapshot snapshot = new ConfigurationSnapshot(config, 3);
+		assertEquals(3, snapshot.getVersion());
+		assertEquals("EU", snapshot.getRegion());
+		assertEquals(4, snapshot.getAntennaConfigurations().size());
+		assertEquals(3, snapshot.getAntennaConfiguration((short) 3).getId());
+		assertSame(snapshot.getAntennaConfigurations().get(2), snapshot.getAntennaConfiguration((short) 3));
+		assertNull(snapshot.getAntennaConfiguration((short) 5));
+		assertEquals(1, snapshot.getSelectionMasks().size());
+		assertEquals(1000, snapshot.getKeepAliveConfiguration().getInterval());
+
+		// changes of the configuration do not affect the snapshot
+		AntennaConfiguration aCfg = config.getAntennaConfigurationList().getEntryList().get(0);
+		assertNotSame(aCfg, snapshot.getAntennaConfiguration((short) 1));
+		aCfg.setTransmitPower(Short.valueOf((short) 20));
+		config.getAntennaConfigurationList().getEntryList().remove(3);
+		config.getInventorySettings().getSelectionMasks().clear();
+		assertEquals(Short.valueOf((short) 10), snapshot.getAntennaConfiguration((short) 1).getTransmitPower());
+		assertEquals(4, snapshot.getAntennaConfigurations().size());
+		assertEquals(1, snapshot.getSelectionMasks().size());
+
+		// the snapshot is read-only
+		try {
+			snapshot.getAntennaConfigurations().clear();
+			throw new AssertionError("Snapshot modified");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			snapshot.getSelectionMasks().clear();
+			throw new AssertionError("Snapshot modified");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			snapshot.getAntennaConfiguration((short) 1).setTransmitPower(Short.valueOf((short) 20));
+			throw new AssertionError("Snapshot modified");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			snapshot.getKeepAliveConfiguration().setInterval(0);
+			throw new AssertionError("Snapshot modified");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			snapshot.getSelectionMasks().get(0).setBitLength((short) 0);
+			throw new AssertionError("Snapshot modified");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			snapshot.getInventorySettings().getSelectionMasks().clear();
+			throw new AssertionError("Snapshot modified");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+
+		// copies of the snapshot objects can be modified
+		AntennaConfiguration copy = snapshot.getAntennaConfiguration((short) 1).clone();
+		copy.setTransmitPower(Short.valueOf((short) 20));
+		assertEquals(1, copy.getId());
+		assertEquals(Short.valueOf((short) 10), snapshot.getAntennaConfiguration((short) 1).getTransmitPower());
+		KeepAliveConfiguration keepAlive = snapshot.getKeepAliveConfiguration().clone();
+		keepAlive.setInterval(500);
+		assertEquals(1000, snapshot.getKeepAliveConfiguration().getInterval());
+		InventorySettings settings = snapshot.getInventorySettings().clone();
+		settings.getSelectionMasks().get(0).setBitLength((short) 0);
+		settings.getSelectionMasks().clear();
+		assertEquals(1, snapshot.getSelectionMasks().size());
+
+		// an empty configuration
+		snapshot = new ConfigurationSnapshot(new RFConfiguration(), 0);
+		assertTrue(snapshot.getAntennaConfigurations().isEmpty());
+		assertTrue(snapshot.getSelectionMasks().isEmpty());
+		assertNull(snapshot.getInventorySettings());
+	}
+
+	@Test
+	public void testPublish(@Mocked final MainController mainController) throws Exception {
+		ConfigurationManager cfgManager = new ConfigurationManager(mainController);
+		RFConfiguration config = createConfiguration();
+		setField(cfgManager, "config", config);
+
+		ConfigurationSnapshot unpublished = cfgManager.getSnapshot();
+		assertEquals(0, unpublished.getVersion());
+		assertNotSame(unpublished, cfgManager.getSnapshot());
+
+		AntennaConfiguration aCfg = new AntennaConfiguration();
+		aCfg.setId((short) 2);
+		aCfg.setTransmitPower(Short.valueOf((short) 15));
+		cfgManager.setConfiguration(aCfg);
+		ConfigurationSnapshot snapshot = cfgManager.getSnapshot();
+		assertEquals(1, snapshot.getVersion());
+		assertSame(snapshot, cfgManager.getSnapshot());
+		assertEquals(Short.valueOf((short) 15), snapshot.getAntennaConfiguration((short) 2).getTransmitPower());
+		assertSame(snapshot.getSelectionMasks(), cfgManager.getDefaultFilters());
+
+		// readers share the read-only views of the snapshot
+		List<?> configs = cfgManager.getConfiguration(ConfigurationType.ANTENNA_CONFIGURATION, (short) 2);
+		assertEquals(1, configs.size());
+		assertSame(snapshot.getAntennaConfiguration((short) 2), configs.get(0));
+
+		// a failed change publishes the changes applied before
+		aCfg = new AntennaConfiguration();
+		aCfg.setId((short) 9);
+		try {
+			cfgManager.setConfiguration(aCfg);
+			throw new AssertionError("Unknown antenna accepted");
+		} catch (ParameterException e) {
+			// expected
+		}
+		assertEquals(2, cfgManager.getSnapshot().getVersion());
+	}
+}
@@ -0,0 +1,95 @@
+package havis.device.rf.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConfigurationWatcherTest {
+
+	private File directory;
+	private File configFile;
+	private File regionDirectory;
+	private final BlockingQueue<String> changes = new LinkedBlockingQueue<>();
+	private final ConfigurationWatcher.Listener listener = new ConfigurationWatcher.Listener() {
+		@Override
+		public void configurationChanged() {
+			changes.add("config");
+		}
+
+		@Override
+		public void regionChanged(String id) {
+			changes.add("region " + id);
+		}
+	};
+
+	@Before
+	public void setup() throws Exception {
+		directory = Files.createTempDirectory("watcher_").toFile();
+		configFile = new File(new File(directory, "config"), "config.json");
+		regionDirectory = new File(directory, "region");
+		regionDirectory.mkdir();
+	}
+
+	@After
+	public void cleanup() {
+		delete(directory);
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null)
+			for (File f : files)
+				delete(f);
+		file.delete();
+	}
+
+	private static void write(File file, String content) throws Exception {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testWatch() throws Exception {
+		ConfigurationWatcher watcher = new ConfigurationWatcher(configFile, regionDirectory, 200, listener);
+		try {
+			// the parent directory is created
+			assertEquals(true, configFile.getParentFile().isDirectory());
+
+			// several writes are reported once
+			write(configFile, "{");
+			write(configFile, "{}");
+			assertEquals("config", changes.poll(10, TimeUnit.SECONDS));
+			assertNull(changes.poll(500, TimeUnit.MILLISECONDS));
+
+			// replacing the file is reported
+			File tmpFile = new File(configFile.getParentFile(), "config.json.tmp");
+			write(tmpFile, "{ }");
+			Files.move(tmpFile.toPath(), configFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			assertEquals("config", changes.poll(10, TimeUnit.SECONDS));
+
+			// other files are ignored
+			write(new File(configFile.getParentFile(), "other.json"), "{}");
+			write(new File(regionDirectory, "README"), "");
+			assertNull(changes.poll(500, TimeUnit.MILLISECONDS));
+
+			write(new File(regionDirectory, "EU.json"), "{}");
+			assertEquals("region EU", changes.poll(10, TimeUnit.SECONDS));
+		} finally {
+			watcher.close();
+		}
+
+		// no changes are reported after closing
+		write(configFile, "{}");
+		assertNull(changes.poll(500, TimeUnit.MILLISECONDS));
+	}
+}
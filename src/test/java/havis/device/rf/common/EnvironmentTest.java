@@ -2,6 +2,7 @@ package havis.device.rf.common;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -104,6 +105,42 @@ public class EnvironmentTest {
 			Environment.SERIALIZER_PRETTY_PRINT);
 	}
 	
+	@Test 
+	public void testCONFIG_WRITE_DELAY() {
+		assertEquals(				
+			Long.parseLong(properties.getProperty("havis.device.rf.common.configWriteDelay")), 
+			Environment.CONFIG_WRITE_DELAY);
+		assertEquals(				
+			Long.parseLong(properties.getProperty("havis.device.rf.common.configWriteMaxDelay")), 
+			Environment.CONFIG_WRITE_MAX_DELAY);
+	}
+	
+	@Test 
+	public void testCONFIG_WATCH() {
+		assertEquals(				
+			Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.configWatch")), 
+			Environment.CONFIG_WATCH);
+		assertEquals(				
+			Long.parseLong(properties.getProperty("havis.device.rf.common.configWatch.delay")), 
+			Environment.CONFIG_WATCH_DELAY);
+	}
+	
+	@Test 
+	public void testCONFIG_JOURNAL() {
+		assertEquals(				
+			Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.configJournal")), 
+			Environment.CONFIG_JOURNAL);
+		assertEquals(				
+			properties.getProperty("havis.device.rf.common.configJournal.fsync"), 
+			Environment.CONFIG_JOURNAL_FSYNC);
+		assertEquals(				
+			Long.parseLong(properties.getProperty("havis.device.rf.common.configJournal.fsyncInterval")), 
+			Environment.CONFIG_JOURNAL_FSYNC_INTERVAL);
+		assertEquals(				
+			Long.parseLong(properties.getProperty("havis.device.rf.common.configJournal.compactSize")), 
+			Environment.CONFIG_JOURNAL_COMPACT_SIZE);
+	}
+	
 	@Test 
 	public void testOPTIMIZED_TID_BANK_READING() {
 		assertEquals(				
@@ -118,6 +155,139 @@ public class EnvironmentTest {
 			Environment.HANDLE_TRANSPONDER_EPC_CHANGE);
 	}
 	
+	@Test 
+	public void testOPERATION_STATISTICS() {
+		assertEquals(				
+			Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.operationStatistics")), 
+			Environment.OPERATION_STATISTICS);
+	}
+	
+	@Test 
+	public void testSOFTWARE_FILTERING() {
+		assertEquals(				
+			Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.softwareFiltering")), 
+			Environment.SOFTWARE_FILTERING);
+	}
+	
+	@Test 
+	public void testOPTIMIZE_READ_OPERATIONS() {
+		assertEquals(				
+			Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.optimizeReadOperations")), 
+			Environment.OPTIMIZE_READ_OPERATIONS);
+	}
+	
+	@Test 
+	public void testMAX_BLOCK_WRITE_WORD_COUNT() {
+		assertEquals(				
+			Short.valueOf(properties.getProperty("havis.device.rf.common.maxBlockWriteWordCount")), 
+			Environment.MAX_BLOCK_WRITE_WORD_COUNT);
+	}
+	
+	@Test 
+	public void testWRITE_ELISION() {
+		assertEquals(				
+			Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.writeElision")), 
+			Environment.WRITE_ELISION);
+	}
+	
+	@Test 
+	public void testTID_CACHE() {
+		assertEquals(				
+			Integer.parseInt(properties.getProperty("havis.device.rf.common.tidCache.size")), 
+			Environment.TID_CACHE_SIZE);
+		assertEquals(				
+			Long.parseLong(properties.getProperty("havis.device.rf.common.tidCache.ttl")), 
+			Environment.TID_CACHE_TTL);
+		assertEquals(				
+			Double.parseDouble(properties.getProperty("havis.device.rf.common.tidCache.minHitRatio")), 
+			Environment.TID_CACHE_MIN_HIT_RATIO, 0);
+	}
+	
+	@Test 
+	public void testHARDWARE_INFO() {
+		assertEquals(				
+			Long.parseLong(properties.getProperty("havis.device.rf.common.hardwareInfo.antennaPropertiesTtl")), 
+			Environment.HARDWARE_INFO_ANTENNA_PROPERTIES_TTL);
+		assertEquals(				
+			Long.parseLong(properties.getProperty("havis.device.rf.common.hardwareInfo.firmwareVersionTtl")), 
+			Environment.HARDWARE_INFO_FIRMWARE_VERSION_TTL);
+		assertEquals(				
+			Double.parseDouble(properties.getProperty("havis.device.rf.common.hardwareInfo.refreshRatio")), 
+			Environment.HARDWARE_INFO_REFRESH_RATIO, 0);
+	}
+	
+	@Test 
+	public void testUSER_BANK_CACHE() {
+		assertEquals(				
+			Integer.parseInt(properties.getProperty("havis.device.rf.common.userBankCache.size")), 
+			Environment.USER_BANK_CACHE_SIZE);
+		assertEquals(				
+			Long.parseLong(properties.getProperty("havis.device.rf.common.userBankCache.ttl")), 
+			Environment.USER_BANK_CACHE_TTL);
+		assertEquals(				
+			Double.parseDouble(properties.getProperty("havis.device.rf.common.userBankCache.minHitRatio")), 
+			Environment.USER_BANK_CACHE_MIN_HIT_RATIO, 0);
+	}
+	
+	@Test 
+	public void testSIMULATOR() {
+		assertEquals(				
+			Integer.parseInt(properties.getProperty("havis.device.rf.common.simulator.tagCount")), 
+			Environment.SIMULATOR_TAG_COUNT);
+		assertEquals(				
+			Integer.parseInt(properties.getProperty("havis.device.rf.common.simulator.userBankWords")), 
+			Environment.SIMULATOR_USER_BANK_WORDS);
+		assertEquals(				
+			Integer.parseInt(properties.getProperty("havis.device.rf.common.simulator.antennaCount")), 
+			Environment.SIMULATOR_ANTENNA_COUNT);
+		assertEquals(				
+			Double.parseDouble(properties.getProperty("havis.device.rf.common.simulator.visibility")), 
+			Environment.SIMULATOR_VISIBILITY, 0);
+		assertEquals(				
+			Double.parseDouble(properties.getProperty("havis.device.rf.common.simulator.rssiMean")), 
+			Environment.SIMULATOR_RSSI_MEAN, 0);
+		assertEquals(				
+			Double.parseDouble(properties.getProperty("havis.device.rf.common.simulator.rssiDeviation")), 
+			Environment.SIMULATOR_RSSI_DEVIATION, 0);
+		assertEquals(				
+			Long.parseLong(properties.getProperty("havis.device.rf.common.simulator.dwellTime")), 
+			Environment.SIMULATOR_DWELL_TIME);
+		assertEquals(				
+			Integer.parseInt(properties.getProperty("havis.device.rf.common.simulator.slotMicros")), 
+			Environment.SIMULATOR_SLOT_MICROS);
+		assertEquals(				
+			Integer.parseInt(properties.getProperty("havis.device.rf.common.simulator.accessMicros")), 
+			Environment.SIMULATOR_ACCESS_MICROS);
+		assertEquals(				
+			Integer.parseInt(properties.getProperty("havis.device.rf.common.simulator.wordMicros")), 
+			Environment.SIMULATOR_WORD_MICROS);
+		assertEquals(				
+			Double.parseDouble(properties.getProperty("havis.device.rf.common.simulator.timeScale")), 
+			Environment.SIMULATOR_TIME_SCALE, 0);
+		assertEquals(				
+			Long.parseLong(properties.getProperty("havis.device.rf.common.simulator.seed")), 
+			Environment.SIMULATOR_SEED);
+	}
+	
+	@Test 
+	public void testTRACE() {
+		assertNull(Environment.TRACE_FILE);
+		assertEquals(				
+			properties.getProperty("havis.device.rf.common.replay.file"), 
+			Environment.REPLAY_FILE);
+		assertEquals(				
+			Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.replay.realtime")), 
+			Environment.REPLAY_REALTIME);
+		assertEquals(				
+			Boolean.parseBoolean(properties.getProperty("havis.device.rf.common.replay.loop")), 
+			Environment.REPLAY_LOOP);
+	}
+	
+	@Test 
+	public void testSnapshotPath() {
+		assertEquals(properties.getProperty("havis.device.rf.common.snapshotPath"), Environment.SNAPSHOT_PATH);
+	}
+	
 	@Test 
 	public void testCOMPLETE_USERBANK_WORD_COUNT() {
 		assertEquals(				
@@ -0,0 +1,211 @@
+package havis.device.rf.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import havis.device.rf.configuration.AntennaPropertyList;
+import havis.device.rf.configuration.ConnectType;
+import havis.device.rf.exception.ImplementationException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HardwareInfoCacheTest {
+
+	static class TestCache extends HardwareInfoCache {
+		long now;
+
+		TestCache(MainController mainController, long antennaPropertiesTtl, long firmwareVersionTtl, ExecutorService executor) {
+			super(mainController, antennaPropertiesTtl, firmwareVersionTtl, 0.5, executor);
+		}
+
+		@Override
+		long now() {
+			return now;
+		}
+	}
+
+	private final Lock lock = new ReentrantLock();
+	private ExecutorService executor;
+
+	@Before
+	public void setup() {
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.SECONDS);
+	}
+
+	private void awaitRefresh() throws Exception {
+		// tasks are executed in order
+		executor.submit(new Runnable() {
+			@Override
+			public void run() {
+			}
+		}).get(1, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testAntennaProperties(@Mocked final MainController mainController, @Mocked final HardwareManager hwMgr) throws Exception {
+		final AntennaPropertyList apl1 = new AntennaPropertyList();
+		final AntennaPropertyList apl2 = new AntennaPropertyList();
+		final AntennaPropertyList apl3 = new AntennaPropertyList();
+		final AntennaPropertyList apl4 = new AntennaPropertyList();
+		final AntennaPropertyList apl5 = new AntennaPropertyList();
+		new NonStrictExpectations() {
+			{
+				mainController.getLock();
+				result = lock;
+				mainController.getHardwareManager();
+				result = hwMgr;
+				hwMgr.getAntennaProperties(withInstanceOf(Map.class));
+				returns(apl1, apl2, apl3, apl4, apl5);
+			}
+		};
+		TestCache cache = new TestCache(mainController, 1000, -1, executor);
+		Map<Short, ConnectType> connectTypes = new HashMap<>();
+		connectTypes.put(Short.valueOf((short) 1), ConnectType.AUTO);
+
+		assertSame(apl1, cache.getAntennaProperties(connectTypes));
+		cache.now = 400;
+		assertSame(apl1, cache.getAntennaProperties(new HashMap<>(connectTypes)));
+		awaitRefresh();
+		assertSame(apl1, cache.getAntennaProperties(connectTypes));
+
+		// refreshed in the background after half of the time to live
+		cache.now = 600;
+		assertSame(apl1, cache.getAntennaProperties(connectTypes));
+		awaitRefresh();
+		assertSame(apl2, cache.getAntennaProperties(connectTypes));
+
+		// read again if expired or invalidated
+		cache.now = 1700;
+		assertSame(apl3, cache.getAntennaProperties(connectTypes));
+		cache.invalidateAntennaProperties();
+		assertSame(apl4, cache.getAntennaProperties(connectTypes));
+
+		// read again if the connect types have changed
+		Map<Short, ConnectType> changed = new HashMap<>(connectTypes);
+		changed.put(Short.valueOf((short) 1), ConnectType.TRUE);
+		assertSame(apl5, cache.getAntennaProperties(changed));
+	}
+
+	@Test
+	public void testRefreshSkipped(@Mocked final MainController mainController, @Mocked final HardwareManager hwMgr) throws Exception {
+		final AntennaPropertyList apl1 = new AntennaPropertyList();
+		final AntennaPropertyList apl2 = new AntennaPropertyList();
+		new NonStrictExpectations() {
+			{
+				mainController.getLock();
+				result = lock;
+				mainController.getHardwareManager();
+				result = hwMgr;
+				hwMgr.getAntennaProperties(withInstanceOf(Map.class));
+				returns(apl1, apl2);
+			}
+		};
+		TestCache cache = new TestCache(mainController, 1000, -1, executor);
+		Map<Short, ConnectType> connectTypes = new HashMap<>();
+		assertSame(apl1, cache.getAntennaProperties(connectTypes));
+
+		// no refresh while another thread holds the lock
+		final CountDownLatch locked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				lock.lock();
+				try {
+					locked.countDown();
+					release.await();
+				} catch (InterruptedException e) {
+					// exit
+				} finally {
+					lock.unlock();
+				}
+			}
+		};
+		thread.start();
+		locked.await();
+		cache.now = 600;
+		assertSame(apl1, cache.getAntennaProperties(connectTypes));
+		awaitRefresh();
+		release.countDown();
+		thread.join();
+		assertSame(apl1, cache.getAntennaProperties(connectTypes));
+		awaitRefresh();
+		assertSame(apl2, cache.getAntennaProperties(connectTypes));
+	}
+
+	@Test
+	public void testFirmwareVersion(@Mocked final MainController mainController, @Mocked final HardwareManager hwMgr) throws Exception {
+		new NonStrictExpectations() {
+			{
+				mainController.getLock();
+				result = lock;
+				mainController.getHardwareManager();
+				result = hwMgr;
+				hwMgr.getFirmwareVersion();
+				returns("1.0", "2.0", "3.0");
+			}
+		};
+
+		// cached until invalidated
+		TestCache cache = new TestCache(mainController, 1000, -1, executor);
+		assertEquals("1.0", cache.getFirmwareVersion());
+		cache.now = Long.MAX_VALUE / 2;
+		assertEquals("1.0", cache.getFirmwareVersion());
+		cache.invalidate();
+		assertEquals("2.0", cache.getFirmwareVersion());
+
+		// not cached
+		cache = new TestCache(mainController, 1000, 0, executor);
+		assertEquals("3.0", cache.getFirmwareVersion());
+		assertEquals("3.0", cache.getFirmwareVersion());
+		new Verifications() {
+			{
+				hwMgr.getFirmwareVersion();
+				times = 4;
+			}
+		};
+	}
+
+	@Test
+	public void testReadFailed(@Mocked final MainController mainController, @Mocked final HardwareManager hwMgr) throws Exception {
+		new NonStrictExpectations() {
+			{
+				mainController.getLock();
+				result = lock;
+				mainController.getHardwareManager();
+				result = hwMgr;
+				hwMgr.getFirmwareVersion();
+				result = new ImplementationException("Failed");
+				result = "1.0";
+			}
+		};
+		TestCache cache = new TestCache(mainController, 1000, -1, executor);
+		try {
+			cache.getFirmwareVersion();
+			throw new AssertionError("Failure not reported");
+		} catch (ImplementationException e) {
+			// expected
+		}
+		assertEquals("1.0", cache.getFirmwareVersion());
+	}
+}
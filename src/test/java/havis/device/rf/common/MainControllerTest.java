@@ -25,6 +25,7 @@ import org.junit.Test;
 
 import havis.device.rf.RFConsumer;
 import havis.device.rf.capabilities.CapabilityType;
+import havis.device.rf.common.cache.MemoryBankCache;
 import havis.device.rf.common.test.TestHardwareManager;
 import havis.device.rf.common.util.RFUtils;
 import havis.device.rf.configuration.AntennaConfiguration;
@@ -38,10 +39,12 @@ import havis.device.rf.exception.ImplementationException;
 import havis.device.rf.exception.ParameterException;
 import havis.device.rf.tag.Filter;
 import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.TagDataList;
 import havis.device.rf.tag.operation.LockOperation;
 import havis.device.rf.tag.operation.ReadOperation;
 import havis.device.rf.tag.operation.TagOperation;
 import havis.device.rf.tag.operation.WriteOperation;
+import havis.device.rf.tag.result.ReadResult;
 import mockit.Mocked;
 import mockit.NonStrictExpectations;
 import mockit.Verifications;
@@ -167,7 +170,7 @@ public class MainControllerTest {
 		 * Test: 
 		 * 	- setConfiguration called with two config objects and no unsaved changes
 		 * Expected:
-		 * - setConfigObject on config manager instance called per config object
+		 * - setConfigurations on config manager instance called once with all config objects
 		 * - saveConfig is not called 
 		 */
 		setField(MainController.class, "instance", null);
@@ -185,8 +188,8 @@ public class MainControllerTest {
 
 		new Verifications() {
 			{
-				configManager.setConfiguration(withInstanceOf(Configuration.class));
-				times = configs.size();
+				configManager.setConfigurations(withSameInstance(configs));
+				times = 1;
 
 				configManager.saveConfig();
 				times = 0;
@@ -197,7 +200,7 @@ public class MainControllerTest {
 		 * Test: 
 		 * 	- setConfiguration called with two config objects and unsaved changes are true
 		 * Expected:
-		 * - setConfigObject on config manager instance called per config object
+		 * - setConfigurations on config manager instance called once with all config objects
 		 * - saveConfig is called 
 		 */
 		new NonStrictExpectations() {
@@ -215,9 +218,8 @@ public class MainControllerTest {
 
 		new Verifications() {
 			{
-				configManager
-						.setConfiguration(withInstanceOf(Configuration.class));
-				times = configs.size();
+				configManager.setConfigurations(withSameInstance(configs));
+				times = 1;
 
 				configManager.saveConfig();
 				times = 1;
@@ -225,13 +227,13 @@ public class MainControllerTest {
 		};
 		/*
 		 * Test: 
-		 * 	- setConfigObject of config manager throws parameter exception
+		 * 	- setConfigurations of config manager throws parameter exception
 		 * Expected:
 		 * - parameter exception is thrown 
 		 */
 		new NonStrictExpectations() {
 			{
-				configManager.setConfiguration(withInstanceOf(Configuration.class));
+				configManager.setConfigurations(withSameInstance(configs));
 				result = new ParameterException();
 			}
 		};
@@ -714,6 +716,92 @@ public class MainControllerTest {
 		}};
 	}
 
+	@Test
+	public void testExecuteCached(@Mocked final TestHardwareManager hwMgr, @Mocked final ConfigurationManager configManager) throws ImplementationException,
+			ParameterException {
+		setField(MainController.class, "instance", null);
+		MainController mc = MainController.getInstance();
+		MemoryBankCache cache = new MemoryBankCache(RFUtils.BANK_USR, 10, 0, 0);
+		List<MemoryBankCache> caches = getField(mc, "memoryBankCaches");
+		caches.add(cache);
+
+		final List<TagOperation> operations = Arrays.<TagOperation> asList(RFUtils.newReadOperation("rd", RFUtils.BANK_USR, 0, 1, 0));
+		TagData cached = new TagData();
+		cached.setEpc(new byte[] { 1, 1 });
+		ReadResult cachedResult = new ReadResult();
+		cachedResult.setOperationId("rd");
+		cachedResult.setResult(ReadResult.Result.SUCCESS);
+		cachedResult.setReadData(new byte[] { 5, 5 });
+		cached.getResultList().add(cachedResult);
+		cache.update(operations, Arrays.asList(cached));
+
+		// inventory finds a cached and an uncached tag
+		final TagDataList inventory = new TagDataList();
+		inventory.getEntryList().add(new TagData());
+		inventory.getEntryList().get(0).setEpc(new byte[] { 1, 1 });
+		inventory.getEntryList().add(new TagData());
+		inventory.getEntryList().get(1).setEpc(new byte[] { 2, 2 });
+		inventory.getEntryList().get(1).setPc((short) 0x0800);
+		final TagDataList live = new TagDataList();
+		live.getEntryList().add(new TagData());
+		live.getEntryList().get(0).setEpc(new byte[] { 2, 2 });
+		ReadResult liveResult = new ReadResult();
+		liveResult.setOperationId("rd");
+		liveResult.setResult(ReadResult.Result.SUCCESS);
+		liveResult.setReadData(new byte[] { 6, 6 });
+		live.getEntryList().get(0).getResultList().add(liveResult);
+		new NonStrictExpectations() {
+			{
+				hwMgr.execute((List<Short>) any, (List<Filter>) any, (List<TagOperation>) any, (RFConsumer) any);
+				returns(inventory, live);
+			}
+		};
+
+		final List<Filter> filters = Arrays.asList(new Filter());
+		List<TagData> tags = mc.execute(Arrays.asList((short) 1), filters, operations);
+
+		// only the uncached tag is read, selected by PC and EPC
+		assertEquals(2, tags.size());
+		assertArrayEquals(new byte[] { 5, 5 }, ((ReadResult) tags.get(0).getResultList().get(0)).getReadData());
+		assertArrayEquals(new byte[] { 6, 6 }, ((ReadResult) tags.get(1).getResultList().get(0)).getReadData());
+		new Verifications() {
+			{
+				List<List<Filter>> cptFilters = new ArrayList<>();
+				List<List<TagOperation>> cptOperations = new ArrayList<>();
+				hwMgr.execute((List<Short>) any, withCapture(cptFilters), withCapture(cptOperations), (RFConsumer) any);
+				times = 2;
+				assertTrue(cptOperations.get(0).isEmpty());
+				assertEquals(2, cptFilters.get(1).size());
+				Filter filter = cptFilters.get(1).get(1);
+				assertEquals(RFUtils.BANK_EPC, filter.getBank());
+				assertEquals(0x10, filter.getBitOffset());
+				assertEquals(32, filter.getBitLength());
+				assertArrayEquals(new byte[] { 0x08, 0x00, 2, 2 }, filter.getData());
+			}
+		};
+
+		// the tag read is cached now, a tag not responding gets failed results
+		inventory.getEntryList().get(1).getResultList().clear();
+		inventory.getEntryList().get(0).getResultList().clear();
+		inventory.getEntryList().add(new TagData());
+		inventory.getEntryList().get(2).setEpc(new byte[] { 3, 3 });
+		new NonStrictExpectations() {
+			{
+				hwMgr.execute((List<Short>) any, (List<Filter>) any, (List<TagOperation>) any, (RFConsumer) any);
+				returns(inventory, new TagDataList());
+			}
+		};
+		tags = mc.execute(Arrays.asList((short) 1), filters, operations);
+		assertArrayEquals(new byte[] { 6, 6 }, ((ReadResult) tags.get(1).getResultList().get(0)).getReadData());
+		assertEquals(ReadResult.Result.NO_RESPONSE_FROM_TAG, ((ReadResult) tags.get(2).getResultList().get(0)).getResult());
+		new Verifications() {
+			{
+				hwMgr.execute((List<Short>) any, (List<Filter>) any, (List<TagOperation>) any, (RFConsumer) any);
+				times = 2;
+			}
+		};
+	}
+
 	@Test
 	public void testGetHardwareManager(@Mocked final TestHardwareManager hwMgr, @Mocked final ConfigurationManager configManager) throws ImplementationException {
 		/*
@@ -736,6 +824,8 @@ public class MainControllerTest {
 		new Verifications() {{
 			hwMgr.installFirmware();
 			times = 1;
+			configManager.invalidateHardwareInfo();
+			times = 1;
 		}};
 	}
 	
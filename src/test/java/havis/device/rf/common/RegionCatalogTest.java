@@ -0,0 +1,121 @@
+package havis.device.rf.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.configuration.RFRegion;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class RegionCatalogTest {
+
+	@Test
+	public void testLazyLoading() throws Exception {
+		final List<String> loaded = new ArrayList<>();
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < 500; i++)
+			ids.add("R" + i);
+		RegionCatalog catalog = new RegionCatalog("regions/", ids, getClass().getClassLoader()) {
+			@Override
+			RFRegion load(String id) {
+				loaded.add(id);
+				if (id.equals("R13"))
+					return null;
+				RFRegion region = new RFRegion();
+				region.setId(id);
+				return region;
+			}
+		};
+		assertEquals(500, catalog.size());
+		assertTrue(catalog.containsKey("R499"));
+		assertFalse(catalog.containsKey("X"));
+		assertEquals("R0", catalog.keySet().iterator().next());
+		assertTrue(loaded.isEmpty());
+
+		RFRegion region = catalog.get("R7");
+		assertEquals("R7", region.getId());
+		assertSame(region, catalog.get("R7"));
+		assertNull(catalog.get("X"));
+		assertEquals(Arrays.asList("R7"), loaded);
+		assertEquals(1, catalog.getLoadedCount());
+
+		// regions failing to load are removed
+		assertNull(catalog.get("R13"));
+		assertNull(catalog.get("R13"));
+		assertEquals(Arrays.asList("R7", "R13"), loaded);
+		assertFalse(catalog.containsKey("R13"));
+		assertFalse(catalog.keySet().contains("R13"));
+		assertEquals(499, catalog.keySet().size());
+		int count = 0;
+		for (String id : catalog.keySet()) {
+			assertFalse(id.equals("R13"));
+			count++;
+		}
+		assertEquals(499, count);
+
+		// the map is read-only
+		try {
+			catalog.put("X", new RFRegion());
+			throw new AssertionError("Region added");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			catalog.keySet().remove("R7");
+			throw new AssertionError("Region removed");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+
+		// iterating the entries loads all regions
+		count = 0;
+		for (Map.Entry<String, RFRegion> entry : catalog.entrySet()) {
+			assertEquals(entry.getKey(), entry.getValue().getId());
+			count++;
+		}
+		assertEquals(499, count);
+		assertEquals(500, loaded.size());
+	}
+
+	@Test
+	public void testLoad() throws Exception {
+		File directory = Files.createTempDirectory("regions_").toFile();
+		File regions = new File(directory, "regions");
+		File file = new File(regions, "XY.json");
+		try {
+			regions.mkdir();
+			Files.write(file.toPath(), "{ \"id\" : \"XY\" }".getBytes(StandardCharsets.UTF_8));
+			try (URLClassLoader classLoader = new URLClassLoader(new URL[] { directory.toURI().toURL() }, null)) {
+				RegionCatalog catalog = new RegionCatalog("regions/", Arrays.asList("XY", "Missing"), classLoader);
+				assertEquals("XY", catalog.get("XY").getId());
+				assertNull(catalog.get("Missing"));
+				assertEquals(Arrays.asList("XY"), new ArrayList<>(catalog.keySet()));
+				assertEquals(regions.getCanonicalFile(), catalog.getDirectory().getCanonicalFile());
+
+				// changed regions are loaded again after invalidation
+				Files.write(file.toPath(), "{ \"id\" : \"XYZ\" }".getBytes(StandardCharsets.UTF_8));
+				assertEquals("XY", catalog.get("XY").getId());
+				catalog.invalidate("XY");
+				assertEquals("XYZ", catalog.get("XY").getId());
+				catalog.invalidate("Missing");
+				assertTrue(catalog.containsKey("Missing"));
+			}
+		} finally {
+			file.delete();
+			regions.delete();
+			directory.delete();
+		}
+	}
+}
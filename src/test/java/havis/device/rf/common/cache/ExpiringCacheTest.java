@@ -0,0 +1,70 @@
+package havis.device.rf.common.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class ExpiringCacheTest {
+
+	static class TestCache<K, V> extends ExpiringCache<K, V> {
+		long time;
+
+		TestCache(int capacity, long timeToLive) {
+			super(capacity, timeToLive);
+		}
+
+		@Override
+		long now() {
+			return time;
+		}
+	}
+
+	@Test
+	public void testExpiringCache() {
+		try {
+			new ExpiringCache<String, String>(0, 1);
+			fail("Exception expected");
+		} catch (IllegalArgumentException e) {
+		}
+
+		TestCache<String, String> cache = new TestCache<>(2, 100);
+		assertEquals(2, cache.getCapacity());
+		assertEquals(100, cache.getTimeToLive());
+		cache.put("a", "1");
+		cache.put("b", "2");
+		assertEquals("1", cache.get("a"));
+		assertEquals(2, cache.size());
+
+		// least recently used entry is removed
+		cache.put("c", "3");
+		assertNull(cache.get("b"));
+		assertEquals("1", cache.get("a"));
+		assertEquals("3", cache.get("c"));
+
+		// expiry
+		cache.time = 99;
+		assertEquals("1", cache.get("a"));
+		cache.put("c", "4");
+		cache.time = 100;
+		assertNull(cache.get("a"));
+		assertEquals("4", cache.get("c"));
+		assertEquals(1, cache.size());
+		cache.time = 199;
+		assertEquals(0, cache.size());
+
+		cache.put("a", "1");
+		assertEquals("1", cache.remove("a"));
+		assertNull(cache.remove("a"));
+		cache.put("a", "1");
+		cache.clear();
+		assertEquals(0, cache.size());
+
+		// no expiry
+		cache = new TestCache<>(1, 0);
+		cache.put("a", "1");
+		cache.time = Long.MAX_VALUE - 1;
+		assertEquals("1", cache.get("a"));
+	}
+}
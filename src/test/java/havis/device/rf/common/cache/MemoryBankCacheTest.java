@@ -0,0 +1,243 @@
+package havis.device.rf.common.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.operation.KillOperation;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.operation.WriteOperation;
+import havis.device.rf.tag.result.KillResult;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MemoryBankCacheTest {
+
+	private static final byte[] TID = new byte[] { (byte) 0xE2, (byte) 0x80, 0x11, 0x05, 0x20, 0x00, 0x12, 0x34 };
+
+	@Test
+	public void testIsReadList() {
+		MemoryBankCache cache = new MemoryBankCache(RFUtils.BANK_TID, 10, 0, 0.9);
+		assertEquals(RFUtils.BANK_TID, cache.getBank());
+		assertFalse(cache.isReadList(null));
+		assertFalse(cache.isReadList(new ArrayList<TagOperation>()));
+		assertTrue(cache.isReadList(Arrays.<TagOperation> asList(read("t", RFUtils.BANK_TID, 0, 4))));
+		assertFalse(cache.isReadList(Arrays.<TagOperation> asList(read("t", RFUtils.BANK_TID, 0, 4), read("u", RFUtils.BANK_USR, 0, 4))));
+		assertFalse(cache.isReadList(Arrays.<TagOperation> asList(read("t", RFUtils.BANK_TID, 0, 4), new KillOperation())));
+	}
+
+	@Test
+	public void testServe() {
+		MemoryBankCache cache = new MemoryBankCache(RFUtils.BANK_TID, 10, 0, 0.9);
+		List<TagOperation> operations = Arrays.<TagOperation> asList(read("t", RFUtils.BANK_TID, 0, 4));
+		assertFalse(cache.isEffective(operations));
+
+		// first execution reads the TID
+		TagData tag = tag(1);
+		tag.getResultList().add(readResult("t", ReadResult.Result.SUCCESS, TID));
+		cache.update(operations, Arrays.asList(tag));
+		assertEquals(0, cache.getHitRatio(), 0);
+
+		// following executions find the tag
+		for (int i = 0; i < 4; i++)
+			cache.update(operations, Arrays.asList(tag));
+		assertTrue(cache.getHitRatio() > 0.9);
+		assertTrue(cache.isEffective(operations));
+		assertFalse(cache.isEffective(Arrays.<TagOperation> asList(read("u", RFUtils.BANK_USR, 0, 4))));
+
+		// serve from inventory
+		List<TagOperation> subRange = Arrays.<TagOperation> asList(read("a", RFUtils.BANK_TID, 2, 2), read("b", RFUtils.BANK_TID, 0, 1));
+		TagData inventoried = tag(1);
+		assertTrue(cache.serve(subRange, Arrays.asList(inventoried)));
+		assertEquals(2, inventoried.getResultList().size());
+		ReadResult result = (ReadResult) inventoried.getResultList().get(0);
+		assertEquals("a", result.getOperationId());
+		assertEquals(ReadResult.Result.SUCCESS, result.getResult());
+		assertArrayEquals(Arrays.copyOfRange(TID, 4, 8), result.getReadData());
+		assertArrayEquals(Arrays.copyOfRange(TID, 0, 2), ((ReadResult) inventoried.getResultList().get(1)).getReadData());
+
+		// range not cached
+		inventoried = tag(1);
+		assertFalse(cache.serve(Arrays.<TagOperation> asList(read("t", RFUtils.BANK_TID, 2, 4)), Arrays.asList(inventoried)));
+		assertFalse(cache.serve(Arrays.<TagOperation> asList(read("t", RFUtils.BANK_TID, 0, 0)), Arrays.asList(inventoried)));
+		assertTrue(inventoried.getResultList().isEmpty());
+
+		// unknown tag
+		assertFalse(cache.serve(operations, Arrays.asList(tag(1), tag(2))));
+		TagData unknown = tag(2);
+		inventoried = tag(1);
+		assertEquals(Arrays.asList(unknown), cache.servePartially(operations, Arrays.asList(inventoried, unknown)));
+		assertEquals(1, inventoried.getResultList().size());
+		assertTrue(unknown.getResultList().isEmpty());
+		assertTrue(cache.getHitRatio() < 0.9);
+		assertFalse(cache.isEffective(operations));
+	}
+
+	@Test
+	public void testUpdate() {
+		MemoryBankCache cache = new MemoryBankCache(RFUtils.BANK_TID, 10, 0, 0);
+		List<TagOperation> operations = Arrays.<TagOperation> asList(read("t", RFUtils.BANK_TID, 0, 0));
+		TagData tag = tag(1);
+		tag.getResultList().add(readResult("t", ReadResult.Result.MEMORY_LOCKED_ERROR, new byte[0]));
+		cache.update(operations, Arrays.asList(tag));
+		assertFalse(cache.serve(operations, Arrays.asList(tag(1))));
+
+		// complete bank is cached
+		tag = tag(1);
+		tag.getResultList().add(readResult("t", ReadResult.Result.SUCCESS, TID));
+		cache.update(operations, Arrays.asList(tag));
+		TagData inventoried = tag(1);
+		assertTrue(cache.serve(Arrays.<TagOperation> asList(read("a", RFUtils.BANK_TID, 1, 0)), Arrays.asList(inventoried)));
+		assertArrayEquals(Arrays.copyOfRange(TID, 2, 8), ((ReadResult) inventoried.getResultList().get(0)).getReadData());
+
+		// smaller reads do not replace the cached data
+		tag = tag(1);
+		tag.getResultList().add(readResult("s", ReadResult.Result.SUCCESS, Arrays.copyOf(TID, 2)));
+		cache.update(Arrays.<TagOperation> asList(read("s", RFUtils.BANK_TID, 0, 1)), Arrays.asList(tag));
+		assertTrue(cache.serve(operations, Arrays.asList(tag(1))));
+
+		// EPC write removes the tag
+		WriteOperation write = new WriteOperation();
+		write.setOperationId("w");
+		write.setBank(RFUtils.BANK_EPC);
+		write.setOffset((short) 2);
+		write.setData(new byte[] { 1, 2 });
+		tag = tag(1);
+		WriteResult writeResult = new WriteResult();
+		writeResult.setOperationId("w");
+		writeResult.setResult(WriteResult.Result.MEMORY_LOCKED_ERROR);
+		tag.getResultList().add(writeResult);
+		cache.update(Arrays.<TagOperation> asList(write), Arrays.asList(tag));
+		assertTrue(cache.serve(operations, Arrays.asList(tag(1))));
+		writeResult.setResult(WriteResult.Result.SUCCESS);
+		writeResult.setWordsWritten((short) 1);
+		cache.update(Arrays.<TagOperation> asList(write), Arrays.asList(tag));
+		assertFalse(cache.serve(operations, Arrays.asList(tag(1))));
+
+		// kill removes the tag
+		tag = tag(1);
+		tag.getResultList().add(readResult("t", ReadResult.Result.SUCCESS, TID));
+		cache.update(operations, Arrays.asList(tag));
+		KillOperation kill = new KillOperation();
+		kill.setOperationId("k");
+		KillResult killResult = new KillResult();
+		killResult.setOperationId("k");
+		killResult.setResult(KillResult.Result.SUCCESS);
+		tag = tag(1);
+		tag.getResultList().add(killResult);
+		cache.update(Arrays.<TagOperation> asList(kill), Arrays.asList(tag));
+		assertFalse(cache.serve(operations, Arrays.asList(tag(1))));
+
+		cache.clear();
+		assertEquals(0, cache.getHitRatio(), 0);
+	}
+
+	@Test
+	public void testWriteThrough() {
+		MemoryBankCache cache = new MemoryBankCache(RFUtils.BANK_USR, 10, 0, 0);
+		List<TagOperation> operations = Arrays.<TagOperation> asList(read("u", RFUtils.BANK_USR, 0, 4));
+		TagData tag = tag(1);
+		tag.getResultList().add(readResult("u", ReadResult.Result.SUCCESS, new byte[] { 0, 1, 2, 3, 4, 5, 6, 7 }));
+		cache.update(operations, Arrays.asList(tag));
+
+		// overlapping write, second word not written
+		WriteOperation write = write("w", RFUtils.BANK_USR, 3, 9, 9, 9, 9);
+		tag = tag(1);
+		tag.getResultList().add(writeResult("w", WriteResult.Result.MEMORY_OVERRUN_ERROR, 1));
+		cache.update(Arrays.<TagOperation> asList(write), Arrays.asList(tag));
+		TagData inventoried = tag(1);
+		assertTrue(cache.serve(Arrays.<TagOperation> asList(read("a", RFUtils.BANK_USR, 0, 4)), Arrays.asList(inventoried)));
+		assertArrayEquals(new byte[] { 0, 1, 2, 3, 4, 5, 9, 9 }, ((ReadResult) inventoried.getResultList().get(0)).getReadData());
+		assertFalse(cache.serve(Arrays.<TagOperation> asList(read("a", RFUtils.BANK_USR, 0, 5)), Arrays.asList(tag(1))));
+
+		// adjacent write extends the cached words
+		tag = tag(1);
+		tag.getResultList().add(writeResult("w", WriteResult.Result.SUCCESS, 2));
+		cache.update(Arrays.<TagOperation> asList(write("w", RFUtils.BANK_USR, 4, 8, 8, 8, 8)), Arrays.asList(tag));
+		inventoried = tag(1);
+		assertTrue(cache.serve(Arrays.<TagOperation> asList(read("a", RFUtils.BANK_USR, 3, 3)), Arrays.asList(inventoried)));
+		assertArrayEquals(new byte[] { 9, 9, 8, 8, 8, 8 }, ((ReadResult) inventoried.getResultList().get(0)).getReadData());
+
+		// distant write does not replace the cached words, write to other bank
+		// is ignored
+		tag = tag(1);
+		tag.getResultList().add(writeResult("w", WriteResult.Result.SUCCESS, 1));
+		cache.update(Arrays.<TagOperation> asList(write("w", RFUtils.BANK_USR, 20, 7, 7)), Arrays.asList(tag));
+		cache.update(Arrays.<TagOperation> asList(write("w", RFUtils.BANK_PSW, 0, 7, 7)), Arrays.asList(tag));
+		inventoried = tag(1);
+		assertTrue(cache.serve(Arrays.<TagOperation> asList(read("a", RFUtils.BANK_USR, 0, 6)), Arrays.asList(inventoried)));
+		assertArrayEquals(new byte[] { 0, 1, 2, 3, 4, 5, 9, 9, 8, 8, 8, 8 }, ((ReadResult) inventoried.getResultList().get(0)).getReadData());
+
+		// write to unknown tag is cached
+		tag = tag(2);
+		tag.getResultList().add(writeResult("w", WriteResult.Result.SUCCESS, 1));
+		cache.update(Arrays.<TagOperation> asList(write("w", RFUtils.BANK_USR, 2, 7, 7)), Arrays.asList(tag));
+		inventoried = tag(2);
+		assertTrue(cache.serve(Arrays.<TagOperation> asList(read("a", RFUtils.BANK_USR, 2, 1)), Arrays.asList(inventoried)));
+		assertArrayEquals(new byte[] { 7, 7 }, ((ReadResult) inventoried.getResultList().get(0)).getReadData());
+
+		// read of distant words replaces the cached words
+		tag = tag(2);
+		tag.getResultList().add(readResult("u", ReadResult.Result.SUCCESS, new byte[] { 5, 5 }));
+		cache.update(Arrays.<TagOperation> asList(read("u", RFUtils.BANK_USR, 10, 1)), Arrays.asList(tag));
+		assertFalse(cache.serve(Arrays.<TagOperation> asList(read("a", RFUtils.BANK_USR, 2, 1)), Arrays.asList(tag(2))));
+		assertTrue(cache.serve(Arrays.<TagOperation> asList(read("a", RFUtils.BANK_USR, 10, 1)), Arrays.asList(tag(2))));
+		assertTrue(cache.isHeldByAny(10, new byte[] { 5, 5 }));
+		assertTrue(cache.isHeldByAny(3, new byte[] { 9, 9, 8, 8 }));
+		assertFalse(cache.isHeldByAny(3, new byte[] { 9, 9, 8, 7 }));
+		assertFalse(cache.isHeldByAny(9, new byte[] { 0, 0, 5, 5 }));
+		assertFalse(cache.isHeldByAny(0, new byte[0]));
+	}
+
+	private static WriteOperation write(String id, short bank, int offset, int... data) {
+		WriteOperation operation = new WriteOperation();
+		operation.setOperationId(id);
+		operation.setBank(bank);
+		operation.setOffset((short) offset);
+		byte[] bytes = new byte[data.length];
+		for (int i = 0; i < data.length; i++)
+			bytes[i] = (byte) data[i];
+		operation.setData(bytes);
+		return operation;
+	}
+
+	private static WriteResult writeResult(String id, WriteResult.Result result, int wordsWritten) {
+		WriteResult writeResult = new WriteResult();
+		writeResult.setOperationId(id);
+		writeResult.setResult(result);
+		writeResult.setWordsWritten((short) wordsWritten);
+		return writeResult;
+	}
+
+	private static TagData tag(int epc) {
+		TagData tag = new TagData();
+		tag.setEpc(RFUtils.intToBytes(epc));
+		return tag;
+	}
+
+	private static ReadOperation read(String id, short bank, int offset, int length) {
+		ReadOperation operation = new ReadOperation();
+		operation.setOperationId(id);
+		operation.setBank(bank);
+		operation.setOffset((short) offset);
+		operation.setLength((short) length);
+		return operation;
+	}
+
+	private static ReadResult readResult(String id, ReadResult.Result result, byte[] data) {
+		ReadResult readResult = new ReadResult();
+		readResult.setOperationId(id);
+		readResult.setResult(result);
+		readResult.setReadData(data);
+		return readResult;
+	}
+}
@@ -0,0 +1,345 @@
+package havis.device.rf.common.commission;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.TagDataList;
+import havis.device.rf.tag.operation.LockOperation;
+import havis.device.rf.tag.operation.LockOperation.Privilege;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.operation.WriteOperation;
+import havis.device.rf.tag.result.LockResult;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CommissionerTest {
+
+	/**
+	 * A tag with EPC and user memory
+	 */
+	static class SimulatedTag {
+		private static int serial;
+		short pc;
+		byte[] epc;
+		byte[] tid = new byte[] { (byte) 0xE2, (byte) 0x80, 0x11, 0x05, 0x20, 0x00, 0, (byte) ++serial };
+		byte[] user = new byte[8];
+		boolean locked;
+		boolean corrupt;
+		// PC bits set by the tag on writing the PC
+		int computedPcBits;
+		final List<LockOperation.Field> lockedFields = new ArrayList<>();
+
+		SimulatedTag(byte[] epc) {
+			this.epc = epc;
+			this.pc = (short) (epc.length / 2 << 11 | 0x0100);
+		}
+	}
+
+	/**
+	 * Executes operations on simulated tags
+	 */
+	static class TestExecutor implements Commissioner.OperationExecutor {
+		final List<SimulatedTag> tags = new ArrayList<>();
+		final List<List<TagOperation>> executions = new ArrayList<>();
+
+		@Override
+		public TagDataList execute(List<Filter> filters, List<TagOperation> operations) {
+			executions.add(operations);
+			TagDataList tdl = new TagDataList();
+			for (SimulatedTag tag : tags) {
+				if (!matches(tag, filters))
+					continue;
+				TagData data = new TagData();
+				data.setEpc(tag.epc);
+				data.setPc(tag.pc);
+				for (TagOperation operation : operations)
+					data.getResultList().add(execute(tag, operation));
+				tdl.getEntryList().add(data);
+			}
+			return tdl;
+		}
+
+		private static boolean matches(SimulatedTag tag, List<Filter> filters) {
+			for (Filter filter : filters) {
+				// byte aligned filters only
+				byte[] bank = filter.getBank() == RFUtils.BANK_TID ? tag.tid : epcBank(tag);
+				int from = filter.getBitOffset() / 8;
+				if (bank == null || from + filter.getData().length > bank.length
+						|| !Arrays.equals(filter.getData(), Arrays.copyOfRange(bank, from, from + filter.getData().length)))
+					return false;
+			}
+			return true;
+		}
+
+		private static byte[] epcBank(SimulatedTag tag) {
+			byte[] bank = new byte[tag.epc.length + 4];
+			bank[2] = (byte) (tag.pc >> 8);
+			bank[3] = (byte) tag.pc;
+			System.arraycopy(tag.epc, 0, bank, 4, tag.epc.length);
+			return bank;
+		}
+
+		private static havis.device.rf.tag.result.OperationResult execute(SimulatedTag tag, TagOperation operation) {
+			if (operation instanceof WriteOperation) {
+				WriteOperation write = (WriteOperation) operation;
+				WriteResult result = new WriteResult();
+				result.setOperationId(write.getOperationId());
+				if (tag.locked) {
+					result.setResult(WriteResult.Result.MEMORY_LOCKED_ERROR);
+					return result;
+				}
+				byte[] data = write.getData();
+				if (write.getBank() == RFUtils.BANK_EPC) {
+					tag.pc = (short) ((data[0] & 0xFF) << 8 | data[1] & 0xFF | tag.computedPcBits);
+					tag.epc = Arrays.copyOfRange(data, 2, data.length);
+				} else
+					System.arraycopy(data, 0, tag.user, write.getOffset() * 2, data.length);
+				result.setResult(WriteResult.Result.SUCCESS);
+				result.setWordsWritten((short) (data.length / 2));
+				return result;
+			}
+			if (operation instanceof ReadOperation) {
+				ReadOperation read = (ReadOperation) operation;
+				ReadResult result = new ReadResult();
+				result.setOperationId(read.getOperationId());
+				result.setResult(ReadResult.Result.SUCCESS);
+				byte[] data;
+				if (read.getBank() == RFUtils.BANK_TID) {
+					if (tag.tid == null)
+						result.setResult(ReadResult.Result.MEMORY_OVERRUN_ERROR);
+					result.setReadData(tag.tid);
+					return result;
+				}
+				if (read.getBank() == RFUtils.BANK_EPC) {
+					data = new byte[tag.epc.length + 2];
+					data[0] = (byte) (tag.pc >> 8);
+					data[1] = (byte) tag.pc;
+					System.arraycopy(tag.epc, 0, data, 2, tag.epc.length);
+				} else
+					data = Arrays.copyOf(tag.user, read.getLength() * 2);
+				if (tag.corrupt)
+					data[data.length - 1]++;
+				result.setReadData(data);
+				return result;
+			}
+			LockOperation lock = (LockOperation) operation;
+			tag.lockedFields.add(lock.getField());
+			LockResult result = new LockResult();
+			result.setOperationId(lock.getOperationId());
+			result.setResult(LockResult.Result.SUCCESS);
+			return result;
+		}
+	}
+
+	/**
+	 * Records the progress
+	 */
+	static class TestListener implements CommissioningListener {
+		final List<Assignment> commissioned = new ArrayList<>();
+		final List<Assignment> failed = new ArrayList<>();
+		final List<String> reasons = new ArrayList<>();
+		int rounds;
+		int cancelAfter = Integer.MAX_VALUE;
+
+		@Override
+		public void commissioned(Assignment assignment, TagData tag) {
+			commissioned.add(assignment);
+		}
+
+		@Override
+		public void failed(Assignment assignment, TagData tag, String reason) {
+			failed.add(assignment);
+			reasons.add(reason);
+		}
+
+		@Override
+		public void roundCompleted(int round, int tags, int newTags) {
+			rounds = round;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return commissioned.size() >= cancelAfter;
+		}
+	}
+
+	@Test
+	public void testRun() throws Exception {
+		TestExecutor executor = new TestExecutor();
+		SimulatedTag first = new SimulatedTag(new byte[] { 1, 1, 1, 1 });
+		SimulatedTag second = new SimulatedTag(new byte[] { 2, 2, 2, 2 });
+		executor.tags.add(first);
+		executor.tags.add(second);
+		CommissioningOptions options = new CommissioningOptions();
+		options.setLockPrivilege(Privilege.LOCK);
+		TestListener listener = new TestListener();
+
+		Assignment a1 = new Assignment(new byte[] { 0x30, 0, 0, 0, 0, 1 }, new byte[] { 1, 2 });
+		Assignment a2 = new Assignment(new byte[] { 0x30, 0, 0, 0, 0, 2 });
+		assertEquals(2, new Commissioner(executor, options).run(Arrays.asList(a1, a2).iterator(), listener));
+		assertEquals(Arrays.asList(a1, a2), listener.commissioned);
+		assertTrue(listener.failed.isEmpty());
+		assertEquals(1, listener.rounds);
+
+		// PC length bits are updated, other bits are kept
+		assertArrayEquals(a1.getEpc(), first.epc);
+		assertEquals(3 << 11 | 0x0100, first.pc);
+		assertArrayEquals(new byte[] { 1, 2, 0, 0, 0, 0, 0, 0 }, first.user);
+		assertEquals(Arrays.asList(LockOperation.Field.EPC_MEMORY, LockOperation.Field.USER_MEMORY), first.lockedFields);
+		assertArrayEquals(a2.getEpc(), second.epc);
+		assertEquals(Arrays.asList(LockOperation.Field.EPC_MEMORY), second.lockedFields);
+		// inventory reading the TIDs and one execution per tag
+		assertEquals(3, executor.executions.size());
+		assertEquals(Commissioner.READ_TID_ID, executor.executions.get(0).get(0).getOperationId());
+		assertEquals(6, executor.executions.get(1).size());
+
+		// commissioned tags are no longer selected
+		listener = new TestListener();
+		options.setFilters(Arrays.asList(RFUtils.newFilter(RFUtils.BANK_EPC, 0x20, new byte[] { 1, 1 }, null, 16, true)));
+		options.setMaxIdleRounds(2);
+		Iterator<Assignment> assignments = Arrays.asList(new Assignment(new byte[] { 0x30, 0, 0, 0, 0, 3 })).iterator();
+		assertEquals(0, new Commissioner(executor, options).run(assignments, listener));
+		assertTrue(listener.failed.isEmpty());
+		assertEquals(2, listener.rounds);
+		// the assignment has not been taken
+		assertTrue(assignments.hasNext());
+	}
+
+	@Test
+	public void testFailures() throws Exception {
+		TestExecutor executor = new TestExecutor();
+		SimulatedTag locked = new SimulatedTag(new byte[] { 1, 1 });
+		locked.locked = true;
+		SimulatedTag duplicate1 = new SimulatedTag(new byte[] { 2, 2 });
+		SimulatedTag duplicate2 = new SimulatedTag(new byte[] { 2, 2 });
+		SimulatedTag corrupt = new SimulatedTag(new byte[] { 3, 3 });
+		corrupt.corrupt = true;
+		SimulatedTag clone1 = new SimulatedTag(new byte[] { 4, 4 });
+		SimulatedTag clone2 = new SimulatedTag(new byte[] { 4, 4 });
+		clone2.tid = clone1.tid;
+		SimulatedTag good = new SimulatedTag(new byte[] { 5, 5 });
+		executor.tags.addAll(Arrays.asList(locked, duplicate1, duplicate2, corrupt, clone1, clone2, good));
+		CommissioningOptions options = new CommissioningOptions();
+		options.setMaxIdleRounds(1);
+		TestListener listener = new TestListener();
+
+		Assignment a1 = new Assignment(new byte[] { 0x30, 1 });
+		Assignment a2 = new Assignment(new byte[] { 0x30, 2 });
+		Assignment a3 = new Assignment(new byte[] { 0x30, 3 });
+		Assignment a4 = new Assignment(new byte[] { 0x30, 4 });
+		assertEquals(3, new Commissioner(executor, options).run(Arrays.asList(a1, a2, a3, a4).iterator(), listener));
+
+		// nothing written to the locked tag, tags with the same EPC are
+		// selected by their TID, the assignment written to tags with the same
+		// TID is written to the next tag
+		assertEquals(Arrays.asList(a1, a3, a4), listener.failed);
+		assertTrue(listener.reasons.get(0).contains("MEMORY_LOCKED_ERROR"));
+		assertTrue(listener.reasons.get(1).startsWith("Verification of verifyEpc failed"));
+		assertEquals("2 tags with the same TID", listener.reasons.get(2));
+		assertEquals(Arrays.asList(a1, a2, a4), listener.commissioned);
+		assertArrayEquals(a1.getEpc(), duplicate1.epc);
+		assertArrayEquals(a2.getEpc(), duplicate2.epc);
+		assertArrayEquals(a4.getEpc(), good.epc);
+		assertArrayEquals(new byte[] { 1, 1 }, locked.epc);
+
+		// tags without TID are selected by their PC and EPC
+		executor.tags.clear();
+		SimulatedTag noTid1 = new SimulatedTag(new byte[] { 6, 6 });
+		noTid1.tid = null;
+		SimulatedTag noTid2 = new SimulatedTag(new byte[] { 6, 6, 6, 6 });
+		noTid2.tid = null;
+		executor.tags.addAll(Arrays.asList(noTid1, noTid2));
+		listener = new TestListener();
+		Assignment a5 = new Assignment(new byte[] { 0x30, 5 });
+		Assignment a6 = new Assignment(new byte[] { 0x30, 6 });
+		assertEquals(2, new Commissioner(executor, options).run(Arrays.asList(a5, a6).iterator(), listener));
+		assertArrayEquals(a5.getEpc(), noTid1.epc);
+		assertArrayEquals(a6.getEpc(), noTid2.epc);
+
+		// assignment taken but not written
+		executor.tags.clear();
+		executor.tags.add(locked);
+		listener = new TestListener();
+		Assignment a7 = new Assignment(new byte[] { 0x30, 7 });
+		assertEquals(0, new Commissioner(executor, options).run(Arrays.asList(a7).iterator(), listener));
+		assertEquals(Arrays.asList(a7, a7), listener.failed);
+		assertEquals("No tag left for assignment", listener.reasons.get(1));
+	}
+
+	@Test
+	public void testUmi() throws Exception {
+		// the UMI bit of the PC computed by the tag is ignored by the
+		// verification
+		TestExecutor executor = new TestExecutor();
+		SimulatedTag tag = new SimulatedTag(new byte[] { 1, 1 });
+		tag.computedPcBits = Commissioner.PC_UMI;
+		executor.tags.add(tag);
+		CommissioningOptions options = new CommissioningOptions();
+		TestListener listener = new TestListener();
+		Assignment a1 = new Assignment(new byte[] { 0x30, 1 }, new byte[] { 1, 2 });
+		assertEquals(1, new Commissioner(executor, options).run(Arrays.asList(a1).iterator(), listener));
+		assertTrue(listener.failed.isEmpty());
+		assertEquals(1 << 11 | Commissioner.PC_UMI | 0x0100, tag.pc);
+
+		// other differences of the PC fail
+		executor.tags.clear();
+		tag = new SimulatedTag(new byte[] { 2, 2 });
+		tag.computedPcBits = 0x0200;
+		executor.tags.add(tag);
+		listener = new TestListener();
+		assertEquals(0, new Commissioner(executor, options).run(Arrays.asList(new Assignment(new byte[] { 0x30, 2 })).iterator(), listener));
+		assertTrue(listener.reasons.get(0).startsWith("Verification of verifyEpc failed"));
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		TestExecutor executor = new TestExecutor();
+		executor.tags.add(new SimulatedTag(new byte[] { 1, 1 }));
+		executor.tags.add(new SimulatedTag(new byte[] { 2, 2 }));
+		CommissioningOptions options = new CommissioningOptions();
+		options.setVerify(false);
+		TestListener listener = new TestListener();
+		listener.cancelAfter = 1;
+
+		Assignment a1 = new Assignment(new byte[] { 0x30, 1 });
+		Assignment a2 = new Assignment(new byte[] { 0x30, 2 });
+		assertEquals(1, new Commissioner(executor, options).run(Arrays.asList(a1, a2).iterator(), listener));
+		assertEquals(1, executor.executions.get(1).size());
+		assertTrue(listener.failed.isEmpty());
+
+		// no tag found
+		executor.tags.clear();
+		listener = new TestListener();
+		options.setMaxIdleRounds(3);
+		assertEquals(0, new Commissioner(executor, options).run(Arrays.asList(a2).iterator(), listener));
+		assertEquals(3, listener.rounds);
+		assertTrue(listener.failed.isEmpty());
+	}
+
+	@Test
+	public void testAssignment() {
+		Assignment assignment = new Assignment(new byte[] { 1, 2 });
+		assertNull(assignment.getUserData());
+		for (byte[][] invalid : new byte[][][] { { null, null }, { {}, null }, { { 1 }, null }, { new byte[64], null }, { { 1, 2 }, {} },
+				{ { 1, 2 }, { 1 } } }) {
+			try {
+				new Assignment(invalid[0], invalid[1]);
+				throw new AssertionError("Invalid assignment accepted");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package havis.device.rf.common.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.common.util.BitField;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagData;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FilterCompilerTest {
+
+	private static final byte[] EPC = new byte[] { (byte) 0x30, (byte) 0x08, (byte) 0x33, (byte) 0xB2, (byte) 0xDD, (byte) 0xD9, (byte) 0x01, (byte) 0x40,
+			(byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x01 };
+
+	@Test
+	public void testCompile() {
+		TagData tag = tag(EPC, (short) 0x3000, 0);
+
+		/*
+		 * Test:
+		 * 	- no filters
+		 * Expected:
+		 * 	- all tags match
+		 */
+		assertTrue(FilterCompiler.compile(null).matches(tag));
+		assertTrue(FilterCompiler.compile(new ArrayList<Filter>()).matches(tag));
+
+		/*
+		 * Test:
+		 * 	- positive filters on the PC and on the EPC
+		 * Expected:
+		 * 	- tag matches if both apply
+		 */
+		Filter pcFilter = RFUtils.newFilter(RFUtils.BANK_EPC, 16, new byte[] { 0x30 }, new byte[] { (byte) 0xF8 }, 5, true);
+		Filter epcFilter = RFUtils.newFilter(RFUtils.BANK_EPC, 32, new byte[] { 0x30, 0x08 }, new byte[] { (byte) 0xFF, (byte) 0xFF }, 16, true);
+		CompiledFilter compiled = FilterCompiler.compile(Arrays.asList(pcFilter, epcFilter));
+		assertTrue(compiled.isExact());
+		assertFalse(compiled.isUnsatisfiable());
+		assertTrue(compiled.matches(tag));
+		assertFalse(compiled.matches(tag(EPC, (short) 0x2000, 0)));
+		assertFalse(compiled.matches(tag(new byte[] { 0x31, 0x08 }, (short) 0x3000, 0)));
+		// EPC too short
+		assertFalse(compiled.matches(tag(new byte[] { 0x30 }, (short) 0x3000, 0)));
+
+		/*
+		 * Test:
+		 * 	- contradicting positive filters
+		 * Expected:
+		 * 	- no tag matches
+		 */
+		Filter contradiction = RFUtils.newFilter(RFUtils.BANK_EPC, 40, new byte[] { 0x09 }, new byte[] { (byte) 0xFF }, 8, true);
+		compiled = FilterCompiler.compile(Arrays.asList(epcFilter, contradiction));
+		assertTrue(compiled.isUnsatisfiable());
+		assertFalse(compiled.matches(tag));
+
+		/*
+		 * Test:
+		 * 	- negative filters with the same range and mask
+		 * Expected:
+		 * 	- tags matching any of them are excluded
+		 */
+		List<Filter> filters = new ArrayList<>();
+		for (int i = 0; i < 100; i++)
+			filters.add(RFUtils.newFilter(RFUtils.BANK_EPC, 32 + 88, new byte[] { (byte) (2 * i + 1) }, new byte[] { (byte) 0xFF }, 8, false));
+		compiled = FilterCompiler.compile(filters);
+		assertFalse(compiled.matches(tag));
+		byte[] epc = EPC.clone();
+		epc[11] = 2;
+		assertTrue(compiled.matches(tag(epc, (short) 0x3000, 0)));
+
+		/*
+		 * Test:
+		 * 	- filter on XPC words
+		 * Expected:
+		 * 	- evaluated if XI bit is set, otherwise not matching
+		 */
+		Filter xpcFilter = RFUtils.newFilter(RFUtils.BANK_EPC, 0x210, new byte[] { (byte) 0x80 }, new byte[] { (byte) 0x80 }, 1, true);
+		compiled = FilterCompiler.compile(Arrays.asList(xpcFilter, epcFilter));
+		assertTrue(compiled.matches(tag(EPC, (short) 0x3200, 0x80000000)));
+		assertFalse(compiled.matches(tag(EPC, (short) 0x3200, 0x40000000)));
+		assertFalse(compiled.matches(tag(EPC, (short) 0x3000, 0x80000000)));
+
+		/*
+		 * Test:
+		 * 	- filters on other banks
+		 * Expected:
+		 * 	- filters are not evaluated and returned as unresolved
+		 */
+		Filter tidFilter = RFUtils.newFilter(RFUtils.BANK_TID, 0, new byte[] { (byte) 0xE2 }, new byte[] { (byte) 0xFF }, 8, true);
+		Filter gapFilter = RFUtils.newFilter(RFUtils.BANK_EPC, 0x200, new byte[] { 0, 0 }, new byte[] { (byte) 0xFF, (byte) 0xFF }, 32, true);
+		compiled = FilterCompiler.compile(Arrays.asList(tidFilter, gapFilter, epcFilter));
+		assertFalse(compiled.isExact());
+		assertEquals(Arrays.asList(tidFilter, gapFilter), compiled.getUnresolvedFilters());
+		assertTrue(compiled.matches(tag));
+
+		/*
+		 * Test:
+		 * 	- retain
+		 * Expected:
+		 * 	- non-matching tags are removed
+		 */
+		compiled = FilterCompiler.compile(Arrays.asList(epcFilter));
+		List<TagData> tags = new ArrayList<>(Arrays.asList(tag, tag(new byte[] { 0x31, 0x08 }, (short) 0x3000, 0), tag));
+		assertEquals(1, compiled.retain(tags));
+		assertEquals(2, tags.size());
+	}
+
+	@Test
+	public void testSelectHardwareFilters() {
+		Filter tid = RFUtils.newFilter(RFUtils.BANK_TID, 0, new byte[] { (byte) 0xE2 }, new byte[] { (byte) 0xFF }, 8, true);
+		Filter pos = RFUtils.newFilter(RFUtils.BANK_EPC, 32, new byte[] { 0x30 }, new byte[] { (byte) 0xFF }, 8, true);
+		Filter neg = RFUtils.newFilter(RFUtils.BANK_EPC, 40, new byte[] { 0x08 }, new byte[] { (byte) 0xFF }, 8, false);
+
+		assertEquals(Arrays.asList(tid, pos), FilterCompiler.selectHardwareFilters(Arrays.asList(neg, pos, tid), 2));
+		assertEquals(Arrays.asList(tid, pos, neg), FilterCompiler.selectHardwareFilters(Arrays.asList(neg, pos, tid), 6));
+		assertNull(FilterCompiler.selectHardwareFilters(Arrays.asList(tid, tid, neg), 1));
+	}
+
+	@Test
+	public void testCompileRandom() {
+		Random random = new Random(1234);
+		for (int i = 0; i < 2000; i++) {
+			byte[] epc = new byte[2 * (1 + random.nextInt(8))];
+			random.nextBytes(epc);
+			TagData tag = tag(epc, (short) (random.nextInt() & 0xFFFF), random.nextInt());
+
+			List<Filter> filters = new ArrayList<>();
+			int count = random.nextInt(8);
+			for (int j = 0; j < count; j++) {
+				int offset = random.nextInt(4) == 0 ? 0x210 + random.nextInt(24) : random.nextInt(32 + epc.length * 8 + 16);
+				int length = random.nextInt(offset >= 0x210 ? 0x230 - offset : 24);
+				byte[] mask = new byte[(length + 7) / 8];
+				random.nextBytes(mask);
+				byte[] data = new byte[mask.length];
+				// mostly take the data from the tag to get matching filters
+				byte[] memory = memory(tag);
+				if (random.nextInt(3) > 0 && offset + length <= memory.length * 8)
+					data = RFUtils.strip(memory, offset, length);
+				else
+					random.nextBytes(data);
+				filters.add(RFUtils.newFilter(RFUtils.BANK_EPC, offset, data, mask, length, random.nextBoolean()));
+			}
+
+			assertEquals(evaluate(filters, tag), FilterCompiler.compile(filters).matches(tag));
+		}
+	}
+
+	/**
+	 * Evaluates the filters one by one on the known memory of the tag
+	 */
+	private static boolean evaluate(List<Filter> filters, TagData tag) {
+		byte[] memory = memory(tag);
+		for (Filter filter : filters) {
+			int from = filter.getBitOffset(), to = from + filter.getBitLength();
+			boolean known = to <= 32 + tag.getEpc().length * 8 || (from >= 0x210 && (tag.getPc() & 0x0200) != 0);
+			boolean matches = known
+					&& BitField.compare(RFUtils.applyMask(RFUtils.strip(memory, from, filter.getBitLength()), filter.getMask()),
+							RFUtils.applyMask(filter.getData(), filter.getMask()), 0, filter.getBitLength()) == 0;
+			if (matches != filter.isMatch())
+				return false;
+		}
+		return true;
+	}
+
+	private static byte[] memory(TagData tag) {
+		byte[] memory = new byte[0x230 / 8];
+		System.arraycopy(RFUtils.shortToBytes(tag.getCrc()), 0, memory, 0, 2);
+		System.arraycopy(RFUtils.shortToBytes(tag.getPc()), 0, memory, 2, 2);
+		System.arraycopy(tag.getEpc(), 0, memory, 4, tag.getEpc().length);
+		System.arraycopy(RFUtils.intToBytes(tag.getXpc()), 0, memory, 0x210 / 8, 4);
+		return memory;
+	}
+
+	private static TagData tag(byte[] epc, short pc, int xpc) {
+		TagData tag = new TagData();
+		tag.setEpc(epc);
+		tag.setPc(pc);
+		tag.setXpc(xpc);
+		tag.setCrc((short) 0x1234);
+		return tag;
+	}
+}
@@ -0,0 +1,294 @@
+package havis.device.rf.common.optimizer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.operation.WriteOperation;
+import havis.device.rf.tag.result.OperationResult;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class OperationListOptimizerTest {
+
+	@Test
+	public void testOptimize() {
+		// USER words 0-3 and 2-7 and adjacent 8-9, TID read in between
+		List<TagOperation> operations = Arrays.<TagOperation> asList(read("u1", RFUtils.BANK_USR, 0, 4), read("t1", RFUtils.BANK_TID, 0, 2),
+				read("u2", RFUtils.BANK_USR, 2, 6), read("u3", RFUtils.BANK_USR, 8, 2));
+		OptimizedOperationList optimized = OperationListOptimizer.optimize(operations);
+		assertTrue(optimized.isOptimized());
+		assertEquals(2, optimized.getOperations().size());
+
+		ReadOperation merged = (ReadOperation) optimized.getOperations().get(0);
+		assertEquals(RFUtils.BANK_USR, merged.getBank());
+		assertEquals(0, merged.getOffset());
+		assertEquals(10, merged.getLength());
+		assertTrue(merged.getOperationId().startsWith(OperationListOptimizer.MERGED_ID_PREFIX));
+		assertSame(operations.get(1), optimized.getOperations().get(1));
+
+		// restore results
+		byte[] user = new byte[20];
+		for (int i = 0; i < user.length; i++)
+			user[i] = (byte) i;
+		TagData tag = new TagData();
+		tag.getResultList().add(readResult("t1", ReadResult.Result.SUCCESS, new byte[] { 1, 2, 3, 4 }));
+		tag.getResultList().add(readResult(merged.getOperationId(), ReadResult.Result.SUCCESS, user));
+		optimized.restore(Arrays.asList(tag));
+
+		List<OperationResult> results = tag.getResultList();
+		assertEquals(4, results.size());
+		assertEquals("u1", results.get(0).getOperationId());
+		assertArrayEquals(Arrays.copyOfRange(user, 0, 8), ((ReadResult) results.get(0)).getReadData());
+		assertEquals("t1", results.get(1).getOperationId());
+		assertArrayEquals(new byte[] { 1, 2, 3, 4 }, ((ReadResult) results.get(1)).getReadData());
+		assertEquals("u2", results.get(2).getOperationId());
+		assertArrayEquals(Arrays.copyOfRange(user, 4, 16), ((ReadResult) results.get(2)).getReadData());
+		assertEquals(ReadResult.Result.SUCCESS, ((ReadResult) results.get(2)).getResult());
+		assertEquals("u3", results.get(3).getOperationId());
+		assertArrayEquals(Arrays.copyOfRange(user, 16, 20), ((ReadResult) results.get(3)).getReadData());
+	}
+
+	@Test
+	public void testOptimizeNothingToMerge() {
+		// gaps, different passwords and different banks
+		List<TagOperation> operations = Arrays.<TagOperation> asList(read("a", RFUtils.BANK_USR, 0, 2), read("b", RFUtils.BANK_USR, 3, 2),
+				read("c", RFUtils.BANK_TID, 0, 2));
+		ReadOperation withPassword = read("d", RFUtils.BANK_TID, 2, 2);
+		withPassword.setPassword(1);
+		operations = new ArrayList<>(operations);
+		operations.add(withPassword);
+		OptimizedOperationList optimized = OperationListOptimizer.optimize(operations);
+		assertFalse(optimized.isOptimized());
+		assertSame(operations, optimized.getOperations());
+
+		// duplicate IDs
+		operations = Arrays.<TagOperation> asList(read("a", RFUtils.BANK_USR, 0, 2), read("a", RFUtils.BANK_USR, 2, 2));
+		assertFalse(OperationListOptimizer.optimize(operations).isOptimized());
+
+		// write operations separate read operations
+		WriteOperation write = new WriteOperation();
+		write.setOperationId("w");
+		operations = Arrays.<TagOperation> asList(read("a", RFUtils.BANK_USR, 0, 2), write, read("b", RFUtils.BANK_USR, 2, 2));
+		assertFalse(OperationListOptimizer.optimize(operations).isOptimized());
+
+		// merged length exceeds a short
+		operations = Arrays.<TagOperation> asList(read("a", RFUtils.BANK_USR, 0, Short.MAX_VALUE),
+				read("b", RFUtils.BANK_USR, Short.MAX_VALUE, 2));
+		assertFalse(OperationListOptimizer.optimize(operations).isOptimized());
+
+		assertFalse(OperationListOptimizer.optimize(new ArrayList<TagOperation>()).isOptimized());
+	}
+
+	@Test
+	public void testOptimizeCompleteBank() {
+		List<TagOperation> operations = Arrays.<TagOperation> asList(read("a", RFUtils.BANK_USR, 4, 0), read("b", RFUtils.BANK_USR, 2, 2),
+				read("c", RFUtils.BANK_USR, 10, 2), read("d", RFUtils.BANK_USR, 0, 1));
+		OptimizedOperationList optimized = OperationListOptimizer.optimize(operations);
+		assertEquals(2, optimized.getOperations().size());
+
+		ReadOperation merged = (ReadOperation) optimized.getOperations().get(0);
+		assertEquals(2, merged.getOffset());
+		assertEquals(0, merged.getLength());
+		assertSame(operations.get(3), optimized.getOperations().get(1));
+
+		byte[] user = new byte[24];
+		for (int i = 0; i < user.length; i++)
+			user[i] = (byte) i;
+		TagData tag = new TagData();
+		tag.getResultList().add(readResult(merged.getOperationId(), ReadResult.Result.SUCCESS, user));
+		tag.getResultList().add(readResult("d", ReadResult.Result.SUCCESS, new byte[] { 9, 9 }));
+		optimized.restore(Arrays.asList(tag));
+
+		List<OperationResult> results = tag.getResultList();
+		assertEquals(4, results.size());
+		assertArrayEquals(Arrays.copyOfRange(user, 4, 24), ((ReadResult) results.get(0)).getReadData());
+		assertArrayEquals(Arrays.copyOfRange(user, 0, 4), ((ReadResult) results.get(1)).getReadData());
+		assertArrayEquals(Arrays.copyOfRange(user, 16, 20), ((ReadResult) results.get(2)).getReadData());
+		assertArrayEquals(new byte[] { 9, 9 }, ((ReadResult) results.get(3)).getReadData());
+
+		// tag returned less data than requested by a part
+		tag = new TagData();
+		tag.getResultList().add(readResult(merged.getOperationId(), ReadResult.Result.SUCCESS, Arrays.copyOf(user, 12)));
+		optimized.restore(Arrays.asList(tag));
+		results = tag.getResultList();
+		assertEquals(3, results.size());
+		assertEquals(ReadResult.Result.SUCCESS, ((ReadResult) results.get(0)).getResult());
+		assertArrayEquals(Arrays.copyOfRange(user, 4, 12), ((ReadResult) results.get(0)).getReadData());
+		assertEquals(ReadResult.Result.MEMORY_OVERRUN_ERROR, ((ReadResult) results.get(2)).getResult());
+		assertArrayEquals(new byte[0], ((ReadResult) results.get(2)).getReadData());
+	}
+
+	@Test
+	public void testRestoreError() {
+		List<TagOperation> operations = Arrays.<TagOperation> asList(read("a", RFUtils.BANK_USR, 0, 2), read("b", RFUtils.BANK_USR, 1, 2));
+		OptimizedOperationList optimized = OperationListOptimizer.optimize(operations);
+		String mergedId = optimized.getOperations().get(0).getOperationId();
+
+		TagData tag = new TagData();
+		tag.getResultList().add(readResult(mergedId, ReadResult.Result.MEMORY_LOCKED_ERROR, new byte[0]));
+		WriteResult unknown = new WriteResult();
+		unknown.setOperationId("x");
+		tag.getResultList().add(unknown);
+		optimized.restore(Arrays.asList(tag));
+
+		List<OperationResult> results = tag.getResultList();
+		assertEquals(3, results.size());
+		for (int i = 0; i < 2; i++) {
+			assertEquals(operations.get(i).getOperationId(), results.get(i).getOperationId());
+			assertEquals(ReadResult.Result.MEMORY_LOCKED_ERROR, ((ReadResult) results.get(i)).getResult());
+			assertArrayEquals(new byte[0], ((ReadResult) results.get(i)).getReadData());
+		}
+		assertSame(unknown, results.get(2));
+
+		// the failed parts are read individually
+		assertEquals(operations, optimized.getFailedReads(tag));
+
+		// no response from the tag or successful parts
+		tag = new TagData();
+		tag.getResultList().add(readResult(mergedId, ReadResult.Result.NO_RESPONSE_FROM_TAG, new byte[0]));
+		optimized.restore(Arrays.asList(tag));
+		assertTrue(optimized.getFailedReads(tag).isEmpty());
+		tag = new TagData();
+		tag.getResultList().add(readResult(mergedId, ReadResult.Result.SUCCESS, new byte[6]));
+		optimized.restore(Arrays.asList(tag));
+		assertTrue(optimized.getFailedReads(tag).isEmpty());
+	}
+
+	@Test
+	public void testRestoreUnsignedOffsets() {
+		// parts on both sides of word 0x8000
+		List<TagOperation> operations = Arrays.<TagOperation> asList(read("a", RFUtils.BANK_USR, 0x7FFE, 2), read("b", RFUtils.BANK_USR, 0x8000, 2));
+		OptimizedOperationList optimized = OperationListOptimizer.optimize(operations);
+		assertTrue(optimized.isOptimized());
+		ReadOperation merged = (ReadOperation) optimized.getOperations().get(0);
+		assertEquals(0x7FFE, merged.getOffset() & 0xFFFF);
+		assertEquals(4, merged.getLength());
+
+		byte[] user = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 };
+		TagData tag = new TagData();
+		tag.getResultList().add(readResult(merged.getOperationId(), ReadResult.Result.SUCCESS, user));
+		optimized.restore(Arrays.asList(tag));
+		List<OperationResult> results = tag.getResultList();
+		assertEquals(2, results.size());
+		assertEquals(ReadResult.Result.SUCCESS, ((ReadResult) results.get(0)).getResult());
+		assertArrayEquals(Arrays.copyOfRange(user, 0, 4), ((ReadResult) results.get(0)).getReadData());
+		assertEquals(ReadResult.Result.SUCCESS, ((ReadResult) results.get(1)).getResult());
+		assertArrayEquals(Arrays.copyOfRange(user, 4, 8), ((ReadResult) results.get(1)).getReadData());
+	}
+
+	@Test
+	public void testOptimizeWrites() {
+		List<TagOperation> operations = Arrays.<TagOperation> asList(write("w1", RFUtils.BANK_USR, 0, 1, 2), write("w2", RFUtils.BANK_USR, 1, 3, 4, 5, 6),
+				write("w3", RFUtils.BANK_USR, 3, 7, 8), read("r", RFUtils.BANK_USR, 0, 4), write("w4", RFUtils.BANK_USR, 4, 9, 9),
+				write("w5", RFUtils.BANK_USR, 5, 9, 9));
+
+		// disabled
+		assertFalse(OperationListOptimizer.optimize(operations, false, 0).isOptimized());
+		assertFalse(OperationListOptimizer.optimize(operations, true, 1).isOptimized());
+
+		OptimizedOperationList optimized = OperationListOptimizer.optimize(operations, false, 8);
+		assertEquals(3, optimized.getOperations().size());
+		WriteOperation merged = (WriteOperation) optimized.getOperations().get(0);
+		assertEquals(RFUtils.BANK_USR, merged.getBank());
+		assertEquals(0, merged.getOffset());
+		assertArrayEquals(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }, merged.getData());
+		assertSame(operations.get(3), optimized.getOperations().get(1));
+		assertEquals(4, ((WriteOperation) optimized.getOperations().get(2)).getOffset());
+
+		// block size limit
+		optimized = OperationListOptimizer.optimize(operations, false, 3);
+		assertEquals(4, optimized.getOperations().size());
+		assertArrayEquals(new byte[] { 1, 2, 3, 4, 5, 6 }, ((WriteOperation) optimized.getOperations().get(0)).getData());
+		assertSame(operations.get(2), optimized.getOperations().get(1));
+		assertArrayEquals(new byte[] { 9, 9, 9, 9 }, ((WriteOperation) optimized.getOperations().get(3)).getData());
+
+		// gaps, different banks and incomplete words
+		assertFalse(OperationListOptimizer.optimize(
+				Arrays.<TagOperation> asList(write("a", RFUtils.BANK_USR, 0, 1, 2), write("b", RFUtils.BANK_USR, 2, 1, 2)), false, 8).isOptimized());
+		assertFalse(OperationListOptimizer.optimize(
+				Arrays.<TagOperation> asList(write("a", RFUtils.BANK_USR, 0, 1, 2), write("b", RFUtils.BANK_EPC, 1, 1, 2)), false, 8).isOptimized());
+		assertFalse(OperationListOptimizer.optimize(
+				Arrays.<TagOperation> asList(write("a", RFUtils.BANK_USR, 0, 1), write("b", RFUtils.BANK_USR, 1, 1, 2)), false, 8).isOptimized());
+	}
+
+	@Test
+	public void testRestoreWrites() {
+		List<TagOperation> operations = Arrays.<TagOperation> asList(write("w1", RFUtils.BANK_USR, 0, 1, 2), write("w2", RFUtils.BANK_USR, 1, 3, 4, 5, 6),
+				write("w3", RFUtils.BANK_USR, 3, 7, 8));
+		OptimizedOperationList optimized = OperationListOptimizer.optimize(operations, false, 8);
+		String mergedId = optimized.getOperations().get(0).getOperationId();
+
+		TagData tag = new TagData();
+		tag.getResultList().add(writeResult(mergedId, WriteResult.Result.SUCCESS, 4));
+		optimized.restore(Arrays.asList(tag));
+		List<OperationResult> results = tag.getResultList();
+		assertEquals(3, results.size());
+		int[] words = new int[] { 1, 2, 1 };
+		for (int i = 0; i < 3; i++) {
+			assertEquals(operations.get(i).getOperationId(), results.get(i).getOperationId());
+			assertEquals(WriteResult.Result.SUCCESS, ((WriteResult) results.get(i)).getResult());
+			assertEquals(words[i], ((WriteResult) results.get(i)).getWordsWritten());
+		}
+
+		// two words written
+		tag = new TagData();
+		tag.getResultList().add(writeResult(mergedId, WriteResult.Result.MEMORY_LOCKED_ERROR, 2));
+		optimized.restore(Arrays.asList(tag));
+		results = tag.getResultList();
+		assertEquals(WriteResult.Result.SUCCESS, ((WriteResult) results.get(0)).getResult());
+		assertEquals(1, ((WriteResult) results.get(0)).getWordsWritten());
+		assertEquals(WriteResult.Result.MEMORY_LOCKED_ERROR, ((WriteResult) results.get(1)).getResult());
+		assertEquals(1, ((WriteResult) results.get(1)).getWordsWritten());
+		assertEquals(WriteResult.Result.MEMORY_LOCKED_ERROR, ((WriteResult) results.get(2)).getResult());
+		assertEquals(0, ((WriteResult) results.get(2)).getWordsWritten());
+	}
+
+	private static WriteOperation write(String id, short bank, int offset, int... data) {
+		WriteOperation operation = new WriteOperation();
+		operation.setOperationId(id);
+		operation.setBank(bank);
+		operation.setOffset((short) offset);
+		byte[] bytes = new byte[data.length];
+		for (int i = 0; i < data.length; i++)
+			bytes[i] = (byte) data[i];
+		operation.setData(bytes);
+		return operation;
+	}
+
+	private static WriteResult writeResult(String id, WriteResult.Result result, int wordsWritten) {
+		WriteResult writeResult = new WriteResult();
+		writeResult.setOperationId(id);
+		writeResult.setResult(result);
+		writeResult.setWordsWritten((short) wordsWritten);
+		return writeResult;
+	}
+
+	private static ReadOperation read(String id, short bank, int offset, int length) {
+		ReadOperation operation = new ReadOperation();
+		operation.setOperationId(id);
+		operation.setBank(bank);
+		operation.setOffset((short) offset);
+		operation.setLength((short) length);
+		return operation;
+	}
+
+	private static ReadResult readResult(String id, ReadResult.Result result, byte[] data) {
+		ReadResult readResult = new ReadResult();
+		readResult.setOperationId(id);
+		readResult.setResult(result);
+		readResult.setReadData(data);
+		return readResult;
+	}
+}
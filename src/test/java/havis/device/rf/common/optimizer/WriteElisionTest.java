@@ -0,0 +1,404 @@
+package havis.device.rf.common.optimizer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.common.cache.MemoryBankCache;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.TagDataList;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.operation.WriteOperation;
+import havis.device.rf.tag.result.OperationResult;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class WriteElisionTest {
+
+	private static final byte[] EPC = new byte[] { 0x30, 0x08, 0x33, (byte) 0xB2 };
+
+	/**
+	 * Executes operations on simulated tags with a USER bank of 8 words
+	 */
+	static class TestExecutor implements WriteElision.OperationExecutor {
+		final List<List<TagOperation>> executions = new ArrayList<>();
+		final List<byte[]> epcs = new ArrayList<>();
+		final List<byte[]> userBanks = new ArrayList<>();
+		// number of tags responding per execution, all tags if missing
+		final List<Integer> responding = new ArrayList<>();
+
+		void addTag(byte[] epc, byte[] userBank) {
+			epcs.add(epc);
+			userBanks.add(userBank);
+		}
+
+		@Override
+		public TagDataList execute(List<TagOperation> operations) {
+			int tags = executions.size() < responding.size() ? responding.get(executions.size()) : epcs.size();
+			executions.add(operations);
+			TagDataList tdl = new TagDataList();
+			for (int i = 0; i < tags; i++) {
+				TagData tag = new TagData();
+				tag.setEpc(epcs.get(i));
+				byte[] userBank = userBanks.get(i);
+				for (TagOperation operation : operations) {
+					if (operation instanceof ReadOperation) {
+						ReadOperation read = (ReadOperation) operation;
+						ReadResult result = new ReadResult();
+						result.setOperationId(read.getOperationId());
+						result.setResult(ReadResult.Result.SUCCESS);
+						result.setReadData(Arrays.copyOfRange(userBank, read.getOffset() * 2, (read.getOffset() + read.getLength()) * 2));
+						tag.getResultList().add(result);
+					} else {
+						WriteOperation write = (WriteOperation) operation;
+						if (write.getBank() == RFUtils.BANK_USR)
+							System.arraycopy(write.getData(), 0, userBank, write.getOffset() * 2, write.getData().length);
+						else if (write.getBank() == RFUtils.BANK_EPC && write.getOffset() >= 2) {
+							// EPC length is kept
+							byte[] epc = epcs.get(i).clone();
+							int from = (write.getOffset() - 2) * 2;
+							System.arraycopy(write.getData(), 0, epc, from, Math.min(write.getData().length, epc.length - from));
+							epcs.set(i, epc);
+							tag.setEpc(epc);
+						}
+						WriteResult result = new WriteResult();
+						result.setOperationId(write.getOperationId());
+						result.setResult(WriteResult.Result.SUCCESS);
+						result.setWordsWritten((short) (write.getData().length / 2));
+						tag.getResultList().add(result);
+					}
+				}
+				tdl.getEntryList().add(tag);
+			}
+			return tdl;
+		}
+	}
+
+	@Test
+	public void testFilterContent() throws Exception {
+		WriteElision elision = new WriteElision(new ArrayList<MemoryBankCache>());
+		TestExecutor executor = new TestExecutor();
+		executor.addTag(EPC, new byte[16]);
+
+		// EPC is known from the filter
+		List<Filter> filters = Arrays.asList(filter(RFUtils.BANK_EPC, 0x20, 32, EPC, null));
+		List<TagOperation> operations = Arrays.<TagOperation> asList(write("w1", RFUtils.BANK_EPC, 2, 0x30, 0x08), write("w2", RFUtils.BANK_EPC, 3, 0x33, 0xB3),
+				read("r", RFUtils.BANK_USR, 0, 1));
+		TagDataList tdl = elision.execute(executor, filters, operations);
+		assertEquals(1, executor.executions.size());
+		assertEquals(Arrays.asList(operations.get(1), operations.get(2)), executor.executions.get(0));
+		assertResults(tdl.getEntryList().get(0), "w1", "w2", "r");
+		assertWriteResult(tdl.getEntryList().get(0).getResultList().get(0), WriteResult.Result.SUCCESS, 1);
+		assertEquals(1, elision.getElidedWriteCount());
+
+		// nothing to skip
+		executor.executions.clear();
+		operations = Arrays.<TagOperation> asList(write("w2", RFUtils.BANK_EPC, 3, 0x33, 0xB3));
+		elision.execute(executor, filters, operations);
+		assertSame(operations, executor.executions.get(0));
+		assertEquals(1, elision.getElidedWriteCount());
+
+		// duplicate IDs
+		executor.executions.clear();
+		operations = Arrays.<TagOperation> asList(write("w", RFUtils.BANK_EPC, 2, 0x30, 0x08), write("w", RFUtils.BANK_EPC, 3, 0x33, 0xB3));
+		elision.execute(executor, filters, operations);
+		assertSame(operations, executor.executions.get(0));
+
+		assertFalse(WriteElision.containsWrite(null));
+		assertFalse(WriteElision.containsWrite(Arrays.<TagOperation> asList(read("r", RFUtils.BANK_USR, 0, 1))));
+		assertTrue(WriteElision.containsWrite(operations));
+	}
+
+	@Test
+	public void testReadContent() throws Exception {
+		WriteElision elision = new WriteElision(new ArrayList<MemoryBankCache>());
+		TestExecutor executor = new TestExecutor();
+		executor.addTag(EPC, new byte[] { 1, 2, 3, 4, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 });
+
+		// first write is redundant, second is not, third is unknown after the
+		// second
+		List<TagOperation> operations = Arrays.<TagOperation> asList(read("r", RFUtils.BANK_USR, 0, 2), write("w1", RFUtils.BANK_USR, 0, 1, 2),
+				write("w2", RFUtils.BANK_USR, 1, 9, 9), write("w3", RFUtils.BANK_USR, 1, 9, 9));
+		TagDataList tdl = elision.execute(executor, null, operations);
+		assertEquals(2, executor.executions.size());
+		assertEquals(Arrays.asList(operations.get(0)), executor.executions.get(0));
+		assertEquals(Arrays.asList(operations.get(2), operations.get(3)), executor.executions.get(1));
+		assertEquals(1, tdl.getEntryList().size());
+		TagData tag = tdl.getEntryList().get(0);
+		assertResults(tag, "r", "w1", "w2", "w3");
+		assertArrayEquals(new byte[] { 1, 2, 3, 4 }, ((ReadResult) tag.getResultList().get(0)).getReadData());
+		assertWriteResult(tag.getResultList().get(1), WriteResult.Result.SUCCESS, 1);
+		assertEquals(1, elision.getElidedWriteCount());
+
+		// all writes redundant, no second execution
+		executor.executions.clear();
+		operations = Arrays.<TagOperation> asList(read("r", RFUtils.BANK_USR, 0, 2), write("w1", RFUtils.BANK_USR, 0, 1, 2),
+				write("w2", RFUtils.BANK_USR, 1, 9, 9));
+		tdl = elision.execute(executor, null, operations);
+		assertEquals(1, executor.executions.size());
+		assertResults(tdl.getEntryList().get(0), "r", "w1", "w2");
+		assertEquals(3, elision.getElidedWriteCount());
+
+		// redundant for one tag only
+		executor.addTag(new byte[] { 1, 2 }, new byte[16]);
+		executor.executions.clear();
+		tdl = elision.execute(executor, null, operations);
+		assertEquals(2, executor.executions.size());
+		assertEquals(operations.subList(1, 3), executor.executions.get(1));
+		assertEquals(3, elision.getElidedWriteCount());
+
+		// no tag found
+		executor.executions.clear();
+		executor.responding.add(0);
+		tdl = elision.execute(executor, null, operations);
+		assertEquals(1, executor.executions.size());
+		assertTrue(tdl.getEntryList().isEmpty());
+	}
+
+	@Test
+	public void testUnprobedTag() throws Exception {
+		WriteElision elision = new WriteElision(new ArrayList<MemoryBankCache>());
+		TestExecutor executor = new TestExecutor();
+		executor.addTag(EPC, new byte[] { 1, 2, 3, 4, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 });
+		executor.addTag(new byte[] { 1, 2 }, new byte[] { 1, 2, 3, 4, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 });
+		executor.addTag(new byte[] { 1, 3 }, new byte[16]);
+		// third tag only responds to the second execution
+		executor.responding.add(2);
+		executor.responding.add(3);
+
+		List<TagOperation> operations = Arrays.<TagOperation> asList(read("r", RFUtils.BANK_USR, 0, 1), write("w1", RFUtils.BANK_USR, 0, 1, 2),
+				write("w2", RFUtils.BANK_USR, 2, 5, 5));
+		TagDataList tdl = elision.execute(executor, null, operations);
+		assertEquals(3, tdl.getEntryList().size());
+
+		TagData tag = tdl.getEntryList().get(0);
+		assertResults(tag, "r", "w1", "w2");
+		assertWriteResult(tag.getResultList().get(1), WriteResult.Result.SUCCESS, 1);
+
+		tag = tdl.getEntryList().get(2);
+		assertResults(tag, "w1", "w2");
+		assertWriteResult(tag.getResultList().get(0), WriteResult.Result.NON_SPECIFIC_TAG_ERROR, 0);
+		assertEquals(2, elision.getElidedWriteCount());
+	}
+
+	@Test
+	public void testCachedContent() throws Exception {
+		MemoryBankCache cache = new MemoryBankCache(RFUtils.BANK_USR, 10, 0, 0);
+		WriteElision elision = new WriteElision(Collections.singletonList(cache));
+		TestExecutor executor = new TestExecutor();
+		executor.addTag(EPC, new byte[] { 1, 2, 3, 4, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 });
+
+		// tag is unknown
+		List<TagOperation> operations = Arrays.<TagOperation> asList(write("w", RFUtils.BANK_USR, 1, 3, 4));
+		elision.execute(executor, null, operations);
+		assertEquals(1, executor.executions.size());
+		assertSame(operations, executor.executions.get(0));
+
+		// cached after a read
+		List<TagOperation> reads = Arrays.<TagOperation> asList(read("r", RFUtils.BANK_USR, 0, 2));
+		cache.update(reads, executor.execute(reads).getEntryList());
+		executor.executions.clear();
+		TagDataList tdl = elision.execute(executor, null, operations);
+		assertEquals(1, executor.executions.size());
+		assertTrue(executor.executions.get(0).isEmpty());
+		assertResults(tdl.getEntryList().get(0), "w");
+		assertWriteResult(tdl.getEntryList().get(0).getResultList().get(0), WriteResult.Result.SUCCESS, 1);
+		assertEquals(1, elision.getElidedWriteCount());
+
+		// cached content differs
+		executor.executions.clear();
+		operations = Arrays.<TagOperation> asList(write("w", RFUtils.BANK_USR, 1, 5, 6));
+		elision.execute(executor, null, operations);
+		assertEquals(1, executor.executions.size());
+		assertSame(operations, executor.executions.get(0));
+	}
+
+	@Test
+	public void testMissingTag() throws Exception {
+		WriteElision elision = new WriteElision(new ArrayList<MemoryBankCache>());
+		TestExecutor executor = new TestExecutor();
+		executor.addTag(EPC, new byte[] { 1, 2, 3, 4, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 });
+		executor.addTag(new byte[] { 1, 2 }, new byte[] { 1, 2, 3, 4, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 });
+		// second tag does not respond to the second execution
+		executor.responding.add(2);
+		executor.responding.add(1);
+
+		List<TagOperation> operations = Arrays.<TagOperation> asList(read("r", RFUtils.BANK_USR, 0, 1), write("w1", RFUtils.BANK_USR, 0, 1, 2),
+				write("w2", RFUtils.BANK_USR, 2, 5, 5), read("r2", RFUtils.BANK_USR, 2, 1));
+		TagDataList tdl = elision.execute(executor, null, operations);
+		assertEquals(2, tdl.getEntryList().size());
+
+		TagData tag = tdl.getEntryList().get(1);
+		assertArrayEquals(new byte[] { 1, 2 }, tag.getEpc());
+		assertResults(tag, "r", "w1", "w2", "r2");
+		assertEquals(ReadResult.Result.SUCCESS, ((ReadResult) tag.getResultList().get(0)).getResult());
+		assertWriteResult(tag.getResultList().get(1), WriteResult.Result.SUCCESS, 1);
+		assertWriteResult(tag.getResultList().get(2), WriteResult.Result.NO_RESPONSE_FROM_TAG, 0);
+		assertEquals(ReadResult.Result.NO_RESPONSE_FROM_TAG, ((ReadResult) tag.getResultList().get(3)).getResult());
+		assertEquals(2, elision.getElidedWriteCount());
+	}
+
+	@Test
+	public void testSharedEpc() throws Exception {
+		WriteElision elision = new WriteElision(new ArrayList<MemoryBankCache>());
+		TestExecutor executor = new TestExecutor();
+		executor.addTag(EPC, new byte[] { 1, 2, 3, 4, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 });
+		executor.addTag(EPC, new byte[] { 1, 2, 3, 4, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 });
+		List<TagOperation> operations = Arrays.<TagOperation> asList(read("r", RFUtils.BANK_USR, 0, 1), write("w1", RFUtils.BANK_USR, 0, 1, 2),
+				write("w2", RFUtils.BANK_USR, 2, 5, 5));
+
+		// both tags respond to both executions
+		TagDataList tdl = elision.execute(executor, null, operations);
+		assertEquals(2, tdl.getEntryList().size());
+		for (TagData tag : tdl.getEntryList()) {
+			assertResults(tag, "r", "w1", "w2");
+			assertWriteResult(tag.getResultList().get(1), WriteResult.Result.SUCCESS, 1);
+		}
+
+		// the same tag reported twice by the first execution only
+		executor.executions.clear();
+		executor.responding.add(2);
+		executor.responding.add(1);
+		tdl = elision.execute(executor, null, operations);
+		assertEquals(1, tdl.getEntryList().size());
+		TagData tag = tdl.getEntryList().get(0);
+		assertResults(tag, "r", "w1", "w2");
+		assertWriteResult(tag.getResultList().get(1), WriteResult.Result.SUCCESS, 1);
+		assertWriteResult(tag.getResultList().get(2), WriteResult.Result.SUCCESS, 1);
+	}
+
+	@Test
+	public void testWrittenEpc() throws Exception {
+		WriteElision elision = new WriteElision(new ArrayList<MemoryBankCache>());
+		TestExecutor executor = new TestExecutor();
+		executor.addTag(EPC, new byte[] { 1, 2, 3, 4, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 });
+		executor.addTag(new byte[] { 1, 2 }, new byte[] { 1, 2, 3, 4, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 });
+
+		// the EPC of the first tag changes, the second tag's EPC is too short
+		List<TagOperation> operations = Arrays.<TagOperation> asList(read("r", RFUtils.BANK_USR, 0, 1), write("w1", RFUtils.BANK_USR, 0, 1, 2),
+				write("w2", RFUtils.BANK_EPC, 3, 0x44, 0x55));
+		TagDataList tdl = elision.execute(executor, null, operations);
+		assertEquals(2, executor.executions.size());
+		assertEquals(2, tdl.getEntryList().size());
+		for (TagData tag : tdl.getEntryList()) {
+			assertResults(tag, "r", "w1", "w2");
+			assertWriteResult(tag.getResultList().get(1), WriteResult.Result.SUCCESS, 1);
+		}
+		assertArrayEquals(new byte[] { 0x30, 0x08, 0x44, 0x55 }, tdl.getEntryList().get(0).getEpc());
+		assertEquals(2, elision.getElidedWriteCount());
+	}
+
+	@Test
+	public void testProbeSuccessRatio() throws Exception {
+		WriteElision elision = new WriteElision(new ArrayList<MemoryBankCache>());
+		TestExecutor executor = new TestExecutor();
+		executor.addTag(EPC, new byte[16]);
+
+		// the read does not cover the write
+		List<TagOperation> operations = Arrays.<TagOperation> asList(read("r", RFUtils.BANK_USR, 0, 1), write("w", RFUtils.BANK_USR, 1, 0, 0));
+		elision.execute(executor, null, operations);
+		assertEquals(1, executor.executions.size());
+		assertSame(operations, executor.executions.get(0));
+
+		// the write is never redundant
+		operations = Arrays.<TagOperation> asList(read("r", RFUtils.BANK_USR, 0, 8), write("w1", RFUtils.BANK_USR, 1, 1, 2),
+				write("w2", RFUtils.BANK_USR, 1, 0, 0));
+		for (int i = 0; i < 3; i++) {
+			executor.executions.clear();
+			elision.execute(executor, null, operations);
+			assertEquals(2, executor.executions.size());
+		}
+		for (int i = 1; i < WriteElision.PROBE_INTERVAL; i++) {
+			executor.executions.clear();
+			elision.execute(executor, null, operations);
+			assertEquals(1, executor.executions.size());
+		}
+		executor.executions.clear();
+		elision.execute(executor, null, operations);
+		assertEquals(2, executor.executions.size());
+	}
+
+	@Test
+	public void testKnownMemory() {
+		// partial mask and unaligned ranges
+		KnownMemory memory = KnownMemory.fromFilters(Arrays.asList(filter(RFUtils.BANK_USR, 8, 40, new byte[] { 1, 2, 3, 4, 5 }, null),
+				filter(RFUtils.BANK_TID, 0, 32, new byte[] { 1, 2, 3, 4 }, new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0 })));
+		assertFalse(memory.contains(write("w", RFUtils.BANK_USR, 0, 0, 1)));
+		assertTrue(memory.contains(write("w", RFUtils.BANK_USR, 1, 2, 3, 4, 5)));
+		assertFalse(memory.contains(write("w", RFUtils.BANK_USR, 1, 2, 3, 4, 5, 0, 0)));
+		assertTrue(memory.contains(write("w", RFUtils.BANK_TID, 0, 1, 2)));
+		assertFalse(memory.contains(write("w", RFUtils.BANK_TID, 1, 3, 4)));
+		assertFalse(memory.contains(write("w", RFUtils.BANK_USR, 1, 2)));
+
+		// negative filters select unknown content
+		Filter negative = filter(RFUtils.BANK_USR, 0, 16, new byte[] { 1, 2 }, null);
+		negative.setMatch(false);
+		assertTrue(KnownMemory.fromFilters(Arrays.asList(negative)).isEmpty());
+		assertTrue(KnownMemory.fromFilters(null).isEmpty());
+
+		// filters requiring different values select no tag
+		KnownMemory conflicting = KnownMemory.fromFilters(Arrays.asList(filter(RFUtils.BANK_USR, 0, 32, new byte[] { 1, 2, 3, 4 }, null),
+				filter(RFUtils.BANK_USR, 0, 16, new byte[] { 9, 9 }, null), filter(RFUtils.BANK_USR, 0, 16, new byte[] { 1, 2 }, null)));
+		assertFalse(conflicting.contains(write("w", RFUtils.BANK_USR, 0, 1, 2)));
+		assertFalse(conflicting.contains(write("w", RFUtils.BANK_USR, 0, 9, 9)));
+		assertTrue(conflicting.contains(write("w", RFUtils.BANK_USR, 1, 3, 4)));
+
+		memory.forget(write("w", RFUtils.BANK_USR, 2, 0, 0));
+		assertFalse(memory.contains(write("w", RFUtils.BANK_USR, 1, 2, 3, 4, 5)));
+		assertTrue(memory.contains(write("w", RFUtils.BANK_USR, 1, 2, 3)));
+	}
+
+	private static void assertResults(TagData tag, String... ids) {
+		assertEquals(ids.length, tag.getResultList().size());
+		for (int i = 0; i < ids.length; i++)
+			assertEquals(ids[i], tag.getResultList().get(i).getOperationId());
+	}
+
+	private static void assertWriteResult(OperationResult result, WriteResult.Result expected, int wordsWritten) {
+		assertEquals(expected, ((WriteResult) result).getResult());
+		assertEquals(wordsWritten, ((WriteResult) result).getWordsWritten());
+	}
+
+	private static Filter filter(short bank, int bitOffset, int bitLength, byte[] data, byte[] mask) {
+		Filter filter = new Filter();
+		filter.setBank(bank);
+		filter.setBitOffset((short) bitOffset);
+		filter.setBitLength((short) bitLength);
+		filter.setData(data);
+		filter.setMask(mask);
+		filter.setMatch(true);
+		return filter;
+	}
+
+	private static ReadOperation read(String id, short bank, int offset, int length) {
+		ReadOperation operation = new ReadOperation();
+		operation.setOperationId(id);
+		operation.setBank(bank);
+		operation.setOffset((short) offset);
+		operation.setLength((short) length);
+		return operation;
+	}
+
+	private static WriteOperation write(String id, short bank, int offset, int... data) {
+		WriteOperation operation = new WriteOperation();
+		operation.setOperationId(id);
+		operation.setBank(bank);
+		operation.setOffset((short) offset);
+		byte[] bytes = new byte[data.length];
+		for (int i = 0; i < data.length; i++)
+			bytes[i] = (byte) data[i];
+		operation.setData(bytes);
+		return operation;
+	}
+}
@@ -0,0 +1,234 @@
+package havis.device.rf.common.simulator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.common.util.Epc;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.configuration.ConnectType;
+import havis.device.rf.configuration.RssiFilter;
+import havis.device.rf.configuration.SingulationControl;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.operation.LockOperation.Field;
+import havis.device.rf.tag.operation.LockOperation.Privilege;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.result.KillResult;
+import havis.device.rf.tag.result.LockResult;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class SimulatedHardwareManagerTest {
+
+	private static final int PASSWORD = 0x11223344;
+
+	private static SimulatorSettings createSettings(int tagCount) {
+		SimulatorSettings settings = new SimulatorSettings();
+		settings.setTagCount(tagCount);
+		settings.setAntennaCount(2);
+		settings.setVisibility(1);
+		settings.setUserBankWords(4);
+		settings.setRssiMean(-60);
+		settings.setRssiDeviation(0);
+		settings.setDwellTime(0);
+		settings.setTimeScale(0);
+		settings.setSeed(3);
+		return settings;
+	}
+
+	private static SingulationControl createSingulationControl(int q, int rounds) {
+		SingulationControl singulationControl = new SingulationControl();
+		singulationControl.setQValue((short) q);
+		singulationControl.setRounds(rounds);
+		return singulationControl;
+	}
+
+	private static List<TagData> execute(SimulatedHardwareManager manager, List<Filter> filters, TagOperation... operations) throws Exception {
+		return manager.execute(Collections.<Short> emptyList(), filters, Arrays.asList(operations), null).getEntryList();
+	}
+
+	private static TagData executeSingle(SimulatedHardwareManager manager, TagOperation... operations) throws Exception {
+		List<TagData> tags = execute(manager, new ArrayList<Filter>(), operations);
+		assertEquals(1, tags.size());
+		return tags.get(0);
+	}
+
+	@Test
+	public void testInventory() throws Exception {
+		SimulatedHardwareManager manager = new SimulatedHardwareManager(createSettings(20));
+		manager.setSingulationControl(createSingulationControl(6, 4));
+
+		List<TagData> tags = execute(manager, new ArrayList<Filter>());
+		assertEquals(20, tags.size());
+		Set<Epc> epcs = new HashSet<>();
+		for (TagData tag : tags) {
+			assertTrue(epcs.add(Epc.valueOf(tag.getEpc())));
+			assertEquals(12, tag.getEpc().length);
+			assertEquals(0x3000, tag.getPc());
+			assertTrue(tag.getAntennaID() == 1 || tag.getAntennaID() == 2);
+			assertTrue(Math.abs(tag.getRssi() + 60) <= 6);
+		}
+
+		// the same population on a single antenna
+		tags = manager.execute(Arrays.asList(Short.valueOf((short) 2)), null, null, null).getEntryList();
+		assertEquals(20, tags.size());
+		for (TagData tag : tags) {
+			assertTrue(epcs.contains(Epc.valueOf(tag.getEpc())));
+			assertEquals(2, tag.getAntennaID());
+		}
+
+		// all tags reply in the only slot
+		manager.setSingulationControl(createSingulationControl(0, 3));
+		assertTrue(execute(manager, null).isEmpty());
+		manager = new SimulatedHardwareManager(createSettings(1));
+		manager.setSingulationControl(createSingulationControl(0, 1));
+		assertEquals(1, execute(manager, null).size());
+	}
+
+	@Test
+	public void testVisibility() throws Exception {
+		SimulatorSettings settings = createSettings(50);
+		settings.setVisibility(0);
+		SimulatedHardwareManager manager = new SimulatedHardwareManager(settings);
+		manager.setSingulationControl(createSingulationControl(8, 4));
+
+		// each tag is visible on exactly one antenna
+		int count = 0;
+		for (short antenna = 1; antenna <= 2; antenna++)
+			count += manager.execute(Arrays.asList(Short.valueOf(antenna)), null, null, null).getEntryList().size();
+		assertEquals(50, count);
+		assertEquals(50, execute(manager, null).size());
+
+		// RSSI filter
+		RssiFilter rssiFilter = new RssiFilter();
+		rssiFilter.setMinRssi((short) -50);
+		manager.setRssiFilter(rssiFilter);
+		assertTrue(execute(manager, null).isEmpty());
+		rssiFilter.setMinRssi((short) -70);
+		rssiFilter.setMaxRssi((short) -50);
+		assertEquals(50, execute(manager, null).size());
+
+		assertEquals(2, manager.getMaxAntennas());
+		Map<Short, ConnectType> connectTypes = new HashMap<>();
+		connectTypes.put(Short.valueOf((short) 2), ConnectType.FALSE);
+		assertEquals(2, manager.getAntennaProperties(connectTypes).getEntryList().size());
+		assertTrue(manager.getAntennaProperties(connectTypes).getEntryList().get(0).isConnected());
+		assertFalse(manager.getAntennaProperties(connectTypes).getEntryList().get(1).isConnected());
+	}
+
+	@Test
+	public void testFilter() throws Exception {
+		SimulatedHardwareManager manager = new SimulatedHardwareManager(createSettings(10));
+		manager.setSingulationControl(createSingulationControl(6, 4));
+
+		List<TagData> tags = execute(manager, null, RFUtils.newReadOperation("tid", RFUtils.BANK_TID, 0, 6, null));
+		assertEquals(10, tags.size());
+		byte[] epc = tags.get(3).getEpc();
+		byte[] tid = ((ReadResult) tags.get(3).getResultList().get(0)).getReadData();
+		assertArrayEquals(new byte[] { (byte) 0xE2, (byte) 0x80, 0x11, 0x05, 0x20, 0x00 }, Arrays.copyOf(tid, 6));
+
+		Filter filter = RFUtils.newFilter(RFUtils.BANK_TID, 0, tid, null, tid.length * 8, true);
+		tags = execute(manager, Arrays.asList(filter));
+		assertEquals(1, tags.size());
+		assertArrayEquals(epc, tags.get(0).getEpc());
+
+		filter.setMatch(false);
+		assertEquals(9, execute(manager, Arrays.asList(filter)).size());
+	}
+
+	@Test
+	public void testAccess() throws Exception {
+		SimulatedHardwareManager manager = new SimulatedHardwareManager(createSettings(1));
+		byte[] data = new byte[] { 1, 2, 3, 4 };
+
+		TagData tag = executeSingle(manager, RFUtils.newWriteOperation("w", RFUtils.BANK_USR, 1, data, null),
+				RFUtils.newReadOperation("r", RFUtils.BANK_USR, 0, 0, null), RFUtils.newReadOperation("o", RFUtils.BANK_USR, 2, 3, null),
+				RFUtils.newWriteOperation("tid", RFUtils.BANK_TID, 0, data, null));
+		assertEquals(WriteResult.Result.SUCCESS, ((WriteResult) tag.getResultList().get(0)).getResult());
+		assertEquals(2, ((WriteResult) tag.getResultList().get(0)).getWordsWritten());
+		assertEquals("w", tag.getResultList().get(0).getOperationId());
+		assertArrayEquals(new byte[] { 0, 0, 1, 2, 3, 4, 0, 0 }, ((ReadResult) tag.getResultList().get(1)).getReadData());
+		assertEquals(ReadResult.Result.MEMORY_OVERRUN_ERROR, ((ReadResult) tag.getResultList().get(2)).getResult());
+		assertEquals(WriteResult.Result.MEMORY_LOCKED_ERROR, ((WriteResult) tag.getResultList().get(3)).getResult());
+
+		// new EPC with recomputed CRC
+		byte[] epc = new byte[] { 0x30, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1 };
+		short crc = tag.getCrc();
+		tag = executeSingle(manager, RFUtils.newWriteOperation("epc", RFUtils.BANK_EPC, 2, epc, null));
+		assertEquals(WriteResult.Result.SUCCESS, ((WriteResult) tag.getResultList().get(0)).getResult());
+		tag = executeSingle(manager);
+		assertArrayEquals(epc, tag.getEpc());
+		assertNotEquals(crc, tag.getCrc());
+
+		// lock the user memory with an access password
+		tag = executeSingle(manager, RFUtils.newWriteOperation("psw", RFUtils.BANK_PSW, 2, RFUtils.intToBytes(PASSWORD), null),
+				RFUtils.newLockOperation("wrong", Field.USER_MEMORY, Privilege.LOCK, 1),
+				RFUtils.newLockOperation("lock", Field.USER_MEMORY, Privilege.LOCK, PASSWORD),
+				RFUtils.newWriteOperation("open", RFUtils.BANK_USR, 0, data, null),
+				RFUtils.newWriteOperation("secured", RFUtils.BANK_USR, 0, data, PASSWORD),
+				RFUtils.newLockOperation("permalock", Field.USER_MEMORY, Privilege.PERMALOCK, PASSWORD),
+				RFUtils.newLockOperation("unlock", Field.USER_MEMORY, Privilege.UNLOCK, PASSWORD),
+				RFUtils.newWriteOperation("permalocked", RFUtils.BANK_USR, 0, data, PASSWORD));
+		assertEquals(WriteResult.Result.SUCCESS, ((WriteResult) tag.getResultList().get(0)).getResult());
+		assertEquals(LockResult.Result.INCORRECT_PASSWORD_ERROR, ((LockResult) tag.getResultList().get(1)).getResult());
+		assertEquals(LockResult.Result.SUCCESS, ((LockResult) tag.getResultList().get(2)).getResult());
+		assertEquals(WriteResult.Result.MEMORY_LOCKED_ERROR, ((WriteResult) tag.getResultList().get(3)).getResult());
+		assertEquals(WriteResult.Result.SUCCESS, ((WriteResult) tag.getResultList().get(4)).getResult());
+		assertEquals(LockResult.Result.SUCCESS, ((LockResult) tag.getResultList().get(5)).getResult());
+		assertEquals(LockResult.Result.MEMORY_LOCKED_ERROR, ((LockResult) tag.getResultList().get(6)).getResult());
+		assertEquals(WriteResult.Result.MEMORY_LOCKED_ERROR, ((WriteResult) tag.getResultList().get(7)).getResult());
+
+		// kill
+		tag = executeSingle(manager, RFUtils.newKillOperation("zero", 1),
+				RFUtils.newWriteOperation("psw", RFUtils.BANK_PSW, 0, RFUtils.intToBytes(PASSWORD), PASSWORD),
+				RFUtils.newKillOperation("wrong", 1), RFUtils.newKillOperation("kill", PASSWORD));
+		assertEquals(KillResult.Result.ZERO_KILL_PASSWORD_ERROR, ((KillResult) tag.getResultList().get(0)).getResult());
+		assertEquals(WriteResult.Result.SUCCESS, ((WriteResult) tag.getResultList().get(1)).getResult());
+		assertEquals(KillResult.Result.INCORRECT_PASSWORD_ERROR, ((KillResult) tag.getResultList().get(2)).getResult());
+		assertEquals(KillResult.Result.SUCCESS, ((KillResult) tag.getResultList().get(3)).getResult());
+
+		// replaced by a new tag
+		assertFalse(Arrays.equals(epc, executeSingle(manager).getEpc()));
+	}
+
+	@Test
+	public void testDeparture() throws Exception {
+		final AtomicLong time = new AtomicLong(1000);
+		SimulatorSettings settings = createSettings(5);
+		settings.setDwellTime(1000);
+		TagPopulation population = new TagPopulation(settings) {
+			@Override
+			long now() {
+				return time.get();
+			}
+		};
+		SimulatedHardwareManager manager = new SimulatedHardwareManager(settings, population);
+		manager.setSingulationControl(createSingulationControl(6, 4));
+
+		Set<Epc> epcs = new HashSet<>();
+		for (TagData tag : execute(manager, null))
+			epcs.add(Epc.valueOf(tag.getEpc()));
+		assertEquals(5, epcs.size());
+
+		// all tags have left the field and have been replaced
+		time.addAndGet(1000000);
+		List<TagData> tags = execute(manager, null);
+		assertEquals(5, tags.size());
+		for (TagData tag : tags)
+			assertFalse(epcs.contains(Epc.valueOf(tag.getEpc())));
+	}
+}
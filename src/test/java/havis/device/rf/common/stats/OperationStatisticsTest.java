@@ -0,0 +1,208 @@
+package havis.device.rf.common.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.operation.KillOperation;
+import havis.device.rf.tag.operation.LockOperation;
+import havis.device.rf.tag.operation.LockOperation.Field;
+import havis.device.rf.tag.operation.LockOperation.Privilege;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.result.LockResult;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class OperationStatisticsTest {
+
+	@Test
+	public void testOperationKey() {
+		assertEquals(new OperationKey(OperationKey.Type.READ, RFUtils.BANK_USR, 4),
+				OperationKey.forOperation(RFUtils.newReadOperation("rd", RFUtils.BANK_USR, 0, 6, null)));
+		assertEquals(new OperationKey(OperationKey.Type.READ, RFUtils.BANK_TID, 0),
+				OperationKey.forOperation(RFUtils.newReadOperation("rd", RFUtils.BANK_TID, 0, 0, null)));
+		assertEquals(new OperationKey(OperationKey.Type.WRITE, RFUtils.BANK_EPC, 8),
+				OperationKey.forOperation(RFUtils.newWriteOperation("wr", RFUtils.BANK_EPC, 2, new byte[16], null)));
+		assertEquals(new OperationKey(OperationKey.Type.LOCK, OperationKey.NO_BANK, 0),
+				OperationKey.forOperation(RFUtils.newLockOperation("lk", Field.EPC_MEMORY, Privilege.LOCK, 0)));
+		assertEquals(new OperationKey(OperationKey.Type.KILL, OperationKey.NO_BANK, 0),
+				OperationKey.forOperation(new KillOperation()));
+
+		assertEquals(0, OperationKey.wordBucket(0));
+		assertEquals(1, OperationKey.wordBucket(1));
+		assertEquals(2, OperationKey.wordBucket(3));
+		assertEquals(32, OperationKey.wordBucket(32));
+		assertEquals(32, OperationKey.wordBucket(63));
+	}
+
+	@Test
+	public void testOperationSignature() {
+		List<TagOperation> operations = Arrays.asList(
+				(TagOperation) RFUtils.newReadOperation("rd", RFUtils.BANK_USR, 0, 4, null),
+				RFUtils.newWriteOperation("wr", RFUtils.BANK_USR, 0, new byte[4], null));
+		OperationSignature signature = OperationSignature.forOperations(operations);
+		assertEquals(Arrays.asList(new OperationKey(OperationKey.Type.READ, RFUtils.BANK_USR, 4),
+				new OperationKey(OperationKey.Type.WRITE, RFUtils.BANK_USR, 2)), signature.getKeys());
+
+		// operation IDs, offsets and data are not part of the signature
+		assertEquals(signature, OperationSignature.forOperations(Arrays.asList(
+				(TagOperation) RFUtils.newReadOperation("rd2", RFUtils.BANK_USR, 2, 5, null),
+				RFUtils.newWriteOperation("wr2", RFUtils.BANK_USR, 4, new byte[] { 1, 2, 3, 4 }, null))));
+		// the order is part of the signature
+		assertNotEquals(signature, OperationSignature.forOperations(Arrays.asList(operations.get(1), operations.get(0))));
+		assertEquals("INVENTORY", OperationSignature.forOperations(new ArrayList<TagOperation>()).toString());
+	}
+
+	@Test
+	public void testRecord() {
+		OperationStatistics stats = new OperationStatistics();
+		List<TagOperation> operations = Arrays.asList(
+				(TagOperation) RFUtils.newReadOperation("rd", RFUtils.BANK_USR, 0, 4, null),
+				RFUtils.newWriteOperation("wr", RFUtils.BANK_USR, 0, new byte[4], null),
+				RFUtils.newLockOperation("lk", Field.USER_MEMORY, Privilege.LOCK, 0));
+		OperationSignature signature = OperationSignature.forOperations(operations);
+
+		/*
+		 * Test:
+		 * 	- record is called without operations
+		 * Expected:
+		 * 	- nothing is recorded
+		 */
+		stats.record(null, Arrays.asList(new TagData()), 1000000);
+		assertTrue(stats.getSignatures().isEmpty());
+		assertTrue(stats.getKeys().isEmpty());
+
+		/*
+		 * Test:
+		 * 	- record is called with empty or missing tag lists
+		 * Expected:
+		 * 	- the latency of the executions is recorded, no results
+		 */
+		stats.record(operations, null, 1000000);
+		stats.record(operations, new ArrayList<TagData>(), 3000000);
+		assertEquals(Arrays.asList(signature), stats.getSignatures());
+		assertEquals(2, stats.getLatency(signature).getCount());
+		assertEquals(1000, stats.getLatency(signature).getMin());
+		assertEquals(3000, stats.getLatency(signature).getMax());
+		assertTrue(stats.getKeys().isEmpty());
+
+		/*
+		 * Test:
+		 * 	- two tags, first one with successful read and write, second one
+		 * 	  with a failed read and no further results
+		 * Expected:
+		 * 	- the measured duration of the execution is recorded for the
+		 * 	  signature of the operation list
+		 * 	- result codes are counted per operation class
+		 */
+		TagData tag1 = new TagData();
+		ReadResult rdRes1 = new ReadResult();
+		rdRes1.setOperationId("rd");
+		rdRes1.setResult(ReadResult.Result.SUCCESS);
+		WriteResult wrRes1 = new WriteResult();
+		wrRes1.setOperationId("wr");
+		wrRes1.setResult(WriteResult.Result.SUCCESS);
+		tag1.getResultList().add(rdRes1);
+		tag1.getResultList().add(wrRes1);
+
+		TagData tag2 = new TagData();
+		ReadResult rdRes2 = new ReadResult();
+		rdRes2.setOperationId("rd");
+		rdRes2.setResult(ReadResult.Result.NO_RESPONSE_FROM_TAG);
+		tag2.getResultList().add(rdRes2);
+
+		stats.record(operations, Arrays.asList(tag1, tag2), 20000000L);
+
+		OperationKey rdKey = new OperationKey(OperationKey.Type.READ, RFUtils.BANK_USR, 4);
+		OperationKey wrKey = new OperationKey(OperationKey.Type.WRITE, RFUtils.BANK_USR, 2);
+		OperationKey lkKey = new OperationKey(OperationKey.Type.LOCK, OperationKey.NO_BANK, 0);
+
+		assertEquals(3, stats.getLatency(signature).getCount());
+		assertEquals(20000, stats.getLatency(signature).getMax());
+		assertEquals(2, stats.getKeys().size());
+
+		Map<String, Long> rdCounts = stats.getResultCounts(rdKey);
+		assertEquals(2, rdCounts.size());
+		assertEquals(Long.valueOf(1), rdCounts.get("SUCCESS"));
+		assertEquals(Long.valueOf(1), rdCounts.get("NO_RESPONSE_FROM_TAG"));
+		assertEquals(Long.valueOf(1), stats.getResultCounts(wrKey).get("SUCCESS"));
+		assertTrue(stats.getResultCounts(lkKey).isEmpty());
+
+		/*
+		 * Test:
+		 * 	- an inventory and a list of other operations
+		 * Expected:
+		 * 	- the latencies are recorded separately
+		 */
+		stats.record(new ArrayList<TagOperation>(), Arrays.asList(new TagData()), 5000000L);
+		TagData tag3 = new TagData();
+		LockResult lkRes3 = new LockResult();
+		lkRes3.setOperationId("lk");
+		lkRes3.setResult(LockResult.Result.SUCCESS);
+		tag3.getResultList().add(lkRes3);
+		stats.record(Arrays.asList(operations.get(2)), Arrays.asList(tag3), 40000000L);
+		assertEquals(3, stats.getSignatures().size());
+		assertEquals(3, stats.getLatency(signature).getCount());
+		assertEquals(5000, stats.getLatency(OperationSignature.forOperations(new ArrayList<TagOperation>())).getMax());
+		assertEquals(40000, stats.getLatency(OperationSignature.forOperations(Arrays.asList(operations.get(2)))).getMax());
+		assertEquals(Long.valueOf(1), stats.getResultCounts(lkKey).get("SUCCESS"));
+
+		stats.reset();
+		assertTrue(stats.getSignatures().isEmpty());
+		assertTrue(stats.getKeys().isEmpty());
+		assertNull(stats.getLatency(signature));
+	}
+
+	@Test
+	public void testResultCode() {
+		LockResult lkRes = new LockResult();
+		lkRes.setResult(LockResult.Result.SUCCESS);
+		assertEquals("SUCCESS", OperationStatistics.resultCode(lkRes));
+		assertEquals(OperationStatistics.UNKNOWN_RESULT, OperationStatistics.resultCode(new ReadResult()));
+		assertEquals(OperationStatistics.UNKNOWN_RESULT, OperationStatistics.resultCode(null));
+	}
+
+	@Test
+	public void testHistogram() {
+		Histogram histogram = new Histogram();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getValueAtPercentile(50));
+
+		for (int i = 1; i <= 100; i++)
+			histogram.record(i);
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(1, histogram.getMin());
+		assertEquals(100, histogram.getMax());
+		assertEquals(50.5, histogram.getMean(), 0.001);
+		assertEquals(1, histogram.getValueAtPercentile(0));
+		assertEquals(100, histogram.getValueAtPercentile(100));
+
+		long median = histogram.getValueAtPercentile(50);
+		assertTrue(median >= 50 && median <= 50 * 1.125);
+
+		long sum = 0;
+		for (long cnt : histogram.getBuckets().values())
+			sum += cnt;
+		assertEquals(100, sum);
+
+		for (long value : new long[] { 15, 16, 17, 1023, 1024, 123456789L, Long.MAX_VALUE }) {
+			int index = Histogram.bucketIndex(value);
+			assertTrue(Histogram.upperBound(index) >= value);
+			assertTrue(index == 0 || Histogram.upperBound(index - 1) < value);
+		}
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertTrue(histogram.getBuckets().isEmpty());
+	}
+}
@@ -1,5 +1,6 @@
 package havis.device.rf.common.tagsmooth;
 
+import havis.device.rf.common.util.Epc;
 import havis.device.rf.configuration.TagSmoothingSettings;
 import havis.device.rf.tag.TagData;
 import havis.device.rf.tag.TagDataList;
@@ -22,9 +23,9 @@ public class TagSmoothingHandlerTest {
 	private static Integer IGNORE_VALUE = 999;
 	private static int NANO_TO_MILLI_FACTOR = 1000000;
 
-	private static TagSmoothingEntry GetLastEntryFromMap(Map<TagSmoothingEntry, TagSmoothingEntry> entries) {
+	private static TagSmoothingEntry GetLastEntryFromMap(Map<Epc, TagSmoothingEntry> entries) {
 		TagSmoothingEntry last = null;
-		for (Iterator<TagSmoothingEntry> it = entries.keySet().iterator(); it.hasNext();)
+		for (Iterator<TagSmoothingEntry> it = entries.values().iterator(); it.hasNext();)
 			last = it.next();
 		return last;
 	}
@@ -63,24 +64,24 @@ public class TagSmoothingHandlerTest {
 	 */
 	@Test
 	public void addOrMoveToEndWithMovingExistingElementToEnd() throws Exception {
-		LinkedHashMap<TagSmoothingEntry, TagSmoothingEntry> entries = new LinkedHashMap<TagSmoothingEntry, TagSmoothingEntry>();
+		LinkedHashMap<Epc, TagSmoothingEntry> entries = new LinkedHashMap<Epc, TagSmoothingEntry>();
 		TagData dummyTag1 = new TagData();
 		dummyTag1.setEpc(new byte[] { 0x01 });
 		TagSmoothingEntry dummy1 = new TagSmoothingEntry(dummyTag1);
-		entries.put(dummy1, dummy1);
+		entries.put(dummy1.getEpc(), dummy1);
 		TagData tag2 = new TagData();
 		tag2.setEpc(new byte[] { 0x02 });
 		TagSmoothingEntry entry = new TagSmoothingEntry(tag2);
-		entries.put(entry, entry);
+		entries.put(entry.getEpc(), entry);
 		TagData dummyTag3 = new TagData();
 		dummyTag3.setEpc(new byte[] { 0x03 });
 		TagSmoothingEntry dummy3 = new TagSmoothingEntry(dummyTag3);
-		entries.put(dummy3, dummy3);
+		entries.put(dummy3.getEpc(), dummy3);
 
 		Assert.assertSame(dummy3, GetLastEntryFromMap(entries));
 
 		TagSmoothingEntry result = Deencapsulation.invoke(new TagSmoothingHandler(new TagSmoothingSettings(Integer.valueOf(30), IGNORE_VALUE, null, null)),
-				"addOrMoveToEnd", entry, entries);
+				"addOrMoveToEnd", entry.getTag(), entry.getEpc(), entries);
 
 		// Check that returned element is given and at the end of the map
 		Assert.assertSame(entry, result);
@@ -95,25 +96,27 @@ public class TagSmoothingHandlerTest {
 	 */
 	@Test
 	public void addOrMoveToEndWithAddingNewElement() throws Exception {
-		LinkedHashMap<TagSmoothingEntry, TagSmoothingEntry> entries = new LinkedHashMap<TagSmoothingEntry, TagSmoothingEntry>();
+		LinkedHashMap<Epc, TagSmoothingEntry> entries = new LinkedHashMap<Epc, TagSmoothingEntry>();
 		TagData dummyTag1 = new TagData();
 		dummyTag1.setEpc(new byte[] { 0x01 });
 		TagSmoothingEntry dummy1 = new TagSmoothingEntry(dummyTag1);
-		entries.put(dummy1, dummy1);
+		entries.put(dummy1.getEpc(), dummy1);
 		TagData dummyTag2 = new TagData();
 		dummyTag2.setEpc(new byte[] { 0x02 });
 		TagSmoothingEntry dummy2 = new TagSmoothingEntry(dummyTag2);
-		entries.put(dummy2, dummy2);
+		entries.put(dummy2.getEpc(), dummy2);
 		TagData tag3 = new TagData();
 		tag3.setEpc(new byte[] { 0x03 });
 		TagSmoothingEntry entry = new TagSmoothingEntry(tag3);
 
 		Assert.assertSame(dummy2, GetLastEntryFromMap(entries));
 		TagSmoothingEntry result = Deencapsulation.invoke(new TagSmoothingHandler(new TagSmoothingSettings(Integer.valueOf(30), IGNORE_VALUE, null, null)),
-				"addOrMoveToEnd", entry, entries);
-		// Check that returned element is given and at the end of the map
-		Assert.assertSame(entry, result);
-		Assert.assertSame(entry, GetLastEntryFromMap(entries));
+				"addOrMoveToEnd", entry.getTag(), entry.getEpc(), entries);
+		// Check that a new element is created for the tag and at the end of the
+		// map
+		Assert.assertSame(tag3, result.getTag());
+		Assert.assertSame(entry.getEpc(), result.getEpc());
+		Assert.assertSame(result, GetLastEntryFromMap(entries));
 	}
 
 	/**
@@ -261,15 +264,15 @@ public class TagSmoothingHandlerTest {
 
 		handler.process(tagList);
 
-		Map<TagSmoothingEntry, TagSmoothingEntry> observedEntries = Deencapsulation.getField(handler, "observedEntries");
+		Map<Epc, TagSmoothingEntry> observedEntries = Deencapsulation.getField(handler, "observedEntries");
 		Assert.assertEquals(2, observedEntries.size());
-		Assert.assertSame(tag1, observedEntries.keySet().iterator().next().getTag());
+		Assert.assertSame(tag1, observedEntries.values().iterator().next().getTag());
 		Assert.assertSame(tag2, GetLastEntryFromMap(observedEntries).getTag());
 
 		Thread.sleep(31);
 
 		handler.process(new TagDataList());
-		Map<TagSmoothingEntry, TagSmoothingEntry> observedEntries2 = Deencapsulation.getField(handler, "observedEntries");
+		Map<Epc, TagSmoothingEntry> observedEntries2 = Deencapsulation.getField(handler, "observedEntries");
 		Assert.assertTrue(observedEntries2.isEmpty());
 	}
 
@@ -295,7 +298,7 @@ public class TagSmoothingHandlerTest {
 		byte[] epc = new byte[0x00];
 		tag.setEpc(epc);
 		TagSmoothingEntry existingEntry = new TagSmoothingEntry(tag);
-		((Map<TagSmoothingEntry, TagSmoothingEntry>) Deencapsulation.getField(handler, "glimpsedEntries")).put(existingEntry, existingEntry);
+		((Map<Epc, TagSmoothingEntry>) Deencapsulation.getField(handler, "glimpsedEntries")).put(existingEntry.getEpc(), existingEntry);
 
 		TagData newTag = new TagData();
 		newTag.setAntennaID((short) 8);
@@ -338,9 +341,9 @@ public class TagSmoothingHandlerTest {
 
 		Deencapsulation.invoke(handler, "process", tag);
 
-		Map<TagSmoothingEntry, TagSmoothingEntry> glimpsedEntries = Deencapsulation.getField(handler, "glimpsedEntries");
+		Map<Epc, TagSmoothingEntry> glimpsedEntries = Deencapsulation.getField(handler, "glimpsedEntries");
 		Assert.assertEquals(1, glimpsedEntries.size());
-		TagSmoothingEntry entry = glimpsedEntries.keySet().iterator().next();
+		TagSmoothingEntry entry = glimpsedEntries.values().iterator().next();
 		Assert.assertEquals(1, entry.getSeenCount());
 		Assert.assertSame(tag, entry.getTag());
 	}
@@ -357,23 +360,23 @@ public class TagSmoothingHandlerTest {
 		TagSmoothingHandler handler = new TagSmoothingHandler(new TagSmoothingSettings(null, new Integer(1), null, new Integer(30)));
 		TagData tag = new TagData();
 		tag.setEpc(new byte[] { 0x00 });
-		Map<TagSmoothingEntry, TagSmoothingEntry> observedEntries = Deencapsulation.getField(handler, "observedEntries");
+		Map<Epc, TagSmoothingEntry> observedEntries = Deencapsulation.getField(handler, "observedEntries");
 		TagSmoothingEntry entry = new TagSmoothingEntry(tag);
 		entry.setObserved(true);
 		long lastSeenTimeBefore = entry.getLastSeen();
 		// Sleeping so that lastSeenTime is different after processing
 		Thread.sleep(1);
-		observedEntries.put(entry, entry);
+		observedEntries.put(entry.getEpc(), entry);
 
 		Deencapsulation.invoke(handler, "process", tag);
 
-		Map<TagSmoothingEntry, TagSmoothingEntry> observedEntriesAfter = Deencapsulation.getField(handler, "observedEntries");
+		Map<Epc, TagSmoothingEntry> observedEntriesAfter = Deencapsulation.getField(handler, "observedEntries");
 		Assert.assertEquals(1, observedEntriesAfter.size());
-		TagSmoothingEntry entryAfter = observedEntriesAfter.keySet().iterator().next();
+		TagSmoothingEntry entryAfter = observedEntriesAfter.values().iterator().next();
 		Assert.assertNotEquals(lastSeenTimeBefore, entryAfter.getLastSeen());
 		Assert.assertEquals(1, entryAfter.getSeenCount());
 		Assert.assertSame(tag, entryAfter.getTag());
-		Assert.assertTrue(((Map<TagSmoothingEntry, TagSmoothingEntry>) Deencapsulation.getField(handler, "glimpsedEntries")).isEmpty());
+		Assert.assertTrue(((Map<Epc, TagSmoothingEntry>) Deencapsulation.getField(handler, "glimpsedEntries")).isEmpty());
 	}
 
 	/**
@@ -385,27 +388,27 @@ public class TagSmoothingHandlerTest {
 	@Test
 	public void removeExpiredEntries() throws Exception {
 		Integer glimpsedTimeout = Integer.valueOf(30);
-		LinkedHashMap<TagSmoothingEntry, TagSmoothingEntry> entries = new LinkedHashMap<TagSmoothingEntry, TagSmoothingEntry>();
+		LinkedHashMap<Epc, TagSmoothingEntry> entries = new LinkedHashMap<Epc, TagSmoothingEntry>();
 		TagData tag1 = new TagData();
 		tag1.setEpc(new byte[] { 0x01 });
 		TagSmoothingEntry entry1 = new TagSmoothingEntry(tag1);
 		Deencapsulation.setField(entry1, "lastSeen", System.currentTimeMillis() - glimpsedTimeout - 1);
-		entries.put(entry1, entry1);
+		entries.put(entry1.getEpc(), entry1);
 		TagData tag2 = new TagData();
 		tag2.setEpc(new byte[] { 0x02 });
 		TagSmoothingEntry entry2 = new TagSmoothingEntry(tag2);
 		Deencapsulation.setField(entry2, "lastSeen", System.currentTimeMillis() - glimpsedTimeout - 1);
-		entries.put(entry2, entry2);
+		entries.put(entry2.getEpc(), entry2);
 		TagData tag3 = new TagData();
 		tag3.setEpc(new byte[] { 0x03 });
 		TagSmoothingEntry entry3 = new TagSmoothingEntry(tag3);
-		entries.put(entry3, entry3);
+		entries.put(entry3.getEpc(), entry3);
 
 		Assert.assertEquals(3, entries.size());
 		Deencapsulation.invoke(new TagSmoothingHandler(new TagSmoothingSettings(glimpsedTimeout, IGNORE_VALUE, null, null)), "removeExpiredEntries", entries);
 
 		Assert.assertEquals(1, entries.size());
-		Assert.assertSame(entry3, entries.keySet().iterator().next());
+		Assert.assertSame(entry3, entries.values().iterator().next());
 	}
 
 	/**
@@ -421,16 +424,16 @@ public class TagSmoothingHandlerTest {
 		TagData tag1 = new TagData();
 		tag1.setEpc(new byte[] { 0x01 });
 		TagSmoothingEntry entry = new TagSmoothingEntry(tag1);
-		Map<TagSmoothingEntry, TagSmoothingEntry> glimpsedEntries = Deencapsulation.getField(handler, "glimpsedEntries");
-		glimpsedEntries.put(entry, entry);
+		Map<Epc, TagSmoothingEntry> glimpsedEntries = Deencapsulation.getField(handler, "glimpsedEntries");
+		glimpsedEntries.put(entry.getEpc(), entry);
 
 		Assert.assertEquals(1, glimpsedEntries.size());
 		Deencapsulation.invoke(handler, "setObserved", entry);
 
 		Assert.assertTrue(glimpsedEntries.isEmpty());
-		Map<TagSmoothingEntry, TagSmoothingEntry> observedEntries = Deencapsulation.getField(handler, "observedEntries");
+		Map<Epc, TagSmoothingEntry> observedEntries = Deencapsulation.getField(handler, "observedEntries");
 		Assert.assertEquals(1, observedEntries.size());
-		TagSmoothingEntry observedEntry = observedEntries.keySet().iterator().next();
+		TagSmoothingEntry observedEntry = observedEntries.values().iterator().next();
 		Assert.assertSame(entry, observedEntry);
 		Assert.assertTrue(observedEntry.isObserved());
 	}
@@ -623,9 +626,9 @@ public class TagSmoothingHandlerTest {
 
 		handler.process(tagList);
 		Assert.assertTrue("Tag should not be seen because observedCountThreshhold is 3", handler.getResultList().isEmpty());
-		Map<TagSmoothingEntry, TagSmoothingEntry> unobservedEntries = Deencapsulation.getField(handler, "glimpsedEntries");
+		Map<Epc, TagSmoothingEntry> unobservedEntries = Deencapsulation.getField(handler, "glimpsedEntries");
 		Assert.assertEquals(1, unobservedEntries.size());
-		Assert.assertSame(tag1, unobservedEntries.keySet().iterator().next().getTag());
+		Assert.assertSame(tag1, unobservedEntries.values().iterator().next().getTag());
 
 		// Sleeping till glimspedTimeout is exceeded
 		Thread.sleep(31);
@@ -767,14 +770,14 @@ public class TagSmoothingHandlerTest {
 		int expectedTime = 50;
 
 		// prepare [numberOfTags] entries that will already exists at the start
-		LinkedHashMap<TagSmoothingEntry, TagSmoothingEntry> entries = new LinkedHashMap<TagSmoothingEntry, TagSmoothingEntry>();
+		LinkedHashMap<Epc, TagSmoothingEntry> entries = new LinkedHashMap<Epc, TagSmoothingEntry>();
 		for (int i = 0; i < numberOfTags; i++) {
 			for (int j = 0; j < numberOfTagsBetweenWaitingTimes; j++) {
 				TagData tag = new TagData();
 				tag.setEpc(ByteBuffer.allocate(4).putInt(j).array());
 
 				TagSmoothingEntry entry = new TagSmoothingEntry(tag);
-				entries.put(entry, entry);
+				entries.put(entry.getEpc(), entry);
 			}
 			Thread.sleep(10);
 		}
@@ -817,8 +820,8 @@ public class TagSmoothingHandlerTest {
 		int expectedTime = 50;
 
 		// prepare [numberOfTags] entries that will already exists at the start
-		LinkedHashMap<TagSmoothingEntry, TagSmoothingEntry> glimpsedEntries = new LinkedHashMap<TagSmoothingEntry, TagSmoothingEntry>();
-		LinkedHashMap<TagSmoothingEntry, TagSmoothingEntry> observedEntries = new LinkedHashMap<TagSmoothingEntry, TagSmoothingEntry>();
+		LinkedHashMap<Epc, TagSmoothingEntry> glimpsedEntries = new LinkedHashMap<Epc, TagSmoothingEntry>();
+		LinkedHashMap<Epc, TagSmoothingEntry> observedEntries = new LinkedHashMap<Epc, TagSmoothingEntry>();
 		boolean observed = false;
 		for (int i = 0; i < numberOfTags * 2; i++) {
 			for (int j = 0; j < numberOfTagsBetweenWaitingTimes; j++) {
@@ -826,9 +829,9 @@ public class TagSmoothingHandlerTest {
 				tag.setEpc(ByteBuffer.allocate(4).putInt(j).array());
 				TagSmoothingEntry entry = new TagSmoothingEntry(tag);
 				if (observed)
-					observedEntries.put(entry, entry);
+					observedEntries.put(entry.getEpc(), entry);
 				else
-					glimpsedEntries.put(entry, entry);
+					glimpsedEntries.put(entry.getEpc(), entry);
 
 				observed = observed ? false : true;
 			}
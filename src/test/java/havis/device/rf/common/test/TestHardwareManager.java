@@ -2,7 +2,7 @@ package havis.device.rf.common.test;
 
 import havis.device.rf.RFConsumer;
 import havis.device.rf.capabilities.RegulatoryCapabilities;
-import havis.device.rf.common.HardwareManager;
+import havis.device.rf.common.BatchHardwareManager;
 import havis.device.rf.configuration.AntennaConfiguration;
 import havis.device.rf.configuration.AntennaConfigurationList;
 import havis.device.rf.configuration.AntennaPropertyList;
@@ -20,7 +20,7 @@ import havis.device.rf.tag.operation.TagOperation;
 import java.util.List;
 import java.util.Map;
 
-public class TestHardwareManager implements HardwareManager {
+public class TestHardwareManager implements BatchHardwareManager {
 
 	@Override
 	public void setRegion(RFRegion rfcRegion,
@@ -35,6 +35,13 @@ public class TestHardwareManager implements HardwareManager {
 			throws ParameterException, ImplementationException {
 	}
 
+	@Override
+	public void setAntennaConfigurations(
+			List<AntennaConfiguration> antennaConfigurations,
+			RegulatoryCapabilities regulatoryCapabilities, boolean forceTune)
+			throws ParameterException, ImplementationException {
+	}
+
 	@Override
 	public void openConnection() throws ConnectionException,
 			ImplementationException {
@@ -11,9 +11,11 @@ import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
 @SuiteClasses({ havis.device.rf.common.EnvironmentTest.class, havis.device.rf.common.BaudrateTest.class, havis.device.rf.common.CommunicationHandlerTest.class,
-		havis.device.rf.common.ConfigurationManagerTest.class, havis.device.rf.common.KeepAliveThreadTest.class,
-		havis.device.rf.common.MainControllerTest.class, havis.device.rf.common.util.FileUtilsTest.class, havis.device.rf.common.util.JsonSerializerTest.class,
-		havis.device.rf.common.util.RFUtilsTest.class, havis.device.rf.common.tagsmooth.TagSmoothingHandlerTest.class })
+		havis.device.rf.common.ConfigurationManagerTest.class, havis.device.rf.common.ConfigurationPersisterTest.class, havis.device.rf.common.ConfigurationJournalTest.class, havis.device.rf.common.RegionCatalogTest.class, havis.device.rf.common.ConfigurationSnapshotTest.class, havis.device.rf.common.HardwareInfoCacheTest.class, havis.device.rf.common.ConfigurationWatcherTest.class, havis.device.rf.common.KeepAliveThreadTest.class,
+		havis.device.rf.common.MainControllerTest.class, havis.device.rf.common.util.FileUtilsTest.class, havis.device.rf.common.util.JsonSerializerTest.class, havis.device.rf.common.util.SnapshotSerializerTest.class,
+		havis.device.rf.common.util.RFUtilsTest.class, havis.device.rf.common.util.BitFieldTest.class, havis.device.rf.common.util.BitMaskTest.class, havis.device.rf.common.util.EpcTest.class, havis.device.rf.common.util.HexCodecTest.class, havis.device.rf.common.optimizer.OperationListOptimizerTest.class, havis.device.rf.common.optimizer.WriteElisionTest.class, havis.device.rf.common.cache.ExpiringCacheTest.class, havis.device.rf.common.cache.MemoryBankCacheTest.class, havis.device.rf.common.commission.CommissionerTest.class, havis.device.rf.common.simulator.SimulatedHardwareManagerTest.class, havis.device.rf.common.trace.RecordingHardwareManagerTest.class, havis.device.rf.common.trace.ReplayHardwareManagerTest.class,
+		havis.device.rf.common.tagsmooth.TagSmoothingHandlerTest.class,
+		havis.device.rf.common.stats.OperationStatisticsTest.class, havis.device.rf.common.filter.FilterCompilerTest.class })
 public class TestSuite {
 
 }
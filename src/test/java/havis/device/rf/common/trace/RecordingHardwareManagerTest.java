@@ -0,0 +1,201 @@
+package havis.device.rf.common.trace;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.common.BatchHardwareManager;
+import havis.device.rf.common.simulator.SimulatedHardwareManager;
+import havis.device.rf.common.simulator.SimulatorSettings;
+import havis.device.rf.common.trace.TraceRecord.Call;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.configuration.AntennaConfiguration;
+import havis.device.rf.configuration.SingulationControl;
+import havis.device.rf.exception.ParameterException;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.TagDataList;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class RecordingHardwareManagerTest {
+
+	static SimulatedHardwareManager createSimulator(double timeScale) {
+		SimulatorSettings settings = new SimulatorSettings();
+		settings.setTagCount(5);
+		settings.setAntennaCount(2);
+		settings.setVisibility(1);
+		settings.setUserBankWords(4);
+		settings.setDwellTime(0);
+		settings.setTimeScale(timeScale);
+		settings.setSeed(5);
+		return new SimulatedHardwareManager(settings);
+	}
+
+	static List<TagOperation> createOperations() {
+		return Arrays.<TagOperation> asList(RFUtils.newWriteOperation("w", RFUtils.BANK_USR, 0, new byte[] { 1, 2 }, null),
+				RFUtils.newReadOperation("r", RFUtils.BANK_USR, 0, 2, 0x1234));
+	}
+
+	static void assertTagsEquals(TagDataList expected, TagDataList actual) {
+		assertEquals(expected.getEntryList().size(), actual.getEntryList().size());
+		for (int i = 0; i < expected.getEntryList().size(); i++) {
+			TagData e = expected.getEntryList().get(i);
+			TagData a = actual.getEntryList().get(i);
+			assertArrayEquals(e.getEpc(), a.getEpc());
+			assertEquals(e.getPc(), a.getPc());
+			assertEquals(e.getCrc(), a.getCrc());
+			assertEquals(e.getAntennaID(), a.getAntennaID());
+			assertEquals(e.getRssi(), a.getRssi());
+			assertEquals(e.getResultList().size(), a.getResultList().size());
+			for (int j = 0; j < e.getResultList().size(); j++) {
+				assertEquals(e.getResultList().get(j).getClass(), a.getResultList().get(j).getClass());
+				assertEquals(e.getResultList().get(j).getOperationId(), a.getResultList().get(j).getOperationId());
+				if (e.getResultList().get(j) instanceof ReadResult) {
+					assertEquals(((ReadResult) e.getResultList().get(j)).getResult(), ((ReadResult) a.getResultList().get(j)).getResult());
+					assertArrayEquals(((ReadResult) e.getResultList().get(j)).getReadData(), ((ReadResult) a.getResultList().get(j)).getReadData());
+				} else if (e.getResultList().get(j) instanceof WriteResult) {
+					assertEquals(((WriteResult) e.getResultList().get(j)).getResult(), ((WriteResult) a.getResultList().get(j)).getResult());
+					assertEquals(((WriteResult) e.getResultList().get(j)).getWordsWritten(), ((WriteResult) a.getResultList().get(j)).getWordsWritten());
+				}
+			}
+		}
+	}
+
+	private static List<TraceRecord> read(File file) throws Exception {
+		List<TraceRecord> records = new ArrayList<>();
+		try (TraceReader reader = new TraceReader(file)) {
+			TraceRecord record;
+			while ((record = reader.next()) != null)
+				records.add(record);
+		}
+		return records;
+	}
+
+	@Test
+	public void testRecord() throws Exception {
+		File file = File.createTempFile("trace_", ".bin");
+		try {
+			RecordingHardwareManager manager = new RecordingHardwareManager(createSimulator(0), new TraceWriter(file));
+			manager.openConnection();
+			SingulationControl singulationControl = new SingulationControl();
+			singulationControl.setQValue((short) 5);
+			singulationControl.setRounds(3);
+			manager.setSingulationControl(singulationControl);
+			assertEquals(2, manager.getMaxAntennas());
+			TagDataList tags = manager.execute(Arrays.asList(Short.valueOf((short) 1)), new ArrayList<Filter>(), createOperations(), null);
+			assertEquals(5, tags.getEntryList().size());
+			try {
+				manager.execute(null, null, Arrays.<TagOperation> asList(new TagOperation() {
+				}), null);
+				throw new AssertionError("Unsupported operation accepted");
+			} catch (ParameterException e) {
+				// expected
+			}
+			manager.close();
+
+			List<TraceRecord> records = read(file);
+			assertEquals(5, records.size());
+			assertEquals(Call.OPEN_CONNECTION, records.get(0).getCall());
+			assertEquals(Call.SET_SINGULATION_CONTROL, records.get(1).getCall());
+			assertEquals(Call.GET_MAX_ANTENNAS, records.get(2).getCall());
+			assertEquals(Integer.valueOf(2), TraceCodec.decodeObject(records.get(2).getResult()));
+			SingulationControl recorded = TraceCodec.decodeObject(records.get(1).getArguments());
+			assertEquals(5, recorded.getQValue());
+			assertEquals(3, recorded.getRounds());
+
+			TraceRecord execute = records.get(3);
+			assertEquals(Call.EXECUTE, execute.getCall());
+			assertArrayEquals(TraceCodec.encodeExecute(Arrays.asList(Short.valueOf((short) 1)), new ArrayList<Filter>(), createOperations()),
+					execute.getArguments());
+			assertTagsEquals(tags, TraceCodec.decodeTags(execute.getResult()));
+			assertNull(execute.getExceptionClass());
+
+			TraceRecord failed = records.get(4);
+			assertNull(failed.getResult());
+			assertEquals(ParameterException.class.getName(), failed.getExceptionClass());
+			assertTrue(failed.getExceptionMessage().startsWith("Unsupported operation"));
+			for (int i = 1; i < records.size(); i++)
+				assertTrue(records.get(i).getTime() >= records.get(i - 1).getTime() + records.get(i - 1).getDuration());
+
+			// a second session is appended, times continue
+			manager = new RecordingHardwareManager(createSimulator(0), new TraceWriter(file));
+			tags = manager.execute(null, null, null, null);
+			manager.close();
+			records = read(file);
+			assertEquals(6, records.size());
+			assertTrue(records.get(5).getTime() >= records.get(4).getTime() + records.get(4).getDuration());
+			assertTagsEquals(tags, TraceCodec.decodeTags(records.get(5).getResult()));
+
+			// a truncated record ends the trace
+			byte[] bytes = Files.readAllBytes(file.toPath());
+			try (FileOutputStream out = new FileOutputStream(file)) {
+				out.write(bytes, 0, bytes.length - 3);
+			}
+			assertEquals(5, read(file).size());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testRecordBatches() throws Exception {
+		File file = File.createTempFile("trace_", ".bin");
+		try {
+			// the batch extension is supported if the delegate supports it
+			RecordingHardwareManager plain = RecordingHardwareManager.create(new RecordingHardwareManager(createSimulator(0), new TraceWriter(file)),
+					new TraceWriter(file));
+			assertFalse(plain instanceof BatchHardwareManager);
+			plain.close();
+			((RecordingHardwareManager) plain.getDelegate()).close();
+			file.delete();
+
+			RecordingHardwareManager manager = RecordingHardwareManager.create(createSimulator(0), new TraceWriter(file));
+			assertTrue(manager instanceof BatchHardwareManager);
+			AntennaConfiguration aCfg1 = new AntennaConfiguration();
+			aCfg1.setId((short) 1);
+			aCfg1.setTransmitPower(Short.valueOf((short) 10));
+			AntennaConfiguration aCfg2 = new AntennaConfiguration();
+			aCfg2.setId((short) 2);
+			((BatchHardwareManager) manager).setAntennaConfigurations(Arrays.asList(aCfg1, aCfg2), null, true);
+			manager.close();
+
+			List<TraceRecord> records = read(file);
+			assertEquals(1, records.size());
+			assertEquals(Call.SET_ANTENNA_CONFIGURATIONS, records.get(0).getCall());
+			assertNotNull(records.get(0).getArguments());
+			assertNull(records.get(0).getExceptionClass());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testInvalidTrace() throws Exception {
+		File file = File.createTempFile("trace_", ".bin");
+		try {
+			Files.write(file.toPath(), new byte[] { 1, 2, 3, 4, 5 });
+			try {
+				new TraceReader(file).close();
+				throw new AssertionError("Invalid trace accepted");
+			} catch (IOException e) {
+				assertEquals("Not a trace file", e.getMessage());
+			}
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package havis.device.rf.common.trace;
+
+import static havis.device.rf.common.trace.RecordingHardwareManagerTest.assertTagsEquals;
+import static havis.device.rf.common.trace.RecordingHardwareManagerTest.createOperations;
+import static havis.device.rf.common.trace.RecordingHardwareManagerTest.createSimulator;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.common.trace.TraceRecord.Call;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.configuration.AntennaConfiguration;
+import havis.device.rf.configuration.RssiFilter;
+import havis.device.rf.exception.ConnectionException;
+import havis.device.rf.exception.ImplementationException;
+import havis.device.rf.exception.ParameterException;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagDataList;
+import havis.device.rf.tag.operation.TagOperation;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ReplayHardwareManagerTest {
+
+	private static final List<Short> ANTENNAS = Arrays.asList(Short.valueOf((short) 1));
+
+	/**
+	 * Records three executions, the second one failing
+	 */
+	private static List<TagDataList> record(File file, double timeScale) throws Exception {
+		RecordingHardwareManager manager = new RecordingHardwareManager(createSimulator(timeScale), new TraceWriter(file));
+		List<TagDataList> results = new ArrayList<>();
+		manager.openConnection();
+		RssiFilter rssiFilter = new RssiFilter();
+		rssiFilter.setMinRssi((short) -90);
+		manager.setRssiFilter(rssiFilter);
+		manager.getRssiFilter();
+		results.add(manager.execute(ANTENNAS, new ArrayList<Filter>(), createOperations(), null));
+		try {
+			manager.execute(ANTENNAS, null, Arrays.<TagOperation> asList(new TagOperation() {
+			}), null);
+			throw new AssertionError("Unsupported operation accepted");
+		} catch (ParameterException e) {
+			// expected
+		}
+		results.add(manager.execute(null, null, null, null));
+		manager.closeConnection();
+		manager.close();
+		return results;
+	}
+
+	@Test
+	public void testReplay() throws Exception {
+		File file = File.createTempFile("trace_", ".bin");
+		try {
+			List<TagDataList> recorded = record(file, 0);
+
+			ReplayHardwareManager manager = new ReplayHardwareManager(file, false, false);
+			manager.openConnection();
+			assertEquals(-90, manager.getRssiFilter().getMinRssi());
+			assertTagsEquals(recorded.get(0), manager.execute(ANTENNAS, new ArrayList<Filter>(), createOperations(), null));
+			assertEquals(0, manager.getMismatches());
+			try {
+				manager.execute(ANTENNAS, null, null, null);
+				throw new AssertionError("Recorded exception not thrown");
+			} catch (ParameterException e) {
+				assertTrue(e.getMessage().startsWith("Unsupported operation"));
+			}
+			assertEquals(1, manager.getMismatches());
+			// differing arguments return the recorded tags
+			assertTagsEquals(recorded.get(1),
+					manager.execute(ANTENNAS, null, Arrays.<TagOperation> asList(RFUtils.newReadOperation("x", RFUtils.BANK_TID, 0, 2, null)), null));
+			assertEquals(2, manager.getMismatches());
+			try {
+				manager.execute(null, null, null, null);
+				throw new AssertionError("Executions beyond the trace");
+			} catch (ImplementationException e) {
+				// expected
+			}
+			// getters return the last value
+			assertEquals(-90, manager.getRssiFilter().getMinRssi());
+			manager.closeConnection();
+
+			// loop
+			manager = new ReplayHardwareManager(file, false, true);
+			manager.openConnection();
+			manager.execute(ANTENNAS, new ArrayList<Filter>(), createOperations(), null);
+			try {
+				manager.execute(ANTENNAS, null, null, null);
+			} catch (ParameterException e) {
+				// expected
+			}
+			manager.execute(null, null, null, null);
+			assertTagsEquals(recorded.get(0), manager.execute(ANTENNAS, new ArrayList<Filter>(), createOperations(), null));
+			assertEquals(1, manager.getMismatches());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testReplayBatches() throws Exception {
+		File file = File.createTempFile("trace_", ".bin");
+		try {
+			List<AntennaConfiguration> configurations = Arrays.asList(new AntennaConfiguration(), new AntennaConfiguration());
+
+			// recorded batches are played back
+			TraceWriter writer = new TraceWriter(file);
+			writer.write(Call.SET_ANTENNA_CONFIGURATIONS, 0, 0, null, null, null);
+			writer.write(Call.SET_ANTENNA_CONFIGURATIONS, 0, 0, null, null, new ParameterException("Invalid batch"));
+			writer.close();
+			ReplayHardwareManager manager = new ReplayHardwareManager(file, false, false);
+			manager.openConnection();
+			manager.setAntennaConfigurations(configurations, null, false);
+			try {
+				manager.setAntennaConfigurations(configurations, null, false);
+				throw new AssertionError("Recorded exception not thrown");
+			} catch (ParameterException e) {
+				assertEquals("Invalid batch", e.getMessage());
+			}
+			manager.closeConnection();
+			file.delete();
+
+			// a trace without batches plays back the calls of single antennas
+			writer = new TraceWriter(file);
+			writer.write(Call.SET_ANTENNA_CONFIGURATION, 0, 0, null, null, null);
+			writer.write(Call.SET_ANTENNA_CONFIGURATION, 0, 0, null, null, null);
+			writer.write(Call.SET_ANTENNA_CONFIGURATION, 0, 0, null, null, null);
+			writer.write(Call.SET_ANTENNA_CONFIGURATION, 0, 0, null, null, new ParameterException("Invalid antenna"));
+			writer.close();
+			manager = new ReplayHardwareManager(file, false, false);
+			manager.openConnection();
+			manager.setAntennaConfigurations(configurations, null, false);
+			try {
+				manager.setAntennaConfigurations(configurations, null, false);
+				throw new AssertionError("Recorded exception not thrown");
+			} catch (ParameterException e) {
+				assertEquals("Invalid antenna", e.getMessage());
+			}
+			manager.closeConnection();
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testRealtime() throws Exception {
+		File file = File.createTempFile("trace_", ".bin");
+		try {
+			record(file, 1);
+			long duration = 0;
+			try (TraceReader reader = new TraceReader(file)) {
+				TraceRecord record;
+				while ((record = reader.next()) != null)
+					duration += record.getDuration();
+			}
+
+			ReplayHardwareManager manager = new ReplayHardwareManager(file, true, false);
+			long start = System.nanoTime();
+			manager.openConnection();
+			manager.setRssiFilter(null);
+			manager.getRssiFilter();
+			manager.execute(null, null, null, null);
+			try {
+				manager.execute(null, null, null, null);
+			} catch (ParameterException e) {
+				// expected
+			}
+			manager.execute(null, null, null, null);
+			manager.closeConnection();
+			assertTrue(System.nanoTime() - start >= duration);
+			assertTrue(duration > TimeUnit.MILLISECONDS.toNanos(1));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testMissingTrace() throws Exception {
+		try {
+			new ReplayHardwareManager(new File("missing.trace"), false, false).openConnection();
+			throw new AssertionError("Missing trace accepted");
+		} catch (ConnectionException e) {
+			assertTrue(e.getMessage().startsWith("Failed to load trace"));
+		}
+	}
+}
@@ -0,0 +1,258 @@
+package havis.device.rf.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import havis.device.rf.tag.Filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BitFieldTest {
+
+	@Test
+	public void testPackUnpack() {
+		byte[] bytes = new byte[] { (byte) 0x01, (byte) 0x23, (byte) 0x45, (byte) 0x67, (byte) 0x89, (byte) 0xAB, (byte) 0xCD, (byte) 0xEF, (byte) 0xF0,
+				(byte) 0x0F };
+		long[] words = BitField.pack(bytes);
+		assertEquals(2, words.length);
+		assertEquals(0x0123456789ABCDEFL, words[0]);
+		assertEquals(0xF00F000000000000L, words[1]);
+		assertArrayEquals(bytes, BitField.unpack(words, bytes.length));
+		assertArrayEquals(new byte[] { (byte) 0x45, (byte) 0x67 }, BitField.unpack(BitField.pack(bytes, 2, 2), 2));
+		assertArrayEquals(new byte[0], BitField.unpack(BitField.pack(new byte[0]), 0));
+		assertArrayEquals(new byte[] { 0, 0 }, BitField.unpack(new long[0], 2));
+	}
+
+	@Test
+	public void testGetBits() {
+		long[] words = new long[] { 0x0123456789ABCDEFL, 0xF00F000000000000L };
+		assertEquals(0x0123456789ABCDEFL, BitField.getBits(words, 0));
+		assertEquals(0x123456789ABCDEFFL, BitField.getBits(words, 4));
+		assertEquals(0xEFF00F0000000000L, BitField.getBits(words, 56));
+		assertEquals(0xF00F000000000000L, BitField.getBits(words, 64));
+		assertEquals(0, BitField.getBits(words, 128));
+	}
+
+	@Test
+	public void testNextSetClearBit() {
+		long[] words = new long[] { 0x00F0000000000000L, 0x0000000000000001L, -1L };
+		assertEquals(8, BitField.nextSetBit(words, 0));
+		assertEquals(11, BitField.nextSetBit(words, 11));
+		assertEquals(127, BitField.nextSetBit(words, 12));
+		assertEquals(128, BitField.nextSetBit(words, 128));
+		assertEquals(-1, BitField.nextSetBit(words, 192));
+		assertEquals(-1, BitField.nextSetBit(new long[] { 0, 0 }, 0));
+
+		assertEquals(0, BitField.nextClearBit(words, 0));
+		assertEquals(12, BitField.nextClearBit(words, 8));
+		assertEquals(192, BitField.nextClearBit(words, 127));
+		assertEquals(300, BitField.nextClearBit(words, 300));
+	}
+
+	@Test
+	public void testSliceOnes() {
+		long[] words = BitField.pack(new byte[] { (byte) 0b10101010, (byte) 0b11001100, (byte) 0b11101110 });
+		assertArrayEquals(new byte[] { (byte) 0b10100000 }, BitField.slice(words, 0, 4));
+		assertArrayEquals(new byte[] { (byte) 0b01010110, 0 }, BitField.slice(words, 3, 12));
+		assertArrayEquals(new byte[] { (byte) 0b11101110, 0 }, BitField.slice(words, 16, 32));
+		assertArrayEquals(new byte[0], BitField.slice(words, 5, 5));
+
+		assertArrayEquals(new byte[0], BitField.ones(0));
+		assertArrayEquals(new byte[] { (byte) 0xFF, (byte) 0b11100000 }, BitField.ones(11));
+		assertArrayEquals(new byte[] { (byte) 0xFF, (byte) 0xFF }, BitField.ones(16));
+	}
+
+	@Test
+	public void testBitSetConversion() {
+		Random random = new Random(4711);
+		for (int i = 0; i < 200; i++) {
+			byte[] bytes = new byte[random.nextInt(40)];
+			random.nextBytes(bytes);
+
+			BitSet expected = new BitSet();
+			for (int bit = 0; bit < bytes.length * 8; bit++)
+				expected.set(bit, (bytes[bit / 8] & (0x80 >>> (bit % 8))) != 0);
+			assertEquals(expected, RFUtils.bytesToBitSet(bytes));
+
+			int bitCnt = bytes.length == 0 ? 0 : random.nextInt(bytes.length * 8);
+			assertArrayEquals(legacyBitSetToBytes(expected, bitCnt, true), RFUtils.bitSetToBytes(expected, bitCnt, true));
+			assertArrayEquals(legacyBitSetToBytes(expected, bitCnt, false), RFUtils.bitSetToBytes(expected, bitCnt, false));
+		}
+	}
+
+	@Test
+	public void testApplyMaskRandom() {
+		Random random = new Random(0x0815);
+		for (int i = 0; i < 500; i++) {
+			int length = 1 + random.nextInt(64);
+			byte[] data = new byte[length];
+			byte[] mask = new byte[length];
+			random.nextBytes(data);
+			// mask with long runs of ones and zeros
+			for (int j = 0; j < length; j++)
+				mask[j] = (byte) (random.nextInt(4) == 0 ? random.nextInt(256) : random.nextBoolean() ? 0xFF : 0);
+
+			Filter filter = new Filter();
+			filter.setBank((short) 1);
+			filter.setMatch(random.nextBoolean());
+			filter.setData(data);
+			filter.setMask(mask);
+			filter.setBitOffset((short) 32);
+			filter.setBitLength((short) (length * 8 - random.nextInt(8)));
+
+			List<Filter> expected = legacyApplyMask(filter);
+			List<Filter> actual = RFUtils.applyMask(filter);
+			if (expected == null) {
+				assertEquals(null, actual);
+				continue;
+			}
+			assertEquals(expected.size(), actual.size());
+			for (int j = 0; j < expected.size(); j++) {
+				assertEquals(expected.get(j).getBitOffset(), actual.get(j).getBitOffset());
+				assertEquals(expected.get(j).getBitLength(), actual.get(j).getBitLength());
+				assertEquals(expected.get(j).isMatch(), actual.get(j).isMatch());
+				assertEquals(expected.get(j).getBank(), actual.get(j).getBank());
+				assertArrayEquals(expected.get(j).getData(), actual.get(j).getData());
+				assertArrayEquals(expected.get(j).getMask(), actual.get(j).getMask());
+			}
+		}
+	}
+
+	@Test
+	public void testGetBitsBytes() {
+		byte[] bytes = new byte[] { (byte) 0x01, (byte) 0x23, (byte) 0x45, (byte) 0x67, (byte) 0x89, (byte) 0xAB, (byte) 0xCD, (byte) 0xEF, (byte) 0xF0,
+				(byte) 0x0F };
+		assertEquals(0x0123456789ABCDEFL, BitField.getBits(bytes, 0));
+		assertEquals(0x123456789ABCDEFFL, BitField.getBits(bytes, 4));
+		assertEquals(0x23456789ABCDEFF0L, BitField.getBits(bytes, 8));
+		assertEquals(0xEFF00F0000000000L, BitField.getBits(bytes, 56));
+		assertEquals(0x0F00000000000000L, BitField.getBits(bytes, 72));
+		assertEquals(0, BitField.getBits(bytes, 80));
+		assertEquals(0, BitField.getBits(bytes, 1000));
+	}
+
+	@Test
+	public void testCompare() {
+		byte[] left = new byte[] { (byte) 0x80, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x01 };
+		byte[] right = new byte[] { (byte) 0x7F, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x02 };
+		assertEquals(1, BitField.compare(left, right, 0, 72));
+		assertEquals(-1, BitField.compare(left, right, 1, 72));
+		assertEquals(0, BitField.compare(left, right, 8, 70));
+		assertEquals(-1, BitField.compare(left, right, 8, 71));
+		assertEquals(0, BitField.compare(left, right, 8, 8));
+
+		assertEquals(0, BitField.compareUnsigned(5, 5));
+		assertEquals(1, BitField.compareUnsigned(-1L, 1));
+		assertEquals(-1, BitField.compareUnsigned(Long.MAX_VALUE, Long.MIN_VALUE));
+
+		// compare with the bytewise implementation of RFUtils.compare
+		Random random = new Random(42);
+		for (int i = 0; i < 5000; i++) {
+			byte[] l = new byte[1 + random.nextInt(24)];
+			random.nextBytes(l);
+			byte[] r = l.clone();
+			if (random.nextBoolean())
+				r[random.nextInt(r.length)] ^= 1 << random.nextInt(8);
+			int offset = random.nextBoolean() ? 0 : random.nextInt(l.length * 8);
+			int n = offset + random.nextInt(l.length * 8 - offset + 1);
+			if (offset == 0 || n >= (offset / 8 + 1) * 8)
+				assertEquals(Integer.signum(legacyCompare(l, r, n, offset)), Integer.signum(RFUtils.compare(l, r, n, offset)));
+		}
+	}
+
+	/**
+	 * Bytewise reference implementation of
+	 * {@link RFUtils#compare(byte[], byte[], int, int)}
+	 */
+	private static int legacyCompare(byte[] left, byte[] right, int n, int offset) {
+		if (offset > 0) {
+			int c = RFUtils.compare(left[offset / 8], right[offset / 8], n > 8 - offset % 8 ? 8 - offset % 8 : n, offset % 8);
+			if (c != 0)
+				return c;
+		}
+		for (int i = RFUtils.size(offset); i < n / 8; i++) {
+			if ((left[i] & 0xFF) > (right[i] & 0xFF))
+				return 1;
+			if ((left[i] & 0xFF) < (right[i] & 0xFF))
+				return -1;
+		}
+		if (n % 8 > 0)
+			return RFUtils.compare(left[n / 8], right[n / 8], n % 8, n > 8 ? 0 : offset);
+		return 0;
+	}
+
+	/**
+	 * Bitwise reference implementation of {@link RFUtils#bitSetToBytes}
+	 */
+	private static byte[] legacyBitSetToBytes(BitSet data, int bitCnt, boolean fill) {
+		int byteCnt = (int) Math.ceil(bitCnt / 8.0f);
+		byte[] ret = new byte[byteCnt];
+		for (int bytes = 0; bytes < byteCnt; bytes++) {
+			byte b = 0;
+			for (int bit = 0; fill ? (bit < 8) : (bit < 8 && (bytes * 8 + bit) < bitCnt); bit++) {
+				b <<= 1;
+				b |= (data.get(bytes * 8 + bit) ? 1 : 0);
+			}
+			ret[bytes] = b;
+		}
+		return ret;
+	}
+
+	/**
+	 * Bitwise reference implementation of {@link RFUtils#applyMask(Filter)}
+	 */
+	private static List<Filter> legacyApplyMask(Filter filter) {
+		BitSet data = RFUtils.bytesToBitSet(filter.getData());
+		BitSet mask = RFUtils.bytesToBitSet(filter.getMask());
+		List<Filter> subFilters = null;
+		int l = 0, r = 0;
+		while (true) {
+			l = mask.nextSetBit(r);
+			if (l == -1 || l >= filter.getBitLength())
+				break;
+			r = mask.nextClearBit(l);
+			if (r > filter.getBitLength())
+				r = filter.getBitLength();
+			if (l == 0 && r == filter.getBitLength()) {
+				subFilters = new ArrayList<>();
+				int remaining = filter.getBitLength();
+				int offset = 0;
+				while (remaining > 0) {
+					int length = filter.getBitLength() > 255 ? Math.min(255, remaining) : remaining;
+					Filter subFilter = new Filter();
+					subFilter.setMatch(filter.isMatch());
+					subFilter.setBank(filter.getBank());
+					subFilter.setBitLength((short) length);
+					subFilter.setBitOffset((short) (filter.getBitOffset() + offset));
+					subFilter.setData(filter.getBitLength() > 255 ? legacyBitSetToBytes(data.get(offset, offset + length), length, true) : filter
+							.getData());
+					subFilter.setMask(filter.getBitLength() > 255 ? legacyBitSetToBytes(mask.get(offset, offset + length), length, true) : filter
+							.getMask());
+					subFilters.add(subFilter);
+					remaining -= length;
+					offset += length;
+				}
+				return subFilters;
+			}
+			if (subFilters == null)
+				subFilters = new ArrayList<>();
+			if ((r - l) > 255)
+				r = r - ((r - l) - 255);
+			BitSet subSet = data.get(l, r);
+			Filter subFilter = new Filter();
+			subFilter.setMatch(filter.isMatch());
+			subFilter.setBank(filter.getBank());
+			subFilter.setBitLength((short) (r - l));
+			subFilter.setBitOffset((short) (filter.getBitOffset() + l));
+			subFilter.setData(legacyBitSetToBytes(subSet, r - l, true));
+			subSet.set(0, r - l, true);
+			subFilter.setMask(legacyBitSetToBytes(subSet, r - l, true));
+			subFilters.add(subFilter);
+		}
+		return subFilters;
+	}
+}
@@ -0,0 +1,83 @@
+package havis.device.rf.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import havis.device.rf.tag.Filter;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BitMaskTest {
+
+	@Test
+	public void testMatches() {
+		byte[] epc = new byte[] { (byte) 0x30, (byte) 0x08, (byte) 0x33, (byte) 0xB2, (byte) 0xDD, (byte) 0xD9, (byte) 0x01, (byte) 0x40,
+				(byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x01 };
+
+		BitMask mask = new BitMask(0, 96, epc.clone(), null);
+		assertTrue(mask.matches(epc));
+		epc[11] = 2;
+		assertFalse(mask.matches(epc));
+		epc[11] = 1;
+
+		// header only, with EPC bank offset of the EPC
+		mask = new BitMask(32, 8, new byte[] { (byte) 0x30 }, null);
+		assertTrue(mask.matches(epc, 32));
+		assertFalse(mask.matches(epc, 0));
+		// value does not start early enough
+		assertFalse(mask.matches(epc, 40));
+
+		// unaligned, masked
+		mask = new BitMask(4, 12, new byte[] { (byte) 0x00, (byte) 0x80 }, new byte[] { (byte) 0x00, (byte) 0xF0 });
+		assertTrue(mask.matches(epc));
+		assertEquals(0, mask.compare(epc, 0));
+
+		// value does not cover the pattern
+		mask = new BitMask(90, 8, new byte[] { 0 }, null);
+		assertFalse(mask.matches(epc));
+		try {
+			mask.compare(epc, 0);
+			fail("Exception expected");
+		} catch (IndexOutOfBoundsException e) {
+		}
+
+		try {
+			new BitMask(0, 9, new byte[1], null);
+			fail("Exception expected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testCompare() {
+		BitMask mask = new BitMask(8, 8, new byte[] { (byte) 0x80 }, null);
+		assertEquals(0, mask.compare(new byte[] { 0, (byte) 0x80 }, 0));
+		assertEquals(1, mask.compare(new byte[] { 0, (byte) 0x81 }, 0));
+		assertEquals(-1, mask.compare(new byte[] { (byte) 0xFF, (byte) 0x7F }, 0));
+	}
+
+	@Test
+	public void testForFilterRandom() {
+		Random random = new Random(7);
+		for (int i = 0; i < 2000; i++) {
+			byte[] value = new byte[1 + random.nextInt(32)];
+			random.nextBytes(value);
+			int offset = random.nextInt(value.length * 8);
+			int length = random.nextInt(value.length * 8 - offset + 1);
+
+			Filter filter = new Filter();
+			filter.setBitOffset((short) offset);
+			filter.setBitLength((short) length);
+			filter.setData(RFUtils.strip(value, offset, length));
+			filter.setMask(BitField.ones(length));
+			if (length > 0 && random.nextBoolean())
+				filter.getData()[random.nextInt(filter.getData().length)] ^= 0xFF;
+
+			boolean expected = length == 0 || BitField.compare(RFUtils.strip(value, offset, length), filter.getData(), 0, length) == 0;
+			assertEquals(expected, BitMask.forFilter(filter).matches(value));
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package havis.device.rf.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class EpcTest {
+
+	@Test
+	public void testValueOf() {
+		assertNull(Epc.valueOf(null));
+
+		Random random = new Random(12);
+		for (int length = 0; length <= 64; length++) {
+			byte[] bytes = new byte[length];
+			random.nextBytes(bytes);
+			Epc epc = Epc.valueOf(bytes);
+
+			assertEquals(length, epc.length());
+			assertArrayEquals(bytes, epc.toBytes());
+			assertEquals(RFUtils.bytesToHex(bytes), epc.toHex());
+			assertEquals(epc.toHex(), epc.toString());
+			assertTrue(epc.matches(bytes));
+			assertEquals(epc, Epc.valueOf(bytes.clone()));
+			assertEquals(epc.hashCode(), Epc.valueOf(bytes.clone()).hashCode());
+
+			if (length > 0) {
+				byte[] other = bytes.clone();
+				other[length - 1] ^= 1;
+				assertNotEquals(epc, Epc.valueOf(other));
+				assertFalse(epc.matches(other));
+			}
+		}
+
+		// values must not change with the source array
+		byte[] bytes = new byte[] { 0x01, 0x02 };
+		Epc epc = Epc.valueOf(bytes);
+		bytes[0] = 0;
+		assertEquals("0102", epc.toHex());
+		byte[] longBytes = new byte[20];
+		epc = Epc.valueOf(longBytes);
+		longBytes[0] = 1;
+		assertFalse(epc.matches(longBytes));
+		epc.toBytes()[0] = 1;
+		assertArrayEquals(new byte[20], epc.toBytes());
+
+		// trailing zeros are part of the value
+		assertNotEquals(Epc.valueOf(new byte[] { 1 }), Epc.valueOf(new byte[] { 1, 0 }));
+		assertFalse(Epc.valueOf(new byte[] { 1 }).matches(null));
+	}
+
+	@Test
+	public void testCompareTo() {
+		Random random = new Random(13);
+		for (int i = 0; i < 1000; i++) {
+			byte[] left = new byte[random.nextInt(24)];
+			byte[] right = new byte[random.nextInt(3) == 0 ? left.length : random.nextInt(24)];
+			random.nextBytes(left);
+			random.nextBytes(right);
+			if (random.nextBoolean())
+				System.arraycopy(left, 0, right, 0, Math.min(left.length, right.length) / 2);
+
+			int expected = 0;
+			for (int j = 0; j < Math.min(left.length, right.length) && expected == 0; j++)
+				expected = (left[j] & 0xFF) - (right[j] & 0xFF);
+			if (expected == 0)
+				expected = left.length - right.length;
+			assertEquals(Integer.signum(expected), Integer.signum(Epc.valueOf(left).compareTo(Epc.valueOf(right))));
+		}
+		assertTrue(Epc.valueOf(new byte[] { 1 }).compareTo(Epc.valueOf(new byte[] { 1, 0 })) < 0);
+	}
+}
@@ -0,0 +1,109 @@
+package havis.device.rf.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.TagDataList;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HexCodecTest {
+
+	@Test
+	public void testDecode() {
+		assertArrayEquals(new byte[] { (byte) 0xDE, (byte) 0xAD, (byte) 0xBE, (byte) 0xEF }, HexCodec.decode("deAD BE_ef"));
+		assertArrayEquals(new byte[] { 0x01, 0x23 }, HexCodec.decode(" 0\t1\r\n2 3 "));
+		assertArrayEquals(new byte[0], HexCodec.decode(""));
+		assertEquals(2, HexCodec.decodedLength("01 23"));
+
+		byte[] dst = new byte[] { 9, 9, 9, 9 };
+		assertEquals(2, HexCodec.decode("ABCD", dst, 1));
+		assertArrayEquals(new byte[] { 9, (byte) 0xAB, (byte) 0xCD, 9 }, dst);
+
+		for (String invalid : new String[] { "0x12", "-1", "+1", "1G", "١٢" }) {
+			try {
+				HexCodec.decode(invalid);
+				fail("Exception expected for " + invalid);
+			} catch (NumberFormatException e) {
+			}
+		}
+		try {
+			HexCodec.decode("ABC");
+			fail("Exception expected");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			HexCodec.decode("ABCD", new byte[1], 0);
+			fail("Exception expected");
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	@Test
+	public void testEncode() throws IOException {
+		Random random = new Random(31);
+		for (int i = 0; i < 100; i++) {
+			byte[] bytes = new byte[random.nextInt(40)];
+			random.nextBytes(bytes);
+
+			StringBuilder expected = new StringBuilder();
+			for (byte b : bytes)
+				expected.append(String.format("%02X", b & 0xFF));
+
+			assertEquals(expected.toString(), HexCodec.encode(bytes));
+			assertEquals(expected.toString(), HexCodec.encode(bytes, new StringBuilder()).toString());
+			assertEquals(expected.toString(), HexCodec.encode(bytes, new StringWriter()).toString());
+			assertArrayEquals(bytes, HexCodec.decode(HexCodec.encode(bytes).toLowerCase()));
+		}
+
+		CharBuffer buffer = CharBuffer.allocate(6);
+		buffer.put('>');
+		HexCodec.encode(new byte[] { 0x0A, (byte) 0xF0 }, buffer);
+		buffer.flip();
+		assertEquals(">0AF0", buffer.toString());
+
+		buffer = CharBuffer.allocate(3);
+		try {
+			HexCodec.encode(new byte[] { 0x0A, (byte) 0xF0 }, buffer);
+			fail("Exception expected");
+		} catch (BufferOverflowException e) {
+		}
+		assertEquals(0, buffer.position());
+
+		// char buffer passed as appendable, without accessible array
+		buffer = ByteBuffer.allocateDirect(12).asCharBuffer();
+		Appendable appendable = buffer;
+		HexCodec.encode(new byte[] { 0x12 }, appendable);
+		buffer.flip();
+		assertEquals("12", buffer.toString());
+	}
+
+	@Test
+	public void testEncodeBinary() {
+		assertEquals("1010 1010 0101 0101", HexCodec.encodeBinary(new byte[] { (byte) 0b10101010, (byte) 0b01010101 }, new StringBuilder()).toString());
+		assertEquals("", HexCodec.encodeBinary(new byte[0], new StringBuilder()).toString());
+	}
+
+	@Test
+	public void testEncodeEpcs() {
+		TagDataList tags = new TagDataList();
+		for (byte[] epc : new byte[][] { { 0x30, 0x08 }, null, new byte[40] }) {
+			TagData tag = new TagData();
+			tag.setEpc(epc);
+			tags.getEntryList().add(tag);
+		}
+		char[] zeros = new char[80];
+		Arrays.fill(zeros, '0');
+		assertEquals(Arrays.asList("3008", null, new String(zeros)), HexCodec.encodeEpcs(tags));
+		assertEquals("3008,," + new String(zeros), HexCodec.encodeEpcs(tags, ',', new StringBuilder()).toString());
+	}
+}
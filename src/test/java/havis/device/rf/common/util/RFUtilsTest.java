@@ -23,6 +23,8 @@ import havis.device.rf.tag.result.WriteResult;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -778,4 +780,145 @@ public class RFUtilsTest {
 		
 	}
 
+
+	@Test
+	public void testStripShift() {
+		Random random = new Random(0x5EED);
+		for (int i = 0; i < 5000; i++) {
+			byte[] bytes = new byte[random.nextInt(40)];
+			random.nextBytes(bytes);
+
+			int offset = bytes.length == 0 ? 0 : random.nextInt(bytes.length * 8);
+			int length = random.nextInt(4) == 0 ? 0 : random.nextInt(bytes.length * 8 - offset + 1);
+			byte[] expected = legacyStrip(bytes, offset, length);
+			assertArrayEquals(expected, RFUtils.strip(bytes, offset, length));
+			assertArrayEquals(expected, stripToBuffers(bytes, offset, length, expected.length));
+
+			int n = random.nextInt(bytes.length * 8 + 20) - 20;
+			int bitLength = bytes.length * 8 - random.nextInt(8);
+			if (bitLength < 0 || bitLength - n < 0)
+				continue;
+			expected = legacyShift(bytes, bitLength, n);
+			assertArrayEquals(expected, RFUtils.shift(bytes, bitLength, n));
+			assertArrayEquals(expected, shiftToBuffers(bytes, bitLength, n, expected.length));
+		}
+
+		try {
+			RFUtils.strip(new byte[2], 8, 9);
+			fail("Exception expected");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			RFUtils.shift(new byte[2], 17);
+			fail("Exception expected");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			RFUtils.strip(new byte[] { 1, 2 }, 0, 16, new byte[3], 2);
+			fail("Exception expected");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			RFUtils.strip(new byte[] { 1, 2 }, 0, 16, ByteBuffer.allocate(1));
+			fail("Exception expected");
+		} catch (BufferOverflowException e) {
+		}
+	}
+
+	/**
+	 * Writes the result of strip to an array at an offset, to a heap buffer and
+	 * to a direct buffer and checks that all results are equal
+	 */
+	private static byte[] stripToBuffers(byte[] bytes, int offset, int length, int size) {
+		byte[] dst = new byte[size + 3];
+		Arrays.fill(dst, (byte) 0x5A);
+		assertEquals(size, RFUtils.strip(bytes, offset, length, dst, 2));
+		assertEquals(0x5A, dst[1]);
+		assertEquals(0x5A, dst[size + 2]);
+
+		ByteBuffer heap = ByteBuffer.allocate(size + 1);
+		heap.put((byte) 0x5A);
+		assertEquals(size, RFUtils.strip(bytes, offset, length, heap));
+		ByteBuffer direct = ByteBuffer.allocateDirect(size);
+		assertEquals(size, RFUtils.strip(bytes, offset, length, direct));
+		return checkBuffers(dst, heap, direct, size);
+	}
+
+	private static byte[] shiftToBuffers(byte[] bytes, int length, int n, int size) {
+		byte[] dst = new byte[size + 3];
+		assertEquals(size, RFUtils.shift(bytes, length, n, dst, 2));
+		ByteBuffer heap = ByteBuffer.allocate(size + 1);
+		heap.put((byte) 0x5A);
+		assertEquals(size, RFUtils.shift(bytes, length, n, heap));
+		ByteBuffer direct = ByteBuffer.allocateDirect(size);
+		assertEquals(size, RFUtils.shift(bytes, length, n, direct));
+		return checkBuffers(dst, heap, direct, size);
+	}
+
+	private static byte[] checkBuffers(byte[] dst, ByteBuffer heap, ByteBuffer direct, int size) {
+		byte[] result = Arrays.copyOfRange(dst, 2, 2 + size);
+		assertEquals(size + 1, heap.position());
+		assertArrayEquals(result, Arrays.copyOfRange(heap.array(), 1, size + 1));
+		assertEquals(size, direct.position());
+		byte[] directBytes = new byte[size];
+		direct.flip();
+		direct.get(directBytes);
+		assertArrayEquals(result, directBytes);
+		return result;
+	}
+
+	/**
+	 * Bytewise reference implementation of {@link RFUtils#strip}
+	 */
+	private static byte[] legacyStrip(byte[] bytes, int offset, int length) {
+		int l = length == 0 ? bytes.length - offset / 8 : RFUtils.size(length);
+		byte[] result = new byte[l];
+		int byteIndex = offset / 8;
+		int byteLength = byteIndex + (length == 0 ? bytes.length - offset / 8 : RFUtils.size(offset % 8 + length));
+		offset = offset % 8;
+		if (byteIndex < byteLength) {
+			for (int i = 0; i < result.length; i++) {
+				result[i] = (byte) (((bytes[byteIndex] & 0xFF) << offset) + ((++byteIndex < byteLength) && offset > 0 ? (bytes[byteIndex] & 0xFF) >> (8 - offset)
+						: 0));
+			}
+			if (length % 8 > 0) {
+				int current = result[result.length - 1] & 0xFF;
+				current &= 0xFF << (8 - length % 8);
+				result[result.length - 1] = (byte) current;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Bytewise reference implementation of {@link RFUtils#shift}
+	 */
+	private static byte[] legacyShift(byte[] bytes, int length, int n) {
+		byte[] result = new byte[RFUtils.size(bytes.length * 8 - n)];
+		if (bytes.length > 0) {
+			if (n % 8 > 0) {
+				for (int i = 0; i < result.length - 1; i++) {
+					result[i] = (byte) (((bytes[i + n / 8] & 0xFF) << (n % 8)) + ((bytes[i + n / 8 + 1] & 0xFF) >> (8 - (n % 8))));
+				}
+				result[result.length - 1] = (byte) ((bytes[result.length - 1 + n / 8] & 0xFF) << (n % 8));
+			} else if (n % 8 < 0) {
+				result[-n / 8] = (byte) ((bytes[0] & 0xFF) >> (-n % 8));
+				for (int i = 0; i < bytes.length - 1; i++) {
+					result[i - n / 8 + 1] = (byte) (((bytes[i] & 0xFF) << (8 + (n % 8))) + ((bytes[i + 1] & 0xFF) >> (-n % 8)));
+				}
+				result[result.length - 1] = (byte) ((bytes[bytes.length - 1] & 0xFF) << (8 + (n % 8)));
+			} else {
+				if (n < 0) {
+					for (int i = 0; i < bytes.length; i++) {
+						result[i - n / 8] = bytes[i];
+					}
+				} else {
+					for (int i = 0; i < result.length; i++) {
+						result[i] = bytes[i + n / 8];
+					}
+				}
+			}
+		}
+		return legacyStrip(result, 0, (((length - n) / 8) + (((length - n) % 8 > 0) ? 1 : 0)) * 8);
+	}
 }
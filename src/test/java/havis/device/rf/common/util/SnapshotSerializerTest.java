@@ -0,0 +1,225 @@
+package havis.device.rf.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.configuration.AntennaConfiguration;
+import havis.device.rf.configuration.AntennaConfigurationList;
+import havis.device.rf.configuration.ConnectType;
+import havis.device.rf.configuration.InventorySettings;
+import havis.device.rf.configuration.RFConfiguration;
+import havis.device.rf.configuration.RFRegion;
+import havis.device.rf.configuration.RssiFilter;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnapshotSerializerTest {
+
+	public static class Bean {
+		private String name;
+		private int count;
+		private Short optional;
+		private boolean flag;
+		private double ratio;
+		private ConnectType connect;
+		private byte[] data;
+		private String[] names;
+		private List<Bean> children = new ArrayList<>();
+		private Map<String, Integer> values = new LinkedHashMap<>();
+		private transient String cached = "cached";
+	}
+
+	public static class Immutable {
+		private final String value;
+
+		public Immutable(String value) {
+			this.value = value;
+		}
+	}
+
+	private File snapshot;
+
+	@Before
+	public void setup() throws Exception {
+		snapshot = File.createTempFile("snapshot_", ".bin");
+		snapshot.delete();
+	}
+
+	@After
+	public void cleanup() {
+		snapshot.delete();
+	}
+
+	private static String json(Object object) throws IOException {
+		return new JsonSerializer(object.getClass()).serialize(object);
+	}
+
+	@Test
+	public void testEncode() throws Exception {
+		Bean bean = new Bean();
+		bean.name = "root";
+		bean.count = 3;
+		bean.flag = true;
+		bean.ratio = 0.5;
+		bean.connect = ConnectType.TRUE;
+		bean.data = new byte[] { 1, 2, 3 };
+		bean.names = new String[] { "a", null };
+		Bean child = new Bean();
+		child.optional = Short.valueOf((short) 7);
+		bean.children.add(child);
+		bean.children.add(null);
+		bean.values.put("x", Integer.valueOf(1));
+		bean.values.put("y", null);
+
+		Bean decoded = (Bean) SnapshotSerializer.decode(SnapshotSerializer.encode(bean));
+		assertEquals("root", decoded.name);
+		assertEquals(3, decoded.count);
+		assertNull(decoded.optional);
+		assertTrue(decoded.flag);
+		assertEquals(0.5, decoded.ratio, 0);
+		assertEquals(ConnectType.TRUE, decoded.connect);
+		assertArrayEquals(new byte[] { 1, 2, 3 }, decoded.data);
+		assertArrayEquals(new String[] { "a", null }, decoded.names);
+		assertEquals(2, decoded.children.size());
+		assertEquals(Short.valueOf((short) 7), decoded.children.get(0).optional);
+		assertTrue(decoded.children.get(0).children.isEmpty());
+		assertNull(decoded.children.get(1));
+		assertEquals(Arrays.asList("x", "y"), new ArrayList<>(decoded.values.keySet()));
+		assertEquals(Integer.valueOf(1), decoded.values.get("x"));
+		assertEquals("cached", decoded.cached);
+
+		// collections without public constructor are replaced
+		bean.children = Collections.singletonList(child);
+		decoded = (Bean) SnapshotSerializer.decode(SnapshotSerializer.encode(bean));
+		assertEquals(ArrayList.class, decoded.children.getClass());
+
+		// cycles and classes without no-argument constructor are not supported
+		bean.children = new ArrayList<>(Arrays.asList(bean));
+		try {
+			SnapshotSerializer.encode(bean);
+			throw new AssertionError("Cycle encoded");
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			SnapshotSerializer.encode(new Immutable("x"));
+			throw new AssertionError("Unsupported class encoded");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testDeserialize() throws Exception {
+		RFConfiguration source = new RFConfiguration();
+		source.setRegion("EU");
+		source.setAntennaConfigurationList(new AntennaConfigurationList());
+		for (short id = 1; id <= 2; id++) {
+			AntennaConfiguration antenna = new AntennaConfiguration();
+			antenna.setId(id);
+			antenna.setTransmitPower(Short.valueOf((short) (10 * id)));
+			antenna.setConnect(ConnectType.AUTO);
+			source.getAntennaConfigurationList().getEntryList().add(antenna);
+		}
+		source.setInventorySettings(new InventorySettings());
+		source.getInventorySettings().setRssiFilter(new RssiFilter());
+		source.getInventorySettings().getRssiFilter().setMinRssi((short) -70);
+		byte[] json = json(source).getBytes(StandardCharsets.UTF_8);
+
+		RFConfiguration parsed = new JsonSerializer(RFConfiguration.class).deserialize(new ByteArrayInputStream(json), RFConfiguration.class);
+		RFConfiguration config = SnapshotSerializer.deserialize(new ByteArrayInputStream(json), RFConfiguration.class, snapshot);
+		assertTrue(snapshot.exists());
+		assertEquals(json(parsed), json(config));
+		RFConfiguration loaded = SnapshotSerializer.deserialize(new ByteArrayInputStream(json), RFConfiguration.class, snapshot);
+		assertEquals(json(parsed), json(loaded));
+		assertEquals(2, loaded.getAntennaConfigurationList().getEntryList().size());
+		assertEquals(-70, loaded.getInventorySettings().getRssiFilter().getMinRssi());
+
+		try {
+			SnapshotSerializer.deserialize(null, RFConfiguration.class, snapshot);
+			throw new AssertionError("Missing source accepted");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testStale() throws Exception {
+		byte[] source = "{\"id\":\"EU\"}".getBytes(StandardCharsets.UTF_8);
+		RFRegion region = new RFRegion();
+		region.setId("snapshot");
+
+		// a fresh snapshot is used instead of the source
+		SnapshotSerializer.write(snapshot, SnapshotSerializer.checksum(source), region);
+		assertEquals("snapshot", SnapshotSerializer.deserialize(new ByteArrayInputStream(source), RFRegion.class, snapshot).getId());
+
+		// a stale snapshot is replaced
+		byte[] changed = "{\"id\":\"FCC\"}".getBytes(StandardCharsets.UTF_8);
+		assertEquals("FCC", SnapshotSerializer.deserialize(new ByteArrayInputStream(changed), RFRegion.class, snapshot).getId());
+		assertNull(SnapshotSerializer.read(snapshot, SnapshotSerializer.checksum(source), RFRegion.class));
+		assertEquals("FCC", SnapshotSerializer.read(snapshot, SnapshotSerializer.checksum(changed), RFRegion.class).getId());
+
+		// a corrupt snapshot is replaced
+		try (RandomAccessFile raf = new RandomAccessFile(snapshot, "rw")) {
+			raf.seek(raf.length() - 2);
+			raf.write(~raf.read());
+		}
+		try {
+			SnapshotSerializer.read(snapshot, SnapshotSerializer.checksum(changed), RFRegion.class);
+			throw new AssertionError("Corrupt snapshot accepted");
+		} catch (IOException e) {
+			assertEquals("Snapshot is corrupt", e.getMessage());
+		}
+		assertEquals("FCC", SnapshotSerializer.deserialize(new ByteArrayInputStream(changed), RFRegion.class, snapshot).getId());
+		assertNotNull(SnapshotSerializer.read(snapshot, SnapshotSerializer.checksum(changed), RFRegion.class));
+
+		// a snapshot of another class is rejected
+		SnapshotSerializer.write(snapshot, SnapshotSerializer.checksum(source), new Bean());
+		try {
+			SnapshotSerializer.read(snapshot, SnapshotSerializer.checksum(source), RFRegion.class);
+			throw new AssertionError("Snapshot of other class accepted");
+		} catch (IOException e) {
+			// expected
+		}
+
+		// an invalid file is rejected
+		Files.write(snapshot.toPath(), new byte[] { 1, 2, 3, 4, 5 });
+		try {
+			SnapshotSerializer.read(snapshot, SnapshotSerializer.checksum(source), RFRegion.class);
+			throw new AssertionError("Invalid snapshot accepted");
+		} catch (IOException e) {
+			assertEquals("Not a snapshot", e.getMessage());
+		}
+		assertEquals("EU", SnapshotSerializer.deserialize(new ByteArrayInputStream(source), RFRegion.class, snapshot).getId());
+		assertFalse(new File(snapshot.getPath() + ".tmp").exists());
+	}
+
+	@Test
+	public void testGetSnapshotFile() {
+		// snapshots are disabled without a path
+		assertNull(SnapshotSerializer.getSnapshotFile(null, "havis/device/rf/config/default.json"));
+		assertNull(SnapshotSerializer.getSnapshotFile("", "havis/device/rf/config/default.json"));
+		assertNull(SnapshotSerializer.getSnapshotFile("snapshot", null));
+
+		assertEquals(new File("snapshot", "havis/device/rf/config/default.json.bin"),
+				SnapshotSerializer.getSnapshotFile("snapshot", "havis/device/rf/config/default.json"));
+	}
+}